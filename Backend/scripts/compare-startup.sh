@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Sammenligner oppstartstid og minnebruk (RSS) mellom JVM-jar og native image.
+# Krever at Postgres kjører (docker compose up db) og GraalVM 21+ som JAVA_HOME
+# (for native-image; jar-en bygges med samme JDK).
+#
+# Bruk: scripts/compare-startup.sh [antall oppstarter] [forespørsler før RSS måles]
+set -euo pipefail
+
+RUNS="${1:-5}"
+REQUESTS="${2:-200}"
+PORT=8080
+BASE="http://localhost:${PORT}"
+ENDPOINT="/api/children/guardian/1"
+
+cd "$(dirname "$0")/.."
+mvn -B -q -DskipTests package
+JAR=$(ls target/*.jar | grep -v plain | head -n 1)
+mvn -B -q -Pnative -DskipTests native:compile
+NATIVE=target/trygginn-backend
+
+now_ms() { date +%s%3N; }
+rss_mb() { ps -o rss= -p "$1" | awk '{printf "%.0f", $1 / 1024}'; }
+median() { sort -n | awk '{a[NR] = $1} END {print (NR % 2) ? a[(NR + 1) / 2] : (a[NR / 2] + a[NR / 2 + 1]) / 2}'; }
+
+run_mode() {
+  local mode="$1"; shift
+  local ready=() started=() rss_idle=() rss_warm=()
+
+  for run in $(seq "$RUNS"); do
+    local t0 pid
+    t0=$(now_ms)
+    "$@" --spring.profiles.active=dev > "target/startup-${mode}.log" 2>&1 &
+    pid=$!
+
+    # Tid til første vellykkede svar, som er det lastbalansereren venter på
+    until curl -sf "${BASE}/actuator/health" > /dev/null; do sleep 0.02; done
+    ready+=($(( $(now_ms) - t0 )))
+    started+=($(sed -n 's/.*Started BackendApplication in \([0-9.]*\) seconds.*/\1/p' "target/startup-${mode}.log" \
+      | awk '{printf "%.0f", $1 * 1000}'))
+    rss_idle+=($(rss_mb "$pid"))
+
+    for _ in $(seq "$REQUESTS"); do curl -sf "${BASE}${ENDPOINT}" > /dev/null; done
+    rss_warm+=($(rss_mb "$pid"))
+
+    kill "$pid"; wait "$pid" 2>/dev/null || true
+  done
+
+  printf "%-7s %12s %14s %12s %14s\n" "$mode" \
+    "$(printf '%s\n' "${ready[@]}" | median)" \
+    "$(printf '%s\n' "${started[@]}" | median)" \
+    "$(printf '%s\n' "${rss_idle[@]}" | median)" \
+    "$(printf '%s\n' "${rss_warm[@]}" | median)"
+}
+
+echo "Median av ${RUNS} oppstarter. RSS etter oppstart og etter ${REQUESTS} kall mot ${ENDPOINT}."
+printf "%-7s %12s %14s %12s %14s\n" "modus" "klar (ms)" "Spring (ms)" "RSS (MB)" "RSS varm (MB)"
+run_mode jvm java -jar "$JAR"
+run_mode native "$NATIVE"
@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Sammenligner gjennomstrømning og p99 mellom plattformtråder og virtuelle tråder.
+# Krever at Postgres kjører (docker compose up db) og at "hey" er installert
+# (https://github.com/rakyll/hey).
+#
+# Bruk: scripts/compare-thread-modes.sh [varighet] [samtidighet]
+set -euo pipefail
+
+DURATION="${1:-30s}"
+CONCURRENCY="${2:-400}"
+PORT=8080
+BASE="http://localhost:${PORT}"
+
+# Endepunktene nettbrett og foreldre treffer oftest i morgenrushet
+ENDPOINTS=(
+  "/api/attendance/child/1/latest"
+  "/api/daycare-groups/daycare/1"
+  "/api/children/guardian/1"
+)
+
+cd "$(dirname "$0")/.."
+mvn -B -q -DskipTests package
+JAR=$(ls target/*.jar | grep -v plain | head -n 1)
+
+run_mode() {
+  local mode="$1" profile="$2"
+  java -jar "$JAR" --spring.profiles.active="$profile" \
+    > "target/${mode}.log" 2>&1 &
+  local pid=$!
+  trap "kill $pid 2>/dev/null || true" RETURN
+
+  until curl -sf "${BASE}${ENDPOINTS[0]}" > /dev/null; do sleep 1; done
+
+  for endpoint in "${ENDPOINTS[@]}"; do
+    # Oppvarming av JIT og tilkoblingspool
+    hey -z 5s -c 50 "${BASE}${endpoint}" > /dev/null
+    local out
+    out=$(hey -z "$DURATION" -c "$CONCURRENCY" "${BASE}${endpoint}")
+    local rps p99 errors
+    rps=$(echo "$out" | awk '/Requests\/sec/ {print $2}')
+    p99=$(echo "$out" | awk '/99%% in/ || /99% in/ {print $3}')
+    errors=$(echo "$out" | awk '/\[[^2][0-9][0-9]\]/ {sum += $2} END {print sum + 0}')
+    printf "%-9s %-36s %10s req/s  p99 %8s s  feil %s\n" "$mode" "$endpoint" "$rps" "$p99" "$errors"
+  done
+}
+
+echo "Varighet ${DURATION}, samtidighet ${CONCURRENCY}"
+run_mode platform default
+run_mode virtual virtual
@@ -0,0 +1,153 @@
+package no.trygginn.backend.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.trygginn.backend.controller.dto.AbsenceResponse;
+import no.trygginn.backend.controller.dto.AttendanceEventResponse;
+import no.trygginn.backend.controller.dto.CalendarEventResponse;
+import no.trygginn.backend.controller.dto.DaycareGroupResponse;
+import no.trygginn.backend.model.Absence;
+import no.trygginn.backend.model.Attendance;
+import no.trygginn.backend.model.AttendanceEventType;
+import no.trygginn.backend.model.CalendarEvent;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.Daycare;
+import no.trygginn.backend.model.DaycareGroup;
+import no.trygginn.backend.model.User;
+import no.trygginn.backend.model.UserRole;
+import no.trygginn.backend.service.AbsenceService;
+import no.trygginn.backend.service.CalendarEventService;
+import no.trygginn.backend.service.RequestCoalescer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for mapping fra entiteter til DTO-er og stream-pipelines i controllerne.
+ * Kjør med -prof gc for å se allokering per operasjon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int size;
+
+    private Attendance attendance;
+    private CalendarEvent calendarEvent;
+    private DaycareGroup group;
+
+    private AttendanceController attendanceController;
+    private DaycareGroupController daycareGroupController;
+    private CalendarEventController calendarEventController;
+    private AbsenceController absenceController;
+
+    @Setup
+    public void setup() {
+        Daycare daycare = new Daycare();
+        daycare.setName("Solstrålen Barnehage");
+
+        group = new DaycareGroup();
+        group.setDaycare(daycare);
+        group.setName("Marihøna");
+
+        User staff = new User();
+        staff.setFullName("Kari Olsen");
+        staff.setRole(UserRole.STAFF);
+
+        List<CalendarEvent> events = new ArrayList<>(size);
+        List<Absence> absences = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            Child child = new Child();
+            child.setFirstName("Barn" + i);
+            child.setLastName("Hansen");
+            child.setDateOfBirth(LocalDate.of(2020, 1, 1).plusDays(i));
+            child.setDaycareGroup(group);
+            group.getChildren().add(child);
+
+            CalendarEvent event = new CalendarEvent();
+            event.setId((long) i);
+            event.setDaycare(daycare);
+            event.setDaycareGroup(i % 2 == 0 ? group : null);
+            event.setTitle("Tur " + i);
+            event.setDescription("Vi går på tur");
+            event.setLocation("Skogen");
+            event.setStartTime(LocalDateTime.of(2026, 1, 1, 9, 0).plusDays(i));
+            event.setEndTime(LocalDateTime.of(2026, 1, 1, 11, 0).plusDays(i));
+            event.setCreatedByUser(staff);
+            events.add(event);
+
+            Absence absence = new Absence();
+            absence.setChild(child);
+            absence.setReportedBy(staff);
+            absence.setDate(LocalDate.of(2026, 1, 1).plusDays(i));
+            absence.setReason("Syk");
+            absences.add(absence);
+        }
+
+        attendance = new Attendance();
+        attendance.setChild(group.getChildren().iterator().next());
+        attendance.setEventType(AttendanceEventType.IN);
+        attendance.setEventTime(LocalDateTime.of(2026, 1, 1, 7, 30));
+        attendance.setNote("Levert av mor");
+        attendance.setPerformedBy(staff);
+
+        calendarEvent = events.get(0);
+
+        attendanceController = new AttendanceController(null, null);
+        // Sammenslåing av like kall er av, slik at hvert kall mapper på nytt
+        RequestCoalescer coalescer = new RequestCoalescer(new SimpleMeterRegistry(), false, 0);
+        daycareGroupController = new DaycareGroupController(null, coalescer, null);
+
+        calendarEventController = new CalendarEventController(
+                new CalendarEventService(null, null, null, null, null, null, null) {
+                    @Override
+                    public List<CalendarEvent> getEventsForDaycare(Long daycareId) {
+                        return events;
+                    }
+                },
+                coalescer);
+
+        absenceController = new AbsenceController(
+                new AbsenceService(null, null, null, null, null) {
+                    @Override
+                    public List<Absence> getAbsencesForChild(Long childId) {
+                        return absences;
+                    }
+                });
+    }
+
+    @Benchmark
+    public AttendanceEventResponse attendanceToResponse() {
+        return attendanceController.toResponse(attendance);
+    }
+
+    @Benchmark
+    public CalendarEventResponse calendarEventFrom() {
+        return CalendarEventResponse.from(calendarEvent);
+    }
+
+    @Benchmark
+    public DaycareGroupResponse daycareGroupToResponse() {
+        return daycareGroupController.toResponse(group);
+    }
+
+    @Benchmark
+    public ResponseEntity<List<CalendarEventResponse>> calendarListForDaycare() {
+        return calendarEventController.listForDaycare(1L);
+    }
+
+    @Benchmark
+    public ResponseEntity<List<AbsenceResponse>> absencesForChild() {
+        return absenceController.getAbsences(1L);
+    }
+}
@@ -0,0 +1,70 @@
+package no.trygginn.backend.index;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for personsøket (TokenPrefixIndex) i en stor barnehage.
+ * Ett-tegns søk er verst, siden nesten alle navn treffer og må rangeres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenPrefixIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = {
+            "Kari", "Ola", "Nora", "Emma", "Jakob", "Filip", "Sofie", "Åse", "Øystein", "Ærlig",
+            "Ingrid", "Lars", "Maja", "Noah", "Olivia", "Sander", "Tiril", "William", "Aksel", "Frida"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Olsen", "Hansen", "Johansen", "Larsen", "Andersen", "Pedersen", "Nilsen", "Kristiansen",
+            "Jensen", "Karlsen", "Berg", "Haugen", "Hagen", "Bakken", "Sæther", "Strøm", "Ødegård"
+    };
+
+    @Param({ "12000" })
+    int size;
+
+    private TokenPrefixIndex<Integer, String> index;
+
+    private final Comparator<String> byName = String.CASE_INSENSITIVE_ORDER;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        index = new TokenPrefixIndex<>();
+        for (int i = 0; i < size; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String email = "person" + i + "@barnehage.no";
+            index.put(i, name, name, email, "9" + (1000000 + i));
+        }
+    }
+
+    @Benchmark
+    public List<TokenPrefixIndex.Hit<String>> singleCharacter() {
+        return index.search("o", 20, byName);
+    }
+
+    @Benchmark
+    public List<TokenPrefixIndex.Hit<String>> twoTokens() {
+        return index.search("kari ol", 20, byName);
+    }
+
+    @Benchmark
+    public List<TokenPrefixIndex.Hit<String>> norwegianLetters() {
+        return index.search("øy strø", 20, byName);
+    }
+
+    @Benchmark
+    public List<TokenPrefixIndex.Hit<String>> noMatch() {
+        return index.search("xq", 20, byName);
+    }
+}
@@ -0,0 +1,38 @@
+package no.trygginn.backend.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for generering av tilgangskoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessCodeBenchmark {
+
+    private AccessCodeService accessCodeService;
+
+    @Setup
+    public void setup() {
+        accessCodeService = new AccessCodeService(null, null, null, null, null);
+    }
+
+    @Benchmark
+    public String generateRandomCode() {
+        return accessCodeService.generateRandomCode();
+    }
+
+    /**
+     * Samme kode kalt fra flere tråder, der Math.random() deler én generator.
+     */
+    @Benchmark
+    @Threads(4)
+    public String generateRandomCodeContended() {
+        return accessCodeService.generateRandomCode();
+    }
+}
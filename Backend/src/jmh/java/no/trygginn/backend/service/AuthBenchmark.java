@@ -0,0 +1,78 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.model.User;
+import no.trygginn.backend.model.UserRole;
+import no.trygginn.backend.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for innlogging, med og uten BCrypt.
+ * BCrypt er med vilje treg; tallene viser hva hver innlogging koster i CPU-tid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String PASSWORD = "hemmelig123";
+
+    @Param({ "10", "12" })
+    int strength;
+
+    private AuthService bcryptAuth;
+    private AuthService legacyAuth;
+
+    @Setup
+    public void setup() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+
+        User bcryptUser = user(encoder.encode(PASSWORD));
+        User legacyUser = user(PASSWORD);
+
+        bcryptAuth = new AuthService(repositoryReturning(bcryptUser), encoder);
+        legacyAuth = new AuthService(repositoryReturning(legacyUser), encoder);
+    }
+
+    @Benchmark
+    public User loginBcrypt() {
+        return bcryptAuth.login("anne.hansen@test.no", PASSWORD);
+    }
+
+    @Benchmark
+    public User loginLegacyPlaintext() {
+        return legacyAuth.login("anne.hansen@test.no", PASSWORD);
+    }
+
+    private static User user(String passwordHash) {
+        User user = new User();
+        user.setFullName("Anne Hansen");
+        user.setEmail("anne.hansen@test.no");
+        user.setRole(UserRole.PARENT);
+        user.setPasswordHash(passwordHash);
+        return user;
+    }
+
+    /**
+     * Lager et UserRepository der findByEmail alltid returnerer gitt bruker.
+     */
+    private static UserRepository repositoryReturning(User user) {
+        return (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[] { UserRepository.class },
+                (proxy, method, args) -> {
+                    if ("findByEmail".equals(method.getName())) {
+                        return Optional.of(user);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+        );
+    }
+}
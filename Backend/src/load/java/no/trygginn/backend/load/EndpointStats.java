@@ -0,0 +1,60 @@
+package no.trygginn.backend.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latens og feil for ett endepunkt (eller én sammensatt brukerhandling).
+ * Latens lagres i mikrosekunder med tre signifikante sifre.
+ */
+final class EndpointStats {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    private final AtomicReference<String> lastError = new AtomicReference<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(long latencyNanos, String error) {
+        latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_TRACKABLE_MICROS));
+        if (error != null) {
+            errors.increment();
+            lastError.set(error);
+        }
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+        lastError.set(null);
+    }
+
+    String name() {
+        return name;
+    }
+
+    Histogram latency() {
+        return latency;
+    }
+
+    long count() {
+        return latency.getTotalCount();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    String lastError() {
+        return lastError.get();
+    }
+}
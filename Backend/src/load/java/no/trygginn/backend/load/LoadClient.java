@@ -0,0 +1,115 @@
+package no.trygginn.backend.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP-klient som måler latens per endepunkt.
+ * Endepunkter navngis med mal (f.eks. "GET /api/attendance/child/{id}/latest"),
+ * slik at alle barn havner i samme histogram.
+ */
+final class LoadClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    LoadClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Sender GET og registrerer latens regnet fra startNanos.
+     * Returnerer true ved 2xx-svar.
+     */
+    boolean get(String endpoint, String path, long startNanos) {
+        return send(endpoint, request(path).GET().build(), startNanos);
+    }
+
+    /**
+     * Sender POST med JSON-body og registrerer latens regnet fra startNanos.
+     */
+    boolean postJson(String endpoint, String path, String json, long startNanos) {
+        HttpRequest request = request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return send(endpoint, request, startNanos);
+    }
+
+    /**
+     * Sender en forespørsel uten måling og returnerer body. Brukes til oppsett.
+     */
+    String postUnmeasured(String path, String contentType, String body) throws IOException, InterruptedException {
+        HttpRequest request = request(path)
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("POST " + path + " svarte " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * Registrerer en måling som ikke er ett enkelt HTTP-kall (f.eks. en hel brukerhandling).
+     */
+    void record(String name, long latencyNanos, String error) {
+        statsFor(name).record(latencyNanos, error);
+    }
+
+    /**
+     * Nullstiller alle målinger, typisk etter oppvarming.
+     */
+    void reset() {
+        stats.values().forEach(EndpointStats::reset);
+    }
+
+    Map<String, EndpointStats> snapshot() {
+        return new TreeMap<>(stats);
+    }
+
+    private boolean send(String endpoint, HttpRequest request, long startNanos) {
+        String error = null;
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                error = "HTTP " + response.statusCode();
+            }
+        } catch (IOException e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "avbrutt";
+        }
+
+        statsFor(endpoint).record(System.nanoTime() - startNanos, error);
+        return error == null;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private EndpointStats statsFor(String name) {
+        return stats.computeIfAbsent(name, EndpointStats::new);
+    }
+}
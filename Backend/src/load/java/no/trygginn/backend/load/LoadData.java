@@ -0,0 +1,153 @@
+package no.trygginn.backend.load;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testdata for lasttesten: barnehager, barn og foresatte.
+ * Dataene legges inn via importendepunktet (samme vei som ved oppstart av en
+ * ny barnehage), og id-ene leses deretter direkte fra databasen.
+ * Importen er idempotent, så gjentatte kjøringer gjenbruker eksisterende rader.
+ */
+record LoadData(
+        long staffUserId,
+        List<Long> daycareIds,
+        long[] childIds,
+        Map<Long, long[]> childIdsByDaycare,
+        List<Guardian> guardians
+) {
+
+    static final String ORG_PREFIX = "LAST";
+    static final String EMAIL_PREFIX = "lasttest.foresatt";
+
+    private static final String[] FIRST_NAMES = {
+            "Ola", "Emma", "Noah", "Nora", "Jakob", "Sofie", "Lukas", "Ella", "Emil", "Olivia",
+            "Filip", "Ingrid", "Oskar", "Maja", "Henrik", "Leah", "Aksel", "Frida", "Theodor", "Selma"
+    };
+    private static final String[] LAST_NAMES = {
+            "Hansen", "Johansen", "Olsen", "Larsen", "Andersen", "Pedersen", "Nilsen", "Kristiansen",
+            "Jensen", "Karlsen", "Johnsen", "Pettersen", "Eriksen", "Berg", "Haugen", "Hagen"
+    };
+
+    /**
+     * En foresatt med barna sine. Alle barna går i samme barnehage.
+     */
+    record Guardian(long id, long daycareId, long[] childIds) {}
+
+    /**
+     * Lager CSV for import. Søsken (to og to barn) deler foresatt,
+     * slik at en forelder typisk har ett eller to barn.
+     */
+    static String csv(LoadOptions options) {
+        StringBuilder csv = new StringBuilder(
+                "org_number,daycare_name,daycare_address,group_name,child_first_name,child_last_name,"
+                        + "child_date_of_birth,allergies,medications,guardian_email,guardian_full_name,guardian_phone\n");
+
+        int child = 0;
+        for (int d = 0; d < options.daycares(); d++) {
+            String org = ORG_PREFIX + String.format("%05d", d);
+            for (int g = 0; g < options.groupsPerDaycare(); g++) {
+                for (int c = 0; c < options.childrenPerGroup(); c++, child++) {
+                    int guardian = child / 2;
+                    String lastName = LAST_NAMES[guardian % LAST_NAMES.length];
+                    csv.append(org).append(',')
+                            .append("Lasttest barnehage ").append(d).append(',')
+                            .append("Testveien ").append(d).append(',')
+                            .append("Gruppe ").append(g + 1).append(',')
+                            .append(FIRST_NAMES[child % FIRST_NAMES.length]).append(',')
+                            .append(lastName).append(',')
+                            .append(LocalDate.of(2019, 1, 1).plusDays(c * 37L + g)).append(',')
+                            .append(child % 7 == 0 ? "Egg" : "").append(',')
+                            .append(',')
+                            .append(EMAIL_PREFIX).append(guardian).append("@test.no,")
+                            .append("Forelder ").append(guardian).append(' ').append(lastName).append(',')
+                            .append(90000000 + guardian).append('\n');
+                }
+            }
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Leser id-ene for testdataene fra databasen.
+     */
+    static LoadData load(LoadOptions options) throws SQLException {
+        List<Long> daycareIds = new ArrayList<>();
+        Map<Long, List<Long>> childrenByDaycare = new HashMap<>();
+        Map<Long, Long> daycareOfChild = new HashMap<>();
+        Map<Long, List<Long>> childrenByGuardian = new HashMap<>();
+
+        try (Connection connection = DriverManager.getConnection(
+                options.jdbcUrl(), options.dbUser(), options.dbPassword())) {
+
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT c.id, g.daycare_id
+                    FROM children c
+                    JOIN daycare_group g ON g.id = c.daycare_group_id
+                    JOIN daycare d ON d.id = g.daycare_id
+                    WHERE d.org_number LIKE ? AND c.active
+                    ORDER BY c.id
+                    """)) {
+                statement.setString(1, ORG_PREFIX + "%");
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        long childId = rs.getLong(1);
+                        long daycareId = rs.getLong(2);
+                        daycareOfChild.put(childId, daycareId);
+                        childrenByDaycare.computeIfAbsent(daycareId, id -> {
+                            daycareIds.add(id);
+                            return new ArrayList<>();
+                        }).add(childId);
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT gc.guardian_id, gc.child_id
+                    FROM guardians_children gc
+                    JOIN users u ON u.id = gc.guardian_id
+                    WHERE u.email LIKE ?
+                    ORDER BY gc.guardian_id, gc.child_id
+                    """)) {
+                statement.setString(1, EMAIL_PREFIX + "%");
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        childrenByGuardian.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>())
+                                .add(rs.getLong(2));
+                    }
+                }
+            }
+        }
+
+        if (daycareOfChild.isEmpty()) {
+            throw new IllegalStateException("Fant ingen testdata i databasen. Feilet importen?");
+        }
+
+        Map<Long, long[]> childIdsByDaycare = new HashMap<>();
+        childrenByDaycare.forEach((id, children) -> childIdsByDaycare.put(id, toArray(children)));
+
+        List<Guardian> guardians = new ArrayList<>();
+        childrenByGuardian.forEach((id, children) -> guardians.add(
+                new Guardian(id, daycareOfChild.getOrDefault(children.get(0), daycareIds.get(0)), toArray(children))));
+
+        return new LoadData(
+                options.staffUserId(),
+                List.copyOf(daycareIds),
+                toArray(new ArrayList<>(daycareOfChild.keySet())),
+                childIdsByDaycare,
+                List.copyOf(guardians)
+        );
+    }
+
+    private static long[] toArray(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,79 @@
+package no.trygginn.backend.load;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Innstillinger for lasttesten, lest fra argumenter på formen --navn=verdi.
+ *
+ * @param baseUrl          URL til en kjørende backend; tom betyr at backend startes i samme JVM
+ * @param jdbcUrl          database som backend bruker (testdata leses herfra)
+ * @param rate             antall brukerhandlinger som startes per sekund (åpen modell)
+ * @param warmup           oppvarming før målingene nullstilles
+ * @param duration         målt periode
+ * @param daycares         antall barnehager i testdataene
+ * @param groupsPerDaycare antall grupper per barnehage
+ * @param childrenPerGroup antall barn per gruppe
+ * @param staffUserId      ansatt som registrerer inn/ut og importerer testdata
+ * @param maxInFlight      maks samtidige handlinger før nye arrivals telles som droppet
+ * @param reportDir        katalog for .hgrm-filer per endepunkt (tom = ingen filer)
+ */
+record LoadOptions(
+        String baseUrl,
+        String jdbcUrl,
+        String dbUser,
+        String dbPassword,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        int daycares,
+        int groupsPerDaycare,
+        int childrenPerGroup,
+        long staffUserId,
+        int maxInFlight,
+        String reportDir
+) {
+
+    private static final Set<String> KNOWN = Set.of(
+            "base-url", "jdbc-url", "db-user", "db-password", "rate", "warmup", "duration", "daycares",
+            "groups", "children-per-group", "staff-user", "max-in-flight", "report-dir"
+    );
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ukjent argument: " + arg + " (forventer --navn=verdi)");
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        LoadOptions options = new LoadOptions(
+                values.getOrDefault("base-url", ""),
+                values.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/trygginn"),
+                values.getOrDefault("db-user", "postgres"),
+                values.getOrDefault("db-password", "trygginn"),
+                Double.parseDouble(values.getOrDefault("rate", "200")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "15"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60"))),
+                Integer.parseInt(values.getOrDefault("daycares", "20")),
+                Integer.parseInt(values.getOrDefault("groups", "4")),
+                Integer.parseInt(values.getOrDefault("children-per-group", "18")),
+                Long.parseLong(values.getOrDefault("staff-user", "3")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "5000")),
+                values.getOrDefault("report-dir", "target/load-report")
+        );
+
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Ukjente argumenter: " + values.keySet());
+        }
+        if (options.rate() <= 0) {
+            throw new IllegalArgumentException("--rate må være større enn 0.");
+        }
+        return options;
+    }
+}
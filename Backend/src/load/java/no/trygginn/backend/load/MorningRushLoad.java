@@ -0,0 +1,250 @@
+package no.trygginn.backend.load;
+
+import no.trygginn.backend.BackendApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lasttest som gjenskaper morgenrushet rundt 07:30.
+ * Ansatte sjekker inn barn fra nettbrett, mens foreldre åpner appen og
+ * følger med på statusen til barna sine. Blandingen av kall følger
+ * det frontend (api.tsx) faktisk gjør:
+ * <ul>
+ *     <li>inn/ut fra nettbrett: POST /api/attendance</li>
+ *     <li>forelder som sjekker status: barn for foresatt, deretter /latest per barn</li>
+ *     <li>forelder som åpner appen: som over, pluss kalenderen</li>
+ *     <li>ansatt som åpner dashbordet: profil, kalender, grupper og /latest for alle barn parallelt</li>
+ * </ul>
+ * Backend startes i samme JVM mot lokal Postgres, med mindre --base-url er satt.
+ */
+public class MorningRushLoad {
+
+    private enum Action {
+        CHECK_IN_OUT(50),
+        PARENT_POLL(35),
+        PARENT_OPEN_APP(12),
+        STAFF_DASHBOARD(3);
+
+        final int weight;
+
+        Action(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int TOTAL_WEIGHT = Arrays.stream(Action.values()).mapToInt(a -> a.weight).sum();
+
+    private final LoadClient client;
+    private final LoadData data;
+
+    // Siste inn/ut sendt per barn, slik at nettbrettene veksler mellom IN og OUT
+    private final Map<Long, Boolean> checkedIn = new ConcurrentHashMap<>();
+
+    MorningRushLoad(LoadClient client, LoadData data) {
+        this.client = client;
+        this.data = data;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.baseUrl();
+
+        if (baseUrl.isBlank()) {
+            System.out.println("Starter backend mot " + options.jdbcUrl() + " ...");
+            context = SpringApplication.run(BackendApplication.class,
+                    "--server.port=0",
+                    "--spring.profiles.active=dev",
+                    "--spring.datasource.url=" + options.jdbcUrl(),
+                    "--spring.datasource.username=" + options.dbUser(),
+                    "--spring.datasource.password=" + options.dbPassword());
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            System.out.println("Backend kjører i samme JVM på " + baseUrl
+                    + " (lastgeneratoren deler CPU med backend; bruk --base-url for en egen prosess).");
+        }
+
+        try {
+            LoadClient client = new LoadClient(baseUrl);
+
+            System.out.println("Importerer testdata ...");
+            String report = client.postUnmeasured(
+                    "/api/import/children?importedByUserId=" + options.staffUserId(),
+                    "text/csv",
+                    LoadData.csv(options));
+            System.out.println("Import: " + report);
+
+            LoadData data = LoadData.load(options);
+            System.out.printf(Locale.ROOT, "Testdata: %d barnehager, %d barn, %d foresatte%n",
+                    data.daycareIds().size(), data.childIds().length, data.guardians().size());
+
+            new MorningRushLoad(client, data).run(options);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    void run(LoadOptions options) throws InterruptedException, IOException {
+        OpenLoadDriver driver = new OpenLoadDriver(options.maxInFlight());
+
+        if (!options.warmup().isZero()) {
+            System.out.printf(Locale.ROOT, "Oppvarming: %.0f handlinger/s i %ds ...%n",
+                    options.rate(), options.warmup().toSeconds());
+            driver.run(options.rate(), options.warmup(), this::perform);
+            client.reset();
+        }
+
+        System.out.printf(Locale.ROOT, "Måling: %.0f handlinger/s i %ds ...%n",
+                options.rate(), options.duration().toSeconds());
+        OpenLoadDriver.Result result = driver.run(options.rate(), options.duration(), this::perform);
+
+        printReport(result);
+        if (!options.reportDir().isBlank()) {
+            writeHistograms(Path.of(options.reportDir()));
+        }
+    }
+
+    private void perform(long intendedStart) {
+        Action action = pick();
+        boolean ok = switch (action) {
+            case CHECK_IN_OUT -> checkInOrOut(intendedStart);
+            case PARENT_POLL -> parentPoll(intendedStart, false);
+            case PARENT_OPEN_APP -> parentPoll(intendedStart, true);
+            case STAFF_DASHBOARD -> staffDashboard(intendedStart);
+        };
+
+        client.record("handling " + action.name(), System.nanoTime() - intendedStart, ok ? null : "delkall feilet");
+    }
+
+    private boolean checkInOrOut(long intendedStart) {
+        long childId = randomOf(data.childIds());
+        boolean in = !Boolean.TRUE.equals(checkedIn.get(childId));
+        checkedIn.put(childId, in);
+
+        String json = String.format(Locale.ROOT,
+                "{\"childId\":%d,\"performedByUserId\":%d,\"eventType\":\"%s\",\"note\":null}",
+                childId, data.staffUserId(), in ? "IN" : "OUT");
+
+        return client.postJson("POST /api/attendance", "/api/attendance", json, intendedStart);
+    }
+
+    private boolean parentPoll(long intendedStart, boolean openApp) {
+        LoadData.Guardian guardian = data.guardians().get(ThreadLocalRandom.current().nextInt(data.guardians().size()));
+
+        boolean ok = client.get("GET /api/children/guardian/{id}",
+                "/api/children/guardian/" + guardian.id(), intendedStart);
+
+        for (long childId : guardian.childIds()) {
+            ok &= client.get("GET /api/attendance/child/{id}/latest",
+                    "/api/attendance/child/" + childId + "/latest", System.nanoTime());
+        }
+
+        if (openApp) {
+            ok &= client.get("GET /api/calendar-events/daycare/{id}",
+                    "/api/calendar-events/daycare/" + guardian.daycareId(), System.nanoTime());
+        }
+        return ok;
+    }
+
+    private boolean staffDashboard(long intendedStart) {
+        long daycareId = data.daycareIds().get(ThreadLocalRandom.current().nextInt(data.daycareIds().size()));
+
+        boolean ok = client.get("GET /api/users/{id}", "/api/users/" + data.staffUserId(), intendedStart);
+        ok &= client.get("GET /api/calendar-events/daycare/{id}",
+                "/api/calendar-events/daycare/" + daycareId, System.nanoTime());
+        ok &= client.get("GET /api/daycare-groups/daycare/{id}",
+                "/api/daycare-groups/daycare/" + daycareId, System.nanoTime());
+
+        // Dashbordet henter status for alle barn samtidig (Promise.all i frontend)
+        long[] children = data.childIdsByDaycare().get(daycareId);
+        boolean[] results = new boolean[children.length];
+        try (ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < children.length; i++) {
+                int index = i;
+                fanOut.execute(() -> results[index] = client.get("GET /api/attendance/child/{id}/latest",
+                        "/api/attendance/child/" + children[index] + "/latest", System.nanoTime()));
+            }
+        }
+        for (boolean result : results) {
+            ok &= result;
+        }
+        return ok;
+    }
+
+    private static Action pick() {
+        int roll = ThreadLocalRandom.current().nextInt(TOTAL_WEIGHT);
+        for (Action action : Action.values()) {
+            roll -= action.weight;
+            if (roll < 0) {
+                return action;
+            }
+        }
+        return Action.CHECK_IN_OUT;
+    }
+
+    private static long randomOf(long[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    private void printReport(OpenLoadDriver.Result result) {
+        double seconds = result.elapsed().toNanos() / 1e9;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Startet %d handlinger på %.1fs (%.1f/s), droppet %d%n",
+                result.started(), seconds, result.started() / seconds, result.dropped());
+        System.out.println("Latens i ms. Første kall i en handling måles fra planlagt start.");
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-48s %9s %8s %7s %8s %8s %8s %8s %8s%n",
+                "endepunkt", "antall", "feil", "feil%", "p50", "p90", "p99", "p99.9", "maks");
+
+        for (EndpointStats stats : client.snapshot().values()) {
+            Histogram h = stats.latency();
+            long count = stats.count();
+            System.out.printf(Locale.ROOT, "%-48s %9d %8d %6.2f%% %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                    stats.name(),
+                    count,
+                    stats.errors(),
+                    count == 0 ? 0.0 : 100.0 * stats.errors() / count,
+                    h.getValueAtPercentile(50) / 1000.0,
+                    h.getValueAtPercentile(90) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0,
+                    h.getValueAtPercentile(99.9) / 1000.0,
+                    h.getMaxValue() / 1000.0);
+        }
+
+        client.snapshot().values().stream()
+                .filter(stats -> stats.lastError() != null)
+                .forEach(stats -> System.out.println("Siste feil for " + stats.name() + ": " + stats.lastError()));
+    }
+
+    /**
+     * Skriver full persentilfordeling per endepunkt (.hgrm, i ms),
+     * som kan plottes med HdrHistogram sin plotter.
+     */
+    private void writeHistograms(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (EndpointStats stats : client.snapshot().values()) {
+            String file = stats.name().replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(file)))) {
+                stats.latency().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println();
+        System.out.println("Histogrammer skrevet til " + dir.toAbsolutePath());
+    }
+}
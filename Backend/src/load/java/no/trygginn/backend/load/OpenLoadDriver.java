@@ -0,0 +1,87 @@
+package no.trygginn.backend.load;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Åpen lastmodell med konstant ankomstrate.
+ * Nye handlinger startes etter en fast timeplan uansett hvor raskt backend svarer,
+ * slik som når tusen nettbrett og foreldre trykker samtidig. Hver handling får
+ * sitt planlagte starttidspunkt, og latens måles fra det, slik at køtid ved
+ * overlast kommer med i tallene (ingen "coordinated omission").
+ */
+final class OpenLoadDriver {
+
+    /**
+     * Resultat av én kjøring.
+     *
+     * @param started antall handlinger som ble startet
+     * @param dropped antall planlagte handlinger som ble droppet fordi for mange allerede pågikk
+     * @param elapsed tid fra første start til siste handling var ferdig
+     */
+    record Result(long started, long dropped, Duration elapsed) {}
+
+    private final int maxInFlight;
+
+    OpenLoadDriver(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Kjører handlingen med gitt rate i gitt periode, og venter til alle startede handlinger er ferdige.
+     * Handlingen får planlagt starttid (System.nanoTime) som argument.
+     */
+    Result run(double perSecond, Duration duration, LongConsumer action) throws InterruptedException {
+        long intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / perSecond));
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        AtomicInteger inFlight = new AtomicInteger();
+        long started = 0;
+        long dropped = 0;
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (long i = 0; ; i++) {
+                long intended = start + i * intervalNanos;
+                if (intended >= end) {
+                    break;
+                }
+
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                // Backend henger så langt etter at generatoren ville gått tom for minne
+                if (inFlight.get() >= maxInFlight) {
+                    dropped++;
+                    continue;
+                }
+
+                inFlight.incrementAndGet();
+                started++;
+                executor.execute(() -> {
+                    try {
+                        action.accept(intended);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (!executor.awaitTermination(2, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+
+        return new Result(started, dropped, Duration.ofNanos(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,87 @@
+package no.trygginn.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Konfigurasjon for tråder og samtidighet.
+ * Virtuelle tråder for Tomcat og @Async slås på med
+ * spring.threads.virtual.enabled=true (se profilen "virtual").
+ * Da settes også en semafor foran tilkoblingspoolen, slik at
+ * virtuelle tråder ikke stormer Postgres.
+ */
+@Configuration
+@EnableAsync
+public class ConcurrencyConfig {
+
+    /**
+     * Pakker inn DataSource med en samtidighetsbegrenser når
+     * trygginn.db.limiter.enabled=true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "trygginn.db.limiter.enabled", havingValue = "true")
+    public static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment env) {
+        return new LimiterPostProcessor(env);
+    }
+
+    /**
+     * Kjører før andre (uordnede) innpakninger som StatementCountingDataSource, så
+     * begrenseren ligger nærmest poolen. Poolstørrelsen leses via unwrap, så
+     * standardverdiene stemmer uansett hvor mange lag DataSource er pakket i.
+     */
+    static final class LimiterPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment env;
+
+        LimiterPostProcessor(Environment env) {
+            this.env = env;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)
+                    || bean instanceof ConcurrencyLimitingDataSource) {
+                return bean;
+            }
+
+            // Standard er samme antall som poolen, slik at ingen venter inne i Hikari
+            HikariDataSource hikari = hikari(dataSource);
+            int defaultConcurrency = hikari != null ? hikari.getMaximumPoolSize() : 10;
+            long defaultTimeout = hikari != null ? hikari.getConnectionTimeout() : 30_000;
+
+            int maxConcurrency = env.getProperty(
+                    "trygginn.db.limiter.max-concurrency", Integer.class, defaultConcurrency);
+            long timeout = env.getProperty(
+                    "trygginn.db.limiter.acquire-timeout-ms", Long.class, defaultTimeout);
+
+            return new ConcurrencyLimitingDataSource(dataSource, maxConcurrency, timeout);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        private static HikariDataSource hikari(DataSource dataSource) {
+            if (dataSource instanceof HikariDataSource hikari) {
+                return hikari;
+            }
+            try {
+                return dataSource.isWrapperFor(HikariDataSource.class)
+                        ? dataSource.unwrap(HikariDataSource.class)
+                        : null;
+            } catch (SQLException e) {
+                return null;
+            }
+        }
+    }
+}
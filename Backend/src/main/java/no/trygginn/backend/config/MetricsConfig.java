@@ -0,0 +1,158 @@
+package no.trygginn.backend.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Konfigurasjon for metrikker utover det Actuator gir automatisk
+ * (http.server.requests, hikaricp.*, hibernate.*).
+ * Her legges til antall SQL-setninger per forespørsel og
+ * kø-metrikker for DB-begrenseren når den er slått på.
+ * Overskrider en forespørsel trygginn.db.statement-budget setninger,
+ * logges en advarsel med endepunktet (0 slår av advarselen).
+ * Scopet merkes med endepunktet, slik at trege setninger i SlowQueryRecorder
+ * kan spores tilbake til controlleren.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    static final String QUERIES_METRIC_NAME = "trygginn.http.queries";
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsConfig.class);
+
+    private static final String SCOPE_ATTRIBUTE = MetricsConfig.class.getName() + ".statementScope";
+
+    private final MeterRegistry meterRegistry;
+    private final int statementBudget;
+
+    public MetricsConfig(
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.db.statement-budget:0}") int statementBudget
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.statementBudget = statementBudget;
+    }
+
+    /**
+     * Pakker inn DataSource slik at SQL-setninger kan telles per forespørsel
+     * og trege setninger logges.
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor(
+            ObjectProvider<SlowQueryRecorder> slowQueryRecorder
+    ) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource)
+                        || bean instanceof StatementCountingDataSource) {
+                    return bean;
+                }
+                return new StatementCountingDataSource(dataSource, slowQueryRecorder.getObject());
+            }
+        };
+    }
+
+    /**
+     * Gauges for DB-begrenseren (se ConcurrencyConfig), hvis den er i bruk.
+     */
+    @Bean
+    public MeterBinder concurrencyLimiterMetrics(DataSource dataSource) {
+        return registry -> {
+            ConcurrencyLimitingDataSource limiter = unwrapLimiter(dataSource);
+            if (limiter == null) {
+                return;
+            }
+            Gauge.builder("trygginn.db.limiter.queued", limiter, ConcurrencyLimitingDataSource::getQueueLength)
+                    .description("Tråder som venter på DB-tilgang")
+                    .register(registry);
+            Gauge.builder("trygginn.db.limiter.available", limiter, ConcurrencyLimitingDataSource::getAvailablePermits)
+                    .description("Ledige plasser i DB-begrenseren")
+                    .register(registry);
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                request.setAttribute(SCOPE_ATTRIBUTE, StatementCountingDataSource.openScope(endpoint(request, handler)));
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(
+                    HttpServletRequest request,
+                    HttpServletResponse response,
+                    Object handler,
+                    Exception ex
+            ) {
+                if (!(request.getAttribute(SCOPE_ATTRIBUTE) instanceof StatementCountingDataSource.Scope scope)) {
+                    return;
+                }
+                scope.close();
+                int count = scope.count();
+
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+                DistributionSummary.builder(QUERIES_METRIC_NAME)
+                        .description("SQL-setninger per forespørsel")
+                        .baseUnit("queries")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .record(count);
+
+                if (statementBudget > 0 && count > statementBudget) {
+                    log.warn("{} {} kjørte {} SQL-setninger (budsjett {}). Mulig N+1?",
+                            request.getMethod(), uri, count, statementBudget);
+                }
+            }
+        }).excludePathPatterns("/actuator/**");
+    }
+
+    /**
+     * F.eks. "GET /api/children/guardian/{guardianId} (ChildController.getChildrenForGuardian)".
+     */
+    private static String endpoint(HttpServletRequest request, Object handler) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+        if (handler instanceof HandlerMethod method) {
+            endpoint += " (" + method.getBeanType().getSimpleName() + "." + method.getMethod().getName() + ")";
+        }
+        return endpoint;
+    }
+
+    private static ConcurrencyLimitingDataSource unwrapLimiter(DataSource dataSource) {
+        if (dataSource instanceof ConcurrencyLimitingDataSource limiter) {
+            return limiter;
+        }
+        try {
+            return dataSource.isWrapperFor(ConcurrencyLimitingDataSource.class)
+                    ? dataSource.unwrap(ConcurrencyLimitingDataSource.class)
+                    : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
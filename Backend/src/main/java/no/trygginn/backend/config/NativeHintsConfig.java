@@ -0,0 +1,73 @@
+package no.trygginn.backend.config;
+
+import no.trygginn.backend.controller.dto.LoginRequest;
+import no.trygginn.backend.repository.ChildDateRangeRow;
+import no.trygginn.backend.repository.ChildEventRow;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Hint for native image (mvn -Pnative native:compile).
+ * Det Spring AOT ikke finner selv:
+ * <ul>
+ *     <li>Flyway-migreringer og testdata (db/migration, db/dev) som ressurser</li>
+ *     <li>JDK-proxyene StatementCountingDataSource lager rundt tilkoblinger og statements</li>
+ *     <li>alle DTO-er, siden flere controllere svarer med ResponseEntity&lt;?&gt;
+ *     og typene da ikke kan leses fra metodesignaturen</li>
+ *     <li>projeksjonene som JPQL lager med "SELECT new ..."</li>
+ * </ul>
+ * Entitetene registreres av Spring AOT (PersistenceManagedTypes).
+ */
+@Configuration(proxyBeanMethods = false)
+@ImportRuntimeHints(NativeHintsConfig.Hints.class)
+public class NativeHintsConfig {
+
+    static class Hints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.resources()
+                    .registerPattern("db/migration/*.sql")
+                    .registerPattern("db/dev/*.sql");
+
+            hints.proxies()
+                    .registerJdkProxy(Connection.class)
+                    .registerJdkProxy(Statement.class)
+                    .registerJdkProxy(PreparedStatement.class)
+                    .registerJdkProxy(CallableStatement.class);
+
+            hints.reflection()
+                    .registerType(ChildEventRow.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)
+                    .registerType(ChildDateRangeRow.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+            BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+            bindings.registerReflectionHints(hints.reflection(), SlowQueryRecorder.SlowQuery.class);
+            // Linjene LocalNotificationSender skriver til fil
+            bindings.registerReflectionHints(hints.reflection(),
+                    ClassUtils.resolveClassName(
+                            "no.trygginn.backend.service.LocalNotificationSender$Line", classLoader));
+
+            // Kjøres ved bygging (AOT), så skanning av pakken koster ingenting ved oppstart
+            ClassPathScanningCandidateComponentProvider scanner =
+                    new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AssignableTypeFilter(Object.class));
+            for (BeanDefinition dto : scanner.findCandidateComponents(LoginRequest.class.getPackageName())) {
+                bindings.registerReflectionHints(hints.reflection(),
+                        ClassUtils.resolveClassName(dto.getBeanClassName(), classLoader));
+            }
+        }
+    }
+}
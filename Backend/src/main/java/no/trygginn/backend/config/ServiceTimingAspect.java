@@ -0,0 +1,72 @@
+package no.trygginn.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Måler tiden for hver offentlige metode i forretningstjenestene (@Service i service-pakken).
+ * Infrastruktur som kalles på hver forespørsel (AuditLog, JobQueue, RequestCoalescer,
+ * indeksene) er @Component og måles ikke, og heller ikke JobHandler-metodene, som
+ * JobQueue måler selv (trygginn.jobs).
+ * Aspektet ligger ytterst, slik at tiden inkluderer commit av transaksjonen.
+ * Kall fra en service til seg selv går utenom proxyen og måles ikke.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceTimingAspect {
+
+    static final String METRIC_NAME = "trygginn.service";
+
+    private record TimerKey(Method method, String exception) {}
+
+    private final MeterRegistry meterRegistry;
+
+    // Timere slås opp én gang per metode, ikke per kall
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<TimerKey, Timer> failureTimers = new ConcurrentHashMap<>();
+
+    public ServiceTimingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("within(no.trygginn.backend.service..*)"
+            + " && @within(org.springframework.stereotype.Service)"
+            + " && execution(public * *(..))"
+            + " && !execution(* no.trygginn.backend.service.JobHandler.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        try {
+            Object result = joinPoint.proceed();
+            sample.stop(timers.computeIfAbsent(method, m -> timer(m, "none")));
+            return result;
+        } catch (Throwable e) {
+            String exception = e.getClass().getSimpleName();
+            sample.stop(failureTimers.computeIfAbsent(
+                    new TimerKey(method, exception), key -> timer(key.method(), key.exception())));
+            throw e;
+        }
+    }
+
+    private Timer timer(Method method, String exception) {
+        return Timer.builder(METRIC_NAME)
+                .description("Tid brukt i service-metoder")
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,37 @@
+package no.trygginn.backend.config;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Admin-endepunkt for slow-query-loggen:
+ * GET /actuator/slowqueries?limit=50 viser de siste trege setningene,
+ * DELETE /actuator/slowqueries tømmer loggen.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final SlowQueryRecorder recorder;
+
+    public SlowQueryEndpoint(SlowQueryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public List<SlowQueryRecorder.SlowQuery> slowQueries(@Nullable Integer limit) {
+        return recorder.recent(limit != null ? limit : DEFAULT_LIMIT);
+    }
+
+    @DeleteOperation
+    public void clear() {
+        recorder.clear();
+    }
+}
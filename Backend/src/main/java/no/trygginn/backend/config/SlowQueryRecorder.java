@@ -0,0 +1,226 @@
+package no.trygginn.backend.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Logg over trege SQL-setninger, erstatter spring.jpa.show-sql.
+ * StatementCountingDataSource måler hver setning; de som tar lengre tid enn
+ * trygginn.db.slow-query.threshold-ms tas med i en andel gitt av sample-rate.
+ * Loggen er en ringbuffer med de siste trygginn.db.slow-query.capacity setningene,
+ * og kan leses via /actuator/slowqueries.
+ * <p>
+ * Bind-verdier sensureres før de lagres: tall, tidspunkter og enum-er vises,
+ * mens all tekst (navn, e-post, tilgangskoder) bare vises med lengde og datoer
+ * (fødselsdato) ikke vises. Med explain=true hentes EXPLAIN for trege SELECT-er
+ * i bakgrunnen, på en egen tilkobling og med de ekte verdiene; tekstkonstanter
+ * i planen sensureres før den lagres.
+ * <p>
+ * Endepunktet er bare eksponert i dev-profilen, siden appen ikke har egen
+ * tilgangskontroll på /actuator.
+ */
+@Component
+public class SlowQueryRecorder {
+
+    /**
+     * En treg setning slik den vises i loggen.
+     */
+    public record SlowQuery(
+            Instant time,
+            String endpoint,
+            double durationMs,
+            String sql,
+            List<String> binds,
+            String plan
+    ) {
+        SlowQuery withPlan(String plan) {
+            return new SlowQuery(time, endpoint, durationMs, sql, binds, plan);
+        }
+    }
+
+    // Tekstkonstanter i en plan, f.eks. Filter: (code = 'AB12CD'::text)
+    private static final Pattern PLAN_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(select|with)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicLong written = new AtomicLong();
+
+    private final ThreadPoolExecutor explainExecutor;
+    private volatile DataSource explainDataSource;
+
+    public SlowQueryRecorder(
+            @Value("${trygginn.db.slow-query.enabled:true}") boolean enabled,
+            @Value("${trygginn.db.slow-query.threshold-ms:200}") long thresholdMs,
+            @Value("${trygginn.db.slow-query.sample-rate:1.0}") double sampleRate,
+            @Value("${trygginn.db.slow-query.capacity:200}") int capacity,
+            @Value("${trygginn.db.slow-query.explain:false}") boolean explain
+    ) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("trygginn.db.slow-query.capacity må være minst 1");
+        }
+        this.enabled = enabled && sampleRate > 0;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.sampleRate = sampleRate;
+        this.entries = new AtomicReferenceArray<>(capacity);
+
+        // Én tråd og kort kø: EXPLAIN skal aldri hope seg opp når databasen allerede er treg
+        this.explainExecutor = explain
+                ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(16),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "slow-query-explain");
+                            thread.setDaemon(true);
+                            return thread;
+                        },
+                        new ThreadPoolExecutor.DiscardPolicy())
+                : null;
+    }
+
+    /**
+     * Avslått logg, for DataSource-er som pakkes inn uten Spring.
+     */
+    static SlowQueryRecorder disabled() {
+        return new SlowQueryRecorder(false, 0, 0, 1, false);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * DataSource uten telling, som EXPLAIN kjøres mot.
+     */
+    void setExplainDataSource(DataSource dataSource) {
+        this.explainDataSource = dataSource;
+    }
+
+    /**
+     * Kalles etter hver setning. Bind-tabellen gjenbrukes av kalleren og kopieres her.
+     */
+    void executed(String sql, Object[] binds, long elapsedNanos, String endpoint) {
+        if (elapsedNanos < thresholdNanos
+                || (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+
+        List<String> redacted = new ArrayList<>(binds.length);
+        for (Object bind : binds) {
+            redacted.add(redact(bind));
+        }
+
+        SlowQuery entry = new SlowQuery(
+                Instant.now(),
+                endpoint != null ? endpoint : "(utenfor forespørsel)",
+                elapsedNanos / 1_000_000.0,
+                sql,
+                List.copyOf(redacted),
+                null);
+
+        int slot = (int) (written.getAndIncrement() % entries.length());
+        entries.set(slot, entry);
+
+        if (explainExecutor != null && explainDataSource != null && EXPLAINABLE.matcher(sql).find()) {
+            Object[] values = Arrays.copyOf(binds, binds.length);
+            explainExecutor.execute(() -> {
+                String plan = explain(sql, values);
+                // Er plassen overskrevet i mellomtiden, kastes planen
+                entries.compareAndSet(slot, entry, entry.withPlan(plan));
+            });
+        }
+    }
+
+    /**
+     * De siste trege setningene, nyeste først.
+     */
+    public List<SlowQuery> recent(int limit) {
+        long end = written.get();
+        long start = Math.max(0, end - Math.min(limit, entries.length()));
+
+        List<SlowQuery> result = new ArrayList<>();
+        for (long i = end - 1; i >= start; i--) {
+            SlowQuery entry = entries.get((int) (i % entries.length()));
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (explainExecutor != null) {
+            explainExecutor.shutdownNow();
+        }
+    }
+
+    static String redact(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Enum<?>) {
+            return value.toString();
+        }
+        if (value instanceof String text) {
+            return "<tekst, " + text.length() + " tegn>";
+        }
+        if (value instanceof LocalDate || value instanceof java.sql.Date) {
+            return "<dato>";
+        }
+        if (value instanceof Temporal || value instanceof Date) {
+            return value.toString();
+        }
+        return "<" + value.getClass().getSimpleName() + ">";
+    }
+
+    private String explain(String sql, Object[] binds) {
+        try (Connection connection = explainDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < binds.length; i++) {
+                statement.setObject(i + 1, binds[i]);
+            }
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(PLAN_LITERAL.matcher(rs.getString(1)).replaceAll("'…'"));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN feilet: " + e.getMessage();
+        }
+    }
+}
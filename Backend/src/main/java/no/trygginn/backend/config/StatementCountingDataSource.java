@@ -0,0 +1,216 @@
+package no.trygginn.backend.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * DataSource som teller SQL-setninger som kjøres på tråden.
+ * Alt som går via JDBC telles (Hibernate, JdbcTemplate), én per execute-kall;
+ * en batch teller som én setning.
+ * Tellingen skjer innenfor et {@link Scope}: MetricsConfig åpner ett per
+ * forespørsel, og tester kan åpne egne for å sjekke antall spørringer.
+ * Scopes kan nøstes; en setning telles i alle åpne scopes på tråden.
+ * Er {@link SlowQueryRecorder} slått på, måles også tiden for hver setning,
+ * og trege setninger gis videre med bind-verdier og endepunktet fra scopet.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static final Object[] NO_BINDS = new Object[0];
+
+    private final SlowQueryRecorder recorder;
+
+    public StatementCountingDataSource(DataSource target) {
+        this(target, SlowQueryRecorder.disabled());
+    }
+
+    public StatementCountingDataSource(DataSource target, SlowQueryRecorder recorder) {
+        super(target);
+        this.recorder = recorder;
+        recorder.setExplainDataSource(target);
+    }
+
+    /**
+     * Et område der setninger telles. Lukkes med try-with-resources.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final String endpoint;
+        private int count;
+
+        private Scope(Scope parent, String endpoint) {
+            this.parent = parent;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Antall setninger kjørt siden scopet ble åpnet.
+         */
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                if (parent != null) {
+                    CURRENT.set(parent);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Åpner et nytt scope på denne tråden.
+     */
+    public static Scope openScope() {
+        return openScope(null);
+    }
+
+    /**
+     * Åpner et nytt scope for et endepunkt, som trege setninger merkes med.
+     */
+    public static Scope openScope(String endpoint) {
+        Scope scope = new Scope(CURRENT.get(), endpoint);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Endepunktet fra det innerste scopet som har ett, eller null utenfor en forespørsel.
+     */
+    static String currentEndpoint() {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            if (scope.endpoint != null) {
+                return scope.endpoint;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static void increment() {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.count++;
+        }
+    }
+
+    /**
+     * Pakker inn tilkoblingen slik at alle statements den lager blir telt.
+     */
+    private Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement
+                            && method.getReturnType().isInterface()
+                            && Statement.class.isAssignableFrom(method.getReturnType())) {
+                        // prepareStatement/prepareCall får SQL-en som første argument
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return Proxy.newProxyInstance(
+                                Statement.class.getClassLoader(),
+                                new Class<?>[] { method.getReturnType() },
+                                new CountingStatement(statement, sql));
+                    }
+                    return result;
+                }
+        );
+    }
+
+    /**
+     * Teller execute-kall. Med slow-query-loggen slått på måles også tiden,
+     * og bind-verdiene huskes slik at trege setninger kan logges med dem.
+     */
+    private final class CountingStatement implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private Object[] binds = NO_BINDS;
+
+        CountingStatement(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (!name.startsWith("execute")) {
+                if (recorder.isEnabled()) {
+                    rememberBind(method, args);
+                }
+                return StatementCountingDataSource.invoke(statement, method, args);
+            }
+
+            increment();
+            if (!recorder.isEnabled()) {
+                return StatementCountingDataSource.invoke(statement, method, args);
+            }
+
+            long start = System.nanoTime();
+            try {
+                return StatementCountingDataSource.invoke(statement, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                // Statement.execute*(sql) har SQL-en som argument; PreparedStatement har den fra før
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                if (sql != null) {
+                    recorder.executed(sql, binds, elapsed, currentEndpoint());
+                }
+            }
+        }
+
+        /**
+         * PreparedStatement.setXxx(indeks, verdi, ...). setFetchSize og lignende
+         * har bare ett argument og er ikke bind-verdier.
+         */
+        private void rememberBind(Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("clearParameters")) {
+                binds = NO_BINDS;
+                return;
+            }
+            if (!name.startsWith("set") || args == null || args.length < 2
+                    || !(args[0] instanceof Integer index) || index < 1) {
+                return;
+            }
+            if (index > binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(index, binds.length * 2));
+            }
+            binds[index - 1] = name.equals("setNull") ? null : args[1];
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
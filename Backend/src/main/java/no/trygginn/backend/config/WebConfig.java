@@ -29,6 +29,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
                 // Tillater alle HTTP-headere
                 .allowedHeaders("*")
+                // Frontend kan lese ETag og sende den tilbake i If-None-Match / If-Match
+                .exposedHeaders("ETag")
                 // Cookies og credentials er ikke tillatt
                 .allowCredentials(false);
     }
@@ -0,0 +1,31 @@
+package no.trygginn.backend.config;
+
+import no.trygginn.backend.controller.CheckInSocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * WebSocket-endepunkter. Samme opprinnelser som CORS i WebConfig.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final CheckInSocketHandler checkInSocketHandler;
+
+    public WebSocketConfig(CheckInSocketHandler checkInSocketHandler) {
+        this.checkInSocketHandler = checkInSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Nettbrettene til de ansatte: inn/ut-sjekk og statusendringer for gruppen
+        registry.addHandler(checkInSocketHandler, "/ws/check-in")
+                .setAllowedOrigins(
+                        "http://localhost:5173",
+                        "http://localhost:5174"
+                );
+    }
+}
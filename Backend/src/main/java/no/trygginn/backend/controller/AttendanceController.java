@@ -105,9 +105,9 @@ public class AttendanceController {
     }
 
     /**
-     * Mapper Attendance-entity til respons-DTO.
+     * Mapper Attendance-entity til respons-DTO (pakke-synlig for benchmarks).
      */
-    private AttendanceEventResponse toResponse(Attendance attendance) {
+    AttendanceEventResponse toResponse(Attendance attendance) {
         Child child = attendance.getChild();
         User performer = attendance.getPerformedBy();
 
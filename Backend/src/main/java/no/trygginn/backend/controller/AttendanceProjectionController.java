@@ -0,0 +1,58 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.GroupProjectionResponse;
+import no.trygginn.backend.service.AttendanceProjectionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST-controller for prognose over forventet oppmøte.
+ */
+@RestController
+@RequestMapping("/api/attendance-projection")
+public class AttendanceProjectionController {
+
+    private static final int DEFAULT_DAYS = 14;
+
+    private final AttendanceProjectionService projectionService;
+
+    public AttendanceProjectionController(AttendanceProjectionService projectionService) {
+        this.projectionService = projectionService;
+    }
+
+    /**
+     * Henter prognose for én gruppe. Standard er de neste 14 dagene fra i morgen.
+     */
+    @GetMapping("/group/{daycareGroupId}")
+    public ResponseEntity<GroupProjectionResponse> getForGroup(
+            @PathVariable Long daycareGroupId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+
+        LocalDate start = from != null ? from : LocalDate.now().plusDays(1);
+        LocalDate end = to != null ? to : start.plusDays(DEFAULT_DAYS - 1);
+
+        return ResponseEntity.ok(projectionService.getForGroup(daycareGroupId, start, end));
+    }
+
+    /**
+     * Henter prognose for alle grupper i en barnehage.
+     */
+    @GetMapping("/daycare/{daycareId}")
+    public ResponseEntity<List<GroupProjectionResponse>> getForDaycare(
+            @PathVariable Long daycareId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+
+        LocalDate start = from != null ? from : LocalDate.now().plusDays(1);
+        LocalDate end = to != null ? to : start.plusDays(DEFAULT_DAYS - 1);
+
+        return ResponseEntity.ok(projectionService.getForDaycare(daycareId, start, end));
+    }
+}
@@ -0,0 +1,36 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.AuditLogPageResponse;
+import no.trygginn.backend.service.AuditLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST-controller for tilgangsloggen til helseopplysninger om barn.
+ */
+@RestController
+@RequestMapping("/api/audit-log")
+public class AuditLogController {
+
+    private final AuditLog auditLog;
+
+    public AuditLogController(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Henter én side av loggen, nyeste først, filtrert på barn, bruker og/eller handling.
+     * Neste side hentes med before = nextBefore fra svaret.
+     */
+    @GetMapping
+    public ResponseEntity<AuditLogPageResponse> search(
+            @RequestParam(required = false) Long childId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer limit
+    ) {
+
+        return ResponseEntity.ok(auditLog.search(childId, userId, action, before, limit));
+    }
+}
@@ -1,14 +1,21 @@
 package no.trygginn.backend.controller;
 
 import lombok.RequiredArgsConstructor;
+import no.trygginn.backend.controller.dto.CalendarConflictResponse;
 import no.trygginn.backend.controller.dto.CalendarEventResponse;
 import no.trygginn.backend.controller.dto.CreateCalendarEventRequest;
+import no.trygginn.backend.controller.dto.FreeSlotResponse;
 import no.trygginn.backend.controller.dto.UpdateCalendarEventRequest;
 import no.trygginn.backend.model.CalendarEvent;
 import no.trygginn.backend.service.CalendarEventService;
+import no.trygginn.backend.service.RequestCoalescer;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -21,6 +28,7 @@ import java.util.List;
 public class CalendarEventController {
 
     private final CalendarEventService calendarEventService;
+    private final RequestCoalescer requestCoalescer;
 
     /**
      * Oppretter en ny kalenderhendelse.
@@ -41,15 +49,21 @@ public class CalendarEventController {
                 req.getCreatedByUserId()
         );
 
-        return ResponseEntity.ok(CalendarEventResponse.from(created));
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.calendarEventTag(created))
+                .body(withConflicts(created));
     }
 
     /**
      * Oppdaterer en eksisterende kalenderhendelse.
+     * Med If-Match (ETag-en fra svaret, "calendar-event-{id}-{version}") avvises
+     * endringen med 412 hvis hendelsen er endret siden den ble lest. Et rent
+     * versjonsnummer er ingen ETag og avvises også med 412.
      */
     @PutMapping("/{eventId}")
     public ResponseEntity<CalendarEventResponse> update(
             @PathVariable Long eventId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody UpdateCalendarEventRequest req
     ) {
 
@@ -60,10 +74,13 @@ public class CalendarEventController {
                 req.getLocation(),
                 req.getStartTime(),
                 req.getEndTime(),
-                req.getUpdatedByUserId()
+                req.getUpdatedByUserId(),
+                ResourceVersions.expectedVersion(ifMatch, "calendar-event-" + eventId)
         );
 
-        return ResponseEntity.ok(CalendarEventResponse.from(updated));
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.calendarEventTag(updated))
+                .body(withConflicts(updated));
     }
 
     /**
@@ -81,17 +98,21 @@ public class CalendarEventController {
 
     /**
      * Henter kalenderhendelser for en barnehage.
+     * Alle nettbrett i barnehagen spør samtidig, så like kall slås sammen.
      */
     @GetMapping("/daycare/{daycareId}")
     public ResponseEntity<List<CalendarEventResponse>> listForDaycare(
             @PathVariable Long daycareId
     ) {
 
-        List<CalendarEventResponse> res = calendarEventService
-                .getEventsForDaycare(daycareId)
-                .stream()
-                .map(CalendarEventResponse::from)
-                .toList();
+        List<CalendarEventResponse> res = requestCoalescer.execute(
+                RequestCoalescer.DAYCARE_CALENDAR,
+                daycareId,
+                () -> calendarEventService
+                        .getEventsForDaycare(daycareId)
+                        .stream()
+                        .map(CalendarEventResponse::from)
+                        .toList());
 
         return ResponseEntity.ok(res);
     }
@@ -112,4 +133,46 @@ public class CalendarEventController {
 
         return ResponseEntity.ok(res);
     }
+
+    /**
+     * Finner ledige tidsrom for en gruppe eller hele barnehagen.
+     */
+    @GetMapping("/daycare/{daycareId}/free-slots")
+    public ResponseEntity<List<FreeSlotResponse>> freeSlots(
+            @PathVariable Long daycareId,
+            @RequestParam(required = false) Long daycareGroupId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "60") int durationMinutes
+    ) {
+
+        List<FreeSlotResponse> res = calendarEventService
+                .findFreeSlots(daycareId, daycareGroupId, from, to, durationMinutes)
+                .stream()
+                .map(slot -> new FreeSlotResponse(slot.startTime(), slot.endTime()))
+                .toList();
+
+        return ResponseEntity.ok(res);
+    }
+
+    /**
+     * Mapper hendelse til respons-DTO med eventuelle overlappende hendelser.
+     */
+    private CalendarEventResponse withConflicts(CalendarEvent event) {
+
+        CalendarEventResponse response = CalendarEventResponse.from(event);
+
+        response.setConflicts(calendarEventService.findConflicts(event)
+                .stream()
+                .map(slot -> new CalendarConflictResponse(
+                        slot.eventId(),
+                        slot.title(),
+                        slot.daycareGroupId(),
+                        slot.startTime(),
+                        slot.endTime()
+                ))
+                .toList());
+
+        return response;
+    }
 }
@@ -0,0 +1,308 @@
+package no.trygginn.backend.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import no.trygginn.backend.controller.dto.CheckInCommand;
+import no.trygginn.backend.controller.dto.CheckInSocketMessage;
+import no.trygginn.backend.controller.dto.RosterEntryResponse;
+import no.trygginn.backend.model.Attendance;
+import no.trygginn.backend.model.AttendanceEventType;
+import no.trygginn.backend.service.DomainEvent;
+import no.trygginn.backend.service.DomainEventListener;
+import no.trygginn.backend.service.KeyedSerialExecutor;
+import no.trygginn.backend.service.TabletCheckInService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * WebSocket for nettbrettene de ansatte bruker til inn- og utsjekk:
+ * ws://.../ws/check-in?groupId={gruppe}&amp;userId={ansatt}
+ * <p>
+ * Nettbrettet sender CHECK_IN/CHECK_OUT (CheckInCommand) og får ACK med id-en
+ * til inn/ut-sjekken, eller ERROR. Ved tilkobling sendes hele gruppelisten (ROSTER),
+ * og deretter bare endringer (STATUS) når et barn i gruppen sjekkes inn eller ut,
+ * uansett om det skjer fra et annet nettbrett, over HTTP eller fra foreldreappen.
+ * Tilbakedaterte sjekker (opplastet fra et nettbrett som var offline) er ikke
+ * nødvendigvis siste status, så da får gruppen en ny ROSTER i stedet.
+ * <p>
+ * Kommandoene kjøres i rekkefølge per gruppe på virtuelle tråder (KeyedSerialExecutor),
+ * så svarene kommer i samme rekkefølge som kommandoene, og et rush i én gruppe
+ * ikke holder igjen de andre.
+ */
+@Component
+public class CheckInSocketHandler extends TextWebSocketHandler implements DomainEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckInSocketHandler.class);
+
+    private static final String GROUP_ID = "groupId";
+    private static final String USER_ID = "userId";
+
+    private final TabletCheckInService tabletCheckInService;
+    private final JsonMapper jsonMapper;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final KeyedSerialExecutor commands;
+
+    // Tilkoblinger (trådsikre utgaver) per id og per gruppe
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<WebSocketSession>> groups = new ConcurrentHashMap<>();
+
+    public CheckInSocketHandler(
+            TabletCheckInService tabletCheckInService,
+            JsonMapper jsonMapper,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.checkin-socket.max-queued-per-group:200}") int maxQueuedPerGroup,
+            @Value("${trygginn.checkin-socket.send-time-limit-ms:5000}") int sendTimeLimitMs,
+            @Value("${trygginn.checkin-socket.buffer-size-kb:512}") int bufferSizeKb
+    ) {
+        this.tabletCheckInService = tabletCheckInService;
+        this.jsonMapper = jsonMapper;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeKb * 1024;
+        this.commands = new KeyedSerialExecutor(executor, maxQueuedPerGroup);
+
+        Gauge.builder("trygginn.checkin.sessions", sessions, Map::size)
+                .description("Tilkoblede nettbrett")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Map<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+                .build()
+                .getQueryParams()
+                .toSingleValueMap();
+
+        Long groupId = parseId(params.get(GROUP_ID));
+        Long userId = parseId(params.get(USER_ID));
+        if (groupId == null || userId == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("groupId og userId må være satt."));
+            return;
+        }
+        // Samme krav som for opplasting fra nettbrett (OfflineUploadService)
+        if (!tabletCheckInService.isStaff(userId)) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Bare ansatte kan bruke nettbrettet."));
+            return;
+        }
+
+        session.getAttributes().put(GROUP_ID, groupId);
+        session.getAttributes().put(USER_ID, userId);
+
+        WebSocketSession out = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit);
+        sessions.put(session.getId(), out);
+        groups.computeIfAbsent(groupId, id -> ConcurrentHashMap.newKeySet()).add(out);
+
+        submit(groupId, out, null, () -> sendRoster(out, groupId, null));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        WebSocketSession out = sessions.get(session.getId());
+        if (out == null) {
+            return;
+        }
+        Long groupId = (Long) session.getAttributes().get(GROUP_ID);
+        Long userId = (Long) session.getAttributes().get(USER_ID);
+
+        CheckInCommand command = parseCommand(message.getPayload());
+        if (command == null) {
+            send(out, CheckInSocketMessage.error(null, "Ugyldig melding."));
+            return;
+        }
+
+        submit(groupId, out, command.requestId(), () -> handle(out, groupId, userId, command));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        WebSocketSession out = sessions.remove(session.getId());
+        Long groupId = (Long) session.getAttributes().get(GROUP_ID);
+        if (out == null || groupId == null) {
+            return;
+        }
+        groups.computeIfPresent(groupId, (id, members) -> {
+            members.remove(out);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    /**
+     * Sender nye statuser til nettbrettene i gruppen til barnet, og ny gruppeliste
+     * til grupper med tilbakedaterte sjekker.
+     */
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        Set<Long> refresh = new HashSet<>();
+        for (DomainEvent event : events) {
+            if (event.type() != DomainEvent.Type.ATTENDANCE_REGISTERED) {
+                continue;
+            }
+
+            Long groupId = parseId(event.data().get("daycareGroupId"));
+            Set<WebSocketSession> members = groupId != null ? groups.get(groupId) : null;
+            if (members == null || members.isEmpty()) {
+                continue;
+            }
+            if (event.backdated()) {
+                refresh.add(groupId);
+                continue;
+            }
+
+            String eventTime = event.data().get("eventTime");
+            String json = jsonMapper.writeValueAsString(CheckInSocketMessage.status(
+                    groupId,
+                    event.childId(),
+                    event.data().get("eventType"),
+                    parseId(event.data().get("attendanceId")),
+                    eventTime != null ? LocalDateTime.parse(eventTime) : event.createdAt()));
+
+            for (WebSocketSession member : members) {
+                send(member, json);
+            }
+        }
+
+        for (Long groupId : refresh) {
+            commands.execute(groupId, () -> broadcastRoster(groupId));
+        }
+    }
+
+    private void handle(WebSocketSession out, Long groupId, Long userId, CheckInCommand command) {
+        String type = command.type() != null ? command.type() : "";
+        switch (type) {
+            case "ROSTER" -> sendRoster(out, groupId, command.requestId());
+            case "CHECK_IN" -> register(out, groupId, userId, command, AttendanceEventType.IN);
+            case "CHECK_OUT" -> register(out, groupId, userId, command, AttendanceEventType.OUT);
+            default -> send(out, CheckInSocketMessage.error(command.requestId(), "Ukjent kommando: " + type));
+        }
+    }
+
+    private void register(
+            WebSocketSession out,
+            Long groupId,
+            Long userId,
+            CheckInCommand command,
+            AttendanceEventType eventType
+    ) {
+        try {
+            Attendance saved = tabletCheckInService.register(
+                    groupId, command.childId(), userId, eventType, command.note());
+            send(out, CheckInSocketMessage.ack(
+                    command.requestId(),
+                    command.childId(),
+                    eventType.name(),
+                    saved.getId(),
+                    saved.getEventTime()));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(out, CheckInSocketMessage.error(command.requestId(), e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Inn/ut-sjekk fra nettbrett feilet (gruppe {}, barn {})", groupId, command.childId(), e);
+            send(out, CheckInSocketMessage.error(command.requestId(), "Kunne ikke lagre registreringen."));
+        }
+    }
+
+    private void sendRoster(WebSocketSession out, Long groupId, String requestId) {
+        send(out, roster(groupId, requestId));
+    }
+
+    /**
+     * Henter gruppelisten én gang og sender den til alle nettbrettene i gruppen.
+     */
+    private void broadcastRoster(Long groupId) {
+        Set<WebSocketSession> members = groups.get(groupId);
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+
+        String json = jsonMapper.writeValueAsString(roster(groupId, null));
+        for (WebSocketSession member : members) {
+            send(member, json);
+        }
+    }
+
+    private CheckInSocketMessage roster(Long groupId, String requestId) {
+        List<RosterEntryResponse> children = tabletCheckInService.getRoster(groupId)
+                .stream()
+                .map(entry -> new RosterEntryResponse(
+                        entry.childId(),
+                        entry.lastName() != null ? entry.firstName() + " " + entry.lastName() : entry.firstName(),
+                        entry.status(),
+                        entry.eventId(),
+                        entry.eventTime()))
+                .toList();
+
+        return CheckInSocketMessage.roster(requestId, groupId, children);
+    }
+
+    private void submit(Long groupId, WebSocketSession out, String requestId, Runnable task) {
+        if (!commands.execute(groupId, task)) {
+            send(out, CheckInSocketMessage.error(requestId, "For mange kommandoer i kø. Prøv igjen."));
+        }
+    }
+
+    private void send(WebSocketSession out, CheckInSocketMessage message) {
+        send(out, jsonMapper.writeValueAsString(message));
+    }
+
+    private void send(WebSocketSession out, String json) {
+        if (!out.isOpen()) {
+            return;
+        }
+        try {
+            out.sendMessage(new TextMessage(json));
+        } catch (IOException | RuntimeException e) {
+            // Tregt eller frakoblet nettbrett; det henter ROSTER på nytt når det kobler til
+            log.debug("Kunne ikke sende til nettbrett {}", out.getId(), e);
+        }
+    }
+
+    /**
+     * Kommandoen i meldingen, eller null når den ikke kan leses. Meldingen "null"
+     * leses uten feil, men gir heller ingen kommando.
+     */
+    private CheckInCommand parseCommand(String payload) {
+        try {
+            return jsonMapper.readValue(payload, CheckInCommand.class);
+        } catch (JacksonException e) {
+            return null;
+        }
+    }
+
+    private static Long parseId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
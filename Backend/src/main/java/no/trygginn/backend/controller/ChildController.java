@@ -6,6 +6,9 @@ import no.trygginn.backend.controller.dto.ChildResponse;
 import no.trygginn.backend.model.Daycare;
 import no.trygginn.backend.model.DaycareGroup;
 import no.trygginn.backend.service.ChildService;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,9 +22,11 @@ import java.util.List;
 public class ChildController {
 
     private final ChildService childService;
+    private final ResourceVersions resourceVersions;
 
-    public ChildController(ChildService childService) {
+    public ChildController(ChildService childService, ResourceVersions resourceVersions) {
         this.childService = childService;
+        this.resourceVersions = resourceVersions;
     }
 
     /**
@@ -38,31 +43,53 @@ public class ChildController {
 
     /**
      * Henter alle barn knyttet til en foresatt.
+     * Svarer 304 uten å laste barna når If-None-Match er gjeldende versjon.
      */
     @GetMapping("/guardian/{guardianId}")
     public ResponseEntity<List<ChildResponse>> getChildrenForGuardian(
-            @PathVariable Long guardianId
+            @PathVariable Long guardianId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
 
+        if (ifNoneMatch != null) {
+            String current = resourceVersions.currentGuardianChildrenTag(guardianId);
+            if (ResourceVersions.matches(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+            }
+        }
+
         List<Child> children = childService.getChildrenForGuardian(guardianId);
 
         List<ChildResponse> responseList = children.stream()
                 .map(this::toResponse)
                 .toList();
 
-        return ResponseEntity.ok(responseList);
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.guardianChildrenTag(guardianId, children))
+                .body(responseList);
     }
 
     /**
      * Henter informasjon om ett barn.
+     * Svarer 304 uten å laste barnet når If-None-Match er gjeldende versjon.
      */
     @GetMapping("/{childId}")
     public ResponseEntity<ChildResponse> getChild(
-            @PathVariable Long childId
+            @PathVariable Long childId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
 
+        if (ifNoneMatch != null) {
+            String current = resourceVersions.currentChildTag(childId);
+            if (ResourceVersions.matches(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+            }
+        }
+
         Child child = childService.getChildById(childId);
-        return ResponseEntity.ok(toResponse(child));
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.childTag(child))
+                .body(toResponse(child));
     }
 
     /**
@@ -3,10 +3,16 @@ package no.trygginn.backend.controller;
 import no.trygginn.backend.controller.dto.ChildDetailsResponse;
 import no.trygginn.backend.controller.dto.UpdateChildDetailsRequest;
 import no.trygginn.backend.model.Child;
+import no.trygginn.backend.service.AuditLog;
 import no.trygginn.backend.service.ChildService;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.StringJoiner;
+
 /**
  * REST-controller for detaljer om barn.
  */
@@ -14,40 +20,53 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/children")
 public class ChildDetailsController {
 
+    // Helseopplysningene i svaret som logges i AuditLog
+    private static final String AUDIT_RESOURCE = "child-details";
+    private static final String AUDIT_FIELDS = "allergies,medications";
+
     private final ChildService childService;
+    private final ResourceVersions resourceVersions;
+    private final AuditLog auditLog;
 
-    public ChildDetailsController(ChildService childService) {
+    public ChildDetailsController(ChildService childService,
+                                  ResourceVersions resourceVersions,
+                                  AuditLog auditLog) {
         this.childService = childService;
+        this.resourceVersions = resourceVersions;
+        this.auditLog = auditLog;
     }
 
     /**
      * Henter detaljer om et barn.
+     * Svarer 304 uten å laste barnet når If-None-Match er gjeldende versjon.
      */
     @GetMapping("/{childId}/details")
     public ResponseEntity<ChildDetailsResponse> getDetails(
-            @PathVariable Long childId
+            @PathVariable Long childId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
 
+        if (ifNoneMatch != null) {
+            String current = resourceVersions.currentChildDetailsTag(childId);
+            if (ResourceVersions.matches(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+            }
+        }
+
         Child child = childService.getChildById(childId);
+        auditLog.read(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
 
-        return ResponseEntity.ok(
-                new ChildDetailsResponse(
-                        child.getId(),
-                        child.getFirstName(),
-                        child.getLastName(),
-                        child.getAllergies(),
-                        child.getMedications(),
-                        child.getFavoriteFood()
-                )
-        );
+        return toResponse(child);
     }
 
     /**
-     * Oppdaterer detaljer om et barn.
+     * Oppdaterer detaljer om et barn (alle feltene erstattes).
+     * Med If-Match avvises endringen med 412 hvis barnet er endret siden det ble lest.
      */
     @PutMapping("/{childId}/details")
     public ResponseEntity<ChildDetailsResponse> updateDetails(
             @PathVariable Long childId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody UpdateChildDetailsRequest req
     ) {
 
@@ -55,17 +74,60 @@ public class ChildDetailsController {
                 childId,
                 req.allergies(),
                 req.medications(),
-                req.favoriteFood()
+                req.favoriteFood(),
+                ResourceVersions.expectedVersion(ifMatch, "child-details-" + childId)
+        );
+        auditLog.write(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
+
+        return toResponse(updated);
+    }
+
+    /**
+     * Delvis oppdatering: felt som mangler (null) lar verdien stå, tom tekst fjerner den.
+     * Bare endrede kolonner skrives. If-Match som for PUT.
+     */
+    @PatchMapping("/{childId}/details")
+    public ResponseEntity<ChildDetailsResponse> patchDetails(
+            @PathVariable Long childId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody UpdateChildDetailsRequest req
+    ) {
+
+        Child updated = childService.patchChildDetails(
+                childId,
+                req.allergies(),
+                req.medications(),
+                req.favoriteFood(),
+                ResourceVersions.expectedVersion(ifMatch, "child-details-" + childId)
         );
+        String patched = patchedFields(req);
+        if (!patched.isEmpty()) {
+            auditLog.write(childId, AUDIT_RESOURCE, patched);
+        }
+
+        return toResponse(updated);
+    }
+
+    private static String patchedFields(UpdateChildDetailsRequest req) {
+        StringJoiner fields = new StringJoiner(",");
+        if (req.allergies() != null) {
+            fields.add("allergies");
+        }
+        if (req.medications() != null) {
+            fields.add("medications");
+        }
+        return fields.toString();
+    }
 
-        return ResponseEntity.ok(
+    private ResponseEntity<ChildDetailsResponse> toResponse(Child child) {
+        return ResponseEntity.ok().eTag(ResourceVersions.childDetailsTag(child)).body(
                 new ChildDetailsResponse(
-                        updated.getId(),
-                        updated.getFirstName(),
-                        updated.getLastName(),
-                        updated.getAllergies(),
-                        updated.getMedications(),
-                        updated.getFavoriteFood()
+                        child.getId(),
+                        child.getFirstName(),
+                        child.getLastName(),
+                        child.getAllergies(),
+                        child.getMedications(),
+                        child.getFavoriteFood()
                 )
         );
     }
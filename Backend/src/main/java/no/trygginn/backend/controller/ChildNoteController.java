@@ -1,9 +1,16 @@
 package no.trygginn.backend.controller;
 
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse;
 import no.trygginn.backend.controller.dto.ChildNoteResponse;
+import no.trygginn.backend.controller.dto.ChildNoteRevisionPageResponse;
+import no.trygginn.backend.controller.dto.ChildNoteRevisionResponse;
 import no.trygginn.backend.controller.dto.UpdateChildNoteRequest;
 import no.trygginn.backend.model.Child;
+import no.trygginn.backend.service.AuditLog;
+import no.trygginn.backend.service.ChildNoteHistory;
 import no.trygginn.backend.service.ChildService;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,14 +21,21 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/children")
 public class ChildNoteController {
 
+    private static final String AUDIT_RESOURCE = "child-note";
+    private static final String AUDIT_FIELDS = "note";
+
     private final ChildService childService;
+    private final AuditLog auditLog;
+    private final ChildNoteHistory noteHistory;
 
-    public ChildNoteController(ChildService childService) {
+    public ChildNoteController(ChildService childService, AuditLog auditLog, ChildNoteHistory noteHistory) {
         this.childService = childService;
+        this.auditLog = auditLog;
+        this.noteHistory = noteHistory;
     }
 
     /**
-     * Henter notat for et barn.
+     * Henter notat for et barn. ETag-en kan sendes som If-Match ved endring.
      */
     @GetMapping("/{childId}/note")
     public ResponseEntity<ChildNoteResponse> getNote(
@@ -29,38 +43,82 @@ public class ChildNoteController {
     ) {
 
         Child child = childService.getChildById(childId);
-        String childName = child.getFirstName() + " " + child.getLastName();
-
-        return ResponseEntity.ok(
-                new ChildNoteResponse(
-                        child.getId(),
-                        childName,
-                        child.getNote()
-                )
-        );
+        auditLog.read(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
+        return toResponse(child);
     }
 
     /**
-     * Oppdaterer notat for et barn.
+     * Oppdaterer notat for et barn. Bare notatkolonnen skrives.
+     * Med If-Match avvises endringen med 412 hvis barnet er endret siden det ble lest.
      */
-    @PutMapping("/{childId}/note")
+    @RequestMapping(value = "/{childId}/note", method = {RequestMethod.PUT, RequestMethod.PATCH})
     public ResponseEntity<ChildNoteResponse> updateNote(
             @PathVariable Long childId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody UpdateChildNoteRequest request
     ) {
 
         Child updated = childService.updateChildNote(
                 childId,
-                request.note()
+                request.note(),
+                ResourceVersions.expectedVersion(ifMatch, "child-note-" + childId)
         );
+        auditLog.write(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
 
-        String childName = updated.getFirstName() + " " + updated.getLastName();
+        return toResponse(updated);
+    }
 
-        return ResponseEntity.ok(
+    /**
+     * Lister revisjonene av notatet, nyeste først (uten tekst).
+     * Neste side hentes med before=nextBefore.
+     */
+    @GetMapping("/{childId}/note/revisions")
+    public ChildNoteRevisionPageResponse getRevisions(
+            @PathVariable Long childId,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer limit
+    ) {
+
+        return noteHistory.revisions(childId, before, limit);
+    }
+
+    /**
+     * Henter notatet slik det var i en revisjon.
+     */
+    @GetMapping("/{childId}/note/revisions/{revision}")
+    public ChildNoteRevisionResponse getRevision(
+            @PathVariable Long childId,
+            @PathVariable int revision
+    ) {
+
+        ChildNoteRevisionResponse response = noteHistory.revision(childId, revision);
+        auditLog.read(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
+        return response;
+    }
+
+    /**
+     * Viser forskjellen mellom to revisjoner av notatet, ord for ord.
+     */
+    @GetMapping("/{childId}/note/diff")
+    public ChildNoteDiffResponse getDiff(
+            @PathVariable Long childId,
+            @RequestParam int from,
+            @RequestParam int to
+    ) {
+
+        ChildNoteDiffResponse response = noteHistory.diff(childId, from, to);
+        auditLog.read(childId, AUDIT_RESOURCE, AUDIT_FIELDS);
+        return response;
+    }
+
+    private ResponseEntity<ChildNoteResponse> toResponse(Child child) {
+        String childName = child.getFirstName() + " " + child.getLastName();
+
+        return ResponseEntity.ok().eTag(ResourceVersions.childNoteTag(child)).body(
                 new ChildNoteResponse(
-                        updated.getId(),
+                        child.getId(),
                         childName,
-                        updated.getNote()
+                        child.getNote()
                 )
         );
     }
@@ -5,6 +5,10 @@ import no.trygginn.backend.controller.dto.StaffChildResponse;
 import no.trygginn.backend.model.Daycare;
 import no.trygginn.backend.model.DaycareGroup;
 import no.trygginn.backend.service.DaycareGroupService;
+import no.trygginn.backend.service.RequestCoalescer;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,33 +22,63 @@ import java.util.List;
 public class DaycareGroupController {
 
     private final DaycareGroupService daycareGroupService;
+    private final RequestCoalescer requestCoalescer;
+    private final ResourceVersions resourceVersions;
 
-    public DaycareGroupController(DaycareGroupService daycareGroupService) {
+    /**
+     * Ferdig mappet gruppeliste med ETag, som deles mellom sammenslåtte kall.
+     */
+    private record GroupList(String etag, List<DaycareGroupResponse> groups) {}
+
+    public DaycareGroupController(
+            DaycareGroupService daycareGroupService,
+            RequestCoalescer requestCoalescer,
+            ResourceVersions resourceVersions
+    ) {
         this.daycareGroupService = daycareGroupService;
+        this.requestCoalescer = requestCoalescer;
+        this.resourceVersions = resourceVersions;
     }
 
     /**
      * Henter alle grupper for en barnehage.
+     * Alle nettbrett i barnehagen spør samtidig, så like kall slås sammen.
+     * Svarer 304 uten å laste gruppene når If-None-Match er gjeldende versjon.
      */
     @GetMapping("/daycare/{daycareId}")
     public ResponseEntity<List<DaycareGroupResponse>> getGroupsForDaycare(
-            @PathVariable Long daycareId
+            @PathVariable Long daycareId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
 
-        List<DaycareGroup> groups =
-                daycareGroupService.getGroupsForDaycare(daycareId);
+        if (ifNoneMatch != null) {
+            String current = resourceVersions.currentDaycareGroupsTag(daycareId);
+            if (ResourceVersions.matches(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+            }
+        }
 
-        List<DaycareGroupResponse> response = groups.stream()
-                .map(this::toResponse)
-                .toList();
+        // Barna leses under mappingen, så den må skje inne i det sammenslåtte kallet
+        GroupList response = requestCoalescer.execute(
+                RequestCoalescer.DAYCARE_GROUPS,
+                daycareId,
+                () -> {
+                    List<DaycareGroup> groups = daycareGroupService.getGroupsForDaycare(daycareId);
+                    List<DaycareGroupResponse> mapped = groups.stream()
+                            .map(this::toResponse)
+                            .toList();
+                    return new GroupList(ResourceVersions.daycareGroupsTag(daycareId, groups), mapped);
+                });
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .body(response.groups());
     }
 
     /**
-     * Mapper DaycareGroup-entity til respons-DTO.
+     * Mapper DaycareGroup-entity til respons-DTO (pakke-synlig for benchmarks).
      */
-    private DaycareGroupResponse toResponse(DaycareGroup group) {
+    DaycareGroupResponse toResponse(DaycareGroup group) {
 
         Daycare daycare = group.getDaycare();
 
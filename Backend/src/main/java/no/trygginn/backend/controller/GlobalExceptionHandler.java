@@ -1,11 +1,15 @@
 package no.trygginn.backend.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Global feilhåndtering for REST-API-et.
@@ -26,4 +30,38 @@ public class GlobalExceptionHandler {
                 .status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("message", ex.getMessage()));
     }
+
+    /**
+     * Håndterer endringer mot en utdatert versjon (@Version / If-Match).
+     * 412 når klienten sendte If-Match, ellers 409 (samtidig endring).
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleOptimisticLocking(
+            OptimisticLockingFailureException ex,
+            HttpServletRequest request
+    ) {
+
+        HttpStatus status = request.getHeader(HttpHeaders.IF_MATCH) != null
+                ? HttpStatus.PRECONDITION_FAILED
+                : HttpStatus.CONFLICT;
+
+        return ResponseEntity
+                .status(status)
+                .body(Map.of("message", "Ressursen er endret av noen andre. Hent den på nytt og prøv igjen."));
+    }
+
+    /**
+     * Håndterer full kø for bakgrunnsjobber (f.eks. rapporter) med 503,
+     * så klienten kan prøve igjen litt senere.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String>> handleRejected(
+            RejectedExecutionException ex
+    ) {
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(Map.of("message", "Serveren er opptatt. Prøv igjen om litt."));
+    }
 }
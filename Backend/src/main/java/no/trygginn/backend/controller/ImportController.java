@@ -0,0 +1,42 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.ImportReportResponse;
+import no.trygginn.backend.service.BulkImportService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST-controller for masseimport ved oppstart av nye barnehager.
+ */
+@RestController
+@RequestMapping("/api/import")
+public class ImportController {
+
+    private final BulkImportService bulkImportService;
+
+    public ImportController(BulkImportService bulkImportService) {
+        this.bulkImportService = bulkImportService;
+    }
+
+    /**
+     * Importerer barnehager, grupper, barn og foresatte fra en CSV-fil (UTF-8).
+     * Filen sendes som rå request-body og leses strømmende.
+     */
+    @PostMapping(value = "/children", consumes = { "text/csv", "text/plain", "application/octet-stream" })
+    public ResponseEntity<ImportReportResponse> importChildren(
+            @RequestParam Long importedByUserId,
+            InputStream body
+    ) throws IOException {
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024)) {
+            return ResponseEntity.ok(bulkImportService.importCsv(reader, importedByUserId));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.KitchenMatrixResponse;
+import no.trygginn.backend.service.AuditLog;
+import no.trygginn.backend.service.KitchenService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST-controller for kjøkkenets allergen- og kostoversikt.
+ * Oversikten viser allergiene, så hvert barn i svaret logges i AuditLog.
+ */
+@RestController
+@RequestMapping("/api/kitchen")
+public class KitchenController {
+
+    private static final String AUDIT_RESOURCE = "kitchen";
+    private static final String AUDIT_FIELDS = "allergies";
+
+    private final KitchenService kitchenService;
+    private final AuditLog auditLog;
+
+    public KitchenController(KitchenService kitchenService,
+                             AuditLog auditLog) {
+        this.kitchenService = kitchenService;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Henter oversikt for én gruppe (standard er dagens dato).
+     */
+    @GetMapping("/group/{daycareGroupId}")
+    public ResponseEntity<KitchenMatrixResponse> getForGroup(
+            @PathVariable Long daycareGroupId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+
+        KitchenMatrixResponse matrix = kitchenService.getMatrixForGroup(daycareGroupId, date);
+        audit(matrix);
+
+        return ResponseEntity.ok(matrix);
+    }
+
+    /**
+     * Henter oversikt for alle grupper i en barnehage i ett kall.
+     */
+    @GetMapping("/daycare/{daycareId}")
+    public ResponseEntity<List<KitchenMatrixResponse>> getForDaycare(
+            @PathVariable Long daycareId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+
+        List<KitchenMatrixResponse> matrices = kitchenService.getMatrixForDaycare(daycareId, date);
+        matrices.forEach(this::audit);
+
+        return ResponseEntity.ok(matrices);
+    }
+
+    private void audit(KitchenMatrixResponse matrix) {
+        matrix.children().forEach(child -> auditLog.read(child.childId(), AUDIT_RESOURCE, AUDIT_FIELDS));
+    }
+}
@@ -0,0 +1,72 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.ReportJobRequest;
+import no.trygginn.backend.controller.dto.ReportJobResponse;
+import no.trygginn.backend.service.ReportJobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST-controller for rapporter som lages i bakgrunnen:
+ * bestill, følg med på fremdriften og last ned når den er ferdig.
+ */
+@RestController
+@RequestMapping("/api/reports")
+public class ReportController {
+
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final ReportJobService reportJobService;
+
+    public ReportController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
+    }
+
+    /**
+     * Bestiller en rapport. 202 med jobben mens den lages, 200 hvis den allerede er ferdig.
+     */
+    @PostMapping
+    public ResponseEntity<ReportJobResponse> submit(@RequestBody ReportJobRequest request) {
+
+        ReportJobResponse job = reportJobService.submit(request);
+        HttpStatus status = "DONE".equals(job.status()) ? HttpStatus.OK : HttpStatus.ACCEPTED;
+
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.LOCATION, "/api/reports/" + job.id())
+                .body(job);
+    }
+
+    /**
+     * Henter status og fremdrift for en jobb.
+     */
+    @GetMapping("/{id}")
+    public ReportJobResponse get(@PathVariable String id) {
+
+        return reportJobService.get(id);
+    }
+
+    /**
+     * Laster ned en ferdig rapport som CSV. Filen strømmes fra disk.
+     */
+    @GetMapping("/{id}/download")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+
+        FileSystemResource file = new FileSystemResource(reportJobService.file(id));
+
+        return ResponseEntity.ok()
+                .contentType(CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(reportJobService.fileName(id))
+                        .build()
+                        .toString())
+                .body(file);
+    }
+}
@@ -0,0 +1,62 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.PersonSearchResponse;
+import no.trygginn.backend.service.AuditLog;
+import no.trygginn.backend.service.PeopleSearchService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST-controller for søk etter barn, foresatte og ansatte.
+ * Barn som treffes på allergier eller medisiner logges i AuditLog.
+ */
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final String AUDIT_RESOURCE = "search";
+    private static final String AUDIT_FIELDS = "allergies,medications";
+
+    private final PeopleSearchService peopleSearchService;
+    private final AuditLog auditLog;
+
+    public SearchController(PeopleSearchService peopleSearchService,
+                            AuditLog auditLog) {
+        this.peopleSearchService = peopleSearchService;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Fortløpende søk på navn, e-post, telefon, allergier og medisiner.
+     */
+    @GetMapping("/people")
+    public ResponseEntity<List<PersonSearchResponse>> searchPeople(
+            @RequestParam Long daycareId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+
+        List<PeopleSearchService.Person> hits = peopleSearchService.search(daycareId, q, limit);
+        hits.stream()
+                .filter(p -> peopleSearchService.matchedHealthFields(p, q))
+                .forEach(p -> auditLog.read(p.id(), AUDIT_RESOURCE, AUDIT_FIELDS));
+
+        List<PersonSearchResponse> res = hits
+                .stream()
+                .map(p -> new PersonSearchResponse(
+                        p.type().name(),
+                        p.id(),
+                        p.name(),
+                        p.role(),
+                        p.email(),
+                        p.phoneNumber(),
+                        p.daycareGroupId(),
+                        p.daycareGroupName()
+                ))
+                .toList();
+
+        return ResponseEntity.ok(res);
+    }
+}
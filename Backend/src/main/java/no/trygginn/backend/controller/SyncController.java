@@ -0,0 +1,64 @@
+package no.trygginn.backend.controller;
+
+import no.trygginn.backend.controller.dto.OfflineUploadRequest;
+import no.trygginn.backend.controller.dto.OfflineUploadResponse;
+import no.trygginn.backend.controller.dto.SyncResponse;
+import no.trygginn.backend.service.AuditLog;
+import no.trygginn.backend.service.OfflineUploadService;
+import no.trygginn.backend.service.SyncService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST-controller for synk mellom nettbrettene og serveren:
+ * endringer ned (delta-synk) og registreringer gjort offline opp.
+ * Synken har med allergier og medisiner, så hvert barn i svaret logges i AuditLog.
+ */
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private static final String AUDIT_RESOURCE = "sync";
+    private static final String AUDIT_FIELDS = "allergies,medications";
+
+    private final SyncService syncService;
+    private final OfflineUploadService offlineUploadService;
+    private final AuditLog auditLog;
+
+    public SyncController(SyncService syncService,
+                          OfflineUploadService offlineUploadService,
+                          AuditLog auditLog) {
+        this.syncService = syncService;
+        this.offlineUploadService = offlineUploadService;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Henter det som er endret i barnehagen siden cursoren i since
+     * (uten since: alt nettbrettet trenger fra i dag).
+     */
+    @GetMapping
+    public ResponseEntity<SyncResponse> sync(
+            @RequestParam Long daycareId,
+            @RequestParam(required = false) String since
+    ) {
+
+        SyncResponse response = syncService.sync(daycareId, since);
+        response.children().forEach(child -> auditLog.read(child.id(), AUDIT_RESOURCE, AUDIT_FIELDS));
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(response);
+    }
+
+    /**
+     * Laster opp køen av inn/ut-sjekker, fravær og notater et nettbrett har samlet offline.
+     * Trygt å sende på nytt: elementer med samme clientId lagres bare én gang.
+     */
+    @PostMapping("/upload")
+    public ResponseEntity<OfflineUploadResponse> upload(@RequestBody OfflineUploadRequest request) {
+
+        return ResponseEntity.ok(offlineUploadService.upload(request));
+    }
+}
@@ -5,6 +5,9 @@ import no.trygginn.backend.controller.dto.UpdateUserProfileRequest;
 import no.trygginn.backend.controller.dto.UserProfileResponse;
 import no.trygginn.backend.model.User;
 import no.trygginn.backend.service.UserService;
+import no.trygginn.backend.service.ResourceVersions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,29 +20,45 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final ResourceVersions resourceVersions;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ResourceVersions resourceVersions) {
         this.userService = userService;
+        this.resourceVersions = resourceVersions;
     }
 
     /**
      * Henter brukerprofil basert på ID.
+     * Svarer 304 uten å laste brukeren når If-None-Match er gjeldende versjon.
      */
     @GetMapping("/{id}")
     public ResponseEntity<UserProfileResponse> getUser(
-            @PathVariable Long id
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
 
+        if (ifNoneMatch != null) {
+            String current = resourceVersions.currentUserTag(id);
+            if (ResourceVersions.matches(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+            }
+        }
+
         User user = userService.getUserById(id);
-        return ResponseEntity.ok(toResponse(user));
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.userTag(user))
+                .body(toResponse(user));
     }
 
     /**
-     * Oppdaterer brukerprofil.
+     * Oppdaterer brukerprofil. Felt som mangler lar verdien stå, så PUT og PATCH
+     * er like; bare endrede kolonner skrives.
+     * Med If-Match avvises endringen med 412 hvis profilen er endret siden den ble lest.
      */
-    @PutMapping("/{id}")
+    @RequestMapping(value = "/{id}", method = {RequestMethod.PUT, RequestMethod.PATCH})
     public ResponseEntity<UserProfileResponse> updateUser(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody UpdateUserProfileRequest request
     ) {
 
@@ -47,10 +66,13 @@ public class UserController {
                 id,
                 request.fullName(),
                 request.email(),
-                request.phoneNumber()
+                request.phoneNumber(),
+                ResourceVersions.expectedVersion(ifMatch, "user-" + id)
         );
 
-        return ResponseEntity.ok(toResponse(updated));
+        return ResponseEntity.ok()
+                .eTag(ResourceVersions.userTag(updated))
+                .body(toResponse(updated));
     }
 
     /**
@@ -0,0 +1,26 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for én side av tilgangsloggen, nyeste først.
+ * nextBefore sendes som before for neste side (null når det ikke er flere).
+ */
+public record AuditLogPageResponse(
+        List<Entry> entries,
+        Long nextBefore
+) {
+
+    public record Entry(
+            Long id,
+            LocalDateTime occurredAt,
+            Long userId,
+            String userName,
+            Long childId,
+            String action,
+            String resource,
+            String fields,
+            String remoteAddress
+    ) {}
+}
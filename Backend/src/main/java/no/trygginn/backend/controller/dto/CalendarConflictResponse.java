@@ -0,0 +1,14 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for en kalenderhendelse som overlapper en annen.
+ */
+public record CalendarConflictResponse(
+        Long eventId,
+        String title,
+        Long daycareGroupId,   // null betyr hele barnehagen
+        LocalDateTime startTime,
+        LocalDateTime endTime
+) {}
@@ -1,10 +1,12 @@
 package no.trygginn.backend.controller.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 import no.trygginn.backend.model.CalendarEvent;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * DTO for kalenderhendelser som sendes til frontend.
@@ -25,6 +27,13 @@ public class CalendarEventResponse {
     private Long daycareGroupId;
     private String daycareGroupName;
 
+    // Sendes tilbake som If-Match ("calendar-event-{id}-{version}") ved endring
+    private long version;
+
+    // Overlappende hendelser, kun med i svaret ved opprettelse/endring
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<CalendarConflictResponse> conflicts;
+
     /**
      * Mapper et CalendarEvent-objekt til en respons-DTO.
      */
@@ -47,6 +56,7 @@ public class CalendarEventResponse {
                                 ? event.getDaycareGroup().getName()
                                 : "Hele barnehagen"
                 )
+                .version(event.getVersion())
                 .build();
     }
 }
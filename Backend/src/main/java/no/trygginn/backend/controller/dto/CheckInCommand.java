@@ -0,0 +1,13 @@
+package no.trygginn.backend.controller.dto;
+
+/**
+ * Kommando fra nettbrett over WebSocket (/ws/check-in).
+ * type er CHECK_IN, CHECK_OUT eller ROSTER (be om hele listen på nytt).
+ * requestId velges av nettbrettet og sendes tilbake i svaret.
+ */
+public record CheckInCommand(
+        String type,
+        String requestId,
+        Long childId,
+        String note
+) {}
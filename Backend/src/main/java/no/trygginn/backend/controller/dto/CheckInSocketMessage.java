@@ -0,0 +1,48 @@
+package no.trygginn.backend.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Melding fra server til nettbrett over WebSocket (/ws/check-in).
+ * <ul>
+ *     <li>ACK: kommandoen er lagret; eventId er id-en til inn/ut-sjekken</li>
+ *     <li>ERROR: kommandoen ble avvist (message)</li>
+ *     <li>ROSTER: alle barna i gruppen med siste status, ved tilkobling og på forespørsel</li>
+ *     <li>STATUS: et barn i gruppen har fått ny status (fra dette eller et annet nettbrett, eller appen)</li>
+ * </ul>
+ * Felt som ikke gjelder typen er utelatt.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CheckInSocketMessage(
+        String type,
+        String requestId,
+        Long groupId,
+        Long childId,
+        String status,
+        Long eventId,
+        LocalDateTime eventTime,
+        String message,
+        List<RosterEntryResponse> children
+) {
+
+    public static CheckInSocketMessage ack(String requestId, Long childId, String status,
+                                           Long eventId, LocalDateTime eventTime) {
+        return new CheckInSocketMessage("ACK", requestId, null, childId, status, eventId, eventTime, null, null);
+    }
+
+    public static CheckInSocketMessage error(String requestId, String message) {
+        return new CheckInSocketMessage("ERROR", requestId, null, null, null, null, null, message, null);
+    }
+
+    public static CheckInSocketMessage roster(String requestId, Long groupId, List<RosterEntryResponse> children) {
+        return new CheckInSocketMessage("ROSTER", requestId, groupId, null, null, null, null, null, children);
+    }
+
+    public static CheckInSocketMessage status(Long groupId, Long childId, String status,
+                                              Long eventId, LocalDateTime eventTime) {
+        return new CheckInSocketMessage("STATUS", null, groupId, childId, status, eventId, eventTime, null, null);
+    }
+}
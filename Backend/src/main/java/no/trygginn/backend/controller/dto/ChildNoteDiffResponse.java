@@ -0,0 +1,26 @@
+package no.trygginn.backend.controller.dto;
+
+import java.util.List;
+
+/**
+ * DTO for forskjellen mellom to revisjoner av et notat, ord for ord.
+ * Delene i rekkefølge gir from-teksten (EQUAL og DELETE) og to-teksten (EQUAL og INSERT).
+ */
+public record ChildNoteDiffResponse(
+        Long childId,
+        int from,
+        int to,
+        List<Part> parts
+) {
+
+    public enum Op {
+        EQUAL,
+        DELETE,
+        INSERT
+    }
+
+    public record Part(
+            Op op,
+            String text
+    ) {}
+}
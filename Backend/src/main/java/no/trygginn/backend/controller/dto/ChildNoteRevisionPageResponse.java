@@ -0,0 +1,24 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for én side av historikken til et notat, nyeste revisjon først.
+ * Teksten er ikke med; den hentes per revisjon eller som diff.
+ * nextBefore sendes som before for neste side (null når det ikke er flere).
+ */
+public record ChildNoteRevisionPageResponse(
+        Long childId,
+        List<Entry> revisions,
+        Integer nextBefore
+) {
+
+    public record Entry(
+            int revision,
+            int length,
+            Long editedByUserId,
+            String editedByName,
+            LocalDateTime createdAt
+    ) {}
+}
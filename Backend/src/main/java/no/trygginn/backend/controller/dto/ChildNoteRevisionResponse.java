@@ -0,0 +1,15 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for én revisjon av et notat, med teksten slik den var da.
+ */
+public record ChildNoteRevisionResponse(
+        Long childId,
+        int revision,
+        String note,
+        Long editedByUserId,
+        String editedByName,
+        LocalDateTime createdAt
+) {}
@@ -0,0 +1,14 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for forventet oppmøte i en gruppe på én dag.
+ */
+public record DayProjectionResponse(
+        LocalDate date,
+        boolean closed,     // helg
+        int expected,
+        int onVacation,
+        int absent          // meldt fravær (utenom ferie)
+) {}
@@ -0,0 +1,11 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for et ledig tidsrom i kalenderen.
+ */
+public record FreeSlotResponse(
+        LocalDateTime startTime,
+        LocalDateTime endTime
+) {}
@@ -0,0 +1,13 @@
+package no.trygginn.backend.controller.dto;
+
+import java.util.List;
+
+/**
+ * DTO for prognose over forventet oppmøte i en gruppe.
+ */
+public record GroupProjectionResponse(
+        Long daycareGroupId,
+        String daycareGroupName,
+        int rosterSize,     // antall aktive barn i gruppen
+        List<DayProjectionResponse> days
+) {}
@@ -0,0 +1,18 @@
+package no.trygginn.backend.controller.dto;
+
+import java.util.List;
+
+/**
+ * DTO med resultatet av en masseimport fra CSV.
+ */
+public record ImportReportResponse(
+        long totalRows,
+        long importedChildren,
+        long skippedExistingChildren,
+        long createdDaycares,
+        long createdGroups,
+        long createdGuardians,
+        long failedRows,
+        List<ImportRowError> errors,
+        boolean errorsTruncated     // true hvis ikke alle feil er tatt med
+) {}
@@ -0,0 +1,9 @@
+package no.trygginn.backend.controller.dto;
+
+/**
+ * DTO for en feil på en rad i en masseimport.
+ */
+public record ImportRowError(
+        long rowNumber,     // Linjen i filen der raden starter (overskrift er linje 1)
+        String message
+) {}
@@ -0,0 +1,16 @@
+package no.trygginn.backend.controller.dto;
+
+import java.util.List;
+
+/**
+ * DTO for ett barn i kjøkkenoversikten.
+ */
+public record KitchenChildRow(
+        Long childId,
+        String childName,
+        String status,          // PRESENT, CHECKED_OUT, EXPECTED, ABSENT eller VACATION
+        boolean eating,         // true hvis barnet spiser i barnehagen i dag
+        List<String> allergens, // normaliserte allergener
+        String allergies,       // opprinnelig fritekst
+        String favoriteFood
+) {}
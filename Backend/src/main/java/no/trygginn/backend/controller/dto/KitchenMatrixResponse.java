@@ -0,0 +1,18 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO for allergen- og kostoversikt for en gruppe på en gitt dag.
+ */
+public record KitchenMatrixResponse(
+        Long daycareGroupId,
+        String daycareGroupName,
+        LocalDate date,
+        int eatingCount,
+        List<String> allergens,               // kolonner i matrisen
+        Map<String, Integer> eatingPerAllergen,
+        List<KitchenChildRow> children
+) {}
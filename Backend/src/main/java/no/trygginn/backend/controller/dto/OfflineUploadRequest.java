@@ -0,0 +1,31 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for opplasting av registreringer som et nettbrett har samlet opp offline.
+ * Hvert element har en unik clientId fra nettbrettet og tiden det ble registrert (clientTime).
+ */
+public record OfflineUploadRequest(
+        Long performedByUserId,
+        List<Item> items
+) {
+
+    /**
+     * kind er ATTENDANCE (eventType IN/OUT, note), ABSENCE (date, reason, note)
+     * eller NOTE (note, baseVersion = versjonen av barnet da notatet ble endret).
+     */
+    public record Item(
+            String clientId,
+            String kind,
+            Long childId,
+            LocalDateTime clientTime,
+            String eventType,
+            LocalDate date,
+            String reason,
+            String note,
+            Long baseVersion
+    ) {}
+}
@@ -0,0 +1,31 @@
+package no.trygginn.backend.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * DTO for resultatet av en offline-opplasting, ett element per clientId i samme rekkefølge.
+ * <ul>
+ *     <li>APPLIED: lagret (id er den nye raden, version den nye versjonen av barnet for NOTE)</li>
+ *     <li>DUPLICATE: lastet opp før (id er raden fra forrige gang)</li>
+ *     <li>REDUNDANT: endrer ingenting (barnet var allerede inn/ut, eller fravær finnes for dagen)</li>
+ *     <li>SUPERSEDED: et nyere notat for samme barn i samme opplasting vant</li>
+ *     <li>CONFLICT: notatet er endret på serveren siden baseVersion (version er gjeldende versjon)</li>
+ *     <li>REJECTED: ugyldig element (message)</li>
+ * </ul>
+ */
+public record OfflineUploadResponse(
+        int applied,
+        List<ItemResult> results
+) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ItemResult(
+            String clientId,
+            String status,
+            Long id,
+            Long version,
+            String message
+    ) {}
+}
@@ -0,0 +1,15 @@
+package no.trygginn.backend.controller.dto;
+
+/**
+ * DTO for et treff i personsøket (barn eller bruker).
+ */
+public record PersonSearchResponse(
+        String type,            // CHILD eller USER
+        Long id,
+        String name,
+        String role,            // kun for brukere
+        String email,           // kun for brukere
+        String phoneNumber,     // kun for brukere
+        Long daycareGroupId,    // kun for barn
+        String daycareGroupName // kun for barn
+) {}
@@ -0,0 +1,14 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for bestilling av en rapport for en barnehage i perioden [from, to].
+ * type er ATTENDANCE (oppmøte) eller ABSENCE (fravær og ferie).
+ */
+public record ReportJobRequest(
+        Long daycareId,
+        String type,
+        LocalDate from,
+        LocalDate to
+) {}
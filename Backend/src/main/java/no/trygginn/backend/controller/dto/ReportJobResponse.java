@@ -0,0 +1,33 @@
+package no.trygginn.backend.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * DTO for en rapportjobb.
+ * <ul>
+ *     <li>QUEUED: venter på en ledig arbeider</li>
+ *     <li>RUNNING: lages nå (progress er prosent av gruppene som er ferdige)</li>
+ *     <li>DONE: kan lastes ned fra downloadUrl (cached er true når en tidligere rapport ble gjenbrukt)</li>
+ *     <li>FAILED: feilet (message), bestill på nytt</li>
+ * </ul>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReportJobResponse(
+        String id,
+        String type,
+        Long daycareId,
+        LocalDate from,
+        LocalDate to,
+        String status,
+        int progress,
+        int groupsDone,
+        int groupsTotal,
+        boolean cached,
+        LocalDateTime createdAt,
+        LocalDateTime finishedAt,
+        String message,
+        String downloadUrl
+) {}
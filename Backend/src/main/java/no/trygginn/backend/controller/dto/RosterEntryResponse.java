@@ -0,0 +1,14 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Et barn i gruppelisten på nettbrettet, med siste inn/ut-sjekk.
+ */
+public record RosterEntryResponse(
+        Long childId,
+        String name,
+        String status,
+        Long eventId,
+        LocalDateTime eventTime
+) {}
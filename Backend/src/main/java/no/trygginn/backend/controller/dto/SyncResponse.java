@@ -0,0 +1,81 @@
+package no.trygginn.backend.controller.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for delta-synk til nettbrettene (GET /api/sync).
+ * Ved full synk (full = true) erstatter listene alt nettbrettet har fra før;
+ * ellers er de bare radene som er endret siden forrige cursor, og removed
+ * er id-ene som er slettet eller ikke lenger hører til barnehagen.
+ * Cursoren sendes med som since ved neste synk.
+ */
+public record SyncResponse(
+        String cursor,
+        boolean full,
+        Long daycareId,
+        List<ChildRow> children,
+        List<AttendanceRow> attendance,
+        List<AbsenceRow> absences,
+        List<VacationRow> vacations,
+        List<CalendarEventRow> calendarEvents,
+        Removed removed
+) {
+
+    public record ChildRow(
+            Long id,
+            Long daycareGroupId,
+            String firstName,
+            String lastName,
+            LocalDate dateOfBirth,
+            boolean active,
+            String allergies,
+            String medications,
+            long version
+    ) {}
+
+    public record AttendanceRow(
+            Long id,
+            Long childId,
+            String eventType,
+            LocalDateTime eventTime,
+            String note,
+            Long performedByUserId
+    ) {}
+
+    public record AbsenceRow(
+            Long id,
+            Long childId,
+            LocalDate date,
+            String reason,
+            String note
+    ) {}
+
+    public record VacationRow(
+            Long id,
+            Long childId,
+            LocalDate startDate,
+            LocalDate endDate,
+            String note
+    ) {}
+
+    public record CalendarEventRow(
+            Long id,
+            Long daycareGroupId,
+            String title,
+            String description,
+            String location,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            long version
+    ) {}
+
+    public record Removed(
+            List<Long> children,
+            List<Long> attendance,
+            List<Long> absences,
+            List<Long> vacations,
+            List<Long> calendarEvents
+    ) {}
+}
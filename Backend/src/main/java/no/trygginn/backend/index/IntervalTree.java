@@ -0,0 +1,246 @@
+package no.trygginn.backend.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Balansert intervalltre (AVL) over halvåpne intervaller [start, end).
+ * Hver node lagrer største sluttid i sitt undertre, slik at
+ * overlappsøk kan hoppe over hele undertrær og svare i O(log n + k).
+ * Klassen er ikke trådsikker; kallere må synkronisere selv.
+ */
+public class IntervalTree<T> {
+
+    private Node<T> root;
+
+    // Gjør det mulig å fjerne/oppdatere et intervall kun basert på id
+    private final Map<Long, Node<T>> byId = new HashMap<>();
+
+    /**
+     * Et intervall med tilhørende verdi.
+     */
+    public record Interval<T>(long id, long start, long end, T value) {}
+
+    /**
+     * Legger inn eller erstatter intervallet med gitt id.
+     */
+    public void put(long id, long start, long end, T value) {
+        if (end < start) {
+            throw new IllegalArgumentException("Slutt kan ikke være før start.");
+        }
+        remove(id);
+        Node<T> node = new Node<>(id, start, end, value);
+        root = insert(root, node);
+        byId.put(id, node);
+    }
+
+    /**
+     * Fjerner intervallet med gitt id. Returnerer true hvis det fantes.
+     */
+    public boolean remove(long id) {
+        Node<T> existing = byId.remove(id);
+        if (existing == null) {
+            return false;
+        }
+        root = delete(root, existing.start, existing.id);
+        return true;
+    }
+
+    /**
+     * Henter alle intervaller som overlapper [start, end).
+     */
+    public List<Interval<T>> overlapping(long start, long end) {
+        List<Interval<T>> result = new ArrayList<>();
+        collect(root, start, end, result);
+        return result;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * Høyden på treet (0 for tomt tre).
+     */
+    int height() {
+        return height(root);
+    }
+
+    /**
+     * Sjekker at treet er sortert, AVL-balansert og at høyde og maxEnd stemmer i
+     * hver node. Brukes av testene; kaster IllegalStateException ved feil.
+     */
+    void verify() {
+        verify(root, Long.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private void verify(Node<T> node, long minStart, long minId, long maxStart, long maxId) {
+        if (node == null) {
+            return;
+        }
+        if (compare(minStart, minId, node) > 0 || compare(maxStart, maxId, node) < 0) {
+            throw new IllegalStateException("Node " + node.id + " ligger på feil side i treet");
+        }
+        verify(node.left, minStart, minId, node.start, node.id);
+        verify(node.right, node.start, node.id, maxStart, maxId);
+
+        if (Math.abs(height(node.left) - height(node.right)) > 1) {
+            throw new IllegalStateException("Node " + node.id + " er ikke balansert");
+        }
+        if (node.height != 1 + Math.max(height(node.left), height(node.right))) {
+            throw new IllegalStateException("Feil høyde i node " + node.id);
+        }
+        long max = node.end;
+        if (node.left != null) max = Math.max(max, node.left.maxEnd);
+        if (node.right != null) max = Math.max(max, node.right.maxEnd);
+        if (node.maxEnd != max) {
+            throw new IllegalStateException("Feil maxEnd i node " + node.id);
+        }
+    }
+
+    private void collect(Node<T> node, long start, long end, List<Interval<T>> out) {
+        // Ingen intervaller i dette undertreet slutter etter start
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+
+        collect(node.left, start, end, out);
+
+        // Høyre undertre har bare større starttider enn noden selv
+        if (node.start < end) {
+            if (node.end > start) {
+                out.add(new Interval<>(node.id, node.start, node.end, node.value));
+            }
+            collect(node.right, start, end, out);
+        }
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> delete(Node<T> node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+
+            // Erstatter noden med minste node i høyre undertre
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> deleteMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return rebalance(node);
+    }
+
+    private int compare(long start, long id, Node<T> node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Long.compare(id, node.id);
+    }
+
+    private Node<T> rebalance(Node<T> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private void update(Node<T> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long max = node.end;
+        if (node.left != null) max = Math.max(max, node.left.maxEnd);
+        if (node.right != null) max = Math.max(max, node.right.maxEnd);
+        node.maxEnd = max;
+    }
+
+    private int height(Node<T> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node<T> {
+        final long id;
+        final long start;
+        final long end;
+        final T value;
+        long maxEnd;
+        int height = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(long id, long start, long end, T value) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+}
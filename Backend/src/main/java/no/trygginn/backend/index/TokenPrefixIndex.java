@@ -0,0 +1,229 @@
+package no.trygginn.backend.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Minnebasert søkeindeks for fortløpende søk (type-ahead).
+ * Hver tekst deles opp i ord, og alle prefikser (edge n-grams) av hvert ord
+ * peker til dokumentene som inneholder ordet. Et søk blir dermed ett
+ * hash-oppslag per søkeord pluss et snitt av treffmengdene.
+ */
+public class TokenPrefixIndex<K, V> {
+
+    /**
+     * Lengre prefikser lagres ikke; lengre søkeord verifiseres mot dokumentet.
+     */
+    static final int MAX_PREFIX_LENGTH = 12;
+
+    private final Map<String, Set<K>> postings = new HashMap<>();
+    private final Map<K, Document<V>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record Document<V>(Set<String> tokens, V value) {}
+
+    /**
+     * Et søketreff med antall søkeord som traff et helt ord.
+     */
+    public record Hit<V>(V value, int exactMatches) {}
+
+    /**
+     * Legger inn eller erstatter et dokument med gitte tekstfelter.
+     */
+    public void put(K key, V value, String... fields) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : fields) {
+            tokens.addAll(tokenize(field));
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(key);
+            documents.put(key, new Document<>(tokens, value));
+            for (String token : tokens) {
+                for (String prefix : prefixes(token)) {
+                    postings.computeIfAbsent(prefix, p -> new HashSet<>()).add(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fjerner et dokument fra indeksen.
+     */
+    public void remove(K key) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Søker etter dokumenter der hvert søkeord er prefiks av et ord i dokumentet.
+     * Treff med flest hele ord kommer først.
+     */
+    public List<Hit<V>> search(String query, int limit, Comparator<V> tieBreaker) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<K> candidates = candidates(queryTokens);
+
+            Comparator<Hit<V>> order = Comparator
+                    .comparingInt((Hit<V> h) -> h.exactMatches())
+                    .reversed()
+                    .thenComparing(Hit::value, tieBreaker);
+
+            // Holder bare de beste treffene i en heap, i stedet for å sortere alle
+            PriorityQueue<Hit<V>> best = new PriorityQueue<>(limit + 1, order.reversed());
+            for (K key : candidates) {
+                Document<V> doc = documents.get(key);
+                int exact = matchCount(doc.tokens(), queryTokens);
+                if (exact < 0) {
+                    continue;
+                }
+                best.add(new Hit<>(doc.value(), exact));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<Hit<V>> hits = new ArrayList<>(best);
+            hits.sort(order);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deler tekst opp i små bokstaver og ord (bokstaver og tall).
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+        }
+
+        return tokens;
+    }
+
+    private Set<K> candidates(List<String> queryTokens) {
+        List<Set<K>> sets = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            String prefix = token.length() > MAX_PREFIX_LENGTH
+                    ? token.substring(0, MAX_PREFIX_LENGTH)
+                    : token;
+            Set<K> set = postings.get(prefix);
+            if (set == null) {
+                return Set.of();
+            }
+            sets.add(set);
+        }
+
+        if (sets.size() == 1) {
+            return sets.get(0);
+        }
+
+        // Snitter fra minste mengde for å holde arbeidet lavt
+        sets.sort(Comparator.comparingInt(Set::size));
+        Set<K> result = new HashSet<>(sets.get(0));
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.retainAll(sets.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returnerer antall søkeord som er hele ord i dokumentet,
+     * eller -1 hvis et søkeord ikke er prefiks av noe ord.
+     */
+    private int matchCount(Set<String> docTokens, List<String> queryTokens) {
+        int exact = 0;
+        for (String q : queryTokens) {
+            if (docTokens.contains(q)) {
+                exact++;
+            } else if (q.length() > MAX_PREFIX_LENGTH && !anyStartsWith(docTokens, q)) {
+                return -1;
+            }
+        }
+        return exact;
+    }
+
+    private boolean anyStartsWith(Collection<String> tokens, String prefix) {
+        for (String token : tokens) {
+            if (token.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeUnlocked(K key) {
+        Document<V> existing = documents.remove(key);
+        if (existing == null) {
+            return;
+        }
+        for (String token : existing.tokens()) {
+            for (String prefix : prefixes(token)) {
+                Set<K> set = postings.get(prefix);
+                if (set != null) {
+                    set.remove(key);
+                    if (set.isEmpty()) {
+                        postings.remove(prefix);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> prefixes(String token) {
+        int max = Math.min(token.length(), MAX_PREFIX_LENGTH);
+        List<String> result = new ArrayList<>(max);
+        for (int i = 1; i <= max; i++) {
+            result.add(token.substring(0, i));
+        }
+        return result;
+    }
+}
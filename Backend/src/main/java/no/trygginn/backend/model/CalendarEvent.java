@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
  * Entity som representerer en kalenderhendelse.
  */
 @Entity
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,6 +52,10 @@ public class CalendarEvent {
     @JoinColumn(name = "created_by_user_id", nullable = false)
     private User createdByUser;
 
+    // Optimistisk låsing: UPDATE går med WHERE version = ?
+    @Version
+    private long version;
+
     // Tidsstempler
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
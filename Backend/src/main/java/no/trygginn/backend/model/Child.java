@@ -1,6 +1,7 @@
 package no.trygginn.backend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
@@ -9,6 +10,7 @@ import java.util.Set;
  * Entity som representerer et barn.
  */
 @Entity
+@DynamicUpdate
 @Table(name = "children")
 public class Child {
 
@@ -54,6 +56,11 @@ public class Child {
     @Column(name = "favorite_food")
     private String favoriteFood;
 
+    // Optimistisk låsing: UPDATE går med WHERE version = ?, brukes også i ETag.
+    // Endringer utenfor JPA får ny versjon av databasen (se V2__row_versions.sql)
+    @Version
+    private long version;
+
     // Internt notat om barnet
     @Column(name = "note")
     private String note;
@@ -62,6 +69,10 @@ public class Child {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -31,6 +31,10 @@ public class DaycareGroup {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Økes av databasen ved hver endring (se V2__row_versions.sql), brukes i ETag
+    @Column(insertable = false, updatable = false)
+    private long version;
+
     // Barn i gruppen
     @OneToMany(mappedBy = "daycareGroup")
     private Set<Child> children = new HashSet<>();
@@ -41,6 +45,10 @@ public class DaycareGroup {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public Daycare getDaycare() {
         return daycare;
     }
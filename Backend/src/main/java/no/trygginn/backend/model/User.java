@@ -1,6 +1,8 @@
 package no.trygginn.backend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OptimisticLock;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -9,6 +11,7 @@ import java.util.Set;
  * Entity som representerer en bruker i systemet.
  */
 @Entity
+@DynamicUpdate
 @Table(name = "users")
 public class User {
 
@@ -45,8 +48,14 @@ public class User {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
-    // Barn brukeren er foresatt for
+    // Optimistisk låsing: UPDATE går med WHERE version = ?, brukes også i ETag.
+    // Endringer utenfor JPA får ny versjon av databasen (se V2__row_versions.sql)
+    @Version
+    private long version;
+
+    // Barn brukeren er foresatt for (koblingen gir ikke ny versjon av brukeren)
     @ManyToMany
+    @OptimisticLock(excluded = true)
     @JoinTable(
             name = "guardians_children",
             joinColumns = @JoinColumn(name = "guardian_id"),
@@ -56,6 +65,7 @@ public class User {
 
     // Barnehager brukeren er knyttet til
     @ManyToMany
+    @OptimisticLock(excluded = true)
     @JoinTable(
             name = "guardians_daycare",
             joinColumns = @JoinColumn(name = "guardian_id"),
@@ -77,6 +87,10 @@ public class User {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public String getFullName() {
         return fullName;
     }
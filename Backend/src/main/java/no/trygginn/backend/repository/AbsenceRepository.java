@@ -2,7 +2,10 @@ package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.Absence;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -14,4 +17,32 @@ public interface AbsenceRepository extends JpaRepository<Absence, Long> {
      * Henter fravær for et barn, sortert etter dato (nyeste først).
      */
     List<Absence> findByChild_IdOrderByDateDesc(Long childId);
+
+    /**
+     * Henter id-ene til barn i en gruppe som har meldt fravær på en dato.
+     */
+    @Query("""
+        SELECT DISTINCT a.child.id
+        FROM Absence a
+        WHERE a.child.daycareGroup.id = :groupId
+          AND a.date = :date
+    """)
+    List<Long> findAbsentChildIds(
+            @Param("groupId") Long groupId,
+            @Param("date") LocalDate date
+    );
+
+    /**
+     * Henter fravær for alle barn i en gruppe fra og med en dato.
+     */
+    @Query("""
+        SELECT new no.trygginn.backend.repository.ChildDateRangeRow(a.child.id, a.date, a.date)
+        FROM Absence a
+        WHERE a.child.daycareGroup.id = :groupId
+          AND a.date >= :from
+    """)
+    List<ChildDateRangeRow> findRangesForGroupFrom(
+            @Param("groupId") Long groupId,
+            @Param("from") LocalDate from
+    );
 }
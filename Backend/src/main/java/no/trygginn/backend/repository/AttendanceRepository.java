@@ -1,7 +1,10 @@
 package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.Attendance;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,8 +16,9 @@ import java.util.Optional;
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
 
     /**
-     * Henter siste inn-/utsjekk for et barn.
+     * Henter siste inn-/utsjekk for et barn, med brukeren som registrerte den.
      */
+    @EntityGraph(attributePaths = "performedBy")
     Optional<Attendance> findTop1ByChild_IdOrderByEventTimeDesc(Long childId);
 
     /**
@@ -25,4 +29,20 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
             LocalDateTime start,
             LocalDateTime end
     );
+
+    /**
+     * Henter oppmøtehendelser for alle barn i en gruppe fra et tidspunkt,
+     * sortert etter tid. Returnerer kun id-er og type for å unngå å laste entiteter.
+     */
+    @Query("""
+        SELECT new no.trygginn.backend.repository.ChildEventRow(a.child.id, a.eventType, a.eventTime)
+        FROM Attendance a
+        WHERE a.child.daycareGroup.id = :groupId
+          AND a.eventTime >= :from
+        ORDER BY a.eventTime ASC
+    """)
+    List<ChildEventRow> findEventRowsForGroupSince(
+            @Param("groupId") Long groupId,
+            @Param("from") LocalDateTime from
+    );
 }
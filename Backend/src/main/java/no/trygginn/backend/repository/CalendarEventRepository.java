@@ -1,7 +1,7 @@
 package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.CalendarEvent;
-import no.trygginn.backend.model.DaycareGroup;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,23 +15,29 @@ public interface CalendarEventRepository extends JpaRepository<CalendarEvent, Lo
 
     /**
      * Henter alle kalenderhendelser for en barnehage,
-     * sortert etter starttid.
+     * sortert etter starttid. Relasjonene hentes i samme spørring.
      */
+    @EntityGraph(attributePaths = { "daycare", "daycareGroup", "daycareGroup.daycare", "createdByUser" })
     List<CalendarEvent> findByDaycare_IdOrderByStartTimeAsc(Long daycareId);
 
     /**
-     * Henter relevante kalenderhendelser for en foresatt,
-     * basert på barnehage og barnets grupper.
+     * Henter relevante kalenderhendelser for en foresatt i én spørring:
+     * hendelser i barnehagene den foresatte er knyttet til, som gjelder
+     * hele barnehagen eller en gruppe der den foresatte har barn.
+     * Alle mange-til-én-relasjoner hentes med, slik at mappingen ikke gir N+1.
      */
     @Query("""
         SELECT e
         FROM CalendarEvent e
-        WHERE e.daycare.id = :daycareId
-          AND (e.daycareGroup IS NULL OR e.daycareGroup IN :groups)
+        JOIN FETCH e.daycare
+        JOIN FETCH e.createdByUser
+        LEFT JOIN FETCH e.daycareGroup g
+        LEFT JOIN FETCH g.daycare
+        WHERE e.daycare IN (
+                SELECT d FROM User u JOIN u.daycares d WHERE u.id = :guardianId)
+          AND (g IS NULL OR g IN (
+                SELECT c.daycareGroup FROM User u JOIN u.children c WHERE u.id = :guardianId))
         ORDER BY e.startTime ASC
     """)
-    List<CalendarEvent> findRelevantForGuardian(
-            @Param("daycareId") Long daycareId,
-            @Param("groups") List<DaycareGroup> groups
-    );
+    List<CalendarEvent> findRelevantForGuardian(@Param("guardianId") Long guardianId);
 }
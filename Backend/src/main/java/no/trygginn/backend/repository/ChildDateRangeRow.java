@@ -0,0 +1,12 @@
+package no.trygginn.backend.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Lett projeksjon av en datoperiode for et barn (fravær eller ferie).
+ */
+public record ChildDateRangeRow(
+        Long childId,
+        LocalDate startDate,
+        LocalDate endDate
+) {}
@@ -0,0 +1,14 @@
+package no.trygginn.backend.repository;
+
+import no.trygginn.backend.model.AttendanceEventType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lett projeksjon av en oppmøtehendelse (uten å laste barn og bruker).
+ */
+public record ChildEventRow(
+        Long childId,
+        AttendanceEventType eventType,
+        LocalDateTime eventTime
+) {}
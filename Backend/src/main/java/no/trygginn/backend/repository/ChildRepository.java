@@ -1,6 +1,7 @@
 package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.Child;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -11,7 +12,18 @@ import java.util.List;
 public interface ChildRepository extends JpaRepository<Child, Long> {
 
     /**
-     * Henter alle barn knyttet til en foresatt.
+     * Henter alle barn knyttet til en foresatt, med gruppe og barnehage.
      */
+    @EntityGraph(attributePaths = { "daycareGroup", "daycareGroup.daycare" })
     List<Child> findByGuardians_Id(Long guardianId);
+
+    /**
+     * Henter alle barn i en barnehage (på tvers av grupper).
+     */
+    List<Child> findByDaycareGroup_Daycare_Id(Long daycareId);
+
+    /**
+     * Henter aktive barn i en gruppe.
+     */
+    List<Child> findByDaycareGroup_IdAndActiveTrue(Long daycareGroupId);
 }
@@ -2,6 +2,9 @@ package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.DaycareAccessCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 import java.time.LocalDateTime;
@@ -24,4 +27,16 @@ public interface DaycareAccessCodeRepository extends JpaRepository<DaycareAccess
             String code,
             LocalDateTime now
     );
+
+    /**
+     * Deaktiverer aktive koder som er utløpt eller brukt opp. Returnerer antall koder.
+     */
+    @Modifying
+    @Query("""
+        UPDATE DaycareAccessCode c
+        SET c.active = false
+        WHERE c.active = true
+          AND (c.expiresAt < :now OR c.usedCount >= c.maxUses)
+    """)
+    int deactivateExpired(@Param("now") LocalDateTime now);
 }
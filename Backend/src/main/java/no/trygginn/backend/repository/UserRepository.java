@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -35,4 +36,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * Sjekker om e-postadresse allerede er i bruk.
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Henter alle brukere (foresatte og ansatte) knyttet til en barnehage.
+     */
+    List<User> findByDaycares_Id(Long daycareId);
 }
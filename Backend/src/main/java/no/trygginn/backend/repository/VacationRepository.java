@@ -2,7 +2,10 @@ package no.trygginn.backend.repository;
 
 import no.trygginn.backend.model.Vacation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -14,4 +17,33 @@ public interface VacationRepository extends JpaRepository<Vacation, Long> {
      * Henter alle ferier for et barn.
      */
     List<Vacation> findByChild_Id(Long childId);
+
+    /**
+     * Henter id-ene til barn i en gruppe som har ferie på en dato.
+     */
+    @Query("""
+        SELECT DISTINCT v.child.id
+        FROM Vacation v
+        WHERE v.child.daycareGroup.id = :groupId
+          AND v.startDate <= :date
+          AND v.endDate >= :date
+    """)
+    List<Long> findChildIdsOnVacation(
+            @Param("groupId") Long groupId,
+            @Param("date") LocalDate date
+    );
+
+    /**
+     * Henter ferier for alle barn i en gruppe som slutter på eller etter en dato.
+     */
+    @Query("""
+        SELECT new no.trygginn.backend.repository.ChildDateRangeRow(v.child.id, v.startDate, v.endDate)
+        FROM Vacation v
+        WHERE v.child.daycareGroup.id = :groupId
+          AND v.endDate >= :from
+    """)
+    List<ChildDateRangeRow> findRangesForGroupFrom(
+            @Param("groupId") Long groupId,
+            @Param("from") LocalDate from
+    );
 }
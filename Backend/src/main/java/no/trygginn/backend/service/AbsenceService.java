@@ -7,6 +7,7 @@ import no.trygginn.backend.repository.AbsenceRepository;
 import no.trygginn.backend.repository.ChildRepository;
 import no.trygginn.backend.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -20,20 +21,27 @@ public class AbsenceService {
     private final AbsenceRepository absenceRepository;
     private final ChildRepository childRepository;
     private final UserRepository userRepository;
+    private final AttendanceProjectionService projectionService;
+    private final DomainEvents domainEvents;
 
     public AbsenceService(
             AbsenceRepository absenceRepository,
             ChildRepository childRepository,
-            UserRepository userRepository
+            UserRepository userRepository,
+            AttendanceProjectionService projectionService,
+            DomainEvents domainEvents
     ) {
         this.absenceRepository = absenceRepository;
         this.childRepository = childRepository;
         this.userRepository = userRepository;
+        this.projectionService = projectionService;
+        this.domainEvents = domainEvents;
     }
 
     /**
      * Registrerer fravær for et barn.
      */
+    @Transactional
     public Absence registerAbsence(
             Long childId,
             Long reportedByUserId,
@@ -55,7 +63,19 @@ public class AbsenceService {
         absence.setReason(reason);
         absence.setNote(note);
 
-        return absenceRepository.save(absence);
+        Absence saved = absenceRepository.save(absence);
+        projectionService.absenceRegistered(child, date);
+        domainEvents.publish(
+                DomainEvent.Type.ABSENCE_REGISTERED,
+                child.getId(),
+                DomainEvents.daycareOf(child),
+                DomainEvents.data(
+                        "absenceId", saved.getId(),
+                        "date", date,
+                        "reason", reason,
+                        "reportedByUserId", reporter.getId()));
+
+        return saved;
     }
 
     /**
@@ -7,6 +7,9 @@ import no.trygginn.backend.model.UserRole;
 import no.trygginn.backend.repository.DaycareAccessCodeRepository;
 import no.trygginn.backend.repository.DaycareRepository;
 import no.trygginn.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.lang.Nullable;
@@ -16,22 +19,53 @@ import java.util.Objects;
 
 /**
  * Service for håndtering av tilgangskoder til barnehager.
+ * Utløpte og brukte koder deaktiveres av jobben "access-codes.expire" i jobbkøen
+ * (trygginn.access-codes.expire-cron).
  */
 @Service
-public class AccessCodeService {
+public class AccessCodeService implements JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessCodeService.class);
 
     private final DaycareAccessCodeRepository accessCodeRepository;
     private final UserRepository userRepository;
     private final DaycareRepository daycareRepository;
+    private final PeopleSearchService peopleSearchService;
+    private final String expireCron;
 
     public AccessCodeService(
             DaycareAccessCodeRepository accessCodeRepository,
             UserRepository userRepository,
-            DaycareRepository daycareRepository
+            DaycareRepository daycareRepository,
+            PeopleSearchService peopleSearchService,
+            @Value("${trygginn.access-codes.expire-cron:0 */5 * * * *}") String expireCron
     ) {
         this.accessCodeRepository = accessCodeRepository;
         this.userRepository = userRepository;
         this.daycareRepository = daycareRepository;
+        this.peopleSearchService = peopleSearchService;
+        this.expireCron = expireCron;
+    }
+
+    @Override
+    public String type() {
+        return "access-codes.expire";
+    }
+
+    @Override
+    public String schedule() {
+        return expireCron;
+    }
+
+    /**
+     * Deaktiverer koder som er utløpt eller brukt opp.
+     */
+    @Override
+    public void run(String payload) {
+        int deactivated = accessCodeRepository.deactivateExpired(LocalDateTime.now());
+        if (deactivated > 0) {
+            log.info("Deaktiverte {} utløpte eller brukte tilgangskoder", deactivated);
+        }
     }
 
     /**
@@ -78,6 +112,7 @@ public class AccessCodeService {
         if (!alreadyLinked) {
             guardian.getDaycares().add(daycare);
             userRepository.save(guardian);
+            peopleSearchService.userChanged(guardian);
         }
 
         // Oppdaterer bruksteller og deaktiverer kode ved behov
@@ -132,8 +167,9 @@ public class AccessCodeService {
 
     /**
      * Genererer en tilfeldig 6-tegns kode (A–Z, 0–9).
+     * Pakke-synlig for benchmarks.
      */
-    private String generateRandomCode() {
+    String generateRandomCode() {
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
         StringBuilder sb = new StringBuilder();
 
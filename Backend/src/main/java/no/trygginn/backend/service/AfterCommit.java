@@ -0,0 +1,31 @@
+package no.trygginn.backend.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hjelpeklasse for å kjøre kode først når gjeldende transaksjon er committet.
+ * Brukes for å holde minnebaserte indekser i takt med databasen,
+ * slik at en rullet tilbake transaksjon ikke etterlater spor i indeksen.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {}
+
+    /**
+     * Kjører handlingen etter commit, eller med en gang hvis ingen transaksjon er aktiv.
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
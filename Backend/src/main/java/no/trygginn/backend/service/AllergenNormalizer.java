@@ -0,0 +1,111 @@
+package no.trygginn.backend.service;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Gjør om fritekst for allergier til normaliserte allergennøkler.
+ * Kjente allergener (de 14 som skal merkes i matvarer) kjennes igjen via
+ * vanlige synonymer; ukjente ord beholdes som de er, med små bokstaver.
+ */
+final class AllergenNormalizer {
+
+    // Synonym -> normalisert nøkkel. Rekkefølgen avgjør hvilket synonym som prøves først.
+    private static final Map<String, String> SYNONYMS = new LinkedHashMap<>();
+
+    static {
+        synonyms("peanøtter", "peanøtt", "peanøtter", "peanut", "peanuts", "jordnøtt", "jordnøtter");
+        synonyms("nøtter", "nøtt", "nøtter", "nøtte", "hasselnøtt", "valnøtt", "mandel", "mandler", "cashew", "nuts");
+        synonyms("melk", "melk", "melke", "laktose", "melkeprotein", "meieri", "milk", "lactose");
+        synonyms("gluten", "gluten", "hvete", "rug", "bygg", "havre", "cøliaki", "wheat");
+        synonyms("egg", "egg", "eggehvite", "eggeplomme");
+        synonyms("fisk", "fisk", "fiske", "laks", "torsk", "fish");
+        synonyms("skalldyr", "skalldyr", "reker", "reke", "krabbe", "hummer", "shellfish");
+        synonyms("bløtdyr", "bløtdyr", "blåskjell", "skjell", "blekksprut");
+        synonyms("soya", "soya", "soy");
+        synonyms("sesam", "sesam", "sesamfrø", "sesame");
+        synonyms("selleri", "selleri", "celery");
+        synonyms("sennep", "sennep", "mustard");
+        synonyms("lupin", "lupin");
+        synonyms("sulfitt", "sulfitt", "svoveldioksid", "sulfitter");
+    }
+
+    // Ord som beskriver graden, ikke allergenet ("alvorlig nøtteallergi")
+    private static final Set<String> QUALIFIERS = Set.of(
+            "lett", "mild", "alvorlig", "sterk", "kraftig", "svak", "litt", "mye", "for", "av", "i", "er");
+
+    private AllergenNormalizer() {}
+
+    private static void synonyms(String key, String... words) {
+        for (String word : words) {
+            SYNONYMS.put(word, key);
+        }
+    }
+
+    /**
+     * Returnerer sortert mengde normaliserte allergener for en fritekst.
+     * Hvert ord tolkes for seg, så "melk egg" gir både melk og egg; ingenting
+     * som kan være et allergen, skal falle bort.
+     */
+    static Set<String> normalize(String allergies) {
+        Set<String> result = new TreeSet<>();
+        if (allergies == null || allergies.isBlank()) {
+            return result;
+        }
+
+        String cleaned = Normalizer.normalize(allergies, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT);
+
+        // Deler på komma, semikolon, skråstrek, linjeskift og "og"
+        for (String part : cleaned.split("(?U)[,;/\\n]|\\bog\\b|\\band\\b")) {
+            String entry = part
+                    .replaceAll("(?U)allergi(sk|er|en)?|intoleranse|\\bmot\\b", " ")
+                    .replaceAll("(?U)[^\\p{L}\\p{N}]+", " ")
+                    .trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            match(entry, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Legger til allergenene i ett ledd. Kjente ord blir sin nøkkel; ord som står
+     * sammen uten å være kjent, beholdes som én tekst ("rå gulrot").
+     */
+    private static void match(String entry, Set<String> result) {
+        String direct = SYNONYMS.get(entry);
+        if (direct != null) {
+            result.add(direct);
+            return;
+        }
+
+        StringBuilder unknown = new StringBuilder();
+        for (String word : entry.split(" ")) {
+            String key = SYNONYMS.get(word);
+            if (key != null) {
+                addUnknown(unknown, result);
+                result.add(key);
+            } else if (!QUALIFIERS.contains(word)) {
+                if (!unknown.isEmpty()) {
+                    unknown.append(' ');
+                }
+                unknown.append(word);
+            }
+        }
+        addUnknown(unknown, result);
+    }
+
+    private static void addUnknown(StringBuilder unknown, Set<String> result) {
+        if (!unknown.isEmpty()) {
+            result.add(unknown.toString());
+            unknown.setLength(0);
+        }
+    }
+}
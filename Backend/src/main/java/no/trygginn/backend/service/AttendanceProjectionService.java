@@ -0,0 +1,307 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.DayProjectionResponse;
+import no.trygginn.backend.controller.dto.GroupProjectionResponse;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.DaycareGroup;
+import no.trygginn.backend.repository.AbsenceRepository;
+import no.trygginn.backend.repository.ChildDateRangeRow;
+import no.trygginn.backend.repository.ChildRepository;
+import no.trygginn.backend.repository.DaycareGroupRepository;
+import no.trygginn.backend.repository.VacationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for prognose av forventet oppmøte per gruppe og dag.
+ * For hvert barn holdes to bitsett med én bit per dag (ferie og fravær),
+ * slik at forventet antall en dag er antall barn minus antall barn med
+ * bit satt i unionen. Prognosen per gruppe caches i minnet og oppdateres
+ * inkrementelt når fravær og ferie registreres. Vinduet regnes fra dagen
+ * prognosen ble lastet, så den lastes på nytt første oppslag etter datoskifte.
+ */
+@Service
+public class AttendanceProjectionService {
+
+    /**
+     * Hvor langt tilbake i tid prognosen lastes fra, regnet fra lastetidspunktet.
+     */
+    static final int LOOKBACK_DAYS = 366;
+
+    /**
+     * Maks antall dager i én forespørsel.
+     */
+    static final int MAX_RANGE_DAYS = 366;
+
+    /**
+     * Antall dager fremover (fra lastetidspunktet) som dekkes av bitsettene.
+     */
+    static final int HORIZON_DAYS = 2 * 366;
+
+    private final ChildRepository childRepository;
+    private final DaycareGroupRepository daycareGroupRepository;
+    private final AbsenceRepository absenceRepository;
+    private final VacationRepository vacationRepository;
+
+    private final Map<Long, GroupProjection> projections = new ConcurrentHashMap<>();
+
+    public AttendanceProjectionService(
+            ChildRepository childRepository,
+            DaycareGroupRepository daycareGroupRepository,
+            AbsenceRepository absenceRepository,
+            VacationRepository vacationRepository
+    ) {
+        this.childRepository = childRepository;
+        this.daycareGroupRepository = daycareGroupRepository;
+        this.absenceRepository = absenceRepository;
+        this.vacationRepository = vacationRepository;
+    }
+
+    /**
+     * Henter prognose for én gruppe i perioden [from, to].
+     */
+    @Transactional(readOnly = true)
+    public GroupProjectionResponse getForGroup(Long daycareGroupId, LocalDate from, LocalDate to) {
+
+        DaycareGroup group = daycareGroupRepository.findById(daycareGroupId)
+                .orElseThrow(() -> new IllegalArgumentException("Finner ikke barnehagegruppe."));
+
+        validateRange(from, to);
+        return forGroup(group.getId()).project(group, from, to);
+    }
+
+    /**
+     * Henter prognose for alle grupper i en barnehage i perioden [from, to].
+     */
+    @Transactional(readOnly = true)
+    public List<GroupProjectionResponse> getForDaycare(Long daycareId, LocalDate from, LocalDate to) {
+
+        validateRange(from, to);
+
+        return daycareGroupRepository.findByDaycare_Id(daycareId)
+                .stream()
+                .sorted(Comparator.comparing(DaycareGroup::getName))
+                .map(group -> forGroup(group.getId()).project(group, from, to))
+                .toList();
+    }
+
+    /**
+     * Oppdaterer prognosen etter at fravær er registrert.
+     */
+    public void absenceRegistered(Child child, LocalDate date) {
+        absenceRegistered(groupIdOf(child), child.getId(), date);
+    }
+
+    /**
+     * Som over, for kall som har id-ene uten å ha lastet barnet.
+     */
+    public void absenceRegistered(Long groupId, Long childId, LocalDate date) {
+        if (groupId == null) {
+            return;
+        }
+
+        AfterCommit.run(() -> projections.computeIfPresent(groupId, (id, projection) -> {
+            projection.markAbsent(childId, date, date);
+            return projection;
+        }));
+    }
+
+    /**
+     * Oppdaterer prognosen etter at ferie er registrert.
+     */
+    public void vacationRegistered(Child child, LocalDate startDate, LocalDate endDate) {
+        Long groupId = groupIdOf(child);
+        Long childId = child.getId();
+        if (groupId == null) {
+            return;
+        }
+
+        AfterCommit.run(() -> projections.computeIfPresent(groupId, (id, projection) -> {
+            projection.markVacation(childId, startDate, endDate);
+            return projection;
+        }));
+    }
+
+    /**
+     * Nullstiller prognosen for gruppen til et barn som er opprettet eller flyttet.
+     */
+    public void childChanged(Child child) {
+        Long groupId = groupIdOf(child);
+        Long childId = child.getId();
+
+        AfterCommit.run(() -> projections.entrySet().removeIf(e ->
+                e.getKey().equals(groupId) || e.getValue().hasChild(childId)));
+    }
+
+    /**
+     * Tømmer prognosen for en gruppe, slik at den lastes på nytt ved neste oppslag.
+     */
+    public void invalidate(Long daycareGroupId) {
+        projections.remove(daycareGroupId);
+    }
+
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Fra- og til-dato må være satt.");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Til-dato kan ikke være før fra-dato.");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Perioden kan være maks " + MAX_RANGE_DAYS + " dager.");
+        }
+    }
+
+    private GroupProjection forGroup(Long groupId) {
+        LocalDate today = LocalDate.now();
+        return projections.compute(groupId, (id, existing) ->
+                existing != null && existing.loadedOn().equals(today) ? existing : load(id, today));
+    }
+
+    private GroupProjection load(Long groupId, LocalDate today) {
+        GroupProjection projection = new GroupProjection(today);
+        LocalDate windowStart = projection.windowStart();
+
+        childRepository.findByDaycareGroup_IdAndActiveTrue(groupId)
+                .forEach(child -> projection.addChild(child.getId()));
+
+        for (ChildDateRangeRow row : vacationRepository.findRangesForGroupFrom(groupId, windowStart)) {
+            projection.markVacation(row.childId(), row.startDate(), row.endDate());
+        }
+
+        for (ChildDateRangeRow row : absenceRepository.findRangesForGroupFrom(groupId, windowStart)) {
+            projection.markAbsent(row.childId(), row.startDate(), row.endDate());
+        }
+
+        return projection;
+    }
+
+    private static Long groupIdOf(Child child) {
+        return child.getDaycareGroup() != null ? child.getDaycareGroup().getId() : null;
+    }
+
+    private static boolean isClosed(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Bitsett for fravær og ferie per barn i én gruppe.
+     * Bit i tilsvarer dagen windowStart + i, der windowStart er LOOKBACK_DAYS
+     * før lastedagen.
+     */
+    static final class GroupProjection {
+
+        private final LocalDate loadedOn;
+        private final LocalDate windowStart;
+        private final Map<Long, BitSet> vacationDays = new HashMap<>();
+        private final Map<Long, BitSet> absenceDays = new HashMap<>();
+
+        GroupProjection(LocalDate loadedOn) {
+            this.loadedOn = loadedOn;
+            this.windowStart = loadedOn.minusDays(LOOKBACK_DAYS);
+        }
+
+        LocalDate loadedOn() {
+            return loadedOn;
+        }
+
+        LocalDate windowStart() {
+            return windowStart;
+        }
+
+        synchronized void addChild(Long childId) {
+            vacationDays.putIfAbsent(childId, new BitSet());
+            absenceDays.putIfAbsent(childId, new BitSet());
+        }
+
+        synchronized boolean hasChild(Long childId) {
+            return vacationDays.containsKey(childId);
+        }
+
+        synchronized void markVacation(Long childId, LocalDate start, LocalDate end) {
+            mark(vacationDays.get(childId), start, end);
+        }
+
+        synchronized void markAbsent(Long childId, LocalDate start, LocalDate end) {
+            mark(absenceDays.get(childId), start, end);
+        }
+
+        /**
+         * Setter bitene for [start, end], avkortet til vinduet.
+         */
+        private void mark(BitSet days, LocalDate start, LocalDate end) {
+            // Barn som ikke (lenger) er aktive i gruppen telles ikke
+            if (days == null) {
+                return;
+            }
+            int from = (int) Math.max(0, offset(start));
+            int to = (int) Math.min(offset(end), LOOKBACK_DAYS + HORIZON_DAYS);
+            if (to >= from) {
+                days.set(from, to + 1);
+            }
+        }
+
+        synchronized GroupProjectionResponse project(DaycareGroup group, LocalDate from, LocalDate to) {
+
+            if (from.isBefore(windowStart)) {
+                throw new IllegalArgumentException("Prognosen går ikke lenger tilbake enn " + windowStart + ".");
+            }
+            if (offset(to) > LOOKBACK_DAYS + HORIZON_DAYS) {
+                throw new IllegalArgumentException("Prognosen går ikke lenger frem enn "
+                        + windowStart.plusDays(LOOKBACK_DAYS + HORIZON_DAYS) + ".");
+            }
+
+            int first = (int) offset(from);
+            int length = (int) offset(to) - first + 1;
+            int roster = vacationDays.size();
+
+            int[] onVacation = new int[length];
+            int[] absentOnly = new int[length];
+
+            // Teller per barn over hele perioden i stedet for per dag per barn
+            for (Map.Entry<Long, BitSet> entry : vacationDays.entrySet()) {
+                BitSet vacation = entry.getValue().get(first, first + length);
+                BitSet absent = absenceDays.get(entry.getKey()).get(first, first + length);
+                absent.andNot(vacation);
+
+                for (int i = vacation.nextSetBit(0); i >= 0; i = vacation.nextSetBit(i + 1)) {
+                    onVacation[i]++;
+                }
+                for (int i = absent.nextSetBit(0); i >= 0; i = absent.nextSetBit(i + 1)) {
+                    absentOnly[i]++;
+                }
+            }
+
+            List<DayProjectionResponse> days = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                LocalDate date = from.plusDays(i);
+                boolean closed = isClosed(date);
+                days.add(new DayProjectionResponse(
+                        date,
+                        closed,
+                        closed ? 0 : roster - onVacation[i] - absentOnly[i],
+                        onVacation[i],
+                        absentOnly[i]
+                ));
+            }
+
+            return new GroupProjectionResponse(group.getId(), group.getName(), roster, days);
+        }
+
+        private long offset(LocalDate date) {
+            return ChronoUnit.DAYS.between(windowStart, date);
+        }
+    }
+}
@@ -23,15 +23,18 @@ public class AttendanceService {
     private final AttendanceRepository attendanceRepository;
     private final ChildRepository childRepository;
     private final UserRepository userRepository;
+    private final DomainEvents domainEvents;
 
     public AttendanceService(
             AttendanceRepository attendanceRepository,
             ChildRepository childRepository,
-            UserRepository userRepository
+            UserRepository userRepository,
+            DomainEvents domainEvents
     ) {
         this.attendanceRepository = attendanceRepository;
         this.childRepository = childRepository;
         this.userRepository = userRepository;
+        this.domainEvents = domainEvents;
     }
 
     /**
@@ -65,7 +68,19 @@ public class AttendanceService {
         attendance.setNote(note);
         attendance.setPerformedBy(performer);
 
-        return attendanceRepository.save(attendance);
+        Attendance saved = attendanceRepository.save(attendance);
+        domainEvents.publish(
+                DomainEvent.Type.ATTENDANCE_REGISTERED,
+                child.getId(),
+                DomainEvents.daycareOf(child),
+                DomainEvents.data(
+                        "attendanceId", saved.getId(),
+                        "daycareGroupId", child.getDaycareGroup() != null ? child.getDaycareGroup().getId() : null,
+                        "eventType", eventType,
+                        "eventTime", saved.getEventTime(),
+                        "performedByUserId", performer.getId()));
+
+        return saved;
     }
 
     /**
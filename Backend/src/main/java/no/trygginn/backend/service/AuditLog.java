@@ -0,0 +1,323 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import no.trygginn.backend.controller.dto.AuditLogPageResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tilgangslogg for helseopplysninger om barn: hvem leste eller endret allergier,
+ * medisiner og notater, og når.
+ * <p>
+ * Forespørselen legger bare tilgangen i en ringbuffer (EventRingBuffer, uten låser);
+ * tråden "audit-log" skriver den til audit_log i grupper på opptil
+ * trygginn.audit.batch-size rader, som én INSERT med mange rader.
+ * Det skrives hvert trygginn.audit.flush-interval-ms, eller med en gang bufferen
+ * har en full gruppe. Ved krasj mistes derfor høyst det som kom inn siste
+ * flush-interval-ms (og aldri mer enn ring-size rader). Er bufferen full, skrives
+ * tilgangen direkte i forespørselen i stedet for å forsvinne.
+ * <p>
+ * Brukeren hentes fra headeren X-User-Id (frontend sender id-en fra innloggingen)
+ * og står som ukjent (null) uten den.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    public static final String USER_HEADER = "X-User-Id";
+
+    static final String METRIC_NAME = "trygginn.audit";
+
+    private static final String INSERT = """
+            INSERT INTO audit_log (occurred_at, user_id, child_id, action, resource, fields, remote_address)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    public enum Action {
+        READ,
+        WRITE
+    }
+
+    private record Access(
+            LocalDateTime occurredAt,
+            Long userId,
+            Long childId,
+            Action action,
+            String resource,
+            String fields,
+            String remoteAddress
+    ) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final EventRingBuffer<Access> ring;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxPending;
+
+    // Grupper som ikke kunne skrives (databasen nede), prøves igjen ved neste flush. Bare for skrivertråden.
+    private final List<Access> pending = new ArrayList<>();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AuditLog(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.audit.ring-size:16384}") int ringSize,
+            @Value("${trygginn.audit.batch-size:500}") int batchSize,
+            @Value("${trygginn.audit.flush-interval-ms:500}") long flushIntervalMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.ring = new EventRingBuffer<>(ringSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.maxPending = ringSize;
+
+        Gauge.builder(METRIC_NAME + ".backlog", ring, buffer -> buffer.backlog())
+                .description("Tilganger i bufferen som ikke er skrevet")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::run, "audit-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Logger at brukeren i forespørselen har lest feltene for barnet.
+     */
+    public void read(Long childId, String resource, String fields) {
+        record(userFromRequest(), childId, Action.READ, resource, fields);
+    }
+
+    /**
+     * Logger at brukeren i forespørselen har endret feltene for barnet.
+     */
+    public void write(Long childId, String resource, String fields) {
+        record(userFromRequest(), childId, Action.WRITE, resource, fields);
+    }
+
+    /**
+     * Logger en endring gjort av en kjent bruker (f.eks. performedByUserId i en opplasting).
+     */
+    public void write(Long userId, Long childId, String resource, String fields) {
+        record(userId, childId, Action.WRITE, resource, fields);
+    }
+
+    private void record(Long userId, Long childId, Action action, String resource, String fields) {
+        Access access = new Access(
+                LocalDateTime.now(), userId, childId, action, resource, fields, remoteAddressFromRequest());
+
+        if (!ring.offer(access)) {
+            // Full buffer: heller en tregere forespørsel enn et hull i loggen
+            try {
+                insert(List.of(access));
+                count("overflow", 1);
+            } catch (RuntimeException e) {
+                count("dropped", 1);
+                log.warn("Kunne ikke logge tilgang til barn {}", childId, e);
+            }
+            return;
+        }
+
+        if (ring.backlog() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Én side av loggen, nyeste først. before er id-en fra nextBefore på forrige side.
+     * Bladingen går på id (WHERE id &lt; before), så hver side er ett indeksoppslag
+     * uansett hvor langt bak i loggen den er.
+     */
+    public AuditLogPageResponse search(Long childId, Long userId, String action, Long before, Integer limit) {
+        int pageSize = limit == null ? 50 : Math.max(1, Math.min(limit, 500));
+
+        StringBuilder sql = new StringBuilder("""
+                SELECT a.id, a.occurred_at, a.user_id, u.full_name, a.child_id, a.action,
+                       a.resource, a.fields, a.remote_address
+                FROM audit_log a
+                LEFT JOIN users u ON u.id = a.user_id
+                WHERE TRUE
+                """);
+        List<Object> args = new ArrayList<>();
+        if (childId != null) {
+            sql.append(" AND a.child_id = ?");
+            args.add(childId);
+        }
+        if (userId != null) {
+            sql.append(" AND a.user_id = ?");
+            args.add(userId);
+        }
+        if (action != null && !action.isBlank()) {
+            sql.append(" AND a.action = ?");
+            args.add(parseAction(action).name());
+        }
+        if (before != null) {
+            sql.append(" AND a.id < ?");
+            args.add(before);
+        }
+        sql.append(" ORDER BY a.id DESC LIMIT ?");
+        args.add(pageSize + 1);
+
+        List<AuditLogPageResponse.Entry> entries = jdbcTemplate.query(sql.toString(),
+                (rs, n) -> new AuditLogPageResponse.Entry(
+                        rs.getLong(1),
+                        rs.getTimestamp(2).toLocalDateTime(),
+                        rs.getObject(3, Long.class),
+                        rs.getString(4),
+                        rs.getLong(5),
+                        rs.getString(6),
+                        rs.getString(7),
+                        rs.getString(8),
+                        rs.getString(9)),
+                args.toArray());
+
+        if (entries.size() <= pageSize) {
+            return new AuditLogPageResponse(entries, null);
+        }
+        List<AuditLogPageResponse.Entry> page = entries.subList(0, pageSize);
+        return new AuditLogPageResponse(List.copyOf(page), page.getLast().id());
+    }
+
+    private void run() {
+        while (running) {
+            if (ring.backlog() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Skriver det som ligger i bufferen. Bare fra skrivertråden, og ved stopp.
+     */
+    void flush() {
+        if (!pending.isEmpty()) {
+            if (!tryInsert(pending)) {
+                trimPending();
+                return;
+            }
+            pending.clear();
+        }
+
+        List<Access> batch = new ArrayList<>(batchSize);
+        while (ring.drainTo(batch, batchSize) > 0) {
+            if (!tryInsert(batch)) {
+                pending.addAll(batch);
+                trimPending();
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private boolean tryInsert(List<Access> batch) {
+        try {
+            insert(batch);
+            count("written", batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Kunne ikke skrive {} tilganger til audit_log, prøver igjen", batch.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Holder ventende rader innenfor ring-size mens databasen er nede; de eldste går tapt først.
+     */
+    private void trimPending() {
+        int excess = pending.size() - maxPending;
+        if (excess > 0) {
+            pending.subList(0, excess).clear();
+            count("dropped", excess);
+        }
+    }
+
+    private void insert(List<Access> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Access access : batch) {
+            rows.add(new Object[] {
+                    Timestamp.valueOf(access.occurredAt()), access.userId(), access.childId(),
+                    access.action().name(), access.resource(), access.fields(), access.remoteAddress()
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    private void count(String outcome, int amount) {
+        meterRegistry.counter(METRIC_NAME, "outcome", outcome).increment(amount);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest()
+                : null;
+    }
+
+    /**
+     * Brukeren fra X-User-Id i forespørselen, eller null.
+     */
+    static Long userFromRequest() {
+        HttpServletRequest request = currentRequest();
+        String header = request != null ? request.getHeader(USER_HEADER) : null;
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String remoteAddressFromRequest() {
+        HttpServletRequest request = currentRequest();
+        return request != null ? request.getRemoteAddr() : null;
+    }
+
+    private static Action parseAction(String action) {
+        try {
+            return Action.valueOf(action.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("action må være READ eller WRITE.");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Det som ligger i bufferen skrives før vi stopper
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // flush() og pending er bare for én tråd; lever skriveren fortsatt, er den i gang med å tømme
+        if (writer.isAlive()) {
+            log.warn("audit-log ble ikke ferdig på 2 s, {} tilganger er kanskje ikke skrevet", ring.backlog());
+            return;
+        }
+        flush();
+    }
+}
@@ -0,0 +1,599 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.ImportReportResponse;
+import no.trygginn.backend.controller.dto.ImportRowError;
+import no.trygginn.backend.model.User;
+import no.trygginn.backend.model.UserRole;
+import no.trygginn.backend.repository.UserRepository;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Service for masseimport av barnehager, grupper, barn og foresatte fra CSV.
+ * Filen leses strømmende og behandles i biter: hver bit valideres med
+ * mengdebaserte oppslag og skrives med batch-inserts i én transaksjon.
+ * En feil i databasen ruller kun tilbake biten den oppstod i.
+ */
+@Service
+public class BulkImportService {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final DateTimeFormatter NORWEGIAN_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    // Kolonnenavn i CSV-filen
+    private static final String ORG_NUMBER = "org_number";
+    private static final String DAYCARE_NAME = "daycare_name";
+    private static final String DAYCARE_ADDRESS = "daycare_address";
+    private static final String GROUP_NAME = "group_name";
+    private static final String CHILD_FIRST_NAME = "child_first_name";
+    private static final String CHILD_LAST_NAME = "child_last_name";
+    private static final String CHILD_DATE_OF_BIRTH = "child_date_of_birth";
+    private static final String ALLERGIES = "allergies";
+    private static final String MEDICATIONS = "medications";
+    private static final String GUARDIAN_EMAIL = "guardian_email";
+    private static final String GUARDIAN_FULL_NAME = "guardian_full_name";
+    private static final String GUARDIAN_PHONE = "guardian_phone";
+
+    private static final List<String> REQUIRED_COLUMNS = List.of(
+            ORG_NUMBER, DAYCARE_NAME, GROUP_NAME, CHILD_FIRST_NAME, GUARDIAN_EMAIL, GUARDIAN_FULL_NAME
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final PeopleSearchService peopleSearchService;
+    private final KitchenService kitchenService;
+    private final AttendanceProjectionService projectionService;
+    private final RequestCoalescer requestCoalescer;
+    private final ResourceVersions resourceVersions;
+
+    public BulkImportService(
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            UserRepository userRepository,
+            PasswordEncoder passwordEncoder,
+            PeopleSearchService peopleSearchService,
+            KitchenService kitchenService,
+            AttendanceProjectionService projectionService,
+            RequestCoalescer requestCoalescer,
+            ResourceVersions resourceVersions
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.peopleSearchService = peopleSearchService;
+        this.kitchenService = kitchenService;
+        this.projectionService = projectionService;
+        this.requestCoalescer = requestCoalescer;
+        this.resourceVersions = resourceVersions;
+    }
+
+    /**
+     * En gyldig rad fra CSV-filen.
+     */
+    private record ImportRow(
+            long rowNumber,
+            String orgNumber,
+            String daycareName,
+            String daycareAddress,
+            String groupName,
+            String childFirstName,
+            String childLastName,
+            LocalDate childDateOfBirth,
+            String allergies,
+            String medications,
+            String guardianEmail,
+            String guardianFullName,
+            String guardianPhone
+    ) {}
+
+    private record GroupKey(Long daycareId, String name) {}
+
+    private record ChildKey(Long groupId, String firstName, String lastName, LocalDate dateOfBirth) {}
+
+    /**
+     * Samler tellere og feil underveis i importen.
+     */
+    private static final class Report {
+        long totalRows;
+        long importedChildren;
+        long skippedExistingChildren;
+        long createdDaycares;
+        long createdGroups;
+        long createdGuardians;
+        long failedRows;
+        final List<ImportRowError> errors = new ArrayList<>();
+        boolean errorsTruncated;
+
+        void fail(long rowNumber, String message) {
+            failedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(rowNumber, message));
+            } else {
+                errorsTruncated = true;
+            }
+        }
+
+        ImportReportResponse toResponse() {
+            return new ImportReportResponse(
+                    totalRows,
+                    importedChildren,
+                    skippedExistingChildren,
+                    createdDaycares,
+                    createdGroups,
+                    createdGuardians,
+                    failedRows,
+                    List.copyOf(errors),
+                    errorsTruncated
+            );
+        }
+    }
+
+    /**
+     * Importerer en CSV-fil med én rad per barn og foresatt.
+     * Påkrevde kolonner: org_number, daycare_name, group_name, child_first_name,
+     * guardian_email, guardian_full_name.
+     */
+    public ImportReportResponse importCsv(Reader input, Long importedByUserId) {
+
+        User importer = userRepository.findById(importedByUserId)
+                .orElseThrow(() -> new IllegalArgumentException("Finner ikke bruker som importerer."));
+
+        if (importer.getRole() == UserRole.PARENT) {
+            throw new IllegalStateException("Foreldre kan ikke importere data.");
+        }
+
+        // Importerte foresatte får et passord ingen kjenner, og må bruke tilbakestilling.
+        // Én BCrypt-beregning per import i stedet for én per bruker.
+        String lockedPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
+
+        Report report = new Report();
+        CsvReader csv = new CsvReader(input);
+
+        try {
+            List<String> header = csv.next();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV-filen er tom.");
+            }
+            Map<String, Integer> columns = columnIndex(header);
+
+            List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<String> record;
+
+            while ((record = csv.next()) != null) {
+                report.totalRows++;
+                ImportRow row = parseRow(csv.lineNumber(), record, columns, report);
+                if (row != null) {
+                    chunk.add(row);
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    processChunk(chunk, lockedPasswordHash, report);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                processChunk(chunk, lockedPasswordHash, report);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Kunne ikke lese CSV-filen.", ex);
+        }
+
+        return report.toResponse();
+    }
+
+    private Map<String, Integer> columnIndex(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i)
+                    .replace("\uFEFF", "")
+                    .trim()
+                    .toLowerCase(Locale.ROOT);
+            columns.put(name, i);
+        }
+
+        List<String> missing = REQUIRED_COLUMNS.stream()
+                .filter(c -> !columns.containsKey(c))
+                .toList();
+
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Mangler påkrevde kolonner: " + String.join(", ", missing));
+        }
+
+        return columns;
+    }
+
+    /**
+     * Validerer feltene i en rad. Returnerer null og registrerer feil hvis raden er ugyldig.
+     */
+    private ImportRow parseRow(
+            long rowNumber,
+            List<String> record,
+            Map<String, Integer> columns,
+            Report report
+    ) {
+        List<String> problems = new ArrayList<>();
+
+        String orgNumber = field(record, columns, ORG_NUMBER, 20, true, problems);
+        String daycareName = field(record, columns, DAYCARE_NAME, 200, true, problems);
+        String daycareAddress = field(record, columns, DAYCARE_ADDRESS, 255, false, problems);
+        String groupName = field(record, columns, GROUP_NAME, 200, true, problems);
+        String firstName = field(record, columns, CHILD_FIRST_NAME, 100, true, problems);
+        String lastName = field(record, columns, CHILD_LAST_NAME, 100, false, problems);
+        String rawDate = field(record, columns, CHILD_DATE_OF_BIRTH, 20, false, problems);
+        String allergies = field(record, columns, ALLERGIES, 500, false, problems);
+        String medications = field(record, columns, MEDICATIONS, 500, false, problems);
+        String email = field(record, columns, GUARDIAN_EMAIL, 255, true, problems);
+        String guardianName = field(record, columns, GUARDIAN_FULL_NAME, 200, true, problems);
+        String phone = field(record, columns, GUARDIAN_PHONE, 50, false, problems);
+
+        if (email != null && !email.contains("@")) {
+            problems.add("ugyldig e-post");
+        }
+
+        LocalDate dateOfBirth = null;
+        if (rawDate != null) {
+            dateOfBirth = parseDate(rawDate);
+            if (dateOfBirth == null) {
+                problems.add("ugyldig fødselsdato (bruk ÅÅÅÅ-MM-DD eller DD.MM.ÅÅÅÅ)");
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            report.fail(rowNumber, String.join("; ", problems));
+            return null;
+        }
+
+        return new ImportRow(
+                rowNumber,
+                orgNumber,
+                daycareName,
+                daycareAddress,
+                groupName,
+                firstName,
+                lastName,
+                dateOfBirth,
+                allergies,
+                medications,
+                email.toLowerCase(Locale.ROOT),
+                guardianName,
+                phone
+        );
+    }
+
+    private String field(
+            List<String> record,
+            Map<String, Integer> columns,
+            String column,
+            int maxLength,
+            boolean required,
+            List<String> problems
+    ) {
+        Integer index = columns.get(column);
+        String value = index != null && index < record.size() ? record.get(index).trim() : "";
+
+        if (value.isEmpty()) {
+            if (required) {
+                problems.add(column + " mangler");
+            }
+            return null;
+        }
+
+        if (value.length() > maxLength) {
+            problems.add(column + " er lengre enn " + maxLength + " tegn");
+        }
+
+        return value;
+    }
+
+    private LocalDate parseDate(String raw) {
+        try {
+            return LocalDate.parse(raw);
+        } catch (DateTimeParseException ignored) {
+            // Prøver norsk format under
+        }
+        try {
+            return LocalDate.parse(raw, NORWEGIAN_DATE);
+        } catch (DateTimeParseException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Skriver en bit med rader i én transaksjon.
+     */
+    private void processChunk(List<ImportRow> rows, String lockedPasswordHash, Report report) {
+
+        Set<Long> touchedDaycares = new HashSet<>();
+        Set<Long> touchedGroups = new HashSet<>();
+
+        try {
+            Report chunkReport = transactionTemplate.execute(status ->
+                    writeChunk(rows, lockedPasswordHash, touchedDaycares, touchedGroups));
+
+            report.importedChildren += chunkReport.importedChildren;
+            report.skippedExistingChildren += chunkReport.skippedExistingChildren;
+            report.createdDaycares += chunkReport.createdDaycares;
+            report.createdGroups += chunkReport.createdGroups;
+            report.createdGuardians += chunkReport.createdGuardians;
+            for (ImportRowError error : chunkReport.errors) {
+                report.fail(error.rowNumber(), error.message());
+            }
+        } catch (DataAccessException ex) {
+            // Hele biten er rullet tilbake
+            String message = "Biten ble rullet tilbake: " + ex.getMostSpecificCause().getMessage();
+            for (ImportRow row : rows) {
+                report.fail(row.rowNumber(), message);
+            }
+            return;
+        }
+
+        // Minnebaserte indekser lastes på nytt ved neste oppslag
+        touchedDaycares.forEach(peopleSearchService::invalidate);
+        touchedGroups.forEach(kitchenService::invalidate);
+        touchedGroups.forEach(projectionService::invalidate);
+        touchedDaycares.forEach(daycareId -> requestCoalescer.invalidate(RequestCoalescer.DAYCARE_GROUPS, daycareId));
+        resourceVersions.invalidateAll();
+    }
+
+    private Report writeChunk(
+            List<ImportRow> rows,
+            String lockedPasswordHash,
+            Set<Long> touchedDaycares,
+            Set<Long> touchedGroups
+    ) {
+        Report chunk = new Report();
+
+        // 1) Foresatte: eksisterende brukere må ha rollen PARENT
+        Map<String, ImportRow> guardiansByEmail = new LinkedHashMap<>();
+        rows.forEach(r -> guardiansByEmail.putIfAbsent(r.guardianEmail(), r));
+
+        Map<String, String> existingRoles = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT email, role FROM users WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", guardiansByEmail.keySet()),
+                rs -> {
+                    existingRoles.put(rs.getString("email"), rs.getString("role"));
+                }
+        );
+
+        List<ImportRow> valid = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            String role = existingRoles.get(row.guardianEmail());
+            if (role != null && !UserRole.PARENT.name().equals(role)) {
+                chunk.fail(row.rowNumber(), "Brukeren " + row.guardianEmail() + " finnes, men er ikke forelder.");
+            } else {
+                valid.add(row);
+            }
+        }
+
+        if (valid.isEmpty()) {
+            return chunk;
+        }
+
+        List<Object[]> newGuardians = new ArrayList<>();
+        guardiansByEmail.forEach((email, row) -> {
+            if (!existingRoles.containsKey(email)) {
+                newGuardians.add(new Object[] {
+                        row.guardianFullName(), email, row.guardianPhone(), UserRole.PARENT.name(), lockedPasswordHash
+                });
+            }
+        });
+        // Teller bare rader som faktisk ble satt inn; ON CONFLICT hopper over e-poster
+        // som en samtidig import eller registrering rakk å opprette
+        chunk.createdGuardians = affected(jdbcTemplate.batchUpdate("""
+                INSERT INTO users (full_name, email, phone_number, role, password_hash)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                """, newGuardians));
+
+        Map<String, Long> guardianIds = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT id, email FROM users WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", guardiansByEmail.keySet()),
+                rs -> {
+                    guardianIds.put(rs.getString("email"), rs.getLong("id"));
+                }
+        );
+
+        // 2) Barnehager, nøklet på organisasjonsnummer
+        Map<String, ImportRow> daycaresByOrg = new LinkedHashMap<>();
+        valid.forEach(r -> daycaresByOrg.putIfAbsent(r.orgNumber(), r));
+
+        Map<String, Long> daycareIds = new HashMap<>();
+        selectDaycareIds(daycaresByOrg.keySet(), daycareIds);
+
+        List<Object[]> daycareInserts = daycaresByOrg.values().stream()
+                .filter(r -> !daycareIds.containsKey(r.orgNumber()))
+                .map(r -> new Object[] { r.daycareName(), r.orgNumber(), r.daycareAddress() })
+                .toList();
+
+        if (!daycareInserts.isEmpty()) {
+            chunk.createdDaycares = affected(jdbcTemplate.batchUpdate("""
+                    INSERT INTO daycare (name, org_number, address)
+                    VALUES (?, ?, ?)
+                    ON CONFLICT (org_number) DO NOTHING
+                    """, daycareInserts));
+            selectDaycareIds(daycaresByOrg.keySet(), daycareIds);
+        }
+
+        // 3) Grupper, unike per barnehage og navn
+        Set<GroupKey> groupKeys = new HashSet<>();
+        valid.forEach(r -> groupKeys.add(new GroupKey(daycareIds.get(r.orgNumber()), r.groupName())));
+
+        Map<GroupKey, Long> groupIds = new HashMap<>();
+        selectGroupIds(groupKeys, daycareIds.values(), groupIds);
+
+        List<Object[]> groupInserts = groupKeys.stream()
+                .filter(k -> !groupIds.containsKey(k))
+                .map(k -> new Object[] { k.daycareId(), k.name() })
+                .toList();
+
+        if (!groupInserts.isEmpty()) {
+            chunk.createdGroups = affected(jdbcTemplate.batchUpdate("""
+                    INSERT INTO daycare_group (daycare_id, name)
+                    VALUES (?, ?)
+                    ON CONFLICT (daycare_id, name) DO NOTHING
+                    """, groupInserts));
+            selectGroupIds(groupKeys, daycareIds.values(), groupIds);
+        }
+
+        // 4) Barn: hopper over barn som allerede finnes i gruppen (samme navn og fødselsdato)
+        Map<ChildKey, Long> existingChildren = new HashMap<>();
+        namedJdbcTemplate.query("""
+                SELECT id, daycare_group_id, first_name, last_name, date_of_birth
+                FROM children
+                WHERE daycare_group_id IN (:groupIds)
+                """,
+                new MapSqlParameterSource("groupIds", new HashSet<>(groupIds.values())),
+                rs -> {
+                    Date dob = rs.getDate("date_of_birth");
+                    existingChildren.put(new ChildKey(
+                            rs.getLong("daycare_group_id"),
+                            rs.getString("first_name"),
+                            rs.getString("last_name"),
+                            dob != null ? dob.toLocalDate() : null
+                    ), rs.getLong("id"));
+                }
+        );
+
+        List<ImportRow> newChildRows = new ArrayList<>();
+        Map<ChildKey, Long> childIds = new HashMap<>(existingChildren);
+        for (ImportRow row : valid) {
+            Long groupId = groupIds.get(new GroupKey(daycareIds.get(row.orgNumber()), row.groupName()));
+            ChildKey key = childKey(groupId, row);
+            if (existingChildren.containsKey(key)) {
+                chunk.skippedExistingChildren++;
+            } else if (!childIds.containsKey(key)) {
+                // Samme barn på flere rader betyr flere foresatte
+                childIds.put(key, null);
+                newChildRows.add(row);
+            }
+        }
+
+        // Reserverer id-er fra sekvensen, slik at koblingstabellene kan skrives i batch
+        List<Long> reservedIds = jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence('children', 'id')) FROM generate_series(1, ?)",
+                Long.class,
+                newChildRows.size()
+        );
+
+        List<Object[]> childInserts = new ArrayList<>(newChildRows.size());
+        for (int i = 0; i < newChildRows.size(); i++) {
+            ImportRow row = newChildRows.get(i);
+            Long id = reservedIds.get(i);
+            Long groupId = groupIds.get(new GroupKey(daycareIds.get(row.orgNumber()), row.groupName()));
+            childIds.put(childKey(groupId, row), id);
+            childInserts.add(new Object[] {
+                    id, groupId, row.childFirstName(), row.childLastName(), row.childDateOfBirth(),
+                    row.allergies(), row.medications()
+            });
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO children (id, daycare_group_id, first_name, last_name, date_of_birth, active, allergies, medications)
+                VALUES (?, ?, ?, ?, ?, TRUE, ?, ?)
+                """, childInserts);
+        chunk.importedChildren = childInserts.size();
+
+        // 5) Koblinger mellom foresatt, barn og barnehage
+        Set<List<Long>> guardianChildLinks = new HashSet<>();
+        Set<List<Long>> guardianDaycareLinks = new HashSet<>();
+
+        for (ImportRow row : valid) {
+            Long daycareId = daycareIds.get(row.orgNumber());
+            Long groupId = groupIds.get(new GroupKey(daycareId, row.groupName()));
+            Long guardianId = guardianIds.get(row.guardianEmail());
+            Long childId = childIds.get(childKey(groupId, row));
+
+            guardianChildLinks.add(List.of(guardianId, childId));
+            guardianDaycareLinks.add(List.of(guardianId, daycareId));
+            touchedDaycares.add(daycareId);
+            touchedGroups.add(groupId);
+        }
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO guardians_children (guardian_id, child_id)
+                VALUES (?, ?)
+                ON CONFLICT DO NOTHING
+                """, guardianChildLinks.stream().map(List::toArray).toList());
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO guardians_daycare (guardian_id, daycare_id, access_role)
+                VALUES (?, ?, 'PARENT')
+                ON CONFLICT DO NOTHING
+                """, guardianDaycareLinks.stream().map(List::toArray).toList());
+
+        return chunk;
+    }
+
+    /**
+     * Antall rader en batch faktisk satte inn (0 for rader som traff ON CONFLICT DO NOTHING).
+     */
+    private static int affected(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    private static ChildKey childKey(Long groupId, ImportRow row) {
+        return new ChildKey(groupId, row.childFirstName(), row.childLastName(), row.childDateOfBirth());
+    }
+
+    private void selectDaycareIds(Set<String> orgNumbers, Map<String, Long> into) {
+        namedJdbcTemplate.query(
+                "SELECT id, org_number FROM daycare WHERE org_number IN (:orgs)",
+                new MapSqlParameterSource("orgs", orgNumbers),
+                rs -> {
+                    into.put(rs.getString("org_number"), rs.getLong("id"));
+                }
+        );
+    }
+
+    private void selectGroupIds(Set<GroupKey> keys, Collection<Long> daycareIds, Map<GroupKey, Long> into) {
+        namedJdbcTemplate.query(
+                "SELECT id, daycare_id, name FROM daycare_group WHERE daycare_id IN (:daycareIds)",
+                new MapSqlParameterSource("daycareIds", new HashSet<>(daycareIds)),
+                rs -> {
+                    GroupKey key = new GroupKey(rs.getLong("daycare_id"), rs.getString("name"));
+                    if (keys.contains(key)) {
+                        into.put(key, rs.getLong("id"));
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,216 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.index.IntervalTree;
+import no.trygginn.backend.model.CalendarEvent;
+import no.trygginn.backend.repository.CalendarEventRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minnebasert intervallindeks over kalenderhendelser.
+ * Det finnes ett intervalltre per gruppe i hver barnehage, pluss ett for
+ * hendelser som gjelder hele barnehagen. Indeksen lastes fra databasen
+ * første gang en barnehage spørres, og holdes oppdatert av CalendarEventService.
+ */
+@Component
+public class CalendarEventIndex {
+
+    /**
+     * Hendelser uten sluttid regnes som å vare så lenge ved konfliktsjekk.
+     */
+    static final Duration DEFAULT_DURATION = Duration.ofHours(1);
+
+    private final CalendarEventRepository calendarEventRepository;
+
+    private final Map<Long, DaycareIntervals> daycares = new ConcurrentHashMap<>();
+
+    public CalendarEventIndex(CalendarEventRepository calendarEventRepository) {
+        this.calendarEventRepository = calendarEventRepository;
+    }
+
+    /**
+     * Et indeksert tidsrom for en hendelse.
+     */
+    public record Slot(
+            Long eventId,
+            Long daycareGroupId,
+            String title,
+            LocalDateTime startTime,
+            LocalDateTime endTime
+    ) {}
+
+    /**
+     * Legger inn eller oppdaterer en hendelse i indeksen.
+     */
+    public void upsert(CalendarEvent event) {
+        Long daycareId = event.getDaycare().getId();
+        forDaycare(daycareId).put(toSlot(event));
+    }
+
+    /**
+     * Fjerner en hendelse fra indeksen.
+     */
+    public void remove(Long daycareId, Long eventId) {
+        DaycareIntervals intervals = daycares.get(daycareId);
+        if (intervals != null) {
+            intervals.remove(eventId);
+        }
+    }
+
+    /**
+     * Henter hendelser som overlapper [start, end).
+     * Med gruppe tas gruppens hendelser og hele-barnehagen-hendelser med;
+     * uten gruppe søkes det i hele barnehagen.
+     */
+    public List<Slot> findOverlapping(
+            Long daycareId,
+            Long daycareGroupId,
+            LocalDateTime start,
+            LocalDateTime end
+    ) {
+        return forDaycare(daycareId).overlapping(
+                daycareGroupId, toEpoch(start), toEpoch(effectiveEnd(start, end)));
+    }
+
+    /**
+     * Finner ledige tidsrom på minst gitt varighet innenfor [from, to).
+     */
+    public List<Slot> findFreeSlots(
+            Long daycareId,
+            Long daycareGroupId,
+            LocalDateTime from,
+            LocalDateTime to,
+            Duration minDuration
+    ) {
+        List<Slot> busy = new ArrayList<>(findOverlapping(daycareId, daycareGroupId, from, to));
+        busy.sort(Comparator.comparing(Slot::startTime));
+
+        List<Slot> free = new ArrayList<>();
+        LocalDateTime cursor = from;
+
+        for (Slot slot : busy) {
+            if (slot.startTime().isAfter(cursor)) {
+                addIfLongEnough(free, daycareGroupId, cursor, slot.startTime(), minDuration);
+            }
+            if (slot.endTime().isAfter(cursor)) {
+                cursor = slot.endTime();
+            }
+        }
+
+        if (to.isAfter(cursor)) {
+            addIfLongEnough(free, daycareGroupId, cursor, to, minDuration);
+        }
+
+        return free;
+    }
+
+    /**
+     * Tømmer indeksen for en barnehage, slik at den lastes på nytt ved neste oppslag.
+     */
+    public void invalidate(Long daycareId) {
+        daycares.remove(daycareId);
+    }
+
+    private void addIfLongEnough(
+            List<Slot> free,
+            Long daycareGroupId,
+            LocalDateTime start,
+            LocalDateTime end,
+            Duration minDuration
+    ) {
+        if (Duration.between(start, end).compareTo(minDuration) >= 0) {
+            free.add(new Slot(null, daycareGroupId, null, start, end));
+        }
+    }
+
+    private DaycareIntervals forDaycare(Long daycareId) {
+        return daycares.computeIfAbsent(daycareId, id -> {
+            DaycareIntervals intervals = new DaycareIntervals();
+            calendarEventRepository
+                    .findByDaycare_IdOrderByStartTimeAsc(id)
+                    .forEach(e -> intervals.put(toSlot(e)));
+            return intervals;
+        });
+    }
+
+    private static Slot toSlot(CalendarEvent event) {
+        return new Slot(
+                event.getId(),
+                event.getDaycareGroup() != null ? event.getDaycareGroup().getId() : null,
+                event.getTitle(),
+                event.getStartTime(),
+                effectiveEnd(event.getStartTime(), event.getEndTime())
+        );
+    }
+
+    private static LocalDateTime effectiveEnd(LocalDateTime start, LocalDateTime end) {
+        return end != null && end.isAfter(start) ? end : start.plus(DEFAULT_DURATION);
+    }
+
+    private static long toEpoch(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Intervalltrær for én barnehage, nøklet på gruppe-id (null = hele barnehagen).
+     */
+    private static final class DaycareIntervals {
+
+        private final Map<Long, IntervalTree<Slot>> byGroup = new HashMap<>();
+        private final Map<Long, Long> groupOfEvent = new HashMap<>();
+
+        synchronized void put(Slot slot) {
+            remove(slot.eventId());
+            byGroup.computeIfAbsent(slot.daycareGroupId(), g -> new IntervalTree<>())
+                    .put(slot.eventId(), toEpoch(slot.startTime()), toEpoch(slot.endTime()), slot);
+            groupOfEvent.put(slot.eventId(), slot.daycareGroupId());
+        }
+
+        synchronized void remove(Long eventId) {
+            if (!groupOfEvent.containsKey(eventId)) {
+                return;
+            }
+            Long groupId = groupOfEvent.remove(eventId);
+            IntervalTree<Slot> tree = byGroup.get(groupId);
+            if (tree != null) {
+                tree.remove(eventId);
+            }
+        }
+
+        synchronized List<Slot> overlapping(Long daycareGroupId, long start, long end) {
+            Collection<IntervalTree<Slot>> trees;
+            if (daycareGroupId == null) {
+                trees = byGroup.values();
+            } else {
+                trees = new ArrayList<>(2);
+                addIfPresent(trees, byGroup.get(daycareGroupId));
+                addIfPresent(trees, byGroup.get(null));
+            }
+
+            List<Slot> result = new ArrayList<>();
+            for (IntervalTree<Slot> tree : trees) {
+                tree.overlapping(start, end).forEach(i -> result.add(i.value()));
+            }
+            return result;
+        }
+
+        private static void addIfPresent(
+                Collection<IntervalTree<Slot>> trees,
+                IntervalTree<Slot> tree
+        ) {
+            if (tree != null) {
+                trees.add(tree);
+            }
+        }
+    }
+}
@@ -7,7 +7,9 @@ import no.trygginn.backend.repository.DaycareGroupRepository;
 import no.trygginn.backend.repository.DaycareRepository;
 import no.trygginn.backend.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -22,10 +24,14 @@ public class CalendarEventService {
     private final DaycareRepository daycareRepository;
     private final DaycareGroupRepository daycareGroupRepository;
     private final UserRepository userRepository;
+    private final CalendarEventIndex calendarEventIndex;
+    private final RequestCoalescer requestCoalescer;
+    private final DomainEvents domainEvents;
 
     /**
      * Oppretter en ny kalenderhendelse.
      */
+    @Transactional
     public CalendarEvent createEvent(
             Long daycareId,
             Long daycareGroupId,
@@ -64,12 +70,19 @@ public class CalendarEventService {
         event.setEndTime(endTime);
         event.setCreatedByUser(user);
 
-        return calendarEventRepository.save(event);
+        CalendarEvent saved = calendarEventRepository.save(event);
+        AfterCommit.run(() -> calendarEventIndex.upsert(saved));
+        invalidateDaycareCalendar(saved);
+        publish(DomainEvent.Type.CALENDAR_EVENT_CREATED, saved, user);
+
+        return saved;
     }
 
     /**
      * Oppdaterer en eksisterende kalenderhendelse.
+     * expectedVersion er versjonen klienten leste (If-Match), eller null.
      */
+    @Transactional
     public CalendarEvent updateEvent(
             Long eventId,
             String title,
@@ -77,7 +90,8 @@ public class CalendarEventService {
             String location,
             LocalDateTime startTime,
             LocalDateTime endTime,
-            Long updatedByUserId
+            Long updatedByUserId,
+            Long expectedVersion
     ) {
 
         User user = userRepository.findById(updatedByUserId)
@@ -90,6 +104,7 @@ public class CalendarEventService {
 
         CalendarEvent event = calendarEventRepository.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Calendar event not found"));
+        ResourceVersions.checkVersion(expectedVersion, event.getVersion());
 
         event.setTitle(title);
         event.setDescription(description);
@@ -97,12 +112,19 @@ public class CalendarEventService {
         event.setStartTime(startTime);
         event.setEndTime(endTime);
 
-        return calendarEventRepository.save(event);
+        // Flush nå, så ny versjon (og eventuell konflikt) er kjent før svaret lages
+        CalendarEvent saved = calendarEventRepository.saveAndFlush(event);
+        AfterCommit.run(() -> calendarEventIndex.upsert(saved));
+        invalidateDaycareCalendar(saved);
+        publish(DomainEvent.Type.CALENDAR_EVENT_UPDATED, saved, user);
+
+        return saved;
     }
 
     /**
      * Sletter en kalenderhendelse.
      */
+    @Transactional
     public void deleteEvent(Long eventId, Long deletedByUserId) {
 
         User user = userRepository.findById(deletedByUserId)
@@ -117,6 +139,73 @@ public class CalendarEventService {
                 .orElseThrow(() -> new RuntimeException("Calendar event not found"));
 
         calendarEventRepository.delete(event);
+        Long daycareId = event.getDaycare().getId();
+        AfterCommit.run(() -> calendarEventIndex.remove(daycareId, eventId));
+        invalidateDaycareCalendar(event);
+        publish(DomainEvent.Type.CALENDAR_EVENT_DELETED, event, user);
+    }
+
+    private void invalidateDaycareCalendar(CalendarEvent event) {
+        Long daycareId = event.getDaycare().getId();
+        AfterCommit.run(() -> requestCoalescer.invalidate(RequestCoalescer.DAYCARE_CALENDAR, daycareId));
+    }
+
+    private void publish(DomainEvent.Type type, CalendarEvent event, User user) {
+        domainEvents.publish(
+                type,
+                null,
+                event.getDaycare().getId(),
+                DomainEvents.data(
+                        "calendarEventId", event.getId(),
+                        "daycareGroupId", event.getDaycareGroup() != null ? event.getDaycareGroup().getId() : null,
+                        "title", event.getTitle(),
+                        "startTime", event.getStartTime(),
+                        "endTime", event.getEndTime(),
+                        "userId", user.getId()));
+    }
+
+    /**
+     * Henter andre hendelser som overlapper tidsrommet til en hendelse.
+     * Brukes som konfliktvarsel ved opprettelse og endring.
+     */
+    public List<CalendarEventIndex.Slot> findConflicts(CalendarEvent event) {
+        return calendarEventIndex.findOverlapping(
+                        event.getDaycare().getId(),
+                        event.getDaycareGroup() != null ? event.getDaycareGroup().getId() : null,
+                        event.getStartTime(),
+                        event.getEndTime()
+                )
+                .stream()
+                .filter(slot -> !slot.eventId().equals(event.getId()))
+                .toList();
+    }
+
+    /**
+     * Finner ledige tidsrom for en gruppe (eller hele barnehagen) i en periode.
+     */
+    public List<CalendarEventIndex.Slot> findFreeSlots(
+            Long daycareId,
+            Long daycareGroupId,
+            LocalDateTime from,
+            LocalDateTime to,
+            int minDurationMinutes
+    ) {
+
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new IllegalArgumentException("Til-tidspunkt må være etter fra-tidspunkt.");
+        }
+
+        if (minDurationMinutes <= 0) {
+            throw new IllegalArgumentException("Varighet må være større enn 0.");
+        }
+
+        return calendarEventIndex.findFreeSlots(
+                daycareId,
+                daycareGroupId,
+                from,
+                to,
+                Duration.ofMinutes(minDurationMinutes)
+        );
     }
 
     /**
@@ -132,22 +221,17 @@ public class CalendarEventService {
      */
     public List<CalendarEvent> getEventsForGuardian(Long guardianId) {
 
+        List<CalendarEvent> events = calendarEventRepository.findRelevantForGuardian(guardianId);
+        if (!events.isEmpty()) {
+            return events;
+        }
+
+        // Feilmeldinger som før, men sjekkes bare når det ikke finnes hendelser
         User guardian = userRepository.findById(guardianId)
                 .orElseThrow(() -> new RuntimeException("Guardian not found"));
-
-        // Antar at foresatt er knyttet til én barnehage
-        Long daycareId = guardian.getDaycares().stream()
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Guardian not linked to daycare"))
-                .getId();
-
-        // Grupper barnet tilhører
-        List<DaycareGroup> groups = guardian.getChildren().stream()
-                .map(Child::getDaycareGroup)
-                .distinct()
-                .toList();
-
-        return calendarEventRepository
-                .findRelevantForGuardian(daycareId, groups);
+        if (guardian.getDaycares().isEmpty()) {
+            throw new RuntimeException("Guardian not linked to daycare");
+        }
+        return events;
     }
 }
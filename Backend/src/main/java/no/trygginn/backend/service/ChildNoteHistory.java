@@ -0,0 +1,260 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse;
+import no.trygginn.backend.controller.dto.ChildNoteRevisionPageResponse;
+import no.trygginn.backend.controller.dto.ChildNoteRevisionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Historikk for notater på barn (child_note_revision, V8__child_note_revision.sql).
+ * <p>
+ * Hver endring av children.note blir en ny revisjon. For å slippe en hel kopi per
+ * revisjon lagres vanligvis bare endringen fra forrige revisjon (TextDelta), og en
+ * hel kopi minst hver trygginn.notes.snapshot-interval revisjon, eller når endringen
+ * er så stor at en kopi er like billig. En revisjon bygges dermed av nærmeste hele
+ * kopi og høyst snapshot-interval - 1 endringer, i én spørring, uansett hvor lang
+ * historikken er.
+ * <p>
+ * Fantes det et notat før historikken startet, lagres det som revisjon 1.
+ */
+@Component
+public class ChildNoteHistory {
+
+    private static final String INSERT = """
+            INSERT INTO child_note_revision
+                (child_id, revision, kind, content, keep_prefix, keep_suffix, note_length, edited_by_user_id, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * En endring av notatet til ett barn.
+     */
+    public record Change(Long childId, String previousNote, String note) {}
+
+    private record Head(int revision, int lastFull) {}
+
+    private record Row(int revision, String kind, String content, Integer keepPrefix, Integer keepSuffix,
+                       Long editedByUserId, String editedByName, LocalDateTime createdAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int snapshotInterval;
+
+    public ChildNoteHistory(
+            JdbcTemplate jdbcTemplate,
+            @Value("${trygginn.notes.snapshot-interval:16}") int snapshotInterval
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+    }
+
+    /**
+     * Lagrer en revisjon per barn der notatet faktisk er endret: én spørring for
+     * siste revisjon per barn og én batch med nye rader. Kalles i samme transaksjon
+     * som endringen av children.note.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(List<Change> changes, Long editedByUserId) {
+        List<Change> changed = changes.stream()
+                .filter(change -> !text(change.previousNote()).equals(text(change.note())))
+                .toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Head> heads = loadHeads(changed);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Change change : changed) {
+            String previous = text(change.previousNote());
+            String note = text(change.note());
+            Head head = heads.get(change.childId());
+
+            if (head == null) {
+                int revision = 1;
+                if (!previous.isEmpty()) {
+                    rows.add(full(change.childId(), revision++, previous, null, now));
+                }
+                rows.add(full(change.childId(), revision, note, editedByUserId, now));
+                continue;
+            }
+
+            int revision = head.revision() + 1;
+            TextDelta.Delta delta = TextDelta.between(previous, note);
+            boolean chainFull = revision - head.lastFull() >= snapshotInterval;
+            if (chainFull || delta.content().length() * 2 >= note.length()) {
+                rows.add(full(change.childId(), revision, note, editedByUserId, now));
+            } else {
+                rows.add(new Object[] {
+                        change.childId(), revision, "DELTA", delta.content(), delta.keepPrefix(),
+                        delta.keepSuffix(), note.length(), editedByUserId, now
+                });
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    /**
+     * Én side av historikken, nyeste først, uten teksten.
+     */
+    @Transactional(readOnly = true)
+    public ChildNoteRevisionPageResponse revisions(Long childId, Integer before, Integer limit) {
+        int pageSize = limit == null ? 50 : Math.max(1, Math.min(limit, 500));
+
+        List<ChildNoteRevisionPageResponse.Entry> entries = jdbcTemplate.query("""
+                        SELECT r.revision, r.note_length, r.edited_by_user_id, u.full_name, r.created_at
+                        FROM child_note_revision r
+                        LEFT JOIN users u ON u.id = r.edited_by_user_id
+                        WHERE r.child_id = ? AND r.revision < ?
+                        ORDER BY r.revision DESC
+                        LIMIT ?
+                        """,
+                (rs, n) -> new ChildNoteRevisionPageResponse.Entry(
+                        rs.getInt(1),
+                        rs.getInt(2),
+                        rs.getObject(3, Long.class),
+                        rs.getString(4),
+                        rs.getTimestamp(5).toLocalDateTime()),
+                childId, before != null ? before : Integer.MAX_VALUE, pageSize + 1);
+
+        if (entries.size() <= pageSize) {
+            return new ChildNoteRevisionPageResponse(childId, entries, null);
+        }
+        List<ChildNoteRevisionPageResponse.Entry> page = entries.subList(0, pageSize);
+        return new ChildNoteRevisionPageResponse(childId, List.copyOf(page), page.getLast().revision());
+    }
+
+    /**
+     * Notatet slik det var i en gitt revisjon.
+     */
+    @Transactional(readOnly = true)
+    public ChildNoteRevisionResponse revision(Long childId, int revision) {
+        Map<Integer, Row> rows = loadChains(childId, revision);
+        Row row = rows.get(revision);
+
+        String note = rebuild(rows, revision);
+        return new ChildNoteRevisionResponse(
+                childId,
+                revision,
+                note.isEmpty() ? null : note,
+                row.editedByUserId(),
+                row.editedByName(),
+                row.createdAt());
+    }
+
+    /**
+     * Forskjellen mellom to revisjoner. Bare de to kjedene som trengs lastes,
+     * ikke revisjonene i mellom.
+     */
+    @Transactional(readOnly = true)
+    public ChildNoteDiffResponse diff(Long childId, int from, int to) {
+        Map<Integer, Row> rows = loadChains(childId, from, to);
+        return new ChildNoteDiffResponse(
+                childId, from, to, TextDelta.diff(rebuild(rows, from), rebuild(rows, to)));
+    }
+
+    private Map<Long, Head> loadHeads(List<Change> changes) {
+        Long[] childIds = changes.stream().map(Change::childId).distinct().toArray(Long[]::new);
+
+        Map<Long, Head> heads = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT child_id, max(revision), max(revision) FILTER (WHERE kind = 'FULL')
+                        FROM child_note_revision
+                        WHERE child_id = ANY(?)
+                        GROUP BY child_id
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", childIds)),
+                rs -> {
+                    heads.put(rs.getLong(1), new Head(rs.getInt(2), rs.getInt(3)));
+                });
+        return heads;
+    }
+
+    /**
+     * Radene fra nærmeste hele kopi frem til hver av revisjonene, i én spørring.
+     */
+    private Map<Integer, Row> loadChains(Long childId, Integer... targets) {
+        for (int target : targets) {
+            if (target < 1) {
+                throw new IllegalArgumentException("Revisjon må være 1 eller høyere.");
+            }
+        }
+
+        Map<Integer, Row> rows = new HashMap<>();
+        jdbcTemplate.query("""
+                        WITH chain AS (
+                            SELECT t.target,
+                                   (SELECT max(f.revision)
+                                    FROM child_note_revision f
+                                    WHERE f.child_id = ? AND f.kind = 'FULL' AND f.revision <= t.target) AS base
+                            FROM unnest(?) AS t(target)
+                        )
+                        SELECT DISTINCT r.revision, r.kind, r.content, r.keep_prefix, r.keep_suffix,
+                               r.edited_by_user_id, u.full_name, r.created_at
+                        FROM chain c
+                        JOIN child_note_revision r
+                          ON r.child_id = ? AND r.revision BETWEEN c.base AND c.target
+                        LEFT JOIN users u ON u.id = r.edited_by_user_id
+                        """,
+                ps -> {
+                    ps.setLong(1, childId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", targets));
+                    ps.setLong(3, childId);
+                },
+                rs -> {
+                    rows.put(rs.getInt(1), new Row(
+                            rs.getInt(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getObject(4, Integer.class),
+                            rs.getObject(5, Integer.class),
+                            rs.getObject(6, Long.class),
+                            rs.getString(7),
+                            rs.getTimestamp(8).toLocalDateTime()));
+                });
+
+        for (int target : targets) {
+            if (!rows.containsKey(target)) {
+                throw new IllegalArgumentException("Finner ikke revisjon " + target + " av notatet.");
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Går bakover til nærmeste hele kopi og legger på endringene fremover.
+     */
+    private static String rebuild(Map<Integer, Row> rows, int revision) {
+        int base = revision;
+        while (!"FULL".equals(rows.get(base).kind())) {
+            base--;
+        }
+
+        String text = rows.get(base).content();
+        for (int r = base + 1; r <= revision; r++) {
+            Row row = rows.get(r);
+            text = TextDelta.apply(text, row.keepPrefix(), row.keepSuffix(), row.content());
+        }
+        return text;
+    }
+
+    private static Object[] full(Long childId, int revision, String note, Long editedByUserId, Timestamp now) {
+        return new Object[] {childId, revision, "FULL", note, null, null, note.length(), editedByUserId, now};
+    }
+
+    private static String text(String note) {
+        return Objects.requireNonNullElse(note, "");
+    }
+}
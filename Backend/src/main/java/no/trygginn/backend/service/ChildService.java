@@ -23,15 +23,33 @@ public class ChildService {
     private final ChildRepository childRepository;
     private final UserRepository userRepository;
     private final DaycareGroupRepository daycareGroupRepository;
+    private final PeopleSearchService peopleSearchService;
+    private final KitchenService kitchenService;
+    private final AttendanceProjectionService projectionService;
+    private final RequestCoalescer requestCoalescer;
+    private final ResourceVersions resourceVersions;
+    private final ChildNoteHistory noteHistory;
 
     public ChildService(
             ChildRepository childRepository,
             UserRepository userRepository,
-            DaycareGroupRepository daycareGroupRepository
+            DaycareGroupRepository daycareGroupRepository,
+            PeopleSearchService peopleSearchService,
+            KitchenService kitchenService,
+            AttendanceProjectionService projectionService,
+            RequestCoalescer requestCoalescer,
+            ResourceVersions resourceVersions,
+            ChildNoteHistory noteHistory
     ) {
         this.childRepository = childRepository;
         this.userRepository = userRepository;
         this.daycareGroupRepository = daycareGroupRepository;
+        this.peopleSearchService = peopleSearchService;
+        this.kitchenService = kitchenService;
+        this.projectionService = projectionService;
+        this.requestCoalescer = requestCoalescer;
+        this.resourceVersions = resourceVersions;
+        this.noteHistory = noteHistory;
     }
 
     /**
@@ -82,6 +100,16 @@ public class ChildService {
         Child saved = childRepository.save(child);
         userRepository.save(guardian);
 
+        peopleSearchService.childChanged(saved);
+        kitchenService.childChanged(saved);
+        projectionService.childChanged(saved);
+
+        // Gruppelisten for barnehagen viser barna i hver gruppe
+        Long daycareId = daycare.getId();
+        AfterCommit.run(() -> requestCoalescer.invalidate(RequestCoalescer.DAYCARE_GROUPS, daycareId));
+        resourceVersions.daycareGroupsChanged(daycareId);
+        resourceVersions.guardianChildrenChanged(guardian.getId());
+
         return saved;
     }
 
@@ -104,31 +132,85 @@ public class ChildService {
     }
 
     /**
-     * Oppdaterer helse- og tilleggsinformasjon for barn.
+     * Oppdaterer helse- og tilleggsinformasjon for barn (alle feltene erstattes).
+     * expectedVersion er versjonen klienten leste (If-Match), eller null.
      */
     @Transactional
     public Child updateChildDetails(
             Long childId,
             String allergies,
             String medications,
-            String favoriteFood
+            String favoriteFood,
+            Long expectedVersion
     ) {
         Child child = getChildById(childId);
+        ResourceVersions.checkVersion(expectedVersion, child.getVersion());
 
         child.setAllergies(allergies);
         child.setMedications(medications);
         child.setFavoriteFood(favoriteFood);
 
-        return childRepository.save(child);
+        return saveDetails(child);
+    }
+
+    /**
+     * Delvis oppdatering av helse- og tilleggsinformasjon: null lar feltet stå,
+     * tom tekst fjerner det. Bare endrede kolonner skrives (@DynamicUpdate).
+     */
+    @Transactional
+    public Child patchChildDetails(
+            Long childId,
+            String allergies,
+            String medications,
+            String favoriteFood,
+            Long expectedVersion
+    ) {
+        Child child = getChildById(childId);
+        ResourceVersions.checkVersion(expectedVersion, child.getVersion());
+
+        if (allergies != null) {
+            child.setAllergies(blankToNull(allergies));
+        }
+        if (medications != null) {
+            child.setMedications(blankToNull(medications));
+        }
+        if (favoriteFood != null) {
+            child.setFavoriteFood(blankToNull(favoriteFood));
+        }
+
+        return saveDetails(child);
+    }
+
+    private Child saveDetails(Child child) {
+        // Flush nå, så ny versjon (og eventuell konflikt) er kjent før svaret lages
+        Child saved = childRepository.saveAndFlush(child);
+        peopleSearchService.childChanged(saved);
+        kitchenService.childChanged(saved);
+        resourceVersions.childChanged(saved.getId());
+
+        return saved;
     }
 
     /**
-     * Oppdaterer internt notat for et barn.
+     * Oppdaterer internt notat for et barn, og lagrer endringen i historikken.
+     * expectedVersion er versjonen klienten leste (If-Match), eller null.
      */
     @Transactional
-    public Child updateChildNote(Long childId, String note) {
+    public Child updateChildNote(Long childId, String note, Long expectedVersion) {
         Child child = getChildById(childId);
+        ResourceVersions.checkVersion(expectedVersion, child.getVersion());
+        String previousNote = child.getNote();
         child.setNote(note);
-        return childRepository.save(child);
+        Child saved = childRepository.saveAndFlush(child);
+        noteHistory.record(
+                List.of(new ChildNoteHistory.Change(childId, previousNote, note)),
+                AuditLog.userFromRequest());
+        resourceVersions.childChanged(childId);
+        return saved;
+    }
+
+    private static String blankToNull(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
     }
 }
@@ -0,0 +1,122 @@
+package no.trygginn.backend.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enkel strømmende CSV-leser (RFC 4180) som leser én post om gangen.
+ * Støtter felter i anførselstegn med komma, linjeskift og doble anførselstegn.
+ * Skilletegn oppdages fra overskriftslinjen (komma eller semikolon).
+ */
+final class CsvReader {
+
+    private final Reader reader;
+    private char delimiter = ',';
+    private boolean delimiterDetected = false;
+    private int peeked = -2;
+    private long line = 1;
+    private long recordLine = 0;
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Den fysiske linjen (1-basert, inkludert overskrift) der sist leste post starter.
+     * Felter i anførselstegn kan gå over flere linjer, så dette er ikke det samme
+     * som postens nummer.
+     */
+    long lineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Leser neste post, eller null ved slutten av strømmen.
+     * Tomme linjer hoppes over.
+     */
+    List<String> next() throws IOException {
+        while (true) {
+            recordLine = line;
+            List<String> record = readRecord();
+            if (record == null) {
+                return null;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            return record;
+        }
+    }
+
+    private List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (c != -1) {
+            char ch = (char) c;
+
+            if (quoted) {
+                if (ch == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (ch == '\r') {
+                // Ignorerer CR i CRLF
+            } else if (ch == '\n') {
+                break;
+            } else if (!delimiterDetected && (ch == ',' || ch == ';')) {
+                delimiter = ch;
+                delimiterDetected = true;
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (delimiterDetected && ch == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+
+            c = read();
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (peeked != -2) {
+            c = peeked;
+            peeked = -2;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
@@ -0,0 +1,37 @@
+package no.trygginn.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * En domenehendelse slik den ligger i outboxen (domain_event_outbox).
+ * id er outbox-raden, og stiger i rekkefølgen hendelsene ble skrevet.
+ * data inneholder enkle verdier (id-er, datoer, koder) som tekst.
+ */
+public record DomainEvent(
+        long id,
+        Type type,
+        Long childId,
+        Long daycareId,
+        Map<String, String> data,
+        LocalDateTime createdAt
+) {
+
+    public enum Type {
+        ATTENDANCE_REGISTERED,
+        ABSENCE_REGISTERED,
+        VACATION_REGISTERED,
+        CALENDAR_EVENT_CREATED,
+        CALENDAR_EVENT_UPDATED,
+        CALENDAR_EVENT_DELETED
+    }
+
+    /**
+     * Registrert med et tidspunkt fra før den ble lagret (opplasting fra et nettbrett
+     * som var offline). eventTime er da ikke nå, og barnet kan ha nyere registreringer,
+     * så mottakere må bruke eventTime og ikke anta at hendelsen er siste status.
+     */
+    public boolean backdated() {
+        return Boolean.parseBoolean(data.get("backdated"));
+    }
+}
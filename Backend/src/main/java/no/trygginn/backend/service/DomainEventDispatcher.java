@@ -0,0 +1,280 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Leverer domenehendelser til DomainEventListener-bønnene.
+ * <p>
+ * Hendelser fra DomainEvents legges i en ringbuffer etter commit. Én tråd tømmer
+ * bufferen og kaller mottakerne med hele grupper (opptil trygginn.events.batch-size),
+ * så et morgenrush med mange innsjekker gir få kall og én UPDATE per gruppe
+ * for å merke hendelsene som publisert.
+ * <p>
+ * Outboxen er fasiten. Hendelser som aldri ble levert (krasj før levering, full
+ * buffer, mottaker som feilet) hentes opp igjen hvert trygginn.events.replay-interval-ms
+ * når de er eldre enn replay-after-ms. Gjenopprettingen låser radene med
+ * FOR UPDATE SKIP LOCKED, så flere instanser ikke leverer samme rad samtidig,
+ * og gir opp en rad etter max-attempts forsøk. Publiserte rader slettes etter
+ * retention-hours.
+ */
+@Component
+public class DomainEventDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventDispatcher.class);
+
+    static final String METRIC_NAME = "trygginn.events";
+
+    // Hvor lenge utsendertråden sover når den ikke blir vekket
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final TypeReference<Map<String, String>> DATA_TYPE = new TypeReference<>() {};
+
+    private final EventRingBuffer<DomainEvent> ring;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final ObjectProvider<DomainEventListener> listenerProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final long replayAfterMs;
+    private final int maxAttempts;
+    private final int retentionHours;
+
+    private final Thread consumer;
+    private final ScheduledExecutorService replayExecutor;
+
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+    private volatile List<DomainEventListener> listeners;
+
+    public DomainEventDispatcher(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            JsonMapper jsonMapper,
+            ObjectProvider<DomainEventListener> listenerProvider,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.events.ring-size:8192}") int ringSize,
+            @Value("${trygginn.events.batch-size:256}") int batchSize,
+            @Value("${trygginn.events.replay-interval-ms:30000}") long replayIntervalMs,
+            @Value("${trygginn.events.replay-after-ms:10000}") long replayAfterMs,
+            @Value("${trygginn.events.max-attempts:5}") int maxAttempts,
+            @Value("${trygginn.events.retention-hours:72}") int retentionHours
+    ) {
+        this.ring = new EventRingBuffer<>(ringSize);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonMapper = jsonMapper;
+        this.listenerProvider = listenerProvider;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.replayAfterMs = replayAfterMs;
+        this.maxAttempts = maxAttempts;
+        this.retentionHours = retentionHours;
+
+        Gauge.builder(METRIC_NAME + ".backlog", ring, buffer -> buffer.backlog())
+                .description("Hendelser i ringbufferen som ikke er levert")
+                .register(meterRegistry);
+
+        this.consumer = new Thread(this::consume, "domain-events");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+
+        this.replayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "domain-events-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.replayExecutor.scheduleWithFixedDelay(this::replay,
+                Math.min(replayIntervalMs, 5_000), replayIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Legger en committet hendelse i bufferen. Er den full, leveres hendelsen
+     * senere fra outboxen i stedet for å holde igjen forespørselen.
+     */
+    void offer(DomainEvent event) {
+        if (!ring.offer(event)) {
+            count("dropped", 1);
+            return;
+        }
+        if (waiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        List<DomainEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            batch.clear();
+            if (ring.drainTo(batch, batchSize) == 0) {
+                waiting = true;
+                if (ring.backlog() == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+                continue;
+            }
+
+            try {
+                List<DomainEvent> events = List.copyOf(batch);
+                if (deliver(events)) {
+                    markPublished(events);
+                    count("published", events.size());
+                } else {
+                    count("failed", events.size());
+                }
+            } catch (RuntimeException e) {
+                // Hendelsene ligger fortsatt upublisert i outboxen og hentes opp igjen
+                log.warn("Kunne ikke merke {} domenehendelser som publisert", batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Leverer hendelser som ikke er publisert. Kjøres jevnlig, første gang rett etter oppstart.
+     */
+    void replay() {
+        // Det som ligger i bufferen er ikke tapt, bare ikke levert ennå
+        if (ring.backlog() > 0) {
+            return;
+        }
+
+        try {
+            boolean more = true;
+            while (more && running) {
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> replayBatch()));
+            }
+            jdbcTemplate.update(
+                    "DELETE FROM domain_event_outbox WHERE published_at < NOW() - make_interval(hours => ?)",
+                    retentionHours);
+        } catch (RuntimeException e) {
+            log.warn("Gjenoppretting av domenehendelser fra outboxen feilet", e);
+        }
+    }
+
+    /**
+     * Leverer én gruppe fra outboxen. true når det kan finnes flere.
+     */
+    private boolean replayBatch() {
+        List<DomainEvent> events = jdbcTemplate.query("""
+                        SELECT id, type, child_id, daycare_id, payload::text, created_at
+                        FROM domain_event_outbox
+                        WHERE published_at IS NULL
+                          AND attempts < ?
+                          AND created_at < NOW() - make_interval(secs => ?)
+                        ORDER BY id
+                        LIMIT ?
+                        FOR UPDATE SKIP LOCKED
+                        """,
+                this::mapRow, maxAttempts, replayAfterMs / 1000.0, batchSize);
+
+        if (events.isEmpty()) {
+            return false;
+        }
+
+        if (!deliver(events)) {
+            jdbcTemplate.update(
+                    "UPDATE domain_event_outbox SET attempts = attempts + 1 WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids(events))));
+            count("failed", events.size());
+            return false;
+        }
+
+        markPublished(events);
+        count("replayed", events.size());
+        return events.size() == batchSize;
+    }
+
+    private boolean deliver(List<DomainEvent> events) {
+        boolean delivered = true;
+        for (DomainEventListener listener : listeners()) {
+            try {
+                listener.onEvents(events);
+            } catch (RuntimeException e) {
+                delivered = false;
+                log.warn("{} feilet for {} domenehendelser (fra id {})",
+                        listener.getClass().getSimpleName(), events.size(), events.get(0).id(), e);
+            }
+        }
+        return delivered;
+    }
+
+    private void markPublished(List<DomainEvent> events) {
+        jdbcTemplate.update(
+                "UPDATE domain_event_outbox SET published_at = NOW() WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids(events))));
+    }
+
+    private List<DomainEventListener> listeners() {
+        // Hentes først ved levering, så mottakere kan avhenge av tjenester som publiserer
+        List<DomainEventListener> resolved = listeners;
+        if (resolved == null) {
+            resolved = listenerProvider.orderedStream().toList();
+            listeners = resolved;
+        }
+        return resolved;
+    }
+
+    private DomainEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        long childId = rs.getLong("child_id");
+        Long child = rs.wasNull() ? null : childId;
+        long daycareId = rs.getLong("daycare_id");
+        Long daycare = rs.wasNull() ? null : daycareId;
+
+        return new DomainEvent(
+                rs.getLong("id"),
+                DomainEvent.Type.valueOf(rs.getString("type")),
+                child,
+                daycare,
+                jsonMapper.readValue(rs.getString("payload"), DATA_TYPE),
+                rs.getTimestamp("created_at").toLocalDateTime());
+    }
+
+    private static Long[] ids(List<DomainEvent> events) {
+        Long[] ids = new Long[events.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = events.get(i).id();
+        }
+        return ids;
+    }
+
+    private void count(String outcome, int amount) {
+        meterRegistry.counter(METRIC_NAME, "outcome", outcome).increment(amount);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Det som ikke er levert, ligger i outboxen til neste oppstart
+        running = false;
+        LockSupport.unpark(consumer);
+        replayExecutor.shutdownNow();
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package no.trygginn.backend.service;
+
+import java.util.List;
+
+/**
+ * Mottaker av domenehendelser. Alle bønner som implementerer grensesnittet
+ * får hendelsene i grupper, i outbox-rekkefølge, etter at transaksjonen er committet.
+ * <p>
+ * Levering er minst én gang: feiler en mottaker, leveres gruppen på nytt
+ * (til alle mottakerne) fra outboxen senere. Mottakere må derfor tåle duplikater,
+ * og kan kalles fra både utsendertråden og gjenopprettingstråden.
+ */
+public interface DomainEventListener {
+
+    void onEvents(List<DomainEvent> events);
+}
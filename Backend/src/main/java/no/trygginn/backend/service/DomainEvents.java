@@ -0,0 +1,130 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.DaycareGroup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publisering av domenehendelser via outboxen (V4__domain_event_outbox.sql).
+ * Hendelsen skrives til domain_event_outbox i samme transaksjon som endringen,
+ * så den finnes hvis og bare hvis endringen er committet. Etter commit sendes den
+ * til DomainEventDispatcher, som leverer den til alle DomainEventListener-bønner.
+ * <p>
+ * Tjenestene publiserer bare fakta om hva som skjedde; varsler, cacher og
+ * projeksjoner som vil reagere, gjør det som mottakere i stedet for å bygges
+ * inn i tjenestemetodene.
+ */
+@Component
+public class DomainEvents {
+
+    /**
+     * En hendelse som skal publiseres sammen med andre (publishAll).
+     */
+    public record Draft(DomainEvent.Type type, Long childId, Long daycareId, Map<String, String> data) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final DomainEventDispatcher dispatcher;
+
+    public DomainEvents(JdbcTemplate jdbcTemplate, JsonMapper jsonMapper, DomainEventDispatcher dispatcher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Skriver hendelsen til outboxen. Krever en pågående transaksjon,
+     * ellers kunne hendelsen og endringen komme ut av takt.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(DomainEvent.Type type, Long childId, Long daycareId, Map<String, String> data) {
+        DomainEvent event = jdbcTemplate.queryForObject("""
+                        INSERT INTO domain_event_outbox (type, child_id, daycare_id, payload)
+                        VALUES (?, ?, ?, ?::jsonb)
+                        RETURNING id, created_at
+                        """,
+                (rs, n) -> new DomainEvent(
+                        rs.getLong(1),
+                        type,
+                        childId,
+                        daycareId,
+                        data,
+                        rs.getTimestamp(2).toLocalDateTime()),
+                type.name(), childId, daycareId, jsonMapper.writeValueAsString(data));
+
+        AfterCommit.run(() -> dispatcher.offer(event));
+    }
+
+    /**
+     * Skriver mange hendelser til outboxen i én batch (f.eks. opplasting fra nettbrett).
+     * Id-ene reserveres fra sekvensen først, så rekkefølgen blir den samme som i listen.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(List<Draft> drafts) {
+        if (drafts.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence('domain_event_outbox', 'id')) FROM generate_series(1, ?)",
+                Long.class,
+                drafts.size());
+        LocalDateTime createdAt = LocalDateTime.now();
+
+        List<DomainEvent> events = new ArrayList<>(drafts.size());
+        List<Object[]> rows = new ArrayList<>(drafts.size());
+        for (int i = 0; i < drafts.size(); i++) {
+            Draft draft = drafts.get(i);
+            events.add(new DomainEvent(
+                    ids.get(i), draft.type(), draft.childId(), draft.daycareId(), draft.data(), createdAt));
+            rows.add(new Object[] {
+                    ids.get(i), draft.type().name(), draft.childId(), draft.daycareId(),
+                    jsonMapper.writeValueAsString(draft.data()), Timestamp.valueOf(createdAt)
+            });
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO domain_event_outbox (id, type, child_id, daycare_id, payload, created_at)
+                VALUES (?, ?, ?, ?, ?::jsonb, ?)
+                """, rows);
+
+        AfterCommit.run(() -> events.forEach(dispatcher::offer));
+    }
+
+    /**
+     * Barnehagen barnet hører til, eller null hvis barnet ikke er i en gruppe.
+     */
+    public static Long daycareOf(Child child) {
+        DaycareGroup group = child.getDaycareGroup();
+        return group != null && group.getDaycare() != null ? group.getDaycare().getId() : null;
+    }
+
+    /**
+     * Lager hendelsesdata fra par av nøkkel og verdi. Verdier som er null utelates.
+     */
+    public static Map<String, String> data(Object... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Hendelsesdata må være par av nøkkel og verdi.");
+        }
+
+        Map<String, String> data = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            Object value = keysAndValues[i + 1];
+            if (value != null) {
+                data.put(keysAndValues[i].toString(), value.toString());
+            }
+        }
+        return Collections.unmodifiableMap(data);
+    }
+}
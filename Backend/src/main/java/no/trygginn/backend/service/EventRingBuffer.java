@@ -0,0 +1,82 @@
+package no.trygginn.backend.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ringbuffer med mange skrivere og én leser (DomainEventDispatcher, AuditLog).
+ * Skriverne tar et sekvensnummer med CAS og merker plassen med nummeret når
+ * hendelsen er lagt inn; leseren tar med seg alle plasser som er klare i rekkefølge,
+ * uten låser og uten å allokere noe per hendelse utover selve listen.
+ * Er bufferen full, avvises hendelsen, og det er opp til skriveren hva som skjer da.
+ */
+final class EventRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    // Sekvensnummeret som sist ble lagt i hver plass (-1 = aldri brukt)
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimed = new AtomicLong();
+    // Neste sekvensnummer leseren skal ta; skrives bare av leseren
+    private volatile long consumed;
+
+    EventRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Størrelsen på ringbufferen må være en toerpotens: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Legger inn en hendelse. false når bufferen er full.
+     */
+    boolean offer(T event) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        slots.set(slot, event);
+        published.set(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Flytter opptil max klare hendelser over i batch, i rekkefølge. Bare for leseren.
+     */
+    int drainTo(List<T> batch, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            int slot = (int) (next & mask);
+            if (published.get(slot) != next) {
+                // Ikke tatt ennå, eller tatt men ikke ferdig skrevet
+                break;
+            }
+            batch.add(slots.getAndSet(slot, null));
+            next++;
+            count++;
+        }
+        consumed = next;
+        return count;
+    }
+
+    /**
+     * Antall hendelser som er tatt men ikke lest.
+     */
+    long backlog() {
+        return claimed.get() - consumed;
+    }
+}
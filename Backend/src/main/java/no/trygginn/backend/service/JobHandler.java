@@ -0,0 +1,26 @@
+package no.trygginn.backend.service;
+
+/**
+ * Utfører én type jobb fra jobbkøen (JobQueue). Alle bønner som implementerer
+ * grensesnittet registreres på type().
+ * <p>
+ * run kjøres i samme transaksjon som jobben merkes ferdig, så endringer i databasen
+ * skjer nøyaktig én gang. Kaster run, rulles alt tilbake og jobben prøves igjen
+ * senere; det som sendes ut av huset (f.eks. varsler) kan derfor komme mer enn én gang.
+ * <p>
+ * En jobb med schedule() (cron-uttrykk, se CronExpression) legges i køen av
+ * JobScheduler hver gang uttrykket slår til, én gang på tvers av alle instanser.
+ */
+public interface JobHandler {
+
+    String type();
+
+    /**
+     * Cron-uttrykk for faste jobber, eller null for jobber som bare legges i køen ved behov.
+     */
+    default String schedule() {
+        return null;
+    }
+
+    void run(String payload);
+}
@@ -0,0 +1,321 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Jobbkø i Postgres (background_job, V9__background_job.sql) for bakgrunnsarbeid
+ * som skal skje én gang selv med flere instanser av backend, uten egen meldingsmegler.
+ * <p>
+ * trygginn.jobs.workers tråder per instans tar opptil batch-size jobber om gangen med
+ * FOR UPDATE SKIP LOCKED, høyest prioritet og eldst run_at først. En tatt jobb er leid
+ * ut i lease-seconds; dør instansen, tas den av en annen når leien er ute. Jobben
+ * kjøres av JobHandler-bønnen for typen, i samme transaksjon som den merkes DONE.
+ * Feiler den, legges den tilbake med run_at forskjøvet backoff-seconds, doblet for
+ * hvert forsøk (maks én time), og blir FAILED etter max_attempts forsøk.
+ * <p>
+ * Arbeiderne ser etter jobber hvert poll-interval-ms, og vekkes med en gang når
+ * denne instansen legger noe i køen.
+ */
+@Component
+public class JobQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(JobQueue.class);
+
+    static final String METRIC_NAME = "trygginn.jobs";
+
+    private static final long MAX_BACKOFF_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    private record Claimed(long id, String type, String payload, int priority, int attempts, int maxAttempts) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final ObjectProvider<JobHandler> handlerProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final long pollIntervalNanos;
+    private final long leaseSeconds;
+    private final long backoffSeconds;
+    private final int defaultMaxAttempts;
+    private final String instance;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile Map<String, JobHandler> handlers;
+
+    public JobQueue(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            JsonMapper jsonMapper,
+            ObjectProvider<JobHandler> handlerProvider,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.jobs.workers:2}") int workers,
+            @Value("${trygginn.jobs.batch-size:10}") int batchSize,
+            @Value("${trygginn.jobs.poll-interval-ms:1000}") long pollIntervalMs,
+            @Value("${trygginn.jobs.lease-seconds:300}") long leaseSeconds,
+            @Value("${trygginn.jobs.backoff-seconds:30}") long backoffSeconds,
+            @Value("${trygginn.jobs.max-attempts:5}") int maxAttempts
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonMapper = jsonMapper;
+        this.handlerProvider = handlerProvider;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMs);
+        this.leaseSeconds = leaseSeconds;
+        this.backoffSeconds = backoffSeconds;
+        this.defaultMaxAttempts = maxAttempts;
+        this.instance = ManagementFactory.getRuntimeMXBean().getName();
+
+        for (int i = 1; i <= workers; i++) {
+            Thread worker = new Thread(this::work, "job-worker-" + i);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+        }
+    }
+
+    /**
+     * Arbeiderne starter først når alle JobHandler-bønnene finnes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Legger en jobb i køen til å kjøres med en gang.
+     */
+    public boolean enqueue(String type, Object payload) {
+        return enqueue(type, payload, 0, null, null);
+    }
+
+    /**
+     * Legger en jobb i køen. payload lagres som JSON og gis til JobHandler.run.
+     * Høyere priority kjøres først; runAt null betyr nå. Finnes det allerede en jobb
+     * med samme dedupeKey som venter eller kjører, legges ingen ny inn (false).
+     * Kalles det i en transaksjon, blir jobben synlig for arbeiderne først ved commit.
+     */
+    public boolean enqueue(String type, Object payload, int priority, LocalDateTime runAt, String dedupeKey) {
+        int inserted = jdbcTemplate.update("""
+                        INSERT INTO background_job (type, payload, priority, run_at, max_attempts, dedupe_key)
+                        VALUES (?, ?::jsonb, ?, COALESCE(?, NOW()), ?, ?)
+                        ON CONFLICT (dedupe_key) WHERE status IN ('QUEUED', 'RUNNING') DO NOTHING
+                        """,
+                type,
+                payload != null ? jsonMapper.writeValueAsString(payload) : "{}",
+                priority,
+                runAt != null ? Timestamp.valueOf(runAt) : null,
+                defaultMaxAttempts,
+                dedupeKey);
+
+        if (inserted == 0) {
+            count(type, "deduplicated");
+            return false;
+        }
+        count(type, "enqueued");
+        if (runAt == null || !runAt.isAfter(LocalDateTime.now())) {
+            AfterCommit.run(this::wakeUp);
+        }
+        return true;
+    }
+
+    private void wakeUp() {
+        workers.forEach(LockSupport::unpark);
+    }
+
+    private void work() {
+        String workerId = instance + "/" + Thread.currentThread().getName();
+        while (running) {
+            int claimed = 0;
+            try {
+                claimed = runBatch(workerId);
+            } catch (RuntimeException e) {
+                log.warn("Henting av jobber fra køen feilet", e);
+            }
+            // En full gruppe betyr at det kan ligge flere jobber klare
+            if (claimed < batchSize && running) {
+                LockSupport.parkNanos(this, pollIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * Tar og kjører én gruppe jobber. Returnerer antall jobber som ble tatt.
+     */
+    int runBatch(String workerId) {
+        List<Claimed> batch = claim(workerId);
+        for (int i = 0; i < batch.size(); i++) {
+            if (!running) {
+                release(batch.subList(i, batch.size()), workerId);
+                break;
+            }
+            execute(batch.get(i), workerId);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Legger tatte jobber som ikke ble kjørt tilbake i køen, uten å telle forsøket.
+     */
+    private void release(List<Claimed> jobs, String workerId) {
+        Long[] ids = jobs.stream().map(Claimed::id).toArray(Long[]::new);
+        jdbcTemplate.update("""
+                        UPDATE background_job
+                        SET status = 'QUEUED', attempts = attempts - 1, locked_by = NULL, locked_until = NULL
+                        WHERE id = ANY(?) AND status = 'RUNNING' AND locked_by = ?
+                        """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids));
+                    ps.setString(2, workerId);
+                });
+    }
+
+    private List<Claimed> claim(String workerId) {
+        List<Claimed> batch = new ArrayList<>(jdbcTemplate.query("""
+                        UPDATE background_job j
+                        SET status = 'RUNNING',
+                            attempts = j.attempts + 1,
+                            locked_by = ?,
+                            locked_until = NOW() + make_interval(secs => ?)
+                        FROM (
+                            SELECT id
+                            FROM background_job
+                            WHERE (status = 'QUEUED' AND run_at <= NOW())
+                               OR (status = 'RUNNING' AND locked_until < NOW())
+                            ORDER BY priority DESC, run_at, id
+                            LIMIT ?
+                            FOR UPDATE SKIP LOCKED
+                        ) next
+                        WHERE j.id = next.id
+                        RETURNING j.id, j.type, j.payload::text, j.priority, j.attempts, j.max_attempts
+                        """,
+                (rs, n) -> new Claimed(
+                        rs.getLong(1),
+                        rs.getString(2),
+                        rs.getString(3),
+                        rs.getInt(4),
+                        rs.getInt(5),
+                        rs.getInt(6)),
+                workerId, leaseSeconds, batchSize));
+
+        // RETURNING gir ingen fast rekkefølge
+        batch.sort(Comparator.comparingInt(Claimed::priority).reversed().thenComparingLong(Claimed::id));
+        return batch;
+    }
+
+    private void execute(Claimed job, String workerId) {
+        JobHandler handler = handlers().get(job.type());
+        if (handler == null) {
+            fail(job, workerId, "Ingen JobHandler for type " + job.type());
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                handler.run(job.payload());
+
+                // Har leien gått ut og en annen tatt jobben, rulles arbeidet tilbake
+                int done = jdbcTemplate.update("""
+                                UPDATE background_job
+                                SET status = 'DONE', finished_at = NOW(), locked_by = NULL, locked_until = NULL,
+                                    last_error = NULL
+                                WHERE id = ? AND status = 'RUNNING' AND locked_by = ? AND attempts = ?
+                                """,
+                        job.id(), workerId, job.attempts());
+                if (done == 0) {
+                    throw new IllegalStateException("Jobb " + job.id() + " er ikke lenger leid av " + workerId);
+                }
+            });
+            count(job.type(), "done");
+        } catch (RuntimeException e) {
+            log.warn("Jobb {} ({}) feilet i forsøk {} av {}", job.id(), job.type(), job.attempts(), job.maxAttempts(), e);
+            fail(job, workerId, e.toString());
+        }
+    }
+
+    /**
+     * Legger jobben tilbake i køen med lengre ventetid, eller gir opp etter max_attempts.
+     */
+    private void fail(Claimed job, String workerId, String error) {
+        boolean giveUp = job.attempts() >= job.maxAttempts();
+        long delaySeconds = Math.min(MAX_BACKOFF_SECONDS, backoffSeconds << Math.min(job.attempts() - 1, 16));
+
+        jdbcTemplate.update("""
+                        UPDATE background_job
+                        SET status = ?,
+                            run_at = CASE WHEN ? THEN run_at ELSE NOW() + make_interval(secs => ?) END,
+                            finished_at = CASE WHEN ? THEN NOW() END,
+                            locked_by = NULL,
+                            locked_until = NULL,
+                            last_error = left(?, 2000)
+                        WHERE id = ? AND status = 'RUNNING' AND locked_by = ? AND attempts = ?
+                        """,
+                giveUp ? "FAILED" : "QUEUED", giveUp, delaySeconds, giveUp, error, job.id(), workerId, job.attempts());
+        count(job.type(), giveUp ? "failed" : "retry");
+    }
+
+    private Map<String, JobHandler> handlers() {
+        Map<String, JobHandler> current = handlers;
+        if (current == null) {
+            current = new HashMap<>();
+            for (JobHandler handler : handlerProvider.orderedStream().toList()) {
+                if (current.putIfAbsent(handler.type(), handler) != null) {
+                    throw new IllegalStateException("To JobHandler-bønner for type " + handler.type());
+                }
+            }
+            handlers = current;
+        }
+        return current;
+    }
+
+    /**
+     * Alle JobHandler-bønnene (for JobScheduler).
+     */
+    List<JobHandler> handlerList() {
+        return List.copyOf(handlers().values());
+    }
+
+    private void count(String type, String outcome) {
+        meterRegistry.counter(METRIC_NAME, "type", type, "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Jobber som er tatt men ikke kjørt, tas av en annen instans når leien går ut
+        running = false;
+        wakeUp();
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package no.trygginn.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legger faste jobber (JobHandler med schedule()) i jobbkøen når cron-uttrykket slår til.
+ * <p>
+ * Hver instans sjekker hvert trygginn.jobs.scheduler-interval-ms, men bare den som får
+ * advisory-låsen (pg_try_advisory_xact_lock) gjør noe; de andre hopper over runden.
+ * Neste kjøretid per type ligger i background_schedule og oppdateres i samme transaksjon
+ * som jobben legges i køen, så hvert tidspunkt gir nøyaktig én jobb. Har alle
+ * instansene vært nede, kjøres en forsinket jobb én gang, ikke én per tapt tidspunkt.
+ * <p>
+ * Rydder også ferdige jobber eldre enn trygginn.jobs.retention-hours (jobben "jobs.prune").
+ */
+@Component
+public class JobScheduler implements JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(JobScheduler.class);
+
+    static final String LOCK_NAME = "trygginn.jobs.scheduler";
+
+    private record Schedule(String cron, LocalDateTime nextRunAt) {}
+
+    private final JobQueue jobQueue;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long intervalMs;
+    private final String pruneCron;
+    private final int retentionHours;
+
+    private final ScheduledExecutorService executor;
+
+    public JobScheduler(
+            JobQueue jobQueue,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${trygginn.jobs.scheduler-interval-ms:15000}") long intervalMs,
+            @Value("${trygginn.jobs.prune-cron:0 30 * * * *}") String pruneCron,
+            @Value("${trygginn.jobs.retention-hours:72}") int retentionHours
+    ) {
+        this.jobQueue = jobQueue;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.intervalMs = intervalMs;
+        this.pruneCron = pruneCron;
+        this.retentionHours = retentionHours;
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        executor.scheduleWithFixedDelay(this::tick, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Én runde: legger forfalte faste jobber i køen, hvis denne instansen får låsen.
+     */
+    void tick() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Boolean locked = jdbcTemplate.queryForObject(
+                        "SELECT pg_try_advisory_xact_lock(hashtext(?))", Boolean.class, LOCK_NAME);
+                if (Boolean.TRUE.equals(locked)) {
+                    enqueueDue(LocalDateTime.now());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Planlegging av faste jobber feilet", e);
+        }
+    }
+
+    private void enqueueDue(LocalDateTime now) {
+        Map<String, Schedule> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT type, cron, next_run_at FROM background_schedule",
+                rs -> {
+                    stored.put(rs.getString(1), new Schedule(rs.getString(2), rs.getTimestamp(3).toLocalDateTime()));
+                });
+
+        for (JobHandler handler : jobQueue.handlerList()) {
+            String expression = handler.schedule();
+            if (expression == null) {
+                continue;
+            }
+
+            CronExpression cron;
+            try {
+                cron = CronExpression.parse(expression);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ugyldig cron-uttrykk '{}' for jobb {}", expression, handler.type());
+                continue;
+            }
+
+            Schedule schedule = stored.get(handler.type());
+            if (schedule == null || !schedule.cron().equals(expression)) {
+                // Ny eller endret plan: første kjøring er neste gang uttrykket slår til
+                jdbcTemplate.update("""
+                                INSERT INTO background_schedule (type, cron, next_run_at)
+                                VALUES (?, ?, ?)
+                                ON CONFLICT (type) DO UPDATE SET cron = EXCLUDED.cron, next_run_at = EXCLUDED.next_run_at
+                                """,
+                        handler.type(), expression, Timestamp.valueOf(cron.next(now)));
+                continue;
+            }
+
+            if (schedule.nextRunAt().isAfter(now)) {
+                continue;
+            }
+            jobQueue.enqueue(handler.type(), null, 0, null, handler.type() + "@" + schedule.nextRunAt());
+            jdbcTemplate.update(
+                    "UPDATE background_schedule SET next_run_at = ?, last_run_at = ? WHERE type = ?",
+                    Timestamp.valueOf(cron.next(now)), Timestamp.valueOf(schedule.nextRunAt()), handler.type());
+        }
+    }
+
+    @Override
+    public String type() {
+        return "jobs.prune";
+    }
+
+    @Override
+    public String schedule() {
+        return pruneCron;
+    }
+
+    /**
+     * Sletter ferdige og oppgitte jobber eldre enn retention-hours.
+     */
+    @Override
+    public void run(String payload) {
+        int deleted = jdbcTemplate.update("""
+                DELETE FROM background_job
+                WHERE status IN ('DONE', 'FAILED') AND finished_at < NOW() - make_interval(hours => ?)
+                """, retentionHours);
+        if (deleted > 0) {
+            log.info("Ryddet {} ferdige jobber eldre enn {} timer", deleted, retentionHours);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
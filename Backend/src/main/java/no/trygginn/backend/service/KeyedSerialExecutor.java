@@ -0,0 +1,82 @@
+package no.trygginn.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Kjører oppgaver i rekkefølge per nøkkel, og nøkler uavhengig av hverandre.
+ * Hver nøkkel med ventende oppgaver har én kø som tømmes av én oppgave på
+ * den underliggende executoren; er køen tom, forsvinner den. Et rush i én
+ * gruppe holder dermed bare igjen sin egen kø.
+ */
+public final class KeyedSerialExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    private final Executor executor;
+    private final int maxQueuedPerKey;
+
+    private final Map<Object, ArrayDeque<Runnable>> queues = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor, int maxQueuedPerKey) {
+        this.executor = executor;
+        this.maxQueuedPerKey = maxQueuedPerKey;
+    }
+
+    /**
+     * Legger oppgaven bakerst i køen for nøkkelen. false når køen er full.
+     */
+    public boolean execute(Object key, Runnable task) {
+        boolean[] start = new boolean[1];
+        boolean[] accepted = new boolean[1];
+
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                start[0] = true;
+            }
+            if (queue.size() < maxQueuedPerKey) {
+                queue.add(task);
+                accepted[0] = true;
+            }
+            return queue;
+        });
+
+        if (start[0]) {
+            executor.execute(() -> drain(key));
+        }
+        return accepted[0];
+    }
+
+    /**
+     * Antall nøkler med ventende eller kjørende oppgaver.
+     */
+    public int activeKeys() {
+        return queues.size();
+    }
+
+    private void drain(Object key) {
+        while (true) {
+            Runnable[] next = new Runnable[1];
+            // Køen fjernes i samme operasjon som den blir funnet tom, så execute starter en ny
+            queues.computeIfPresent(key, (k, queue) -> {
+                next[0] = queue.poll();
+                return next[0] != null ? queue : null;
+            });
+            if (next[0] == null) {
+                return;
+            }
+
+            try {
+                next[0].run();
+            } catch (RuntimeException e) {
+                log.warn("Oppgave for {} feilet", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.KitchenChildRow;
+import no.trygginn.backend.controller.dto.KitchenMatrixResponse;
+import no.trygginn.backend.model.AttendanceEventType;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.DaycareGroup;
+import no.trygginn.backend.repository.AbsenceRepository;
+import no.trygginn.backend.repository.AttendanceRepository;
+import no.trygginn.backend.repository.ChildEventRow;
+import no.trygginn.backend.repository.ChildRepository;
+import no.trygginn.backend.repository.DaycareGroupRepository;
+import no.trygginn.backend.repository.VacationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for kjøkkenets daglige allergen- og kostoversikt.
+ * Normaliserte allergener holdes i en minnebasert indeks per gruppe,
+ * og kombineres med dagens oppmøte, fravær og ferie ved oppslag.
+ */
+@Service
+public class KitchenService {
+
+    /**
+     * Status for et barn på en gitt dag, sett fra kjøkkenet.
+     */
+    public enum KitchenStatus {
+        PRESENT,
+        CHECKED_OUT,
+        EXPECTED,
+        ABSENT,
+        VACATION
+    }
+
+    private record ChildDiet(
+            Long childId,
+            String childName,
+            String allergies,
+            String favoriteFood,
+            Set<String> allergens
+    ) {}
+
+    private final ChildRepository childRepository;
+    private final DaycareGroupRepository daycareGroupRepository;
+    private final AttendanceRepository attendanceRepository;
+    private final AbsenceRepository absenceRepository;
+    private final VacationRepository vacationRepository;
+
+    // Gruppe-id -> (barn-id -> kostinformasjon)
+    private final Map<Long, Map<Long, ChildDiet>> dietsByGroup = new ConcurrentHashMap<>();
+
+    public KitchenService(
+            ChildRepository childRepository,
+            DaycareGroupRepository daycareGroupRepository,
+            AttendanceRepository attendanceRepository,
+            AbsenceRepository absenceRepository,
+            VacationRepository vacationRepository
+    ) {
+        this.childRepository = childRepository;
+        this.daycareGroupRepository = daycareGroupRepository;
+        this.attendanceRepository = attendanceRepository;
+        this.absenceRepository = absenceRepository;
+        this.vacationRepository = vacationRepository;
+    }
+
+    /**
+     * Henter kjøkkenoversikt for én gruppe.
+     */
+    @Transactional(readOnly = true)
+    public KitchenMatrixResponse getMatrixForGroup(Long daycareGroupId, LocalDate date) {
+
+        DaycareGroup group = daycareGroupRepository.findById(daycareGroupId)
+                .orElseThrow(() -> new IllegalArgumentException("Finner ikke barnehagegruppe."));
+
+        return buildMatrix(group, date);
+    }
+
+    /**
+     * Henter kjøkkenoversikt for alle grupper i en barnehage.
+     */
+    @Transactional(readOnly = true)
+    public List<KitchenMatrixResponse> getMatrixForDaycare(Long daycareId, LocalDate date) {
+        return daycareGroupRepository.findByDaycare_Id(daycareId)
+                .stream()
+                .sorted(Comparator.comparing(DaycareGroup::getName))
+                .map(group -> buildMatrix(group, date))
+                .toList();
+    }
+
+    /**
+     * Oppdaterer allergenindeksen for et barn når transaksjonen er committet.
+     */
+    public void childChanged(Child child) {
+        Long childId = child.getId();
+        Long groupId = child.getDaycareGroup() != null ? child.getDaycareGroup().getId() : null;
+        ChildDiet diet = child.isActive() ? toDiet(child) : null;
+
+        AfterCommit.run(() -> {
+            // Fjerner barnet fra eventuelle andre grupper
+            dietsByGroup.forEach((id, diets) -> {
+                if (!id.equals(groupId)) {
+                    diets.remove(childId);
+                }
+            });
+
+            if (groupId == null) {
+                return;
+            }
+
+            Map<Long, ChildDiet> diets = forGroup(groupId);
+            if (diet != null) {
+                diets.put(childId, diet);
+            } else {
+                diets.remove(childId);
+            }
+        });
+    }
+
+    /**
+     * Tømmer allergenindeksen for en gruppe, slik at den lastes på nytt ved neste oppslag.
+     */
+    public void invalidate(Long daycareGroupId) {
+        dietsByGroup.remove(daycareGroupId);
+    }
+
+    private KitchenMatrixResponse buildMatrix(DaycareGroup group, LocalDate date) {
+
+        LocalDate day = date != null ? date : LocalDate.now();
+        Map<Long, KitchenStatus> statuses = statusesFor(group.getId(), day);
+
+        List<ChildDiet> diets = new ArrayList<>(forGroup(group.getId()).values());
+        diets.sort(Comparator.comparing(ChildDiet::childName, String.CASE_INSENSITIVE_ORDER));
+
+        Set<String> columns = new TreeSet<>();
+        Map<String, Integer> eatingPerAllergen = new TreeMap<>();
+        List<KitchenChildRow> rows = new ArrayList<>(diets.size());
+        int eatingCount = 0;
+
+        for (ChildDiet diet : diets) {
+            KitchenStatus status = statuses.getOrDefault(diet.childId(), KitchenStatus.EXPECTED);
+            boolean eating = status == KitchenStatus.PRESENT || status == KitchenStatus.EXPECTED;
+
+            columns.addAll(diet.allergens());
+            if (eating) {
+                eatingCount++;
+                for (String allergen : diet.allergens()) {
+                    eatingPerAllergen.merge(allergen, 1, Integer::sum);
+                }
+            }
+
+            rows.add(new KitchenChildRow(
+                    diet.childId(),
+                    diet.childName(),
+                    status.name(),
+                    eating,
+                    List.copyOf(diet.allergens()),
+                    diet.allergies(),
+                    diet.favoriteFood()
+            ));
+        }
+
+        return new KitchenMatrixResponse(
+                group.getId(),
+                group.getName(),
+                day,
+                eatingCount,
+                List.copyOf(columns),
+                eatingPerAllergen,
+                rows
+        );
+    }
+
+    /**
+     * Beregner status for barn i en gruppe med tre mengdeoppslag,
+     * i stedet for ett oppslag per barn.
+     */
+    private Map<Long, KitchenStatus> statusesFor(Long groupId, LocalDate day) {
+
+        Map<Long, KitchenStatus> statuses = new HashMap<>();
+
+        Set<Long> onVacation = new HashSet<>(vacationRepository.findChildIdsOnVacation(groupId, day));
+        Set<Long> absent = new HashSet<>(absenceRepository.findAbsentChildIds(groupId, day));
+
+        onVacation.forEach(id -> statuses.put(id, KitchenStatus.VACATION));
+        absent.forEach(id -> statuses.put(id, KitchenStatus.ABSENT));
+
+        // Faktisk oppmøte går foran meldt fravær og ferie
+        if (day.equals(LocalDate.now())) {
+            List<ChildEventRow> events =
+                    attendanceRepository.findEventRowsForGroupSince(groupId, day.atStartOfDay());
+
+            for (ChildEventRow event : events) {
+                statuses.put(event.childId(), event.eventType() == AttendanceEventType.IN
+                        ? KitchenStatus.PRESENT
+                        : KitchenStatus.CHECKED_OUT);
+            }
+        }
+
+        return statuses;
+    }
+
+    private Map<Long, ChildDiet> forGroup(Long groupId) {
+        return dietsByGroup.computeIfAbsent(groupId, id -> {
+            Map<Long, ChildDiet> diets = new ConcurrentHashMap<>();
+            for (Child child : childRepository.findByDaycareGroup_IdAndActiveTrue(id)) {
+                diets.put(child.getId(), toDiet(child));
+            }
+            return diets;
+        });
+    }
+
+    private static ChildDiet toDiet(Child child) {
+        String name = child.getLastName() != null
+                ? child.getFirstName() + " " + child.getLastName()
+                : child.getFirstName();
+
+        return new ChildDiet(
+                child.getId(),
+                name,
+                child.getAllergies(),
+                child.getFavoriteFood(),
+                AllergenNormalizer.normalize(child.getAllergies())
+        );
+    }
+}
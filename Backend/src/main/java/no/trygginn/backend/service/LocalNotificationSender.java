@@ -0,0 +1,64 @@
+package no.trygginn.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Stand-in for push-leverandøren, for utvikling og test. Logger hver melding,
+ * og skriver dem som JSON-linjer til trygginn.notifications.file hvis den er satt.
+ */
+@Component
+@ConditionalOnProperty(name = "trygginn.notifications.sender", havingValue = "local", matchIfMissing = true)
+public class LocalNotificationSender implements NotificationSender {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalNotificationSender.class);
+
+    private record Line(Long guardianId, String text, List<ParentNotification.Item> items) {}
+
+    private final JsonMapper jsonMapper;
+    private final Path file;
+
+    public LocalNotificationSender(
+            JsonMapper jsonMapper,
+            @Value("${trygginn.notifications.file:}") String file
+    ) {
+        this.jsonMapper = jsonMapper;
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    @Override
+    public void send(List<ParentNotification> batch) {
+        StringBuilder lines = new StringBuilder();
+        for (ParentNotification notification : batch) {
+            log.info("Push til foresatt {}: {}", notification.guardianId(), notification.text());
+            Line line = new Line(notification.guardianId(), notification.text(), notification.items());
+            lines.append(jsonMapper.writeValueAsString(line)).append('\n');
+        }
+
+        if (file == null) {
+            return;
+        }
+
+        // Én skriving per gruppe; synchronized så grupper fra nye forsøk ikke flettes
+        synchronized (this) {
+            try {
+                Files.writeString(file, lines, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Kunne ikke skrive varsler til " + file, e);
+            }
+        }
+    }
+}
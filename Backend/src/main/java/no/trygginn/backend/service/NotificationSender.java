@@ -0,0 +1,16 @@
+package no.trygginn.backend.service;
+
+import java.util.List;
+
+/**
+ * Sender push-meldinger til foresatte. Velges med trygginn.notifications.sender;
+ * "local" (standard) er LocalNotificationSender, som bare logger og skriver til fil.
+ * En ekte leverandør legges til som en bønne med sin egen verdi.
+ * <p>
+ * Hele gruppen sendes på nytt med økende ventetid hvis send kaster unntak,
+ * så leverandøren bør tåle at samme melding kommer to ganger.
+ */
+public interface NotificationSender {
+
+    void send(List<ParentNotification> batch);
+}
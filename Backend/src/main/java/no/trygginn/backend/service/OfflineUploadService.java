@@ -0,0 +1,654 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import no.trygginn.backend.controller.dto.OfflineUploadRequest;
+import no.trygginn.backend.controller.dto.OfflineUploadResponse;
+import no.trygginn.backend.model.AttendanceEventType;
+import no.trygginn.backend.model.User;
+import no.trygginn.backend.model.UserRole;
+import no.trygginn.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opplasting av registreringer fra nettbrett som har vært uten nett (POST /api/sync/upload).
+ * <p>
+ * Hele køen lagres i én transaksjon, med et fast antall spørringer uansett hvor
+ * mange elementer den har:
+ * <ul>
+ *     <li>Duplikater: clientId settes inn i offline_upload_item før noe lagres.
+ *     Elementer som er lastet opp før, får id-en fra forrige gang og lagres ikke igjen.</li>
+ *     <li>Inn/ut-sjekk: sorteres per barn etter clientTime og flettes med det som allerede
+ *     er registrert før, mellom og etter. En sjekk som ikke endrer status (IN når barnet alt er inne)
+ *     lagres ikke. En sjekk som ville gitt to like på rad med neste registrering på serveren
+ *     (IN 08:00 og OUT 12:00 på serveren, OUT 10:00 fra køen) avvises med CONFLICT, så inn og ut
+ *     alltid veksler. Lagrede sjekker får tiden fra nettbrettet, ikke opplastingstiden, og
+ *     hendelsene merkes backdated (se {@link DomainEvent#backdated()}).</li>
+ *     <li>Fravær: ett per barn og dag.</li>
+ *     <li>Notater: siste endring per barn i køen vinner, og lagres bare hvis barnet fortsatt
+ *     har versjonen nettbrettet så (baseVersion); ellers CONFLICT.</li>
+ * </ul>
+ * Ugyldige elementer avvises enkeltvis, så resten av køen kommer inn.
+ */
+@Service
+public class OfflineUploadService {
+
+    static final String METRIC_NAME = "trygginn.offline.items";
+
+    private enum Status {
+        APPLIED,
+        DUPLICATE,
+        REDUNDANT,
+        SUPERSEDED,
+        CONFLICT,
+        REJECTED
+    }
+
+    private enum Kind {
+        ATTENDANCE,
+        ABSENCE,
+        NOTE
+    }
+
+    private record ChildRow(Long groupId, Long daycareId, long version, String note) {}
+
+    private record ServerEvent(AttendanceEventType type, LocalDateTime time) {}
+
+    /**
+     * Et element i køen mens opplastingen behandles.
+     */
+    private static final class Entry {
+        final OfflineUploadRequest.Item item;
+        Kind kind;
+        LocalDateTime time;
+        AttendanceEventType eventType;
+        LocalDate date;
+        String note;
+
+        Status status;
+        Long id;
+        Long version;
+        String message;
+
+        Entry(OfflineUploadRequest.Item item) {
+            this.item = item;
+        }
+
+        Long childId() {
+            return item.childId();
+        }
+
+        void result(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final DomainEvents domainEvents;
+    private final AttendanceProjectionService projectionService;
+    private final ResourceVersions resourceVersions;
+    private final AuditLog auditLog;
+    private final ChildNoteHistory noteHistory;
+    private final MeterRegistry meterRegistry;
+    private final int maxItems;
+    private final long maxAgeHours;
+
+    public OfflineUploadService(
+            JdbcTemplate jdbcTemplate,
+            UserRepository userRepository,
+            DomainEvents domainEvents,
+            AttendanceProjectionService projectionService,
+            ResourceVersions resourceVersions,
+            AuditLog auditLog,
+            ChildNoteHistory noteHistory,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.offline.max-items:5000}") int maxItems,
+            @Value("${trygginn.offline.max-age-hours:72}") long maxAgeHours
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.domainEvents = domainEvents;
+        this.projectionService = projectionService;
+        this.resourceVersions = resourceVersions;
+        this.auditLog = auditLog;
+        this.noteHistory = noteHistory;
+        this.meterRegistry = meterRegistry;
+        this.maxItems = maxItems;
+        this.maxAgeHours = maxAgeHours;
+    }
+
+    /**
+     * Lagrer køen og returnerer ett resultat per element, i samme rekkefølge.
+     */
+    @Transactional
+    public OfflineUploadResponse upload(OfflineUploadRequest request) {
+        if (request == null || request.items() == null || request.items().isEmpty()) {
+            throw new IllegalArgumentException("Opplastingen er tom.");
+        }
+        if (request.items().size() > maxItems) {
+            throw new IllegalArgumentException("For mange elementer i én opplasting (maks " + maxItems + ").");
+        }
+        if (request.performedByUserId() == null) {
+            throw new IllegalArgumentException("performedByUserId må være satt.");
+        }
+
+        User performer = userRepository.findById(request.performedByUserId())
+                .orElseThrow(() -> new IllegalArgumentException("Finner ikke bruker som utfører handlingen."));
+        if (performer.getRole() != UserRole.STAFF && performer.getRole() != UserRole.ADMIN) {
+            throw new IllegalArgumentException("Bare ansatte kan laste opp registreringer fra nettbrett.");
+        }
+
+        List<Entry> entries = request.items().stream().map(Entry::new).toList();
+        Map<Long, ChildRow> children = loadChildren(entries);
+        validate(entries, children, LocalDateTime.now());
+
+        List<Entry> claimed = claim(entries, performer.getId());
+
+        List<DomainEvents.Draft> events = new ArrayList<>();
+        applyAttendance(ofKind(claimed, Kind.ATTENDANCE), children, performer.getId(), events);
+        applyAbsences(ofKind(claimed, Kind.ABSENCE), children, performer.getId(), events);
+        applyNotes(ofKind(claimed, Kind.NOTE), children, performer.getId());
+        domainEvents.publishAll(events);
+
+        storeResults(claimed);
+
+        int applied = 0;
+        List<OfflineUploadResponse.ItemResult> results = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.status == Status.APPLIED) {
+                applied++;
+            }
+            meterRegistry.counter(METRIC_NAME, "status", entry.status.name()).increment();
+            results.add(new OfflineUploadResponse.ItemResult(
+                    entry.item.clientId(), entry.status.name(), entry.id, entry.version, entry.message));
+        }
+        return new OfflineUploadResponse(applied, results);
+    }
+
+    /**
+     * Avviser elementer som mangler noe, og fyller inn type, tid og dato for resten.
+     * Tid i fremtiden (klokke som går feil) settes til nå.
+     */
+    private void validate(List<Entry> entries, Map<Long, ChildRow> children, LocalDateTime now) {
+        LocalDateTime oldest = now.minusHours(maxAgeHours);
+        Set<String> seen = new HashSet<>();
+
+        for (Entry entry : entries) {
+            OfflineUploadRequest.Item item = entry.item;
+
+            if (item.clientId() == null || item.clientId().isBlank() || item.clientId().length() > 64) {
+                entry.result(Status.REJECTED, "clientId mangler eller er lengre enn 64 tegn.");
+                continue;
+            }
+            if (!seen.add(item.clientId())) {
+                entry.result(Status.DUPLICATE, "Samme clientId står flere ganger i opplastingen.");
+                continue;
+            }
+
+            entry.kind = parseKind(item.kind());
+            if (entry.kind == null) {
+                entry.result(Status.REJECTED, "Ukjent type: " + item.kind());
+                continue;
+            }
+            if (item.childId() == null || !children.containsKey(item.childId())) {
+                entry.result(Status.REJECTED, "Finner ikke barn.");
+                continue;
+            }
+            if (item.clientTime() == null) {
+                entry.result(Status.REJECTED, "clientTime må være satt.");
+                continue;
+            }
+            if (item.clientTime().isBefore(oldest)) {
+                entry.result(Status.REJECTED, "Registreringen er eldre enn " + maxAgeHours + " timer.");
+                continue;
+            }
+            entry.time = item.clientTime().isAfter(now) ? now : item.clientTime();
+            entry.note = blankToNull(item.note());
+
+            String error = switch (entry.kind) {
+                case ATTENDANCE -> validateAttendance(entry);
+                case ABSENCE -> validateAbsence(entry);
+                case NOTE -> entry.note != null && entry.note.length() > 2000
+                        ? "Notatet kan ikke være lengre enn 2000 tegn."
+                        : null;
+            };
+            if (error != null) {
+                entry.result(Status.REJECTED, error);
+            }
+        }
+    }
+
+    private static String validateAttendance(Entry entry) {
+        try {
+            entry.eventType = AttendanceEventType.valueOf(
+                    String.valueOf(entry.item.eventType()).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return "eventType må være IN eller OUT.";
+        }
+        return entry.note != null && entry.note.length() > 1000
+                ? "Kommentaren kan ikke være lengre enn 1000 tegn."
+                : null;
+    }
+
+    private static String validateAbsence(Entry entry) {
+        String reason = entry.item.reason();
+        if (reason == null || reason.isBlank()) {
+            return "Årsak må være satt.";
+        }
+        if (reason.trim().length() > 255) {
+            return "Årsaken kan ikke være lengre enn 255 tegn.";
+        }
+        if (entry.note != null && entry.note.length() > 2000) {
+            return "Kommentaren kan ikke være lengre enn 2000 tegn.";
+        }
+        entry.date = entry.item.date() != null ? entry.item.date() : entry.time.toLocalDate();
+        return null;
+    }
+
+    /**
+     * Reserverer clientId-ene. De som finnes fra før, er lastet opp tidligere og
+     * får lagret id i stedet. Returnerer elementene som skal lagres nå.
+     */
+    private List<Entry> claim(List<Entry> entries, Long performerId) {
+        List<Entry> valid = entries.stream().filter(entry -> entry.status == null).toList();
+        if (valid.isEmpty()) {
+            return List.of();
+        }
+
+        String[] clientIds = valid.stream().map(entry -> entry.item.clientId()).toArray(String[]::new);
+        String[] kinds = valid.stream().map(entry -> entry.kind.name()).toArray(String[]::new);
+
+        Set<String> claimed = new HashSet<>(jdbcTemplate.query("""
+                        INSERT INTO offline_upload_item (client_id, kind, uploaded_by_user_id)
+                        SELECT client_id, kind, ? FROM unnest(?::varchar[], ?::varchar[]) AS v(client_id, kind)
+                        ON CONFLICT (client_id) DO NOTHING
+                        RETURNING client_id
+                        """,
+                ps -> {
+                    ps.setLong(1, performerId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", clientIds));
+                    ps.setArray(3, ps.getConnection().createArrayOf("varchar", kinds));
+                },
+                (rs, n) -> rs.getString(1)));
+
+        List<Entry> duplicates = valid.stream()
+                .filter(entry -> !claimed.contains(entry.item.clientId()))
+                .toList();
+        if (!duplicates.isEmpty()) {
+            Map<String, Long> previous = new HashMap<>();
+            String[] duplicateIds = duplicates.stream().map(entry -> entry.item.clientId()).toArray(String[]::new);
+            jdbcTemplate.query(
+                    "SELECT client_id, entity_id FROM offline_upload_item WHERE client_id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", duplicateIds)),
+                    rs -> {
+                        previous.put(rs.getString(1), rs.getObject(2, Long.class));
+                    });
+
+            for (Entry entry : duplicates) {
+                entry.result(Status.DUPLICATE, null);
+                entry.id = previous.get(entry.item.clientId());
+            }
+        }
+
+        return valid.stream().filter(entry -> claimed.contains(entry.item.clientId())).toList();
+    }
+
+    /**
+     * Fletter sjekkene for hvert barn med det som er registrert i samme tidsrom,
+     * og lagrer bare de som endrer status og passer med neste registrering på serveren.
+     */
+    private void applyAttendance(
+            List<Entry> entries,
+            Map<Long, ChildRow> children,
+            Long performerId,
+            List<DomainEvents.Draft> events
+    ) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Entry>> byChild = groupByChild(entries);
+        Map<Long, List<ServerEvent>> existing = existingAttendance(byChild);
+
+        List<Entry> inserts = new ArrayList<>();
+        byChild.forEach((childId, own) -> {
+            List<ServerEvent> server = existing.getOrDefault(childId, List.of());
+            List<Entry> run = new ArrayList<>();
+            AttendanceEventType state = null;
+            int next = 0;
+            for (Entry entry : own) {
+                // Det som ble registrert før (eller samtidig med) denne sjekken, gjelder først
+                while (next < server.size() && !server.get(next).time().isAfter(entry.time)) {
+                    ServerEvent following = server.get(next++);
+                    closeRun(run, following, inserts);
+                    state = following.type();
+                }
+                if (entry.eventType == state) {
+                    entry.result(Status.REDUNDANT, state == AttendanceEventType.IN
+                            ? "Barnet var allerede sjekket inn."
+                            : "Barnet var allerede sjekket ut.");
+                } else {
+                    entry.result(Status.APPLIED, null);
+                    state = entry.eventType;
+                    run.add(entry);
+                }
+            }
+            closeRun(run, next < server.size() ? server.get(next) : null, inserts);
+        });
+        if (inserts.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = reserveIds("attendance", inserts.size());
+        List<Object[]> rows = new ArrayList<>(inserts.size());
+        for (int i = 0; i < inserts.size(); i++) {
+            Entry entry = inserts.get(i);
+            entry.id = ids.get(i);
+            rows.add(new Object[] {
+                    entry.id, entry.childId(), entry.eventType.name(), Timestamp.valueOf(entry.time),
+                    entry.note, performerId
+            });
+
+            ChildRow child = children.get(entry.childId());
+            events.add(new DomainEvents.Draft(
+                    DomainEvent.Type.ATTENDANCE_REGISTERED,
+                    entry.childId(),
+                    child.daycareId(),
+                    DomainEvents.data(
+                            "attendanceId", entry.id,
+                            "daycareGroupId", child.groupId(),
+                            "eventType", entry.eventType,
+                            "eventTime", entry.time,
+                            "performedByUserId", performerId,
+                            "offline", true,
+                            "backdated", true)));
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO attendance (id, child_id, event_type, event_time, note, performed_by_user_id)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, rows);
+    }
+
+    /**
+     * Avslutter sjekkene fra køen som ligger mellom to registreringer på serveren.
+     * Sjekkene veksler allerede; er den siste lik den neste på serveren, blir det
+     * to like på rad, og den siste avvises. Resten lagres.
+     */
+    private static void closeRun(List<Entry> run, ServerEvent following, List<Entry> inserts) {
+        if (following != null && !run.isEmpty() && run.getLast().eventType == following.type()) {
+            Entry last = run.removeLast();
+            last.result(Status.CONFLICT, (following.type() == AttendanceEventType.IN
+                    ? "Barnet ble sjekket inn kl. "
+                    : "Barnet ble sjekket ut kl. ")
+                    + following.time().toLocalTime().truncatedTo(ChronoUnit.MINUTES)
+                    + " på en annen enhet, så inn og ut ville ikke vekslet.");
+        }
+        inserts.addAll(run);
+        run.clear();
+    }
+
+    /**
+     * Siste registrering før køens første sjekk, alle registreringer fram til den siste
+     * og første registrering etter den, per barn.
+     */
+    private Map<Long, List<ServerEvent>> existingAttendance(Map<Long, List<Entry>> byChild) {
+        Long[] childIds = byChild.keySet().toArray(Long[]::new);
+        Timestamp[] from = new Timestamp[childIds.length];
+        Timestamp[] to = new Timestamp[childIds.length];
+        for (int i = 0; i < childIds.length; i++) {
+            List<Entry> own = byChild.get(childIds[i]);
+            from[i] = Timestamp.valueOf(own.getFirst().time);
+            to[i] = Timestamp.valueOf(own.getLast().time);
+        }
+
+        Map<Long, List<ServerEvent>> existing = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT r.child_id, a.event_type, a.event_time
+                        FROM unnest(?::bigint[], ?::timestamp[], ?::timestamp[]) AS r(child_id, from_time, to_time)
+                        CROSS JOIN LATERAL (
+                            (SELECT event_type, event_time
+                             FROM attendance
+                             WHERE child_id = r.child_id AND event_time < r.from_time
+                             ORDER BY event_time DESC
+                             LIMIT 1)
+                            UNION ALL
+                            (SELECT event_type, event_time
+                             FROM attendance
+                             WHERE child_id = r.child_id AND event_time BETWEEN r.from_time AND r.to_time)
+                            UNION ALL
+                            (SELECT event_type, event_time
+                             FROM attendance
+                             WHERE child_id = r.child_id AND event_time > r.to_time
+                             ORDER BY event_time
+                             LIMIT 1)
+                        ) a
+                        ORDER BY r.child_id, a.event_time
+                        """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", childIds));
+                    ps.setArray(2, ps.getConnection().createArrayOf("timestamp", from));
+                    ps.setArray(3, ps.getConnection().createArrayOf("timestamp", to));
+                },
+                rs -> {
+                    existing.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(new ServerEvent(
+                            AttendanceEventType.valueOf(rs.getString(2)),
+                            rs.getTimestamp(3).toLocalDateTime()));
+                });
+        return existing;
+    }
+
+    /**
+     * Lagrer fravær som ikke finnes for barnet og dagen fra før.
+     */
+    private void applyAbsences(
+            List<Entry> entries,
+            Map<Long, ChildRow> children,
+            Long performerId,
+            List<DomainEvents.Draft> events
+    ) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Long[] childIds = entries.stream().map(Entry::childId).toArray(Long[]::new);
+        Date[] dates = entries.stream().map(entry -> Date.valueOf(entry.date)).toArray(Date[]::new);
+        Set<String> registered = new HashSet<>(jdbcTemplate.query("""
+                        SELECT DISTINCT a.child_id, a.date
+                        FROM absence a
+                        JOIN unnest(?::bigint[], ?::date[]) AS r(child_id, date)
+                          ON a.child_id = r.child_id AND a.date = r.date
+                        """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", childIds));
+                    ps.setArray(2, ps.getConnection().createArrayOf("date", dates));
+                },
+                (rs, n) -> rs.getLong(1) + ":" + rs.getDate(2).toLocalDate()));
+
+        List<Entry> inserts = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!registered.add(entry.childId() + ":" + entry.date)) {
+                entry.result(Status.REDUNDANT, "Fravær er allerede registrert for dagen.");
+            } else {
+                entry.result(Status.APPLIED, null);
+                inserts.add(entry);
+            }
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = reserveIds("absence", inserts.size());
+        List<Object[]> rows = new ArrayList<>(inserts.size());
+        for (int i = 0; i < inserts.size(); i++) {
+            Entry entry = inserts.get(i);
+            String reason = entry.item.reason().trim();
+            entry.id = ids.get(i);
+            rows.add(new Object[] {
+                    entry.id, entry.childId(), performerId, Date.valueOf(entry.date), reason, entry.note
+            });
+
+            ChildRow child = children.get(entry.childId());
+            projectionService.absenceRegistered(child.groupId(), entry.childId(), entry.date);
+            events.add(new DomainEvents.Draft(
+                    DomainEvent.Type.ABSENCE_REGISTERED,
+                    entry.childId(),
+                    child.daycareId(),
+                    DomainEvents.data(
+                            "absenceId", entry.id,
+                            "date", entry.date,
+                            "reason", reason,
+                            "reportedByUserId", performerId,
+                            "offline", true)));
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO absence (id, child_id, reported_by_user_id, date, reason, note)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, rows);
+    }
+
+    /**
+     * Lagrer siste notat per barn, med samme versjonssjekk som PUT med If-Match,
+     * og en revisjon i notathistorikken for hvert notat som ble lagret.
+     */
+    private void applyNotes(List<Entry> entries, Map<Long, ChildRow> children, Long performerId) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Entry> latest = new ArrayList<>();
+        groupByChild(entries).forEach((childId, own) -> {
+            for (int i = 0; i < own.size() - 1; i++) {
+                own.get(i).result(Status.SUPERSEDED, null);
+            }
+            latest.add(own.getLast());
+        });
+
+        List<Object[]> rows = new ArrayList<>(latest.size());
+        for (Entry entry : latest) {
+            long current = children.get(entry.childId()).version();
+            entry.version = entry.item.baseVersion() != null ? entry.item.baseVersion() : current;
+            rows.add(new Object[] {entry.note, entry.childId(), entry.version});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE children SET note = ? WHERE id = ? AND version = ?", rows);
+
+        List<ChildNoteHistory.Change> changes = new ArrayList<>();
+        for (int i = 0; i < latest.size(); i++) {
+            Entry entry = latest.get(i);
+            if (updated[i] > 0) {
+                // Versjonen økes med én av triggeren (V2)
+                entry.result(Status.APPLIED, null);
+                entry.version = entry.version + 1;
+                changes.add(new ChildNoteHistory.Change(
+                        entry.childId(), children.get(entry.childId()).note(), entry.note));
+                resourceVersions.childChanged(entry.childId());
+                auditLog.write(performerId, entry.childId(), "child-note", "note");
+            } else {
+                entry.result(Status.CONFLICT, "Notatet er endret av noen andre. Hent det på nytt.");
+                entry.version = children.get(entry.childId()).version();
+            }
+        }
+        noteHistory.record(changes, performerId);
+    }
+
+    private void storeResults(List<Entry> claimed) {
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = claimed.stream()
+                .map(entry -> new Object[] {entry.status.name(), entry.id, entry.item.clientId()})
+                .toList();
+        jdbcTemplate.batchUpdate(
+                "UPDATE offline_upload_item SET status = ?, entity_id = ? WHERE client_id = ?", rows);
+    }
+
+    /**
+     * Gruppe, barnehage, versjon og notat for alle barna i køen, i én spørring.
+     */
+    private Map<Long, ChildRow> loadChildren(List<Entry> entries) {
+        Long[] childIds = entries.stream()
+                .map(Entry::childId)
+                .filter(id -> id != null)
+                .distinct()
+                .toArray(Long[]::new);
+
+        Map<Long, ChildRow> children = new HashMap<>();
+        if (childIds.length == 0) {
+            return children;
+        }
+        jdbcTemplate.query("""
+                        SELECT c.id, c.daycare_group_id, g.daycare_id, c.version, c.note
+                        FROM children c
+                        JOIN daycare_group g ON g.id = c.daycare_group_id
+                        WHERE c.id = ANY(?)
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", childIds)),
+                rs -> {
+                    children.put(rs.getLong(1), new ChildRow(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getString(5)));
+                });
+        return children;
+    }
+
+    private List<Long> reserveIds(String table, int count) {
+        return jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class,
+                table,
+                count);
+    }
+
+    /**
+     * Elementene per barn, sortert etter tid (like tider i rekkefølgen de ble lastet opp).
+     */
+    private static Map<Long, List<Entry>> groupByChild(List<Entry> entries) {
+        Map<Long, List<Entry>> byChild = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            byChild.computeIfAbsent(entry.childId(), id -> new ArrayList<>()).add(entry);
+        }
+        byChild.values().forEach(own -> own.sort(Comparator.comparing(entry -> entry.time)));
+        return byChild;
+    }
+
+    private static List<Entry> ofKind(List<Entry> entries, Kind kind) {
+        return entries.stream().filter(entry -> entry.kind == kind).toList();
+    }
+
+    private static Kind parseKind(String kind) {
+        if (kind == null) {
+            return null;
+        }
+        try {
+            return Kind.valueOf(kind.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
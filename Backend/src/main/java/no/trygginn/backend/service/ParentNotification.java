@@ -0,0 +1,62 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.model.AttendanceEventType;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Én push-melding til én foresatt. Inn- og utsjekker for samme foresatte som
+ * kommer tett (søsken som leveres sammen) slås sammen til én melding.
+ */
+public record ParentNotification(
+        Long guardianId,
+        List<Item> items
+) {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * Én inn- eller utsjekk i meldingen.
+     */
+    public record Item(
+            long attendanceId,
+            Long childId,
+            String childName,
+            AttendanceEventType eventType,
+            LocalDateTime eventTime
+    ) {}
+
+    /**
+     * Meldingsteksten, f.eks. "Emma og Noah er sjekket inn (07:42)".
+     */
+    public String text() {
+        StringBuilder text = new StringBuilder();
+        appendGroup(text, AttendanceEventType.IN, "sjekket inn");
+        appendGroup(text, AttendanceEventType.OUT, "sjekket ut");
+        return text.toString();
+    }
+
+    private void appendGroup(StringBuilder text, AttendanceEventType type, String verb) {
+        List<Item> group = items.stream()
+                .filter(item -> item.eventType() == type)
+                .toList();
+        if (group.isEmpty()) {
+            return;
+        }
+
+        if (!text.isEmpty()) {
+            text.append(". ");
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            if (i > 0) {
+                text.append(i == group.size() - 1 ? " og " : ", ");
+            }
+            text.append(group.get(i).childName());
+        }
+        text.append(" er ").append(verb)
+                .append(" (").append(group.get(group.size() - 1).eventTime().format(TIME)).append(")");
+    }
+}
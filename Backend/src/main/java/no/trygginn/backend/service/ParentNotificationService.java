@@ -0,0 +1,374 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import no.trygginn.backend.model.AttendanceEventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push-varsler til foresatte ved inn- og utsjekk.
+ * <p>
+ * Lytter på ATTENDANCE_REGISTERED fra outboxen og sprer hver hendelse til alle
+ * foresatte for barnet (guardians_children, slått opp for hele hendelsesgruppen
+ * i én spørring). Hendelser for samme foresatte innenfor
+ * trygginn.notifications.coalesce-ms slås sammen til én melding, så søsken som
+ * leveres sammen gir ett varsel. Ferdige meldinger sendes i grupper på opptil
+ * batch-size via NotificationSender, slik at leverandøren får få, store kall i rushet.
+ * <p>
+ * Feiler en gruppe, sendes den på nytt etter retry-backoff-ms, doblet for hvert
+ * forsøk, opptil max-attempts ganger. Feiler den fortsatt, legges den i jobbkøen
+ * ("notifications.retry"), som prøver videre med lengre ventetid og overlever omstart.
+ * Hendelser der selve inn/ut-sjekken (eventTime) er eldre enn max-age-minutes, f.eks.
+ * fra gjenoppretting etter krasj eller tilbakedaterte sjekker fra et nettbrett som var
+ * offline ({@link DomainEvent#backdated()}), varsles ikke, verken første gang eller fra køen.
+ * <p>
+ * Hver inn/ut-sjekk varsles bare én gang: attendanceId registreres i notification_sent
+ * før meldingen legges i vinduet, så en hendelse som leveres på nytt fra outboxen
+ * (eller på en annen instans) hoppes over. Det gir høyst ett varsel; går instansen ned
+ * før vinduet er sendt, sendes ikke det varselet.
+ */
+@Component
+public class ParentNotificationService implements DomainEventListener, JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ParentNotificationService.class);
+
+    static final String METRIC_NAME = "trygginn.notifications";
+
+    private static final TypeReference<List<ParentNotification>> BATCH_TYPE = new TypeReference<>() {};
+
+    private record Recipient(Long guardianId, Long childId, String childName) {}
+
+    /**
+     * Meldingen som samles for én foresatt, til vinduet er ute.
+     */
+    private static final class Pending {
+        final long dueAt;
+        final Map<Long, ParentNotification.Item> items = new LinkedHashMap<>();
+
+        Pending(long dueAt) {
+            this.dueAt = dueAt;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationSender sender;
+    private final JobQueue jobQueue;
+    private final JsonMapper jsonMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final long coalesceNanos;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxAgeMinutes;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    private final Timer sendTimer;
+    private final DistributionSummary batchSizes;
+
+    public ParentNotificationService(
+            JdbcTemplate jdbcTemplate,
+            NotificationSender sender,
+            JobQueue jobQueue,
+            JsonMapper jsonMapper,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.notifications.enabled:true}") boolean enabled,
+            @Value("${trygginn.notifications.coalesce-ms:3000}") long coalesceMs,
+            @Value("${trygginn.notifications.batch-size:100}") int batchSize,
+            @Value("${trygginn.notifications.max-attempts:5}") int maxAttempts,
+            @Value("${trygginn.notifications.retry-backoff-ms:1000}") long retryBackoffMs,
+            @Value("${trygginn.notifications.max-age-minutes:15}") long maxAgeMinutes
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sender = sender;
+        this.jobQueue = jobQueue;
+        this.jsonMapper = jsonMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(coalesceMs);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxAgeMinutes = maxAgeMinutes;
+
+        this.sendTimer = Timer.builder(METRIC_NAME + ".batch")
+                .description("Tid per gruppe sendt til leverandøren")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder(METRIC_NAME + ".batch.size")
+                .description("Meldinger per gruppe")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".pending", pending, Map::size)
+                .description("Foresatte med en melding som venter på at vinduet skal gå ut")
+                .register(meterRegistry);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "parent-notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalMs = Math.max(50, Math.min(coalesceMs / 4, 500));
+        this.executor.scheduleWithFixedDelay(() -> flush(false),
+                flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        this.executor.scheduleWithFixedDelay(this::pruneSent,
+                maxAgeMinutes, maxAgeMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Tar imot en gruppe domenehendelser fra DomainEventDispatcher.
+     */
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime oldest = LocalDateTime.now().minusMinutes(maxAgeMinutes);
+        List<DomainEvent> recent = events.stream()
+                .filter(event -> event.type() == DomainEvent.Type.ATTENDANCE_REGISTERED)
+                .filter(event -> event.childId() != null && eventTime(event).isAfter(oldest))
+                .toList();
+        if (recent.isEmpty()) {
+            return;
+        }
+
+        // Levert før (replay fra outboxen, en annen instans): varsles ikke på nytt
+        Set<Long> claimed = claim(recent);
+        List<DomainEvent> attendance = recent.stream()
+                .filter(event -> claimed.contains(attendanceId(event)))
+                .toList();
+        if (attendance.size() < recent.size()) {
+            meterRegistry.counter(METRIC_NAME + ".duplicates").increment(recent.size() - attendance.size());
+        }
+        if (attendance.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Recipient>> recipients = recipientsByChild(attendance);
+        long now = System.nanoTime();
+        for (DomainEvent event : attendance) {
+            for (Recipient recipient : recipients.getOrDefault(event.childId(), List.of())) {
+                add(recipient, toItem(event, recipient), now);
+            }
+        }
+    }
+
+    private void add(Recipient recipient, ParentNotification.Item item, long now) {
+        pending.compute(recipient.guardianId(), (guardianId, existing) -> {
+            Pending target = existing != null ? existing : new Pending(now + coalesceNanos);
+            if (existing != null) {
+                meterRegistry.counter(METRIC_NAME + ".coalesced").increment();
+            }
+            // Samme inn/ut-sjekk levert på nytt fra outboxen gir ikke to linjer
+            target.items.put(item.attendanceId(), item);
+            return target;
+        });
+    }
+
+    /**
+     * Sender meldingene der vinduet er ute (eller alle), i grupper.
+     */
+    void flush(boolean all) {
+        try {
+            long now = System.nanoTime();
+            List<ParentNotification> due = new ArrayList<>();
+            for (Long guardianId : pending.keySet()) {
+                pending.computeIfPresent(guardianId, (id, entry) -> {
+                    if (!all && entry.dueAt - now > 0) {
+                        return entry;
+                    }
+                    due.add(new ParentNotification(id, List.copyOf(entry.items.values())));
+                    return null;
+                });
+            }
+
+            for (int from = 0; from < due.size(); from += batchSize) {
+                send(List.copyOf(due.subList(from, Math.min(due.size(), from + batchSize))), 1);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Sending av foreldrevarsler feilet", e);
+        }
+    }
+
+    private void send(List<ParentNotification> batch, int attempt) {
+        long start = System.nanoTime();
+        try {
+            sender.send(batch);
+            record(batch, start, "sent");
+        } catch (RuntimeException e) {
+            if (attempt >= maxAttempts) {
+                queueRetry(batch, start, attempt, e);
+                return;
+            }
+
+            record(batch, start, "retry");
+            long delayMs = retryBackoffMs << Math.min(attempt - 1, 16);
+            log.info("Sending av {} foreldrevarsler feilet (forsøk {}), prøver igjen om {} ms: {}",
+                    batch.size(), attempt, delayMs, e.getMessage());
+            executor.schedule(() -> send(batch, attempt + 1), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Gir gruppen videre til jobbkøen når forsøkene i minnet er brukt opp.
+     */
+    private void queueRetry(List<ParentNotification> batch, long start, int attempt, RuntimeException cause) {
+        try {
+            jobQueue.enqueue(type(), batch);
+            record(batch, start, "queued");
+            log.warn("Sending av {} foreldrevarsler feilet {} ganger, lagt i jobbkøen", batch.size(), attempt, cause);
+        } catch (RuntimeException e) {
+            record(batch, start, "failed");
+            log.warn("Gir opp {} foreldrevarsler etter {} forsøk", batch.size(), attempt, cause);
+        }
+    }
+
+    @Override
+    public String type() {
+        return "notifications.retry";
+    }
+
+    /**
+     * Sender en gruppe fra jobbkøen på nytt. Meldinger eldre enn max-age-minutes droppes;
+     * kaster sender, prøver køen igjen senere.
+     */
+    @Override
+    public void run(String payload) {
+        LocalDateTime oldest = LocalDateTime.now().minusMinutes(maxAgeMinutes);
+        List<ParentNotification> batch = jsonMapper.readValue(payload, BATCH_TYPE).stream()
+                .filter(notification -> notification.items().stream()
+                        .anyMatch(item -> item.eventTime().isAfter(oldest)))
+                .toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            sender.send(batch);
+            record(batch, start, "sent");
+        } catch (RuntimeException e) {
+            record(batch, start, "retry");
+            throw e;
+        }
+    }
+
+    private void record(List<ParentNotification> batch, long start, String outcome) {
+        sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        meterRegistry.counter(METRIC_NAME + ".batches", "outcome", outcome).increment();
+        meterRegistry.counter(METRIC_NAME + ".messages", "outcome", outcome).increment(batch.size());
+    }
+
+    /**
+     * Registrerer inn/ut-sjekkene som varslet og gir tilbake de som ikke var det fra før.
+     */
+    private Set<Long> claim(List<DomainEvent> events) {
+        Long[] attendanceIds = events.stream()
+                .map(ParentNotificationService::attendanceId)
+                .distinct()
+                .toArray(Long[]::new);
+
+        Set<Long> claimed = new HashSet<>();
+        jdbcTemplate.query("""
+                        INSERT INTO notification_sent (attendance_id)
+                        SELECT unnest(?::bigint[])
+                        ON CONFLICT (attendance_id) DO NOTHING
+                        RETURNING attendance_id
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", attendanceIds)),
+                rs -> {
+                    claimed.add(rs.getLong(1));
+                });
+        return claimed;
+    }
+
+    /**
+     * Hendelser eldre enn max-age-minutes varsles aldri, så radene trengs ikke lenger.
+     */
+    private void pruneSent() {
+        try {
+            jdbcTemplate.update(
+                    "DELETE FROM notification_sent WHERE sent_at < NOW() - make_interval(mins => ?)",
+                    (int) (2 * maxAgeMinutes));
+        } catch (RuntimeException e) {
+            log.warn("Rydding av varslede inn/ut-sjekker feilet", e);
+        }
+    }
+
+    /**
+     * Foresatte og fornavn for alle barna i gruppen, i én spørring.
+     */
+    private Map<Long, List<Recipient>> recipientsByChild(List<DomainEvent> events) {
+        Long[] childIds = events.stream()
+                .map(DomainEvent::childId)
+                .distinct()
+                .toArray(Long[]::new);
+
+        Map<Long, List<Recipient>> byChild = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT gc.guardian_id, c.id, c.first_name
+                        FROM guardians_children gc
+                        JOIN children c ON c.id = gc.child_id
+                        WHERE gc.child_id = ANY(?)
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", childIds)),
+                rs -> {
+                    Recipient recipient = new Recipient(rs.getLong(1), rs.getLong(2), rs.getString(3));
+                    byChild.computeIfAbsent(recipient.childId(), id -> new ArrayList<>()).add(recipient);
+                });
+        return byChild;
+    }
+
+    private static ParentNotification.Item toItem(DomainEvent event, Recipient recipient) {
+        return new ParentNotification.Item(
+                attendanceId(event),
+                recipient.childId(),
+                recipient.childName(),
+                AttendanceEventType.valueOf(event.data().get("eventType")),
+                eventTime(event));
+    }
+
+    private static Long attendanceId(DomainEvent event) {
+        return Long.parseLong(event.data().get("attendanceId"));
+    }
+
+    /**
+     * Når inn/ut-sjekken skjedde; createdAt bare for hendelser uten eventTime.
+     */
+    private static LocalDateTime eventTime(DomainEvent event) {
+        String eventTime = event.data().get("eventTime");
+        return eventTime != null ? LocalDateTime.parse(eventTime) : event.createdAt();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Det som venter, sendes før vi stopper
+        executor.shutdown();
+        flush(true);
+    }
+}
@@ -0,0 +1,225 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.index.TokenPrefixIndex;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.Daycare;
+import no.trygginn.backend.model.DaycareGroup;
+import no.trygginn.backend.model.User;
+import no.trygginn.backend.repository.ChildRepository;
+import no.trygginn.backend.repository.UserRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service for fortløpende søk etter barn, foresatte og ansatte i en barnehage.
+ * Søket går mot en minnebasert prefiksindeks per barnehage, som lastes ved
+ * første søk og deretter oppdateres når barn og brukere endres.
+ */
+@Service
+public class PeopleSearchService {
+
+    static final int MAX_LIMIT = 50;
+
+    private final ChildRepository childRepository;
+    private final UserRepository userRepository;
+
+    private final Map<Long, TokenPrefixIndex<PersonKey, Person>> indexes = new ConcurrentHashMap<>();
+
+    public PeopleSearchService(
+            ChildRepository childRepository,
+            UserRepository userRepository
+    ) {
+        this.childRepository = childRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Type person i søkeindeksen.
+     */
+    public enum PersonType {
+        CHILD,
+        USER
+    }
+
+    private record PersonKey(PersonType type, Long id) {}
+
+    /**
+     * Et søketreff. Felter som ikke gjelder typen er null.
+     */
+    public record Person(
+            PersonType type,
+            Long id,
+            String name,
+            String role,
+            String email,
+            String phoneNumber,
+            Long daycareGroupId,
+            String daycareGroupName
+    ) {}
+
+    /**
+     * Søker etter personer i en barnehage.
+     */
+    public List<Person> search(Long daycareId, String query, int limit) {
+
+        if (daycareId == null) {
+            throw new IllegalArgumentException("daycareId må være satt.");
+        }
+
+        int capped = Math.min(Math.max(limit, 1), MAX_LIMIT);
+
+        return forDaycare(daycareId)
+                .search(query, capped, Comparator.comparing(Person::name, String.CASE_INSENSITIVE_ORDER))
+                .stream()
+                .map(TokenPrefixIndex.Hit::value)
+                .toList();
+    }
+
+    /**
+     * Om treffet på et barn skyldes allergier eller medisiner, dvs. at et søkeord
+     * ikke er prefiks av noe ord i navnet. Slike treff avslører helseopplysninger
+     * og må logges i AuditLog.
+     */
+    public boolean matchedHealthFields(Person person, String query) {
+        if (person.type() != PersonType.CHILD) {
+            return false;
+        }
+
+        List<String> nameTokens = TokenPrefixIndex.tokenize(person.name());
+        for (String token : TokenPrefixIndex.tokenize(query)) {
+            if (nameTokens.stream().noneMatch(name -> name.startsWith(token))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Oppdaterer indeksen for et barn når transaksjonen er committet.
+     */
+    public void childChanged(Child child) {
+        DaycareGroup group = child.getDaycareGroup();
+        Daycare daycare = group != null ? group.getDaycare() : null;
+        if (daycare == null) {
+            return;
+        }
+
+        Long daycareId = daycare.getId();
+        Person person = toPerson(child);
+        String[] fields = childFields(child);
+
+        AfterCommit.run(() -> forDaycare(daycareId)
+                .put(new PersonKey(PersonType.CHILD, child.getId()), person, fields));
+    }
+
+    /**
+     * Oppdaterer indeksen for en bruker i alle barnehagene brukeren er knyttet til.
+     * Må kalles innenfor en transaksjon, siden barnehagene lastes lat.
+     */
+    public void userChanged(User user) {
+        Set<Long> daycareIds = user.getDaycares().stream()
+                .map(Daycare::getId)
+                .collect(Collectors.toSet());
+
+        PersonKey key = new PersonKey(PersonType.USER, user.getId());
+        Person person = toPerson(user);
+        String[] fields = userFields(user);
+
+        AfterCommit.run(() -> {
+            for (Long daycareId : daycareIds) {
+                forDaycare(daycareId).put(key, person, fields);
+            }
+            // Fjerner brukeren fra barnehager den ikke lenger er knyttet til
+            indexes.forEach((daycareId, index) -> {
+                if (!daycareIds.contains(daycareId)) {
+                    index.remove(key);
+                }
+            });
+        });
+    }
+
+    /**
+     * Tømmer indeksen for en barnehage, slik at den lastes på nytt ved neste søk.
+     * Brukes etter masseendringer som ikke går via ChildService/UserService.
+     */
+    public void invalidate(Long daycareId) {
+        indexes.remove(daycareId);
+    }
+
+    private TokenPrefixIndex<PersonKey, Person> forDaycare(Long daycareId) {
+        return indexes.computeIfAbsent(daycareId, this::load);
+    }
+
+    private TokenPrefixIndex<PersonKey, Person> load(Long daycareId) {
+        TokenPrefixIndex<PersonKey, Person> index = new TokenPrefixIndex<>();
+
+        for (Child child : childRepository.findByDaycareGroup_Daycare_Id(daycareId)) {
+            index.put(new PersonKey(PersonType.CHILD, child.getId()), toPerson(child), childFields(child));
+        }
+
+        for (User user : userRepository.findByDaycares_Id(daycareId)) {
+            index.put(new PersonKey(PersonType.USER, user.getId()), toPerson(user), userFields(user));
+        }
+
+        return index;
+    }
+
+    private static String[] childFields(Child child) {
+        return new String[] {
+                child.getFirstName(),
+                child.getLastName(),
+                child.getAllergies(),
+                child.getMedications()
+        };
+    }
+
+    private static String[] userFields(User user) {
+        String phone = user.getPhoneNumber();
+        // Telefonnummer indekseres også uten mellomrom og landskode-tegn
+        String phoneDigits = phone != null ? phone.replaceAll("\\D", "") : null;
+
+        return new String[] {
+                user.getFullName(),
+                user.getEmail(),
+                phone,
+                phoneDigits
+        };
+    }
+
+    private static Person toPerson(Child child) {
+        DaycareGroup group = child.getDaycareGroup();
+        String name = child.getLastName() != null
+                ? child.getFirstName() + " " + child.getLastName()
+                : child.getFirstName();
+
+        return new Person(
+                PersonType.CHILD,
+                child.getId(),
+                name,
+                null,
+                null,
+                null,
+                group != null ? group.getId() : null,
+                group != null ? group.getName() : null
+        );
+    }
+
+    private static Person toPerson(User user) {
+        return new Person(
+                PersonType.USER,
+                user.getId(),
+                user.getFullName(),
+                user.getRole() != null ? user.getRole().name() : null,
+                user.getEmail(),
+                user.getPhoneNumber(),
+                null,
+                null
+        );
+    }
+}
@@ -0,0 +1,514 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import no.trygginn.backend.controller.dto.ReportJobRequest;
+import no.trygginn.backend.controller.dto.ReportJobResponse;
+import no.trygginn.backend.repository.DaycareRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Rapporter for en barnehage over en periode (f.eks. en måned), laget i bakgrunnen.
+ * <p>
+ * En bestilling blir en jobb i en begrenset kø (trygginn.reports.queue-size) som
+ * trygginn.reports.workers arbeidere tar fra; er køen full, avvises bestillingen (503).
+ * Radene regnes ut per gruppe i parallell (trygginn.reports.group-parallelism, så
+ * rapportene ikke tar hele tilkoblingspoolen), men skrives i gruppenes rekkefølge
+ * rett til en CSV-fil i trygginn.reports.dir. Bare én gruppe om gangen holdes i minnet.
+ * <p>
+ * I oppmøterapporten er et barn for sent en dag når første innsjekk er etter
+ * trygginn.reports.late-after (klokkeslett, f.eks. 09:00).
+ * <p>
+ * Samme rapport (type, barnehage og periode) lages bare én gang: en ny bestilling
+ * mens den lages eller etter at den er ferdig, gir samme jobb. Rapporter for perioder
+ * som er over gjenbrukes til de slettes etter trygginn.reports.retention-hours, også
+ * etter omstart; rapporter som dekker i dag gjenbrukes bare i trygginn.reports.fresh-minutes.
+ * Jobbene selv finnes bare i minnet på serveren som laget dem.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobService.class);
+
+    static final String METRIC_NAME = "trygginn.reports";
+
+    /**
+     * Maks antall dager i én rapport.
+     */
+    static final int MAX_RANGE_DAYS = 366;
+
+    private enum Type {
+        ATTENDANCE("gruppe,barn_id,fornavn,etternavn,dager_til_stede,timer_til_stede,dager_for_sent"),
+        ABSENCE("gruppe,barn_id,fornavn,etternavn,fravaersdager,feriedager");
+
+        final String header;
+
+        Type(String header) {
+            this.header = header;
+        }
+    }
+
+    private enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private record Group(Long id, String name) {}
+
+    /**
+     * En bestilt rapport. Feltene skrives av arbeideren og leses av statusoppslag.
+     */
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String key;
+        final Type type;
+        final Long daycareId;
+        final LocalDate from;
+        final LocalDate to;
+        final Path file;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final AtomicInteger groupsDone = new AtomicInteger();
+        volatile int groupsTotal;
+        volatile Status status = Status.QUEUED;
+        volatile boolean cached;
+        volatile LocalDateTime finishedAt;
+        volatile String message;
+
+        Job(String key, Type type, Long daycareId, LocalDate from, LocalDate to, Path file) {
+            this.key = key;
+            this.type = type;
+            this.daycareId = daycareId;
+            this.from = from;
+            this.to = to;
+            this.file = file;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DaycareRepository daycareRepository;
+    private final MeterRegistry meterRegistry;
+    private final Path directory;
+    private final Time lateAfter;
+    private final Duration retention;
+    private final Duration freshFor;
+
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService groupExecutor;
+    private final ScheduledExecutorService pruneExecutor;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    // Siste jobb per rapport (type, barnehage og periode). Endres bare i submit og prune.
+    private final Map<String, Job> jobsByKey = new HashMap<>();
+
+    public ReportJobService(
+            JdbcTemplate jdbcTemplate,
+            DaycareRepository daycareRepository,
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.reports.dir:${java.io.tmpdir}/trygginn-reports}") String directory,
+            @Value("${trygginn.reports.workers:2}") int workers,
+            @Value("${trygginn.reports.queue-size:16}") int queueSize,
+            @Value("${trygginn.reports.group-parallelism:3}") int groupParallelism,
+            @Value("${trygginn.reports.retention-hours:24}") long retentionHours,
+            @Value("${trygginn.reports.fresh-minutes:10}") long freshMinutes,
+            @Value("${trygginn.reports.late-after:09:00}") String lateAfter
+    ) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.daycareRepository = daycareRepository;
+        this.meterRegistry = meterRegistry;
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.lateAfter = Time.valueOf(LocalTime.parse(lateAfter.trim()));
+        this.retention = Duration.ofHours(retentionHours);
+        this.freshFor = Duration.ofMinutes(freshMinutes);
+
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), daemon("report-worker"));
+        this.groupExecutor = Executors.newFixedThreadPool(groupParallelism, daemon("report-group"));
+        this.pruneExecutor = Executors.newSingleThreadScheduledExecutor(daemon("report-prune"));
+        this.pruneExecutor.scheduleWithFixedDelay(this::prune, 1, 1, TimeUnit.HOURS);
+
+        Gauge.builder(METRIC_NAME + ".queued", this.workers, executor -> executor.getQueue().size())
+                .description("Rapporter som venter på en ledig arbeider")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bestiller en rapport, eller gir jobben for samme rapport hvis den finnes.
+     */
+    public synchronized ReportJobResponse submit(ReportJobRequest request) {
+        if (request == null || request.daycareId() == null) {
+            throw new IllegalArgumentException("daycareId må være satt.");
+        }
+        Type type = parseType(request.type());
+        LocalDate from = request.from();
+        LocalDate to = request.to();
+        validateRange(from, to);
+        if (!daycareRepository.existsById(request.daycareId())) {
+            throw new IllegalArgumentException("Finner ikke barnehage.");
+        }
+
+        String key = type.name().toLowerCase(Locale.ROOT) + "-" + request.daycareId() + "-" + from + "-" + to;
+
+        Job existing = jobsByKey.get(key);
+        if (existing != null && reusable(existing)) {
+            count("deduplicated");
+            return toResponse(existing);
+        }
+
+        Job job = new Job(key, type, request.daycareId(), from, to, directory.resolve(key + ".csv"));
+        if (fromEarlierRun(job)) {
+            register(job);
+            count("cached");
+            return toResponse(job);
+        }
+
+        try {
+            workers.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            count("rejected");
+            throw e;
+        }
+        register(job);
+        return toResponse(job);
+    }
+
+    /**
+     * Status for en jobb.
+     */
+    public ReportJobResponse get(String id) {
+        return toResponse(find(id));
+    }
+
+    /**
+     * Den ferdige rapportfilen for en jobb.
+     */
+    public Path file(String id) {
+        Job job = find(id);
+        if (job.status != Status.DONE) {
+            throw new IllegalArgumentException("Rapporten er ikke ferdig.");
+        }
+        if (!Files.exists(job.file)) {
+            throw new IllegalArgumentException("Rapporten er slettet. Bestill den på nytt.");
+        }
+        return job.file;
+    }
+
+    /**
+     * Filnavnet rapporten lastes ned som.
+     */
+    public String fileName(String id) {
+        return find(id).key + ".csv";
+    }
+
+    private Job find(String id) {
+        Job job = id != null ? jobs.get(id) : null;
+        if (job == null) {
+            throw new IllegalArgumentException("Finner ikke rapportjobb.");
+        }
+        return job;
+    }
+
+    private void register(Job job) {
+        jobs.put(job.id, job);
+        jobsByKey.put(job.key, job);
+    }
+
+    /**
+     * En jobb som er i gang eller ferdig med en fil som fortsatt gjelder.
+     */
+    private boolean reusable(Job job) {
+        return switch (job.status) {
+            case QUEUED, RUNNING -> true;
+            case FAILED -> false;
+            case DONE -> Files.exists(job.file)
+                    && (periodIsOver(job) || job.finishedAt.isAfter(LocalDateTime.now().minus(freshFor)));
+        };
+    }
+
+    /**
+     * Tar i bruk en fil fra før omstart, hvis perioden er over og filen ikke er for gammel.
+     */
+    private boolean fromEarlierRun(Job job) {
+        if (!periodIsOver(job) || !Files.exists(job.file)) {
+            return false;
+        }
+        try {
+            Instant modified = Files.getLastModifiedTime(job.file).toInstant();
+            if (modified.isBefore(Instant.now().minus(retention))) {
+                return false;
+            }
+            job.groupsTotal = groups(job.daycareId).size();
+            job.groupsDone.set(job.groupsTotal);
+            job.cached = true;
+            job.finishedAt = LocalDateTime.ofInstant(modified, ZoneId.systemDefault());
+            job.status = Status.DONE;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean periodIsOver(Job job) {
+        return job.to.isBefore(LocalDate.now());
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        Path part = job.file.resolveSibling(job.file.getFileName() + "." + job.id + ".part");
+
+        List<CompletableFuture<List<String>>> pending = List.of();
+        try {
+            List<Group> groups = groups(job.daycareId);
+            job.groupsTotal = groups.size();
+
+            // Alle gruppene regnes ut i parallell, men skrives i rekkefølge
+            pending = groups.stream()
+                    .map(group -> CompletableFuture.supplyAsync(() -> rows(job, group), groupExecutor))
+                    .toList();
+
+            try (BufferedWriter writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+                writer.write(job.type.header);
+                writer.newLine();
+                for (CompletableFuture<List<String>> rows : pending) {
+                    for (String line : rows.join()) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                    job.groupsDone.incrementAndGet();
+                }
+            }
+            Files.move(part, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.DONE;
+            count("generated");
+        } catch (Exception e) {
+            pending.forEach(rows -> rows.cancel(false));
+            deleteQuietly(part);
+            job.message = "Rapporten kunne ikke lages.";
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            count("failed");
+            log.warn("Rapport {} feilet", job.key, e);
+        }
+    }
+
+    private List<Group> groups(Long daycareId) {
+        return jdbcTemplate.query(
+                "SELECT id, name FROM daycare_group WHERE daycare_id = ? ORDER BY name, id",
+                (rs, n) -> new Group(rs.getLong(1), rs.getString(2)),
+                daycareId);
+    }
+
+    /**
+     * Radene for én gruppe, ferdig formatert, sortert på navn.
+     */
+    private List<String> rows(Job job, Group group) {
+        Timestamp start = Timestamp.valueOf(job.from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(job.to.plusDays(1).atStartOfDay());
+        Date from = Date.valueOf(job.from);
+        Date to = Date.valueOf(job.to);
+
+        return switch (job.type) {
+            case ATTENDANCE -> jdbcTemplate.query("""
+                            WITH days AS (
+                                SELECT a.child_id,
+                                       min(a.event_time) FILTER (WHERE a.event_type = 'IN') AS first_in,
+                                       max(a.event_time) FILTER (WHERE a.event_type = 'OUT') AS last_out
+                                FROM attendance a
+                                JOIN children c ON c.id = a.child_id
+                                WHERE c.daycare_group_id = ? AND a.event_time >= ? AND a.event_time < ?
+                                GROUP BY a.child_id, a.event_time::date
+                            )
+                            SELECT c.id, c.first_name, c.last_name,
+                                   count(d.first_in),
+                                   coalesce(sum(extract(epoch FROM d.last_out - d.first_in))
+                                            FILTER (WHERE d.last_out > d.first_in), 0) / 3600.0,
+                                   count(*) FILTER (WHERE d.first_in::time > ?)
+                            FROM children c
+                            LEFT JOIN days d ON d.child_id = c.id
+                            WHERE c.daycare_group_id = ?
+                            GROUP BY c.id
+                            HAVING c.active OR count(d.child_id) > 0
+                            ORDER BY c.last_name, c.first_name, c.id
+                            """,
+                    (rs, n) -> csv(group.name(), rs.getLong(1), rs.getString(2), rs.getString(3),
+                            rs.getInt(4), String.format(Locale.ROOT, "%.2f", rs.getDouble(5)), rs.getInt(6)),
+                    group.id(), start, end, lateAfter, group.id());
+
+            case ABSENCE -> jdbcTemplate.query("""
+                            SELECT c.id, c.first_name, c.last_name,
+                                   (SELECT count(DISTINCT ab.date)
+                                    FROM absence ab
+                                    WHERE ab.child_id = c.id AND ab.date BETWEEN ? AND ?),
+                                   (SELECT count(DISTINCT day)
+                                    FROM vacation v,
+                                         generate_series(greatest(v.start_date, ?), least(v.end_date, ?),
+                                                         interval '1 day') AS day
+                                    WHERE v.child_id = c.id AND v.start_date <= ? AND v.end_date >= ?
+                                      AND extract(isodow FROM day) < 6)
+                            FROM children c
+                            WHERE c.daycare_group_id = ? AND c.active
+                            ORDER BY c.last_name, c.first_name, c.id
+                            """,
+                    (rs, n) -> csv(group.name(), rs.getLong(1), rs.getString(2), rs.getString(3),
+                            rs.getInt(4), rs.getInt(5)),
+                    from, to, from, to, to, from, group.id());
+        };
+    }
+
+    /**
+     * Sletter ferdige jobber og filer eldre enn trygginn.reports.retention-hours.
+     */
+    void prune() {
+        LocalDateTime jobCutoff = LocalDateTime.now().minus(retention);
+        synchronized (this) {
+            jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(jobCutoff));
+            jobsByKey.values().removeIf(job -> !jobs.containsKey(job.id));
+        }
+
+        Instant fileCutoff = Instant.now().minus(retention);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> isOlderThan(file, fileCutoff)).forEach(ReportJobService::deleteQuietly);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Kunne ikke rydde rapporter i {}", directory, e);
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Kunne ikke slette {}", file, e);
+        }
+    }
+
+    private ReportJobResponse toResponse(Job job) {
+        int total = job.groupsTotal;
+        int done = job.groupsDone.get();
+        int progress = job.status == Status.DONE ? 100 : total == 0 ? 0 : done * 100 / total;
+
+        return new ReportJobResponse(
+                job.id,
+                job.type.name(),
+                job.daycareId,
+                job.from,
+                job.to,
+                job.status.name(),
+                progress,
+                done,
+                total,
+                job.cached,
+                job.createdAt,
+                job.finishedAt,
+                job.message,
+                job.status == Status.DONE ? "/api/reports/" + job.id + "/download" : null);
+    }
+
+    private static void validateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Fra- og til-dato må være satt.");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Til-dato kan ikke være før fra-dato.");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Perioden kan være maks " + MAX_RANGE_DAYS + " dager.");
+        }
+    }
+
+    private static Type parseType(String type) {
+        try {
+            return Type.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("type må være ATTENDANCE eller ABSENCE.");
+        }
+    }
+
+    /**
+     * Én CSV-linje. Felter med komma, anførselstegn eller linjeskift settes i anførselstegn.
+     */
+    private static String csv(Object... fields) {
+        List<String> values = new ArrayList<>(fields.length);
+        for (Object field : fields) {
+            String value = field == null ? "" : field.toString();
+            if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+                value = "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            values.add(value);
+        }
+        return String.join(",", values);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter(METRIC_NAME, "outcome", outcome).increment();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Jobber som ikke er ferdige, må bestilles på nytt etter omstart
+        workers.shutdownNow();
+        groupExecutor.shutdownNow();
+        pruneExecutor.shutdownNow();
+    }
+}
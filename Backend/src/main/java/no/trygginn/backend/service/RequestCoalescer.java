@@ -0,0 +1,133 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Slår sammen like lesekall som kommer samtidig (single-flight).
+ * Når alle nettbrettene i en barnehage spør etter det samme i samme øyeblikk,
+ * kjører bare det første kallet spørringene; de andre venter på og deler
+ * resultatet. Resultatet gjenbrukes i trygginn.coalesce.micro-cache-ms etterpå
+ * (0 gir bare deling av kall som pågår).
+ * <p>
+ * Resultatet deles mellom tråder og må derfor være ferdig mappet og ikke endres
+ * av kallerne: controllerne sender inn oppslag pluss mapping til DTO-er, aldri
+ * entiteter med late relasjoner. Feil deles med dem som venter, men huskes ikke.
+ * Endringer kaller {@link #invalidate} etter commit, slik at neste kall henter på nytt.
+ */
+@Component
+public class RequestCoalescer {
+
+    public static final String DAYCARE_GROUPS = "daycare-groups";
+    public static final String DAYCARE_CALENDAR = "daycare-calendar";
+
+    static final String METRIC_NAME = "trygginn.coalesce.requests";
+
+    private record FlightKey(String name, Object key) {}
+
+    private static final class Flight {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        // Settes før result fullføres, så den er synlig for alle som ser at kallet er ferdig
+        volatile long expiresAt;
+    }
+
+    private final Map<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long microCacheNanos;
+
+    public RequestCoalescer(
+            MeterRegistry meterRegistry,
+            @Value("${trygginn.coalesce.enabled:true}") boolean enabled,
+            @Value("${trygginn.coalesce.micro-cache-ms:250}") long microCacheMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.microCacheNanos = TimeUnit.MILLISECONDS.toNanos(microCacheMs);
+    }
+
+    /**
+     * Kjører loader, eller venter på et likt kall som allerede pågår.
+     * Nøkkelen må ha equals/hashCode (id-er, records).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        FlightKey flightKey = new FlightKey(name, key);
+        while (true) {
+            Flight existing = flights.get(flightKey);
+            if (existing != null) {
+                if (!existing.result.isDone()) {
+                    count(name, "joined");
+                    return (T) await(existing);
+                }
+                if (existing.expiresAt - System.nanoTime() > 0) {
+                    count(name, "cached");
+                    return (T) await(existing);
+                }
+                flights.remove(flightKey, existing);
+            }
+
+            Flight flight = new Flight();
+            if (flights.putIfAbsent(flightKey, flight) != null) {
+                // En annen tråd startet samtidig; bli med på den
+                continue;
+            }
+
+            count(name, "leader");
+            T value;
+            try {
+                value = loader.get();
+            } catch (RuntimeException | Error e) {
+                flights.remove(flightKey, flight);
+                flight.result.completeExceptionally(e);
+                throw e;
+            }
+
+            flight.expiresAt = System.nanoTime() + microCacheNanos;
+            flight.result.complete(value);
+            if (microCacheNanos <= 0) {
+                flights.remove(flightKey, flight);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Glemmer resultatet for nøkkelen. Et kall som pågår fullføres for dem som
+     * allerede venter, men nye kall starter på nytt.
+     */
+    public void invalidate(String name, Object key) {
+        flights.remove(new FlightKey(name, key));
+    }
+
+    private static Object await(Flight flight) {
+        try {
+            return flight.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void count(String name, String outcome) {
+        meterRegistry.counter(METRIC_NAME, "name", name, "outcome", outcome).increment();
+    }
+}
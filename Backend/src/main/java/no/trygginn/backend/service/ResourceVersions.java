@@ -0,0 +1,306 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.model.CalendarEvent;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.DaycareGroup;
+import no.trygginn.backend.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sterke ETags for barn, grupper og brukerprofiler, bygget fra versjonskolonnene
+ * (V2__row_versions.sql) i stedet for fra svaret.
+ * <p>
+ * ETag lages på to måter som alltid gir samme verdi: fra entitetene når svaret
+ * bygges uansett, og fra ett lite SQL-oppslag når klienten sender If-None-Match,
+ * slik at 304 kan svares uten å laste entiteter eller bygge svaret.
+ * Oppslagene huskes i trygginn.etag.version-cache-ms, så gjentatte
+ * betingede kall ikke trenger databasen. Endringer gjennom tjenestene tømmer
+ * verdien etter commit; cache-tiden begrenser hvor lenge andre instanser kan
+ * svare 304 på en utdatert versjon.
+ * <p>
+ * Lister (barn for en foresatt, grupper i en barnehage) får ETag fra md5 av
+ * (id, versjon)-parene sortert på id, slik at endringer, nye, fjernede og
+ * byttede rader alltid gir ny ETag (summer kan falle likt ut).
+ * <p>
+ * Versjonene er også @Version i Child, User og CalendarEvent. Endringer kan sende
+ * If-Match med ETag-en de leste; {@link #expectedVersion} gjør den om til versjonen
+ * tjenesten sammenligner med, og {@link #checkVersion} avviser utdaterte endringer.
+ */
+@Component
+public class ResourceVersions {
+
+    private record Cached(String etag, long expiresAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long cacheNanos;
+
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    // Økes ved hver tømming; et oppslag som startet før tømmingen lagres ikke
+    private final AtomicLong generation = new AtomicLong();
+
+    public ResourceVersions(
+            JdbcTemplate jdbcTemplate,
+            @Value("${trygginn.etag.version-cache-ms:2000}") long cacheMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMs);
+    }
+
+    // ETag fra entiteter
+
+    public static String childTag(Child child) {
+        DaycareGroup group = child.getDaycareGroup();
+        return quote("child-" + child.getId() + "-" + child.getVersion()
+                + "-" + (group != null ? group.getVersion() : 0));
+    }
+
+    public static String childDetailsTag(Child child) {
+        return quote("child-details-" + child.getId() + "-" + child.getVersion());
+    }
+
+    public static String childNoteTag(Child child) {
+        return quote("child-note-" + child.getId() + "-" + child.getVersion());
+    }
+
+    public static String calendarEventTag(CalendarEvent event) {
+        return quote("calendar-event-" + event.getId() + "-" + event.getVersion());
+    }
+
+    public static String userTag(User user) {
+        return quote("user-" + user.getId() + "-" + user.getVersion());
+    }
+
+    public static String guardianChildrenTag(Long guardianId, Collection<Child> children) {
+        StringJoiner rows = new StringJoiner(",");
+        children.stream()
+                .sorted(Comparator.comparing(Child::getId))
+                .forEach(child -> rows.add(child.getId() + ":" + child.getVersion() + ":"
+                        + (child.getDaycareGroup() != null ? child.getDaycareGroup().getVersion() : 0)));
+        return quote("guardian-children-" + guardianId + "-" + md5(rows.toString()));
+    }
+
+    /**
+     * Gruppene med barna (gruppelisten viser navnene på barna i hver gruppe).
+     */
+    public static String daycareGroupsTag(Long daycareId, Collection<DaycareGroup> groups) {
+        StringJoiner groupRows = new StringJoiner(",");
+        List<Child> children = new ArrayList<>();
+        groups.stream()
+                .sorted(Comparator.comparing(DaycareGroup::getId))
+                .forEach(group -> {
+                    groupRows.add(group.getId() + ":" + group.getVersion());
+                    children.addAll(group.getChildren());
+                });
+
+        // Barna sorteres på id på tvers av gruppene, som i SQL-en
+        StringJoiner childRows = new StringJoiner(",");
+        children.stream()
+                .sorted(Comparator.comparing(Child::getId))
+                .forEach(child -> childRows.add(
+                        child.getId() + ":" + child.getDaycareGroup().getId() + ":" + child.getVersion()));
+
+        return quote("daycare-groups-" + daycareId + "-" + md5(groupRows + "|" + childRows));
+    }
+
+    // ETag fra databasen, for betingede kall. null når ressursen ikke finnes.
+
+    public String currentChildTag(Long childId) {
+        return cached("child:" + childId, () -> jdbcTemplate.query("""
+                        SELECT c.version, g.version
+                        FROM children c
+                        LEFT JOIN daycare_group g ON g.id = c.daycare_group_id
+                        WHERE c.id = ?
+                        """,
+                (rs, n) -> quote("child-" + childId + "-" + rs.getLong(1) + "-" + rs.getLong(2)),
+                childId));
+    }
+
+    public String currentChildDetailsTag(Long childId) {
+        return cached("child-details:" + childId, () -> jdbcTemplate.query(
+                "SELECT version FROM children WHERE id = ?",
+                (rs, n) -> quote("child-details-" + childId + "-" + rs.getLong(1)),
+                childId));
+    }
+
+    public String currentUserTag(Long userId) {
+        return cached("user:" + userId, () -> jdbcTemplate.query(
+                "SELECT version FROM users WHERE id = ?",
+                (rs, n) -> quote("user-" + userId + "-" + rs.getLong(1)),
+                userId));
+    }
+
+    public String currentGuardianChildrenTag(Long guardianId) {
+        return cached("guardian-children:" + guardianId, () -> jdbcTemplate.query("""
+                        SELECT md5(COALESCE(string_agg(
+                                   c.id || ':' || c.version || ':' || COALESCE(g.version, 0), ',' ORDER BY c.id), ''))
+                        FROM guardians_children gc
+                        JOIN children c ON c.id = gc.child_id
+                        LEFT JOIN daycare_group g ON g.id = c.daycare_group_id
+                        WHERE gc.guardian_id = ?
+                        """,
+                (rs, n) -> quote("guardian-children-" + guardianId + "-" + rs.getString(1)),
+                guardianId));
+    }
+
+    public String currentDaycareGroupsTag(Long daycareId) {
+        return cached("daycare-groups:" + daycareId, () -> jdbcTemplate.query("""
+                        SELECT md5(
+                                   COALESCE((SELECT string_agg(id || ':' || version, ',' ORDER BY id)
+                                             FROM daycare_group
+                                             WHERE daycare_id = ?), '')
+                                   || '|' ||
+                                   COALESCE((SELECT string_agg(ch.id || ':' || ch.daycare_group_id || ':' || ch.version,
+                                                               ',' ORDER BY ch.id)
+                                             FROM children ch
+                                             JOIN daycare_group dg ON dg.id = ch.daycare_group_id
+                                             WHERE dg.daycare_id = ?), ''))
+                        """,
+                (rs, n) -> quote("daycare-groups-" + daycareId + "-" + rs.getString(1)),
+                daycareId, daycareId));
+    }
+
+    // Tømming etter endringer
+
+    public void childChanged(Long childId) {
+        AfterCommit.run(() -> {
+            generation.incrementAndGet();
+            cache.remove("child:" + childId);
+            cache.remove("child-details:" + childId);
+        });
+    }
+
+    public void guardianChildrenChanged(Long guardianId) {
+        AfterCommit.run(() -> evict("guardian-children:" + guardianId));
+    }
+
+    public void daycareGroupsChanged(Long daycareId) {
+        AfterCommit.run(() -> evict("daycare-groups:" + daycareId));
+    }
+
+    public void userChanged(Long userId) {
+        AfterCommit.run(() -> evict("user:" + userId));
+    }
+
+    /**
+     * For masseendringer (import) der det er enklere å glemme alt.
+     */
+    public void invalidateAll() {
+        AfterCommit.run(() -> {
+            generation.incrementAndGet();
+            cache.clear();
+        });
+    }
+
+    private void evict(String key) {
+        generation.incrementAndGet();
+        cache.remove(key);
+    }
+
+    /**
+     * Om en If-None-Match-header treffer ETag-en. Svake ETags (W/) sammenlignes
+     * som sterke, slik RFC 9110 sier for If-None-Match.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Versjonen en If-Match-header peker på, for en ressurs med ETag "{resource}-{versjon}"
+     * (f.eks. resource = "child-details-5"). null når headeren mangler eller er *.
+     * If-Match bruker sterk sammenligning (RFC 9110), så svake ETags, lister og
+     * ETags for andre ressurser godtas aldri og gir 412.
+     */
+    public static Long expectedVersion(String ifMatch, String resource) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        String prefix = "\"" + resource + "-";
+        if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // faller gjennom til avvisning
+            }
+        }
+        throw new OptimisticLockingFailureException("If-Match " + tag + " gjelder ikke " + resource + ".");
+    }
+
+    /**
+     * Avviser endringen når klienten har en annen versjon enn den som er lastet.
+     * Samtidige endringer mellom lesing og skriving fanges av UPDATE ... WHERE version = ?.
+     */
+    public static void checkVersion(Long expectedVersion, long currentVersion) {
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new OptimisticLockingFailureException(
+                    "Versjon " + expectedVersion + " er utdatert, gjeldende versjon er " + currentVersion + ".");
+        }
+    }
+
+    private String cached(String key, Supplier<List<String>> lookup) {
+        Cached cached = cache.get(key);
+        if (cached != null && cached.expiresAt() - System.nanoTime() > 0) {
+            return cached.etag();
+        }
+
+        long before = generation.get();
+        List<String> rows = lookup.get();
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        String etag = rows.get(0);
+        if (cacheNanos > 0 && generation.get() == before) {
+            cache.put(key, new Cached(etag, System.nanoTime() + cacheNanos));
+        }
+        return etag;
+    }
+
+    private static String md5(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 mangler i JVM-en", e);
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -0,0 +1,348 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.SyncResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Delta-synk for nettbrettene: barn, inn/ut-sjekk, fravær, ferie og kalender
+ * for én barnehage, endret siden forrige synk.
+ * <p>
+ * Triggere (V5) logger hver endret rad i sync_change sammen med transaksjonen
+ * som gjorde den. Cursoren er databasens snapshot da synken ble lest; neste
+ * synk henter rader fra transaksjoner som ikke var synlige i det snapshotet.
+ * En løpende id eller et tidsstempel ville hoppet over transaksjoner som
+ * committer i en annen rekkefølge enn de fikk id-en sin.
+ * <p>
+ * Uten cursor, eller med en cursor eldre enn det som er ryddet bort
+ * (trygginn.sync.retention-days), sendes en full synk av det nettbrettet
+ * trenger fra i dag og fremover. Ryddingen er jobben "sync.prune" i jobbkøen
+ * (trygginn.sync.prune-cron), så den kjøres én gang selv med flere instanser.
+ */
+@Service
+public class SyncService implements JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncService.class);
+
+    private static final Pattern SNAPSHOT = Pattern.compile("\\d+:\\d+:(\\d+(,\\d+)*)?");
+
+    private static final String CHILDREN = """
+            SELECT c.id, c.daycare_group_id, c.first_name, c.last_name, c.date_of_birth,
+                   c.active, c.allergies, c.medications, c.version
+            FROM children c
+            JOIN daycare_group g ON g.id = c.daycare_group_id
+            WHERE g.daycare_id = ? AND %s
+            ORDER BY c.id
+            """;
+
+    private static final String ATTENDANCE = """
+            SELECT a.id, a.child_id, a.event_type, a.event_time, a.note, a.performed_by_user_id
+            FROM attendance a
+            JOIN children c ON c.id = a.child_id
+            JOIN daycare_group g ON g.id = c.daycare_group_id
+            WHERE g.daycare_id = ? AND %s
+            ORDER BY a.event_time, a.id
+            """;
+
+    private static final String ABSENCES = """
+            SELECT a.id, a.child_id, a.date, a.reason, a.note
+            FROM absence a
+            JOIN children c ON c.id = a.child_id
+            JOIN daycare_group g ON g.id = c.daycare_group_id
+            WHERE g.daycare_id = ? AND %s
+            ORDER BY a.date, a.id
+            """;
+
+    private static final String VACATIONS = """
+            SELECT v.id, v.child_id, v.start_date, v.end_date, v.note
+            FROM vacation v
+            JOIN children c ON c.id = v.child_id
+            JOIN daycare_group g ON g.id = c.daycare_group_id
+            WHERE g.daycare_id = ? AND %s
+            ORDER BY v.start_date, v.id
+            """;
+
+    private static final String CALENDAR_EVENTS = """
+            SELECT e.id, e.daycare_group_id, e.title, e.description, e.location,
+                   e.start_time, e.end_time, e.version
+            FROM calendar_event e
+            WHERE e.daycare_id = ? AND %s
+            ORDER BY e.start_time, e.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int retentionDays;
+    private final int uploadRetentionDays;
+    private final String pruneCron;
+
+    public SyncService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${trygginn.sync.retention-days:30}") int retentionDays,
+            @Value("${trygginn.sync.upload-retention-days:14}") int uploadRetentionDays,
+            @Value("${trygginn.sync.prune-cron:0 15 * * * *}") String pruneCron
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionDays = retentionDays;
+        this.uploadRetentionDays = uploadRetentionDays;
+        this.pruneCron = pruneCron;
+    }
+
+    /**
+     * Endringer for barnehagen siden cursoren (null gir full synk).
+     * REPEATABLE READ gjør at snapshotet i cursoren er det samme som radene ble lest med.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public SyncResponse sync(Long daycareId, String since) {
+        if (daycareId == null) {
+            throw new IllegalArgumentException("daycareId må være satt.");
+        }
+        String previous = since != null && !since.isBlank() ? decodeCursor(since) : null;
+
+        Map<String, Object> head = jdbcTemplate.queryForMap("""
+                SELECT pg_current_snapshot()::text AS snapshot,
+                       (SELECT pg_snapshot_xmin(?::pg_snapshot) <= pruned_before
+                        FROM sync_change_horizon WHERE id = 1) AS stale,
+                       EXISTS (SELECT 1 FROM daycare WHERE id = ?) AS found
+                """, previous != null ? previous : "1:1:", daycareId);
+
+        if (!Boolean.TRUE.equals(head.get("found"))) {
+            throw new IllegalArgumentException("Finner ikke barnehage.");
+        }
+        String cursor = encodeCursor((String) head.get("snapshot"));
+
+        if (previous == null || Boolean.TRUE.equals(head.get("stale"))) {
+            return fullSync(daycareId, cursor);
+        }
+        return deltaSync(daycareId, previous, cursor);
+    }
+
+    private SyncResponse fullSync(long daycareId, String cursor) {
+        LocalDate today = LocalDate.now();
+        LocalDateTime startOfDay = today.atStartOfDay();
+
+        return new SyncResponse(
+                cursor,
+                true,
+                daycareId,
+                load(CHILDREN.formatted("c.active"), this::child, daycareId, null),
+                load(ATTENDANCE.formatted("a.event_time >= ?"), this::attendance, daycareId, startOfDay),
+                load(ABSENCES.formatted("a.date >= ?"), this::absence, daycareId, today),
+                load(VACATIONS.formatted("v.end_date >= ?"), this::vacation, daycareId, today),
+                load(CALENDAR_EVENTS.formatted("COALESCE(e.end_time, e.start_time) >= ?"),
+                        this::calendarEvent, daycareId, startOfDay),
+                new SyncResponse.Removed(List.of(), List.of(), List.of(), List.of(), List.of())
+        );
+    }
+
+    private SyncResponse deltaSync(long daycareId, String previous, String cursor) {
+        // Endrede id-er per entitet, i én spørring mot loggen
+        Map<String, Long[]> changed = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT entity, array_agg(DISTINCT entity_id)
+                        FROM sync_change
+                        WHERE daycare_id = ?
+                          AND tx >= pg_snapshot_xmin(?::pg_snapshot)
+                          AND NOT pg_visible_in_snapshot(tx, ?::pg_snapshot)
+                        GROUP BY entity
+                        """,
+                rs -> {
+                    changed.put(rs.getString(1), (Long[]) rs.getArray(2).getArray());
+                },
+                daycareId, previous, previous);
+
+        List<Long> removedChildren = new ArrayList<>();
+        List<Long> removedAttendance = new ArrayList<>();
+        List<Long> removedAbsences = new ArrayList<>();
+        List<Long> removedVacations = new ArrayList<>();
+        List<Long> removedEvents = new ArrayList<>();
+
+        return new SyncResponse(
+                cursor,
+                false,
+                daycareId,
+                changed(CHILDREN.formatted("c.id = ANY(?)"), this::child,
+                        SyncResponse.ChildRow::id, daycareId, changed.get("child"), removedChildren),
+                changed(ATTENDANCE.formatted("a.id = ANY(?)"), this::attendance,
+                        SyncResponse.AttendanceRow::id, daycareId, changed.get("attendance"), removedAttendance),
+                changed(ABSENCES.formatted("a.id = ANY(?)"), this::absence,
+                        SyncResponse.AbsenceRow::id, daycareId, changed.get("absence"), removedAbsences),
+                changed(VACATIONS.formatted("v.id = ANY(?)"), this::vacation,
+                        SyncResponse.VacationRow::id, daycareId, changed.get("vacation"), removedVacations),
+                changed(CALENDAR_EVENTS.formatted("e.id = ANY(?)"), this::calendarEvent,
+                        SyncResponse.CalendarEventRow::id, daycareId, changed.get("calendar_event"), removedEvents),
+                new SyncResponse.Removed(
+                        removedChildren, removedAttendance, removedAbsences, removedVacations, removedEvents)
+        );
+    }
+
+    /**
+     * Nåværende rader for de endrede id-ene. Id-er som ikke finnes i barnehagen lenger, er fjernet.
+     */
+    private <T> List<T> changed(
+            String sql,
+            RowMapper<T> mapper,
+            Function<T, Long> idOf,
+            long daycareId,
+            Long[] ids,
+            List<Long> removed
+    ) {
+        if (ids == null || ids.length == 0) {
+            return List.of();
+        }
+
+        List<T> rows = load(sql, mapper, daycareId, ids);
+        Set<Long> missing = new LinkedHashSet<>(List.of(ids));
+        rows.forEach(row -> missing.remove(idOf.apply(row)));
+        removed.addAll(missing);
+        return rows;
+    }
+
+    private <T> List<T> load(String sql, RowMapper<T> mapper, long daycareId, Object filter) {
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setLong(1, daycareId);
+            if (filter instanceof Long[] ids) {
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+            } else if (filter != null) {
+                ps.setObject(2, filter);
+            }
+        }, mapper);
+    }
+
+    private SyncResponse.ChildRow child(ResultSet rs, int n) throws SQLException {
+        return new SyncResponse.ChildRow(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getString(3),
+                rs.getString(4),
+                toLocalDate(rs.getDate(5)),
+                rs.getBoolean(6),
+                rs.getString(7),
+                rs.getString(8),
+                rs.getLong(9));
+    }
+
+    private SyncResponse.AttendanceRow attendance(ResultSet rs, int n) throws SQLException {
+        return new SyncResponse.AttendanceRow(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getString(3),
+                toLocalDateTime(rs.getTimestamp(4)),
+                rs.getString(5),
+                rs.getLong(6));
+    }
+
+    private SyncResponse.AbsenceRow absence(ResultSet rs, int n) throws SQLException {
+        return new SyncResponse.AbsenceRow(
+                rs.getLong(1),
+                rs.getLong(2),
+                toLocalDate(rs.getDate(3)),
+                rs.getString(4),
+                rs.getString(5));
+    }
+
+    private SyncResponse.VacationRow vacation(ResultSet rs, int n) throws SQLException {
+        return new SyncResponse.VacationRow(
+                rs.getLong(1),
+                rs.getLong(2),
+                toLocalDate(rs.getDate(3)),
+                toLocalDate(rs.getDate(4)),
+                rs.getString(5));
+    }
+
+    private SyncResponse.CalendarEventRow calendarEvent(ResultSet rs, int n) throws SQLException {
+        return new SyncResponse.CalendarEventRow(
+                rs.getLong(1),
+                rs.getObject(2, Long.class),
+                rs.getString(3),
+                rs.getString(4),
+                rs.getString(5),
+                toLocalDateTime(rs.getTimestamp(6)),
+                toLocalDateTime(rs.getTimestamp(7)),
+                rs.getLong(8));
+    }
+
+    @Override
+    public String type() {
+        return "sync.prune";
+    }
+
+    @Override
+    public String schedule() {
+        return pruneCron;
+    }
+
+    /**
+     * Sletter logg eldre enn retention-days og flytter horisonten forbi det som er slettet,
+     * så cursorer som trengte radene får full synk i stedet for et hull.
+     * Rydder også clientId-er fra offline-opplastinger (OfflineUploadService).
+     */
+    @Override
+    public void run(String payload) {
+        int deleted = jdbcTemplate.update("""
+                WITH pruned AS (
+                    DELETE FROM sync_change
+                    WHERE changed_at < NOW() - make_interval(days => ?)
+                    RETURNING tx
+                )
+                UPDATE sync_change_horizon
+                SET pruned_before = GREATEST(pruned_before, (SELECT max(tx) FROM pruned))
+                WHERE id = 1 AND EXISTS (SELECT 1 FROM pruned)
+                """, retentionDays);
+        if (deleted > 0) {
+            log.info("Ryddet endringslogg for synk eldre enn {} dager", retentionDays);
+        }
+
+        jdbcTemplate.update(
+                "DELETE FROM offline_upload_item WHERE created_at < NOW() - make_interval(days => ?)",
+                uploadRetentionDays);
+    }
+
+    private static String decodeCursor(String cursor) {
+        String snapshot;
+        try {
+            snapshot = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ugyldig synk-cursor.");
+        }
+        if (!SNAPSHOT.matcher(snapshot).matches()) {
+            throw new IllegalArgumentException("Ugyldig synk-cursor.");
+        }
+        return snapshot;
+    }
+
+    private static String encodeCursor(String snapshot) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(snapshot.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,114 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.model.Attendance;
+import no.trygginn.backend.model.AttendanceEventType;
+import no.trygginn.backend.model.Child;
+import no.trygginn.backend.model.UserRole;
+import no.trygginn.backend.repository.ChildRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Inn- og utsjekk fra nettbrettene til de ansatte (WebSocket-kanalen).
+ * Et nettbrett hører til én gruppe og kan bare sjekke inn og ut barn i den.
+ */
+@Service
+public class TabletCheckInService {
+
+    /**
+     * Et barn i gruppen med siste inn/ut-sjekk (status og tid er null hvis ingen).
+     */
+    public record RosterEntry(
+            Long childId,
+            String firstName,
+            String lastName,
+            String status,
+            Long eventId,
+            LocalDateTime eventTime
+    ) {}
+
+    private final ChildRepository childRepository;
+    private final AttendanceService attendanceService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public TabletCheckInService(
+            ChildRepository childRepository,
+            AttendanceService attendanceService,
+            JdbcTemplate jdbcTemplate
+    ) {
+        this.childRepository = childRepository;
+        this.attendanceService = attendanceService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Aktive barn i gruppen med siste status, i én spørring.
+     */
+    @Transactional(readOnly = true)
+    public List<RosterEntry> getRoster(Long daycareGroupId) {
+        return jdbcTemplate.query("""
+                        SELECT c.id, c.first_name, c.last_name, a.event_type, a.id, a.event_time
+                        FROM children c
+                        LEFT JOIN LATERAL (
+                            SELECT id, event_type, event_time
+                            FROM attendance
+                            WHERE child_id = c.id
+                            ORDER BY event_time DESC
+                            LIMIT 1
+                        ) a ON TRUE
+                        WHERE c.daycare_group_id = ? AND c.active
+                        ORDER BY c.first_name, c.last_name
+                        """,
+                (rs, n) -> {
+                    Timestamp eventTime = rs.getTimestamp(6);
+                    return new RosterEntry(
+                            rs.getLong(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getString(4),
+                            rs.getObject(5, Long.class),
+                            eventTime != null ? eventTime.toLocalDateTime() : null);
+                },
+                daycareGroupId);
+    }
+
+    /**
+     * Om brukeren er ansatt eller administrator, de eneste som kan bruke nettbrettene.
+     */
+    @Transactional(readOnly = true)
+    public boolean isStaff(Long userId) {
+        List<String> roles = jdbcTemplate.queryForList(
+                "SELECT role FROM users WHERE id = ?", String.class, userId);
+        return !roles.isEmpty()
+                && (UserRole.STAFF.name().equals(roles.get(0)) || UserRole.ADMIN.name().equals(roles.get(0)));
+    }
+
+    /**
+     * Registrerer inn- eller utsjekk for et barn i nettbrettets gruppe.
+     * Barnet lastes bare én gang; AttendanceService finner det igjen i samme transaksjon.
+     */
+    @Transactional
+    public Attendance register(
+            Long daycareGroupId,
+            Long childId,
+            Long performedByUserId,
+            AttendanceEventType eventType,
+            String note
+    ) {
+        Child child = childRepository.findById(childId)
+                .orElseThrow(() -> new IllegalArgumentException("Finner ikke barn."));
+
+        if (child.getDaycareGroup() == null
+                || !Objects.equals(child.getDaycareGroup().getId(), daycareGroupId)) {
+            throw new IllegalArgumentException("Barnet hører ikke til denne gruppen.");
+        }
+
+        return attendanceService.registerEvent(childId, performedByUserId, eventType, note);
+    }
+}
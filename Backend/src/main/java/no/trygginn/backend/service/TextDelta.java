@@ -0,0 +1,185 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tekstendringer for notathistorikken (ChildNoteHistory).
+ * <p>
+ * Lagringen bruker den enkleste formen som dekker vanlige redigeringer: felles
+ * start og slutt beholdes, og bare teksten i mellom lagres. Visningen (diff) er
+ * ord for ord, så flere endringer i samme notat vises hver for seg.
+ */
+final class TextDelta {
+
+    /**
+     * Over dette antallet ordpar vises endringen som én sletting og ett tillegg.
+     * Notater er på maks 2000 tegn, så grensen nås bare med svært mange korte ord.
+     */
+    private static final int MAX_DIFF_CELLS = 1_000_000;
+
+    private static final Pattern TOKEN = Pattern.compile("\\s+|\\S+");
+
+    /**
+     * Endringen fra en tekst til en annen: behold keepPrefix tegn fra starten og
+     * keepSuffix tegn fra slutten, med content i mellom.
+     */
+    record Delta(int keepPrefix, int keepSuffix, String content) {}
+
+    private TextDelta() {
+    }
+
+    static Delta between(String from, String to) {
+        int max = Math.min(from.length(), to.length());
+
+        int prefix = 0;
+        while (prefix < max && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new Delta(prefix, suffix, to.substring(prefix, to.length() - suffix));
+    }
+
+    static String apply(String base, int keepPrefix, int keepSuffix, String content) {
+        if (keepPrefix + keepSuffix > base.length()) {
+            throw new IllegalStateException("Notathistorikken er ødelagt: endringen passer ikke forrige revisjon.");
+        }
+        return base.substring(0, keepPrefix) + content + base.substring(base.length() - keepSuffix);
+    }
+
+    /**
+     * Forskjellen mellom to tekster ord for ord (lengste felles delsekvens),
+     * med like, slettede og nye deler i rekkefølge.
+     */
+    static List<ChildNoteDiffResponse.Part> diff(String from, String to) {
+        List<String> a = tokens(from);
+        List<String> b = tokens(to);
+
+        int start = 0;
+        while (start < a.size() && start < b.size() && a.get(start).equals(b.get(start))) {
+            start++;
+        }
+        int endA = a.size();
+        int endB = b.size();
+        while (endA > start && endB > start && a.get(endA - 1).equals(b.get(endB - 1))) {
+            endA--;
+            endB--;
+        }
+
+        Parts parts = new Parts();
+        parts.add(ChildNoteDiffResponse.Op.EQUAL, a.subList(0, start));
+
+        int n = endA - start;
+        int m = endB - start;
+        if ((long) n * m > MAX_DIFF_CELLS) {
+            parts.add(ChildNoteDiffResponse.Op.DELETE, a.subList(start, endA));
+            parts.add(ChildNoteDiffResponse.Op.INSERT, b.subList(start, endB));
+        } else {
+            // lcs[i][j] = lengste felles delsekvens av a[start+i..] og b[start+j..]
+            int[][] lcs = new int[n + 1][m + 1];
+            for (int i = n - 1; i >= 0; i--) {
+                for (int j = m - 1; j >= 0; j--) {
+                    lcs[i][j] = a.get(start + i).equals(b.get(start + j))
+                            ? lcs[i + 1][j + 1] + 1
+                            : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+                }
+            }
+
+            int i = 0;
+            int j = 0;
+            while (i < n || j < m) {
+                if (i < n && j < m && a.get(start + i).equals(b.get(start + j))) {
+                    parts.add(ChildNoteDiffResponse.Op.EQUAL, a.get(start + i));
+                    i++;
+                    j++;
+                } else if (j < m && (i == n || lcs[i][j + 1] >= lcs[i + 1][j])) {
+                    parts.add(ChildNoteDiffResponse.Op.INSERT, b.get(start + j));
+                    j++;
+                } else {
+                    parts.add(ChildNoteDiffResponse.Op.DELETE, a.get(start + i));
+                    i++;
+                }
+            }
+        }
+
+        parts.add(ChildNoteDiffResponse.Op.EQUAL, a.subList(endA, a.size()));
+        return parts.toList();
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    /**
+     * Slår sammen ord som følger etter hverandre med samme operasjon. En endring
+     * som bare avbrytes av mellomrom vises som én sletting og ett tillegg.
+     */
+    private static final class Parts {
+        private final List<ChildNoteDiffResponse.Op> ops = new ArrayList<>();
+        private final List<StringBuilder> texts = new ArrayList<>();
+
+        void add(ChildNoteDiffResponse.Op op, List<String> tokens) {
+            tokens.forEach(token -> add(op, token));
+        }
+
+        void add(ChildNoteDiffResponse.Op op, String token) {
+            if (!ops.isEmpty() && ops.getLast() == op) {
+                texts.getLast().append(token);
+                return;
+            }
+            ops.add(op);
+            texts.add(new StringBuilder(token));
+        }
+
+        List<ChildNoteDiffResponse.Part> toList() {
+            List<ChildNoteDiffResponse.Part> parts = new ArrayList<>(ops.size());
+            StringBuilder deleted = new StringBuilder();
+            StringBuilder inserted = new StringBuilder();
+
+            for (int i = 0; i < ops.size(); i++) {
+                String text = texts.get(i).toString();
+                boolean inChange = !deleted.isEmpty() || !inserted.isEmpty();
+
+                switch (ops.get(i)) {
+                    case DELETE -> deleted.append(text);
+                    case INSERT -> inserted.append(text);
+                    case EQUAL -> {
+                        if (inChange && text.isBlank() && i < ops.size() - 1) {
+                            deleted.append(text);
+                            inserted.append(text);
+                        } else {
+                            flush(parts, deleted, inserted);
+                            parts.add(new ChildNoteDiffResponse.Part(ChildNoteDiffResponse.Op.EQUAL, text));
+                        }
+                    }
+                }
+            }
+            flush(parts, deleted, inserted);
+            return parts;
+        }
+
+        private static void flush(List<ChildNoteDiffResponse.Part> parts, StringBuilder deleted, StringBuilder inserted) {
+            if (!deleted.isEmpty()) {
+                parts.add(new ChildNoteDiffResponse.Part(ChildNoteDiffResponse.Op.DELETE, deleted.toString()));
+                deleted.setLength(0);
+            }
+            if (!inserted.isEmpty()) {
+                parts.add(new ChildNoteDiffResponse.Part(ChildNoteDiffResponse.Op.INSERT, inserted.toString()));
+                inserted.setLength(0);
+            }
+        }
+    }
+}
@@ -14,13 +14,19 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PeopleSearchService peopleSearchService;
+    private final ResourceVersions resourceVersions;
 
     public UserService(
             UserRepository userRepository,
-            PasswordEncoder passwordEncoder
+            PasswordEncoder passwordEncoder,
+            PeopleSearchService peopleSearchService,
+            ResourceVersions resourceVersions
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.peopleSearchService = peopleSearchService;
+        this.resourceVersions = resourceVersions;
     }
 
     /**
@@ -33,16 +39,20 @@ public class UserService {
     }
 
     /**
-     * Oppdaterer brukerprofil.
+     * Oppdaterer brukerprofil. Felt som er null lar verdien stå.
+     * expectedVersion er versjonen klienten leste (If-Match), eller null.
      */
+    @Transactional
     public User updateUserProfile(
             Long id,
             String fullName,
             String email,
-            String phoneNumber
+            String phoneNumber,
+            Long expectedVersion
     ) {
 
         User user = getUserById(id);
+        ResourceVersions.checkVersion(expectedVersion, user.getVersion());
 
         if (fullName != null && !fullName.isBlank()) {
             user.setFullName(fullName.trim());
@@ -66,7 +76,12 @@ public class UserService {
             user.setPhoneNumber(trimmed.isBlank() ? null : trimmed);
         }
 
-        return userRepository.save(user);
+        // Flush nå, så ny versjon (og eventuell konflikt) er kjent før svaret lages
+        User saved = userRepository.saveAndFlush(user);
+        peopleSearchService.userChanged(saved);
+        resourceVersions.userChanged(saved.getId());
+
+        return saved;
     }
 
     /**
@@ -99,6 +114,7 @@ public class UserService {
 
         user.setPasswordHash(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        resourceVersions.userChanged(user.getId());
     }
 
     /**
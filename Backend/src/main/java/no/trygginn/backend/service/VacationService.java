@@ -21,15 +21,21 @@ public class VacationService {
     private final VacationRepository vacationRepository;
     private final ChildRepository childRepository;
     private final UserRepository userRepository;
+    private final AttendanceProjectionService projectionService;
+    private final DomainEvents domainEvents;
 
     public VacationService(
             VacationRepository vacationRepository,
             ChildRepository childRepository,
-            UserRepository userRepository
+            UserRepository userRepository,
+            AttendanceProjectionService projectionService,
+            DomainEvents domainEvents
     ) {
         this.vacationRepository = vacationRepository;
         this.childRepository = childRepository;
         this.userRepository = userRepository;
+        this.projectionService = projectionService;
+        this.domainEvents = domainEvents;
     }
 
     /**
@@ -66,7 +72,19 @@ public class VacationService {
         vacation.setEndDate(endDate);
         vacation.setNote(note);
 
-        return vacationRepository.save(vacation);
+        Vacation saved = vacationRepository.save(vacation);
+        projectionService.vacationRegistered(child, startDate, endDate);
+        domainEvents.publish(
+                DomainEvent.Type.VACATION_REGISTERED,
+                child.getId(),
+                DomainEvents.daycareOf(child),
+                DomainEvents.data(
+                        "vacationId", saved.getId(),
+                        "startDate", startDate,
+                        "endDate", endDate,
+                        "reportedByUserId", reportedBy.getId()));
+
+        return saved;
     }
 
     /**
@@ -0,0 +1,64 @@
+-- Testdata for lokal utvikling (profilen "dev").
+-- Kjøres på nytt av Flyway når filen endres; alle INSERT-er tåler å kjøres flere ganger.
+
+SET TIME ZONE 'UTC';
+
+--  1) TEST DATA
+
+INSERT INTO daycare (id, name, org_number, address, created_at)
+VALUES (1, 'Solstrålen Barnehage', '999888777', 'Solgata 12, Oslo', NOW())
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO users (id, full_name, email, phone_number, role, password_hash, external_auth_id, auth_provider, created_at)
+VALUES
+    (1, 'Anne Hansen',  'anne.hansen@test.no', '90000001', 'PARENT', 'hashed_pw_anne', NULL, NULL, NOW()),
+    (2, 'Per Hansen',   'per.hansen@test.no',  '90000002', 'PARENT', 'hashed_pw_per',  NULL, NULL, NOW()),
+    (3, 'Kari Olsen',   'kari.olsen@test.no',  '90000003', 'STAFF',  'hashed_pw_kari', NULL, NULL, NOW()),
+    (4, 'Admin Bruker', 'admin@test.no',       NULL,       'ADMIN',  'hashed_pw_admin', NULL, NULL, NOW())
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO daycare_group (id, daycare_id, name, description, created_at)
+VALUES
+    (1, 1, 'Marihøna', 'Småbarnsavdeling', NOW()),
+    (2, 1, 'Bikuben',  'Storebarnsavdeling', NOW())
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO children (
+    id, daycare_group_id, first_name, last_name, date_of_birth, active,
+    allergies, medications, favorite_food, note, created_at
+)
+VALUES
+    (1, 1, 'Ola',  'Hansen', '2020-05-12', TRUE,  'Egg',  NULL, 'Pasta', 'Trenger litt ekstra tid ved levering.', CURRENT_DATE),
+    (2, 1, 'Emma', 'Hansen', '2019-09-03', TRUE,  NULL,  NULL, 'Taco',  NULL, CURRENT_DATE),
+    (3, 2, 'Noah', 'Olsen',  '2021-01-20', TRUE,  NULL,  'Astma-inhalator ved behov', 'Banan', 'Kan bli urolig ved høye lyder.', CURRENT_DATE)
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO guardians_children (guardian_id, child_id, relationship)
+VALUES
+    (1, 1, 'MOTHER'),
+    (2, 1, 'FATHER'),
+    (1, 2, 'MOTHER'),
+    (2, 2, 'FATHER'),
+    (1, 3, 'GUARDIAN')
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO guardians_daycare (guardian_id, daycare_id, access_role)
+VALUES
+    (1, 1, 'PARENT'),
+    (2, 1, 'PARENT'),
+    (3, 1, 'STAFF'),
+    (4, 1, 'ADMIN')
+    ON CONFLICT DO NOTHING;
+
+--  2) FIX SEQUENCES
+
+SELECT setval(pg_get_serial_sequence('daycare', 'id'), (SELECT COALESCE(MAX(id), 1) FROM daycare));
+SELECT setval(pg_get_serial_sequence('users', 'id'), (SELECT COALESCE(MAX(id), 1) FROM users));
+SELECT setval(pg_get_serial_sequence('daycare_group', 'id'), (SELECT COALESCE(MAX(id), 1) FROM daycare_group));
+SELECT setval(pg_get_serial_sequence('children', 'id'), (SELECT COALESCE(MAX(id), 1) FROM children));
+SELECT setval(pg_get_serial_sequence('daycare_access_code', 'id'), (SELECT COALESCE(MAX(id), 1) FROM daycare_access_code));
+SELECT setval(pg_get_serial_sequence('attendance', 'id'), (SELECT COALESCE(MAX(id), 1) FROM attendance));
+SELECT setval(pg_get_serial_sequence('absence', 'id'), (SELECT COALESCE(MAX(id), 1) FROM absence));
+SELECT setval(pg_get_serial_sequence('vacation', 'id'), (SELECT COALESCE(MAX(id), 1) FROM vacation));
+SELECT setval(pg_get_serial_sequence('calendar_event', 'id'), (SELECT COALESCE(MAX(id), 1) FROM calendar_event));
+
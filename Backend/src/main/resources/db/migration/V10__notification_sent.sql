@@ -0,0 +1,13 @@
+-- Inn/ut-sjekker det er varslet om, se ParentNotificationService.
+-- Outboxen leverer minst én gang; en hendelse som leveres på nytt (replay, en annen
+-- instans) slipper bare gjennom hvis attendance_id ikke allerede ligger her.
+-- Rader eldre enn to ganger trygginn.notifications.max-age-minutes ryddes, siden
+-- hendelser så gamle uansett ikke varsles.
+
+CREATE TABLE IF NOT EXISTS notification_sent (
+    attendance_id  BIGINT     PRIMARY KEY,
+    sent_at        TIMESTAMP  NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_notification_sent_sent_at
+    ON notification_sent (sent_at);
@@ -0,0 +1,38 @@
+-- Versjon og endringstidspunkt for rader som klienter henter med ETag.
+-- Versjonen økes av en trigger ved hver reell endring, også fra JdbcTemplate (import).
+-- Skriver oppdateringen selv en ny versjon, beholdes den.
+
+ALTER TABLE children      ADD COLUMN IF NOT EXISTS version    BIGINT    NOT NULL DEFAULT 0;
+ALTER TABLE children      ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT NOW();
+ALTER TABLE daycare_group ADD COLUMN IF NOT EXISTS version    BIGINT    NOT NULL DEFAULT 0;
+ALTER TABLE daycare_group ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT NOW();
+ALTER TABLE users         ADD COLUMN IF NOT EXISTS version    BIGINT    NOT NULL DEFAULT 0;
+ALTER TABLE users         ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT NOW();
+
+CREATE OR REPLACE FUNCTION bump_row_version() RETURNS trigger AS $$
+BEGIN
+    IF NEW IS NOT DISTINCT FROM OLD THEN
+        RETURN NEW;
+    END IF;
+    IF NEW.version = OLD.version THEN
+        NEW.version := OLD.version + 1;
+    END IF;
+    NEW.updated_at := NOW();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS children_bump_version ON children;
+CREATE TRIGGER children_bump_version
+    BEFORE UPDATE ON children
+    FOR EACH ROW EXECUTE FUNCTION bump_row_version();
+
+DROP TRIGGER IF EXISTS daycare_group_bump_version ON daycare_group;
+CREATE TRIGGER daycare_group_bump_version
+    BEFORE UPDATE ON daycare_group
+    FOR EACH ROW EXECUTE FUNCTION bump_row_version();
+
+DROP TRIGGER IF EXISTS users_bump_version ON users;
+CREATE TRIGGER users_bump_version
+    BEFORE UPDATE ON users
+    FOR EACH ROW EXECUTE FUNCTION bump_row_version();
@@ -0,0 +1,9 @@
+-- Versjon for optimistisk låsing av kalenderhendelser (@Version i CalendarEvent).
+-- Samme trigger som i V2, slik at endringer utenfor JPA også får ny versjon.
+
+ALTER TABLE calendar_event ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+DROP TRIGGER IF EXISTS calendar_event_bump_version ON calendar_event;
+CREATE TRIGGER calendar_event_bump_version
+    BEFORE UPDATE ON calendar_event
+    FOR EACH ROW EXECUTE FUNCTION bump_row_version();
@@ -0,0 +1,23 @@
+-- Outbox for domenehendelser (DomainEvents). Hendelsen skrives i samme transaksjon
+-- som endringen, publiseres i prosessen etter commit og merkes med published_at.
+-- Rader uten published_at er ikke levert, og hentes opp igjen etter krasj.
+
+CREATE TABLE IF NOT EXISTS domain_event_outbox (
+    id           BIGSERIAL PRIMARY KEY,
+    type         VARCHAR(64) NOT NULL,
+    child_id     BIGINT,
+    daycare_id   BIGINT,
+    payload      JSONB       NOT NULL DEFAULT '{}',
+    created_at   TIMESTAMP   NOT NULL DEFAULT NOW(),
+    published_at TIMESTAMP,
+    attempts     INT         NOT NULL DEFAULT 0
+);
+
+-- Bare uleverte rader indekseres, så indeksen holder seg liten
+CREATE INDEX IF NOT EXISTS idx_domain_event_outbox_unpublished
+    ON domain_event_outbox (id)
+    WHERE published_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_domain_event_outbox_published_at
+    ON domain_event_outbox (published_at)
+    WHERE published_at IS NOT NULL;
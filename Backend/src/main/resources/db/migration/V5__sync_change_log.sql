@@ -0,0 +1,103 @@
+-- Endringslogg for delta-synk (GET /api/sync, SyncService).
+-- Triggere skriver én rad per endret rad og barnehage, med transaksjonen (tx) som gjorde endringen.
+-- Cursoren er et snapshot (pg_current_snapshot); en synk returnerer endringer fra transaksjoner
+-- som er synlige i det nye snapshotet men ikke i det forrige. Det gir ingen hull selv om
+-- transaksjoner committer i en annen rekkefølge enn de startet, og krever ingen låser.
+
+CREATE TABLE IF NOT EXISTS sync_change (
+    id         BIGSERIAL   PRIMARY KEY,
+    tx         xid8        NOT NULL DEFAULT pg_current_xact_id(),
+    daycare_id BIGINT      NOT NULL,
+    entity     VARCHAR(32) NOT NULL,
+    entity_id  BIGINT      NOT NULL,
+    changed_at TIMESTAMP   NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_sync_change_daycare_tx ON sync_change (daycare_id, tx);
+CREATE INDEX IF NOT EXISTS idx_sync_change_changed_at ON sync_change (changed_at);
+
+-- Høyeste tx som er slettet fra loggen. En cursor fra før dette må synke alt på nytt.
+CREATE TABLE IF NOT EXISTS sync_change_horizon (
+    id            INT  PRIMARY KEY CHECK (id = 1),
+    pruned_before xid8 NOT NULL
+);
+INSERT INTO sync_change_horizon (id, pruned_before) VALUES (1, '0') ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION sync_child_daycare(p_child_id BIGINT) RETURNS BIGINT AS $$
+    SELECT g.daycare_id
+    FROM children c
+    JOIN daycare_group g ON g.id = c.daycare_group_id
+    WHERE c.id = p_child_id
+$$ LANGUAGE sql STABLE;
+
+CREATE OR REPLACE FUNCTION sync_group_daycare(p_group_id BIGINT) RETURNS BIGINT AS $$
+    SELECT daycare_id FROM daycare_group WHERE id = p_group_id
+$$ LANGUAGE sql STABLE;
+
+-- TG_ARGV[0] er navnet på entiteten i loggen. Barn som bytter barnehage logges for begge.
+CREATE OR REPLACE FUNCTION log_sync_change() RETURNS trigger AS $$
+DECLARE
+    new_daycare BIGINT;
+    old_daycare BIGINT;
+    row_id      BIGINT;
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW IS NOT DISTINCT FROM OLD THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP <> 'DELETE' THEN
+        row_id := NEW.id;
+        IF TG_TABLE_NAME = 'children' THEN
+            new_daycare := sync_group_daycare(NEW.daycare_group_id);
+        ELSIF TG_TABLE_NAME = 'calendar_event' THEN
+            new_daycare := NEW.daycare_id;
+        ELSE
+            new_daycare := sync_child_daycare(NEW.child_id);
+        END IF;
+    END IF;
+
+    IF TG_OP <> 'INSERT' THEN
+        row_id := OLD.id;
+        IF TG_TABLE_NAME = 'children' THEN
+            old_daycare := sync_group_daycare(OLD.daycare_group_id);
+        ELSIF TG_TABLE_NAME = 'calendar_event' THEN
+            old_daycare := OLD.daycare_id;
+        ELSE
+            old_daycare := sync_child_daycare(OLD.child_id);
+        END IF;
+    END IF;
+
+    IF new_daycare IS NOT NULL THEN
+        INSERT INTO sync_change (daycare_id, entity, entity_id) VALUES (new_daycare, TG_ARGV[0], row_id);
+    END IF;
+    IF old_daycare IS NOT NULL AND old_daycare IS DISTINCT FROM new_daycare THEN
+        INSERT INTO sync_change (daycare_id, entity, entity_id) VALUES (old_daycare, TG_ARGV[0], row_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS children_sync_change ON children;
+CREATE TRIGGER children_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON children
+    FOR EACH ROW EXECUTE FUNCTION log_sync_change('child');
+
+DROP TRIGGER IF EXISTS attendance_sync_change ON attendance;
+CREATE TRIGGER attendance_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON attendance
+    FOR EACH ROW EXECUTE FUNCTION log_sync_change('attendance');
+
+DROP TRIGGER IF EXISTS absence_sync_change ON absence;
+CREATE TRIGGER absence_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON absence
+    FOR EACH ROW EXECUTE FUNCTION log_sync_change('absence');
+
+DROP TRIGGER IF EXISTS vacation_sync_change ON vacation;
+CREATE TRIGGER vacation_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON vacation
+    FOR EACH ROW EXECUTE FUNCTION log_sync_change('vacation');
+
+DROP TRIGGER IF EXISTS calendar_event_sync_change ON calendar_event;
+CREATE TRIGGER calendar_event_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON calendar_event
+    FOR EACH ROW EXECUTE FUNCTION log_sync_change('calendar_event');
@@ -0,0 +1,15 @@
+-- Id-ene (clientId) til registreringer lastet opp fra nettbrett som har vært offline
+-- (POST /api/sync/upload, OfflineUploadService). Raden settes inn før registreringen
+-- lagres, så en ny opplasting av samme kø (f.eks. etter tidsavbrudd) ikke lagrer den to ganger;
+-- status og entity_id er resultatet som sendes tilbake ved gjentak.
+
+CREATE TABLE IF NOT EXISTS offline_upload_item (
+    client_id           VARCHAR(64) PRIMARY KEY,
+    kind                VARCHAR(16) NOT NULL,
+    status              VARCHAR(16),
+    entity_id           BIGINT,
+    uploaded_by_user_id BIGINT      NOT NULL,
+    created_at          TIMESTAMP   NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_offline_upload_item_created_at ON offline_upload_item (created_at);
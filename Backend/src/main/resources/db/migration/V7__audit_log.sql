@@ -0,0 +1,32 @@
+-- Tilgangslogg for helseopplysninger om barn (allergier, medisiner, notater), se AuditLog.
+-- Radene skrives i grupper fra minnet; occurred_at er tidspunktet for tilgangen, ikke for skrivingen.
+-- Loggen kan bare legges til: UPDATE og DELETE avvises av en trigger.
+
+CREATE TABLE IF NOT EXISTS audit_log (
+    id             BIGSERIAL   PRIMARY KEY,
+    occurred_at    TIMESTAMP   NOT NULL,
+    user_id        BIGINT,
+    child_id       BIGINT      NOT NULL,
+    action         VARCHAR(16) NOT NULL,
+    resource       VARCHAR(32) NOT NULL,
+    fields         VARCHAR(255),
+    remote_address VARCHAR(64),
+
+    CONSTRAINT audit_log_action_check
+    CHECK (action IN ('READ', 'WRITE'))
+);
+
+-- Blaing bakover (id < ?) per barn og per bruker
+CREATE INDEX IF NOT EXISTS idx_audit_log_child ON audit_log (child_id, id);
+CREATE INDEX IF NOT EXISTS idx_audit_log_user ON audit_log (user_id, id);
+
+CREATE OR REPLACE FUNCTION audit_log_append_only() RETURNS trigger AS $$
+BEGIN
+    RAISE EXCEPTION 'audit_log kan ikke endres eller slettes';
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS audit_log_append_only ON audit_log;
+CREATE TRIGGER audit_log_append_only
+    BEFORE UPDATE OR DELETE ON audit_log
+    FOR EACH ROW EXECUTE FUNCTION audit_log_append_only();
@@ -0,0 +1,30 @@
+-- Historikk for children.note, se ChildNoteHistory.
+-- Hver revisjon er enten en hel kopi (FULL) eller en endring fra forrige revisjon (DELTA):
+-- behold keep_prefix tegn fra starten og keep_suffix tegn fra slutten, med content i mellom.
+-- Det skrives en hel kopi minst hver trygginn.notes.snapshot-interval revisjon, så en
+-- revisjon bygges alltid av én FULL-rad og høyst snapshot-interval - 1 DELTA-rader.
+
+CREATE TABLE IF NOT EXISTS child_note_revision (
+    child_id          BIGINT      NOT NULL REFERENCES children(id) ON DELETE CASCADE,
+    revision          INT         NOT NULL,
+    kind              VARCHAR(8)  NOT NULL,
+    content           TEXT        NOT NULL,
+    keep_prefix       INT,
+    keep_suffix       INT,
+    note_length       INT         NOT NULL,
+    edited_by_user_id BIGINT      REFERENCES users(id) ON DELETE SET NULL,
+    created_at        TIMESTAMP   NOT NULL DEFAULT now(),
+
+    PRIMARY KEY (child_id, revision),
+
+    CONSTRAINT child_note_revision_kind_check
+    CHECK (kind IN ('FULL', 'DELTA')),
+
+    CONSTRAINT child_note_revision_delta_check
+    CHECK (kind = 'FULL' OR (keep_prefix >= 0 AND keep_suffix >= 0))
+);
+
+-- Nærmeste hele kopi før en revisjon
+CREATE INDEX IF NOT EXISTS idx_child_note_revision_full
+    ON child_note_revision (child_id, revision)
+    WHERE kind = 'FULL';
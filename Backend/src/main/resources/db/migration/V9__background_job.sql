@@ -0,0 +1,51 @@
+-- Jobbkø for bakgrunnsarbeid på tvers av instanser, se JobQueue og JobScheduler.
+-- Arbeiderne tar jobber med FOR UPDATE SKIP LOCKED, så to instanser aldri tar samme rad.
+-- En jobb som er RUNNING med utløpt locked_until (instansen døde) tas av neste arbeider.
+
+CREATE TABLE IF NOT EXISTS background_job (
+    id            BIGSERIAL    PRIMARY KEY,
+    type          VARCHAR(64)  NOT NULL,
+    payload       JSONB        NOT NULL DEFAULT '{}',
+    priority      INT          NOT NULL DEFAULT 0,
+    run_at        TIMESTAMP    NOT NULL DEFAULT NOW(),
+    status        VARCHAR(16)  NOT NULL DEFAULT 'QUEUED',
+    attempts      INT          NOT NULL DEFAULT 0,
+    max_attempts  INT          NOT NULL DEFAULT 5,
+    dedupe_key    VARCHAR(200),
+    locked_by     VARCHAR(128),
+    locked_until  TIMESTAMP,
+    last_error    VARCHAR(2000),
+    created_at    TIMESTAMP    NOT NULL DEFAULT NOW(),
+    finished_at   TIMESTAMP,
+
+    CONSTRAINT background_job_status_check
+    CHECK (status IN ('QUEUED', 'RUNNING', 'DONE', 'FAILED'))
+);
+
+-- Neste jobber å ta: høyest prioritet, så eldst run_at
+CREATE INDEX IF NOT EXISTS idx_background_job_queued
+    ON background_job (priority DESC, run_at, id)
+    WHERE status = 'QUEUED';
+
+-- Jobber der instansen døde underveis
+CREATE INDEX IF NOT EXISTS idx_background_job_running
+    ON background_job (locked_until)
+    WHERE status = 'RUNNING';
+
+-- Rydding av ferdige jobber
+CREATE INDEX IF NOT EXISTS idx_background_job_finished
+    ON background_job (finished_at)
+    WHERE status IN ('DONE', 'FAILED');
+
+-- Samme dedupe_key kan bare ligge i køen én gang om gangen (f.eks. én kjøring per tidspunkt for en fast jobb)
+CREATE UNIQUE INDEX IF NOT EXISTS uq_background_job_dedupe
+    ON background_job (dedupe_key)
+    WHERE status IN ('QUEUED', 'RUNNING');
+
+-- Faste jobber: når hver skal kjøres neste gang. Oppdateres bare av JobScheduler under en advisory lock.
+CREATE TABLE IF NOT EXISTS background_schedule (
+    type         VARCHAR(64)  PRIMARY KEY,
+    cron         VARCHAR(100) NOT NULL,
+    next_run_at  TIMESTAMP    NOT NULL,
+    last_run_at  TIMESTAMP
+);
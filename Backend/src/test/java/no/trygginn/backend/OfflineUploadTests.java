@@ -0,0 +1,246 @@
+package no.trygginn.backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Opplasting fra nettbrett som har vært offline (POST /api/sync/upload):
+ * duplikater, fletting av inn/ut-sjekk med det som er på serveren, og notater.
+ * Alle tider er i går, så de er innenfor trygginn.offline.max-age-hours og ikke i fremtiden.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class OfflineUploadTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private MockMvc mvc;
+
+    private final String prefix = "test-" + UUID.randomUUID() + "-";
+    private final LocalDate day = LocalDate.now().minusDays(1);
+
+    private long daycareId;
+    private long childId;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Offline barnehage', 'OFFLINE001', 'Testveien 2')
+                RETURNING id
+                """, Long.class);
+        long groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Offline') RETURNING id",
+                Long.class, daycareId);
+        childId = jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, 'Offline', 'Barn', DATE '2021-01-01')
+                RETURNING id
+                """, Long.class, groupId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM offline_upload_item WHERE client_id LIKE ?", prefix + "%");
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+    }
+
+    @Test
+    void reuploadIsDuplicateWithOriginalId() throws Exception {
+        String item = attendance("a", at(8, 0), "IN");
+
+        JsonNode first = upload(item).get(0);
+        assertEquals("APPLIED", first.path("status").asString());
+        long id = first.path("id").asLong();
+
+        // Samme kø på nytt etter tidsavbrudd: ikke lagret to ganger, men samme id tilbake
+        JsonNode again = upload(item).get(0);
+        assertEquals("DUPLICATE", again.path("status").asString());
+        assertEquals(id, again.path("id").asLong());
+        assertEquals(List.of("IN"), storedEvents());
+    }
+
+    @Test
+    void sameClientIdTwiceInOneUpload() throws Exception {
+        JsonNode results = upload(
+                attendance("a", at(8, 0), "IN"),
+                attendance("a", at(9, 0), "OUT"));
+
+        assertEquals("APPLIED", results.get(0).path("status").asString());
+        assertEquals("DUPLICATE", results.get(1).path("status").asString());
+        assertFalse(results.get(1).path("message").isMissingNode());
+        assertEquals(List.of("IN"), storedEvents());
+    }
+
+    @Test
+    void checkThatBreaksAlternationWithLaterServerEventIsConflict() throws Exception {
+        serverEvent("IN", at(8, 0));
+        serverEvent("OUT", at(12, 0));
+
+        JsonNode result = upload(attendance("a", at(10, 0), "OUT")).get(0);
+
+        assertEquals("CONFLICT", result.path("status").asString());
+        assertTrue(result.path("message").asString().contains("12:00"), result.toString());
+        assertEquals(List.of("IN", "OUT"), storedEvents());
+    }
+
+    @Test
+    void pairBetweenServerEventsIsKept() throws Exception {
+        serverEvent("IN", at(8, 0));
+        serverEvent("OUT", at(12, 0));
+
+        // Ut og inn igjen mellom serverens IN og OUT veksler fortsatt
+        JsonNode results = upload(
+                attendance("a", at(10, 0), "OUT"),
+                attendance("b", at(11, 0), "IN"));
+
+        assertEquals("APPLIED", results.get(0).path("status").asString());
+        assertEquals("APPLIED", results.get(1).path("status").asString());
+        assertEquals(List.of("IN", "OUT", "IN", "OUT"), storedEvents());
+    }
+
+    @Test
+    void outOfOrderQueueIsSortedByClientTime() throws Exception {
+        JsonNode results = upload(
+                attendance("ut", at(15, 30), "OUT"),
+                attendance("inn", at(7, 45), "IN"));
+
+        // Svaret følger rekkefølgen i forespørselen, lagringen følger clientTime
+        assertEquals("APPLIED", results.get(0).path("status").asString());
+        assertEquals("APPLIED", results.get(1).path("status").asString());
+        assertEquals(List.of("IN", "OUT"), storedEvents());
+        assertEquals(List.of(at(7, 45), at(15, 30)), storedTimes());
+    }
+
+    @Test
+    void checkInWhenAlreadyInIsRedundant() throws Exception {
+        serverEvent("IN", at(8, 0));
+
+        JsonNode result = upload(attendance("a", at(9, 0), "IN")).get(0);
+
+        assertEquals("REDUNDANT", result.path("status").asString());
+        assertEquals(List.of("IN"), storedEvents());
+    }
+
+    @Test
+    void staleBaseVersionOnNoteIsConflict() throws Exception {
+        long version = childVersion();
+        jdbc.update("UPDATE children SET note = 'Endret på serveren' WHERE id = ?", childId);
+
+        JsonNode result = upload(note("n", at(9, 0), "Fra nettbrettet", version)).get(0);
+
+        assertEquals("CONFLICT", result.path("status").asString());
+        assertEquals(childVersion(), result.path("version").asLong());
+        assertEquals("Endret på serveren", childNote());
+    }
+
+    @Test
+    void lastNotePerChildWins() throws Exception {
+        long version = childVersion();
+
+        JsonNode results = upload(
+                note("sist", at(11, 0), "Siste versjon", version),
+                note("først", at(9, 0), "Første versjon", version));
+
+        assertEquals("APPLIED", results.get(0).path("status").asString());
+        assertEquals(version + 1, results.get(0).path("version").asLong());
+        assertEquals("SUPERSEDED", results.get(1).path("status").asString());
+        assertEquals("Siste versjon", childNote());
+    }
+
+    private JsonNode upload(String... items) throws Exception {
+        StringJoiner body = new StringJoiner(",",
+                "{\"performedByUserId\":" + STAFF_USER_ID + ",\"items\":[", "]}");
+        for (String item : items) {
+            body.add(item);
+        }
+
+        String response = mvc.perform(post("/api/sync/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return jsonMapper.readTree(response).path("results");
+    }
+
+    private String attendance(String clientId, LocalDateTime time, String eventType) {
+        return """
+                {"clientId":"%s","kind":"ATTENDANCE","childId":%d,"clientTime":"%s","eventType":"%s"}
+                """.formatted(prefix + clientId, childId, time, eventType);
+    }
+
+    private String note(String clientId, LocalDateTime time, String note, long baseVersion) {
+        return """
+                {"clientId":"%s","kind":"NOTE","childId":%d,"clientTime":"%s","note":"%s","baseVersion":%d}
+                """.formatted(prefix + clientId, childId, time, note, baseVersion);
+    }
+
+    private void serverEvent(String eventType, LocalDateTime time) {
+        jdbc.update("""
+                INSERT INTO attendance (child_id, event_type, event_time, performed_by_user_id)
+                VALUES (?, ?, ?, ?)
+                """, childId, eventType, Timestamp.valueOf(time), STAFF_USER_ID);
+    }
+
+    private LocalDateTime at(int hour, int minute) {
+        return day.atTime(hour, minute);
+    }
+
+    private List<String> storedEvents() {
+        return jdbc.queryForList(
+                "SELECT event_type FROM attendance WHERE child_id = ? ORDER BY event_time", String.class, childId);
+    }
+
+    private List<LocalDateTime> storedTimes() {
+        return jdbc.queryForList(
+                        "SELECT event_time FROM attendance WHERE child_id = ? ORDER BY event_time",
+                        Timestamp.class, childId)
+                .stream()
+                .map(Timestamp::toLocalDateTime)
+                .toList();
+    }
+
+    private long childVersion() {
+        return jdbc.queryForObject("SELECT version FROM children WHERE id = ?", Long.class, childId);
+    }
+
+    private String childNote() {
+        return jdbc.queryForObject("SELECT note FROM children WHERE id = ?", String.class, childId);
+    }
+}
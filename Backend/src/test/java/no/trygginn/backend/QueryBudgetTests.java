@@ -0,0 +1,341 @@
+package no.trygginn.backend;
+
+import no.trygginn.backend.config.StatementCountingDataSource;
+import no.trygginn.backend.service.ResourceVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Budsjett for antall SQL-setninger per endepunkt.
+ * Endepunktene kjøres med lite og mye data og skal bruke nøyaktig like mange
+ * setninger; øker tallet, har noen innført N+1-spørringer.
+ * Endres et budsjett med vilje, oppdateres tallet her.
+ * Mikrocachen i RequestCoalescer er av, ellers ville gjentatte kall ikke nådd databasen.
+ */
+@SpringBootTest(properties = "trygginn.coalesce.micro-cache-ms=0")
+@ActiveProfiles("dev")
+class QueryBudgetTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    // Barnet lastes, én UPDATE av notatet ... WHERE id = ? AND version = ?,
+    // siste revisjon i notathistorikken og én INSERT av den nye revisjonen
+    private static final int NOTE_UPDATE_STATEMENTS = 4;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    private MockMvc mvc;
+
+    private long daycareId;
+    private long guardianId;
+    private long firstChildId;
+    private int groups;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Budsjett barnehage', 'BUDSJETT01', 'Testveien 1')
+                RETURNING id
+                """, Long.class);
+
+        guardianId = jdbc.queryForObject("""
+                INSERT INTO users (full_name, email, role, password_hash)
+                VALUES ('Budsjett Forelder', 'budsjett.forelder@test.no', 'PARENT', 'x')
+                RETURNING id
+                """, Long.class);
+
+        jdbc.update("INSERT INTO guardians_daycare (guardian_id, daycare_id) VALUES (?, ?)", guardianId, daycareId);
+
+        jdbc.update("""
+                INSERT INTO calendar_event (daycare_id, title, start_time, created_by_user_id)
+                VALUES (?, 'Budsjett for hele barnehagen', NOW(), ?)
+                """, daycareId, STAFF_USER_ID);
+
+        firstChildId = addChildInNewGroup();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Sletter barnehagen (grupper, barn og hendelser følger med) og testforelderen
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+        jdbc.update("DELETE FROM users WHERE id = ?", guardianId);
+    }
+
+    @Test
+    void guardianCalendarIsOneQueryRegardlessOfChildCount() throws Exception {
+        assertStatements(1, "/api/calendar-events/guardian/" + guardianId);
+
+        addChildrenInNewGroups(5);
+        assertStatements(1, "/api/calendar-events/guardian/" + guardianId);
+    }
+
+    @Test
+    void daycareCalendarIsOneQueryRegardlessOfGroupCount() throws Exception {
+        assertStatements(1, "/api/calendar-events/daycare/" + daycareId);
+
+        addChildrenInNewGroups(5);
+        assertStatements(1, "/api/calendar-events/daycare/" + daycareId);
+    }
+
+    @Test
+    void childrenForGuardianIsOneQueryRegardlessOfChildCount() throws Exception {
+        assertStatements(1, "/api/children/guardian/" + guardianId);
+
+        addChildrenInNewGroups(5);
+        assertStatements(1, "/api/children/guardian/" + guardianId);
+    }
+
+    @Test
+    void latestStatusIsTwoQueries() throws Exception {
+        jdbc.update("""
+                INSERT INTO attendance (child_id, event_type, event_time, performed_by_user_id)
+                SELECT ?, CASE WHEN n % 2 = 0 THEN 'IN' ELSE 'OUT' END, NOW() - n * INTERVAL '1 hour', ?
+                FROM generate_series(1, 20) n
+                """, firstChildId, STAFF_USER_ID);
+
+        assertStatements(2, "/api/attendance/child/" + firstChildId + "/latest");
+    }
+
+    @Test
+    void conditionalGetsAreOneLookupThenServedFromCache() throws Exception {
+        addChildrenInNewGroups(5);
+
+        assertNotModifiedWithinBudget("/api/children/guardian/" + guardianId);
+        assertNotModifiedWithinBudget("/api/daycare-groups/daycare/" + daycareId);
+        assertNotModifiedWithinBudget("/api/children/" + firstChildId);
+        assertNotModifiedWithinBudget("/api/children/" + firstChildId + "/details");
+        assertNotModifiedWithinBudget("/api/users/" + guardianId);
+    }
+
+    @Test
+    void changedChildGivesNewETag() throws Exception {
+        String url = "/api/children/guardian/" + guardianId;
+        String etag = mvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Endring utenfor tjenestene (som importen): triggeren øker versjonen
+        jdbc.update("UPDATE children SET first_name = 'Endret' WHERE id = ?", firstChildId);
+        resourceVersions.invalidateAll();
+
+        String changed = mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+    }
+
+    @Test
+    void swappedChildrenGiveNewETag() throws Exception {
+        long second = addChildInNewGroup();
+        long third = addChildInNewGroup();
+        long fourth = addChildInNewGroup();
+        String url = "/api/children/guardian/" + guardianId;
+
+        // Første og fjerde barn mot andre og tredje: samme antall og (med fortløpende id-er) samme id-sum
+        unlink(second, third);
+        String etag = mvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        unlink(firstChildId, fourth);
+        jdbc.update("INSERT INTO guardians_children (guardian_id, child_id) VALUES (?, ?), (?, ?)",
+                guardianId, second, guardianId, third);
+        resourceVersions.invalidateAll();
+
+        String changed = mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+    }
+
+    @Test
+    void noteUpdateIsReadPlusOneVersionedUpdateAndStaleIfMatchIsRejected() throws Exception {
+        String url = "/api/children/" + firstChildId + "/note";
+        String etag = mvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String updated;
+        try (StatementCountingDataSource.Scope scope = StatementCountingDataSource.openScope()) {
+            updated = mvc.perform(patch(url)
+                            .header(HttpHeaders.IF_MATCH, etag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"note\": \"Hentes av bestemor\"}"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertEquals(NOTE_UPDATE_STATEMENTS, scope.count(), "SQL-setninger for PATCH " + url);
+        }
+        assertNotEquals(etag, updated);
+
+        // Samme ETag igjen er utdatert: 412, og ingenting skrives
+        mvc.perform(patch(url)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"note\": \"Hentes av nabo\"}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("Hentes av bestemor", jdbc.queryForObject(
+                "SELECT note FROM children WHERE id = ?", String.class, firstChildId));
+    }
+
+    @Test
+    void offlineUploadIsSameStatementCountRegardlessOfSizeAndRetriesAreDeduplicated() throws Exception {
+        String prefix = "budsjett-" + System.nanoTime();
+        String small = uploadBody(prefix + "-a", List.of(firstChildId));
+
+        addChildrenInNewGroups(5);
+        List<Long> children = jdbc.queryForList("""
+                SELECT c.id FROM children c JOIN daycare_group g ON g.id = c.daycare_group_id
+                WHERE g.daycare_id = ?
+                """, Long.class, daycareId);
+        String large = uploadBody(prefix + "-b", children);
+
+        try {
+            assertEquals(countUploadStatements(small), countUploadStatements(large),
+                    "SQL-setninger for POST /api/sync/upload");
+
+            // Inn/ut for første barn var allerede lastet opp (samme tider), og samme kø igjen lagrer ingenting
+            mvc.perform(post("/api/sync/upload").contentType(MediaType.APPLICATION_JSON).content(large))
+                    .andExpect(status().isOk());
+            assertEquals(2L * children.size(), jdbc.queryForObject("""
+                    SELECT count(*) FROM attendance a
+                    JOIN children c ON c.id = a.child_id
+                    JOIN daycare_group g ON g.id = c.daycare_group_id
+                    WHERE g.daycare_id = ?
+                    """, Long.class, daycareId));
+        } finally {
+            jdbc.update("DELETE FROM offline_upload_item WHERE client_id LIKE ?", prefix + "%");
+        }
+    }
+
+    /**
+     * Inn- og utsjekk, fravær og notat for hvert barn, registrert tidlig i dag.
+     */
+    private static String uploadBody(String prefix, List<Long> childIds) {
+        LocalDate today = LocalDate.now();
+        StringJoiner items = new StringJoiner(",");
+        for (Long childId : childIds) {
+            items.add(uploadItem(prefix, childId, "ATTENDANCE", "IN", today.atTime(7, 30)));
+            items.add(uploadItem(prefix, childId, "ATTENDANCE", "OUT", today.atTime(7, 45)));
+            items.add(uploadItem(prefix, childId, "ABSENCE", "Syk", today.atTime(7, 50)));
+            items.add(uploadItem(prefix, childId, "NOTE", "Notat", today.atTime(7, 55)));
+        }
+        return "{\"performedByUserId\": " + STAFF_USER_ID + ", \"items\": [" + items + "]}";
+    }
+
+    private static String uploadItem(String prefix, long childId, String kind, String value, LocalDateTime time) {
+        return """
+                {"clientId": "%s-%d-%s", "kind": "%s", "childId": %d, "clientTime": "%s",
+                 "eventType": "%s", "reason": "%s", "note": "%s"}""".formatted(
+                prefix, childId, value, kind, childId, time, value, value, value);
+    }
+
+    private int countUploadStatements(String body) throws Exception {
+        try (StatementCountingDataSource.Scope scope = StatementCountingDataSource.openScope()) {
+            mvc.perform(post("/api/sync/upload").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isOk());
+            return scope.count();
+        }
+    }
+
+    private void unlink(long... childIds) {
+        for (long childId : childIds) {
+            jdbc.update("DELETE FROM guardians_children WHERE guardian_id = ? AND child_id = ?", guardianId, childId);
+        }
+    }
+
+    private void addChildrenInNewGroups(int count) {
+        for (int i = 0; i < count; i++) {
+            addChildInNewGroup();
+        }
+    }
+
+    /**
+     * Legger til en gruppe med ett barn av testforelderen og én hendelse for gruppen.
+     */
+    private long addChildInNewGroup() {
+        groups++;
+
+        long groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, ?) RETURNING id",
+                Long.class, daycareId, "Budsjett gruppe " + groups);
+
+        long childId = jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, ?, 'Budsjett', DATE '2021-01-01')
+                RETURNING id
+                """, Long.class, groupId, "Barn" + groups);
+
+        jdbc.update("INSERT INTO guardians_children (guardian_id, child_id) VALUES (?, ?)", guardianId, childId);
+
+        jdbc.update("""
+                INSERT INTO calendar_event (daycare_id, daycare_group_id, title, start_time, created_by_user_id)
+                VALUES (?, ?, 'Budsjett gruppehendelse', NOW(), ?)
+                """, daycareId, groupId, STAFF_USER_ID);
+
+        return childId;
+    }
+
+    /**
+     * ETag fra fullt svar skal gi 304 med ett versjonsoppslag, og deretter uten databasen.
+     * Svarer endepunktet 200, regner entitetene og SQL-oppslaget ut ulik ETag.
+     */
+    private void assertNotModifiedWithinBudget(String url) throws Exception {
+        resourceVersions.invalidateAll();
+        String etag = mvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag, "ETag for GET " + url);
+
+        assertEquals(1, countConditionalStatements(url, etag), "SQL-setninger for betinget GET " + url);
+        assertEquals(0, countConditionalStatements(url, etag), "SQL-setninger for betinget GET " + url + " (cache)");
+    }
+
+    private int countConditionalStatements(String url, String etag) throws Exception {
+        try (StatementCountingDataSource.Scope scope = StatementCountingDataSource.openScope()) {
+            mvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag));
+            return scope.count();
+        }
+    }
+
+    private void assertStatements(int expected, String url) throws Exception {
+        assertEquals(expected, countStatements(url), "SQL-setninger for GET " + url);
+    }
+
+    private int countStatements(String url) throws Exception {
+        try (StatementCountingDataSource.Scope scope = StatementCountingDataSource.openScope()) {
+            mvc.perform(get(url)).andExpect(status().isOk());
+            return scope.count();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package no.trygginn.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.Ordered;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrencyLimitingDataSourceTests {
+
+    @Test
+    void limitsConnectionsHeldAtOnce() throws SQLException {
+        ConcurrencyLimitingDataSource limiter = new ConcurrencyLimitingDataSource(stub(new AtomicInteger()), 2, 50);
+
+        Connection first = limiter.getConnection();
+        Connection second = limiter.getConnection();
+        assertEquals(0, limiter.getAvailablePermits());
+        assertThrows(SQLTransientConnectionException.class, limiter::getConnection);
+
+        first.close();
+        try (Connection third = limiter.getConnection()) {
+            assertEquals(0, limiter.getAvailablePermits());
+        }
+        second.close();
+        assertEquals(2, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void closingTwiceReleasesOnce() throws SQLException {
+        AtomicInteger closed = new AtomicInteger();
+        ConcurrencyLimitingDataSource limiter = new ConcurrencyLimitingDataSource(stub(closed), 2, 50);
+
+        Connection connection = limiter.getConnection();
+        connection.close();
+        connection.close();
+
+        assertEquals(2, limiter.getAvailablePermits());
+        assertEquals(2, closed.get());
+    }
+
+    @Test
+    void failedConnectReleasesPermit() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        DataSource failing = (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> {
+                    if (fail.get()) {
+                        throw new SQLException("nede");
+                    }
+                    return null;
+                });
+        ConcurrencyLimitingDataSource limiter = new ConcurrencyLimitingDataSource(failing, 1, 50);
+
+        assertThrows(SQLException.class, limiter::getConnection);
+        assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void postProcessorReadsPoolSizeThroughWrappers() {
+        try (HikariDataSource hikari = new HikariDataSource()) {
+            hikari.setMaximumPoolSize(7);
+            hikari.setConnectionTimeout(1234);
+
+            ConcurrencyConfig.LimiterPostProcessor postProcessor =
+                    new ConcurrencyConfig.LimiterPostProcessor(new MockEnvironment());
+            assertEquals(Ordered.HIGHEST_PRECEDENCE, postProcessor.getOrder());
+
+            // Hikari pakket inn av en annen innpakning først
+            Object wrapped = postProcessor.postProcessAfterInitialization(
+                    new StatementCountingDataSource(hikari), "dataSource");
+            assertEquals(7, assertInstanceOf(ConcurrencyLimitingDataSource.class, wrapped).getAvailablePermits());
+
+            Object direct = postProcessor.postProcessAfterInitialization(hikari, "dataSource");
+            assertEquals(7, assertInstanceOf(ConcurrencyLimitingDataSource.class, direct).getAvailablePermits());
+
+            // Allerede begrenset: pakkes ikke inn igjen
+            assertSame(direct, postProcessor.postProcessAfterInitialization(direct, "dataSource"));
+        }
+    }
+
+    @Test
+    void propertiesOverridePoolDefaults() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("trygginn.db.limiter.max-concurrency", "3");
+        Object wrapped = new ConcurrencyConfig.LimiterPostProcessor(env)
+                .postProcessAfterInitialization(stub(new AtomicInteger()), "dataSource");
+
+        assertEquals(3, assertInstanceOf(ConcurrencyLimitingDataSource.class, wrapped).getAvailablePermits());
+    }
+
+    /**
+     * DataSource uten database, der close() på tilkoblingene telles.
+     */
+    private static DataSource stub(AtomicInteger closed) {
+        return (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getConnection" -> Proxy.newProxyInstance(
+                            Connection.class.getClassLoader(),
+                            new Class<?>[] { Connection.class },
+                            (c, m, a) -> {
+                                if ("close".equals(m.getName())) {
+                                    closed.incrementAndGet();
+                                }
+                                return m.getReturnType() == boolean.class ? false : null;
+                            });
+                    case "isWrapperFor" -> false;
+                    default -> null;
+                });
+    }
+}
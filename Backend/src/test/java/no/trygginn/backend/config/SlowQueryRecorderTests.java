@@ -0,0 +1,40 @@
+package no.trygginn.backend.config;
+
+import no.trygginn.backend.model.AttendanceEventType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlowQueryRecorderTests {
+
+    @Test
+    void redactsEveryString() {
+        // Tilgangskoder og navn med store bokstaver skal ikke slippe gjennom
+        assertEquals("<tekst, 8 tegn>", SlowQueryRecorder.redact("AB12CD34"));
+        assertEquals("<tekst, 5 tegn>", SlowQueryRecorder.redact("OLSEN"));
+        assertEquals("<tekst, 17 tegn>", SlowQueryRecorder.redact("kari@barnehage.no"));
+    }
+
+    @Test
+    void showsNumbersEnumsAndTimestamps() {
+        assertEquals("42", SlowQueryRecorder.redact(42L));
+        assertEquals("true", SlowQueryRecorder.redact(true));
+        assertEquals("IN", SlowQueryRecorder.redact(AttendanceEventType.IN));
+        assertEquals("2026-10-19T08:00", SlowQueryRecorder.redact(LocalDateTime.of(2026, 10, 19, 8, 0)));
+        assertEquals("<dato>", SlowQueryRecorder.redact(LocalDate.of(2020, 1, 1)));
+        assertEquals("NULL", SlowQueryRecorder.redact(null));
+    }
+
+    @Test
+    void storesOnlyRedactedBinds() {
+        SlowQueryRecorder recorder = new SlowQueryRecorder(true, 0, 1.0, 10, false);
+        recorder.executed("SELECT * FROM daycare_access_code WHERE code = ?", new Object[] { "SECRET1" }, 1, null);
+
+        List<SlowQueryRecorder.SlowQuery> recent = recorder.recent(10);
+        assertEquals(List.of("<tekst, 7 tegn>"), recent.get(0).binds());
+    }
+}
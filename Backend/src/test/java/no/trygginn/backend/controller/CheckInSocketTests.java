@@ -0,0 +1,138 @@
+package no.trygginn.backend.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WebSocket-kanalen for nettbrett (/ws/check-in) mot en kjørende server.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("dev")
+class CheckInSocketTests {
+
+    // Testdataene i db/dev: Anne Hansen er forelder, Kari Olsen er ansatt
+    private static final long PARENT_USER_ID = 1;
+    private static final long STAFF_USER_ID = 3;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private long daycareId;
+    private long groupId;
+
+    @BeforeEach
+    void setUp() {
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Nettbrett barnehage', 'NETTBRETT1', 'Testveien 3')
+                RETURNING id
+                """, Long.class);
+        groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Nettbrett') RETURNING id",
+                Long.class, daycareId);
+        jdbc.update("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, 'Uten', NULL, DATE '2021-01-01')
+                """, groupId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+    }
+
+    @Test
+    void parentIsRejected() throws Exception {
+        Client client = connect(PARENT_USER_ID);
+
+        CloseStatus status = client.closed.get(5, TimeUnit.SECONDS);
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), status.getCode());
+        assertTrue(client.messages.isEmpty());
+    }
+
+    @Test
+    void rosterShowsChildWithoutLastName() throws Exception {
+        Client client = connect(STAFF_USER_ID);
+
+        String roster = client.next();
+        assertTrue(roster.contains("\"type\":\"ROSTER\""), roster);
+        assertTrue(roster.contains("\"name\":\"Uten\""), roster);
+        assertFalse(roster.contains("Uten null"), roster);
+        client.session.close();
+    }
+
+    @Test
+    void nullMessageGivesErrorAndKeepsSession() throws Exception {
+        Client client = connect(STAFF_USER_ID);
+        client.next();
+
+        client.session.sendMessage(new TextMessage("null"));
+        String error = client.next();
+        assertTrue(error.contains("\"type\":\"ERROR\""), error);
+        assertTrue(error.contains("Ugyldig melding."), error);
+
+        // Økten lever fortsatt og svarer på neste kommando
+        client.session.sendMessage(new TextMessage("{\"type\":\"ROSTER\",\"requestId\":\"r2\"}"));
+        String roster = client.next();
+        assertTrue(roster.contains("\"requestId\":\"r2\""), roster);
+        assertTrue(client.session.isOpen());
+        client.session.close();
+    }
+
+    private Client connect(long userId) throws Exception {
+        Client client = new Client();
+        URI uri = URI.create("ws://localhost:" + port + "/ws/check-in?groupId=" + groupId + "&userId=" + userId);
+        client.session = new StandardWebSocketClient()
+                .execute(client, new WebSocketHttpHeaders(), uri)
+                .get(5, TimeUnit.SECONDS);
+        return client;
+    }
+
+    private static final class Client extends TextWebSocketHandler {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        final CompletableFuture<CloseStatus> closed = new CompletableFuture<>();
+        WebSocketSession session;
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            messages.add(message.getPayload());
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            closed.complete(status);
+        }
+
+        String next() throws InterruptedException {
+            String message = messages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message, "Fikk ingen melding");
+            return message;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package no.trygginn.backend.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntervalTreeTests {
+
+    @Test
+    void staysBalancedWhenInsertedInOrder() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        for (long i = 1; i <= 1023; i++) {
+            tree.put(i, i * 10, i * 10 + 5, "e" + i);
+            tree.verify();
+        }
+
+        // 1023 noder i perfekt balanse gir høyde 10
+        assertEquals(10, tree.height());
+        assertEquals(1023, tree.size());
+    }
+
+    @Test
+    void staysBalancedWhenDeleting() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        for (long i = 1; i <= 512; i++) {
+            tree.put(i, i, i + 1, "e" + i);
+        }
+
+        // Sletter hele venstre halvdel, så treet må rotere tilbake mot høyre
+        for (long i = 1; i <= 256; i++) {
+            assertTrue(tree.remove(i));
+            tree.verify();
+        }
+
+        assertEquals(256, tree.size());
+        assertTrue(tree.height() <= 9);
+        assertFalse(tree.remove(1));
+    }
+
+    @Test
+    void maxEndFollowsInsertAndDelete() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        for (long i = 1; i <= 15; i++) {
+            tree.put(i, i * 100, i * 100 + 10, "kort" + i);
+        }
+        // Tidlig start, sen slutt: ligger langt til venstre, men må finnes fra høyre side
+        tree.put(99, 0, 10_000, "lang");
+        tree.verify();
+
+        assertEquals(List.of("lang"), values(tree.overlapping(5_000, 6_000)));
+
+        tree.remove(99);
+        tree.verify();
+        assertTrue(tree.overlapping(5_000, 6_000).isEmpty());
+
+        // Flytting via put med samme id oppdaterer maxEnd
+        tree.put(3, 300, 7_000, "flyttet");
+        tree.verify();
+        assertEquals(List.of("flyttet"), values(tree.overlapping(5_000, 6_000)));
+        assertEquals(15, tree.size());
+    }
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.put(1, 10, 20, "a");
+
+        assertTrue(tree.overlapping(20, 30).isEmpty());
+        assertTrue(tree.overlapping(0, 10).isEmpty());
+        assertEquals(List.of("a"), values(tree.overlapping(19, 20)));
+        assertEquals(List.of("a"), values(tree.overlapping(10, 11)));
+        assertEquals(List.of("a"), values(tree.overlapping(0, 30)));
+
+        tree.put(2, 20, 30, "b");
+        assertEquals(List.of("b"), values(tree.overlapping(20, 21)));
+        assertEquals(List.of("a", "b"), values(tree.overlapping(19, 21)));
+    }
+
+    @Test
+    void overlappingMatchesLinearScan() {
+        Random random = new Random(42);
+        IntervalTree<Long> tree = new IntervalTree<>();
+        Map<Long, long[]> expected = new HashMap<>();
+
+        for (int step = 0; step < 5_000; step++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(id) != null, tree.remove(id));
+            } else {
+                long start = random.nextInt(10_000);
+                long end = start + random.nextInt(500);
+                tree.put(id, start, end, id);
+                expected.put(id, new long[] {start, end});
+            }
+
+            if (step % 50 == 0) {
+                tree.verify();
+                long from = random.nextInt(10_000);
+                long to = from + random.nextInt(1_000);
+
+                List<Long> scan = new ArrayList<>();
+                expected.forEach((key, interval) -> {
+                    if (interval[0] < to && interval[1] > from) {
+                        scan.add(key);
+                    }
+                });
+                List<Long> found = new ArrayList<>(values(tree.overlapping(from, to)));
+                scan.sort(null);
+                found.sort(null);
+                assertEquals(scan, found);
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+    }
+
+    @Test
+    void rejectsEndBeforeStart() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        assertThrows(IllegalArgumentException.class, () -> tree.put(1, 20, 10, "feil"));
+        assertTrue(tree.isEmpty());
+    }
+
+    private static <T> List<T> values(List<IntervalTree.Interval<T>> intervals) {
+        return intervals.stream().map(IntervalTree.Interval::value).toList();
+    }
+}
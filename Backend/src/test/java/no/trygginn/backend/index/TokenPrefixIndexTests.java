@@ -0,0 +1,118 @@
+package no.trygginn.backend.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenPrefixIndexTests {
+
+    private static final Comparator<String> BY_NAME = String.CASE_INSENSITIVE_ORDER;
+
+    @Test
+    void matchesPrefixOfAnyWord() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Kari Olsen", "Kari Olsen", "kari@test.no");
+        index.put(2L, "Ola Hansen", "Ola Hansen");
+
+        assertEquals(List.of("Kari Olsen", "Ola Hansen"), search(index, "o"));
+        assertEquals(List.of("Kari Olsen"), search(index, "ols"));
+        assertEquals(List.of("Ola Hansen"), search(index, "HAN"));
+        assertEquals(List.of("Kari Olsen"), search(index, "test"));
+        assertTrue(search(index, "lsen").isEmpty());
+    }
+
+    @Test
+    void everyQueryTokenMustMatch() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Kari Olsen", "Kari Olsen");
+        index.put(2L, "Kari Hansen", "Kari Hansen");
+
+        assertEquals(List.of("Kari Olsen"), search(index, "kar ol"));
+        assertEquals(List.of("Kari Olsen"), search(index, "ol, kar"));
+        assertTrue(search(index, "kari berg").isEmpty());
+    }
+
+    @Test
+    void handlesNorwegianLetters() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Øystein Ødegård", "Øystein Ødegård");
+        index.put(2L, "Åse Sæther", "Åse Sæther");
+
+        assertEquals(List.of("Øystein Ødegård"), search(index, "ØY"));
+        assertEquals(List.of("Øystein Ødegård"), search(index, "ødegå"));
+        assertEquals(List.of("Åse Sæther"), search(index, "å"));
+        assertEquals(List.of("Åse Sæther"), search(index, "sæ"));
+        assertEquals(List.of("ødegård"), TokenPrefixIndex.tokenize("Ødegård!"));
+    }
+
+    @Test
+    void exactWordsRankFirst() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Annabelle", "Annabelle");
+        index.put(2L, "Anna", "Anna");
+        index.put(3L, "Anne", "Anne");
+
+        assertEquals(List.of("Anna", "Annabelle", "Anne"), search(index, "ann"));
+        assertEquals(List.of("Anna", "Annabelle"), search(index, "anna"));
+    }
+
+    @Test
+    void limitKeepsBestHits() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        for (long i = 0; i < 100; i++) {
+            index.put(i, "Barn " + String.format("%03d", i), "Barn", "nr" + i);
+        }
+        index.put(1000L, "Zeta", "barn");
+
+        List<String> hits = index.search("barn", 3, BY_NAME).stream().map(TokenPrefixIndex.Hit::value).toList();
+        assertEquals(List.of("Barn 000", "Barn 001", "Barn 002"), hits);
+        assertTrue(index.search("barn", 0, BY_NAME).isEmpty());
+        assertTrue(index.search("  ", 10, BY_NAME).isEmpty());
+    }
+
+    @Test
+    void longWordsAreVerifiedBeyondStoredPrefix() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "a", "Kristiansandsbarnehage");
+        index.put(2L, "b", "Kristiansandsbyen");
+
+        assertEquals(List.of("a", "b"), search(index, "kristiansand"));
+        assertEquals(List.of("a"), search(index, "kristiansandsbarn"));
+        assertEquals(List.of("b"), search(index, "kristiansandsby"));
+        assertTrue(search(index, "kristiansandsbx").isEmpty());
+    }
+
+    @Test
+    void removeDropsAllPrefixes() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Kari Olsen", "Kari Olsen");
+        index.put(2L, "Ola Hansen", "Ola Hansen");
+
+        index.remove(1L);
+        index.remove(99L);
+
+        assertEquals(1, index.size());
+        assertTrue(search(index, "kari").isEmpty());
+        assertEquals(List.of("Ola Hansen"), search(index, "o"));
+    }
+
+    @Test
+    void putReplacesOldWords() {
+        TokenPrefixIndex<Long, String> index = new TokenPrefixIndex<>();
+        index.put(1L, "Kari Olsen", "Kari Olsen");
+        index.put(1L, "Kari Berg", "Kari Berg");
+
+        assertEquals(1, index.size());
+        assertTrue(search(index, "ols").isEmpty());
+        assertEquals(List.of("Kari Berg"), search(index, "ber"));
+        assertEquals(List.of("Kari Berg"), search(index, "kari"));
+    }
+
+    private static List<String> search(TokenPrefixIndex<Long, String> index, String query) {
+        return index.search(query, 10, BY_NAME).stream().map(TokenPrefixIndex.Hit::value).toList();
+    }
+}
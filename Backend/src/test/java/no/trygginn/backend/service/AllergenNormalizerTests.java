@@ -0,0 +1,60 @@
+package no.trygginn.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllergenNormalizerTests {
+
+    @Test
+    void keepsEveryAllergenInOneSegment() {
+        assertEquals(Set.of("egg", "melk"), AllergenNormalizer.normalize("melk egg"));
+        assertEquals(Set.of("nøtter", "peanøtter"), AllergenNormalizer.normalize("nøtter peanøtter"));
+        assertEquals(Set.of("fisk", "skalldyr", "soya"), AllergenNormalizer.normalize("Laks reker soya"));
+    }
+
+    @Test
+    void splitsOnSeparatorsAndConjunctions() {
+        assertEquals(Set.of("egg", "melk"), AllergenNormalizer.normalize("melk og egg"));
+        assertEquals(Set.of("egg", "gluten"), AllergenNormalizer.normalize("wheat and egg"));
+        assertEquals(Set.of("egg", "fisk", "melk", "sesam"),
+                AllergenNormalizer.normalize("melk, egg; fisk/sesam"));
+        assertEquals(Set.of("egg", "melk"), AllergenNormalizer.normalize("melk\negg"));
+    }
+
+    @Test
+    void mapsSynonymsToOneKey() {
+        assertEquals(Set.of("melk"), AllergenNormalizer.normalize("Laktose, melkeprotein, MILK"));
+        assertEquals(Set.of("peanøtter"), AllergenNormalizer.normalize("jordnøtter"));
+        assertEquals(Set.of("nøtter"), AllergenNormalizer.normalize("hasselnøtt og mandler"));
+        assertEquals(Set.of("gluten"), AllergenNormalizer.normalize("cøliaki"));
+    }
+
+    @Test
+    void stripsAllergyWording() {
+        assertEquals(Set.of("nøtter"), AllergenNormalizer.normalize("Allergisk mot nøtter"));
+        assertEquals(Set.of("melk"), AllergenNormalizer.normalize("laktoseintoleranse"));
+        assertEquals(Set.of("gluten"), AllergenNormalizer.normalize("Glutenintoleranse"));
+        assertEquals(Set.of("nøtter"), AllergenNormalizer.normalize("alvorlig nøtteallergi"));
+        assertEquals(Set.of("egg", "melk"), AllergenNormalizer.normalize("Allergier: melk, egg."));
+        assertEquals(Set.of("egg", "melk"), AllergenNormalizer.normalize("intoleranse mot melk og allergisk mot egg"));
+    }
+
+    @Test
+    void keepsUnknownWordsVerbatim() {
+        assertEquals(Set.of("kiwi"), AllergenNormalizer.normalize("Kiwi"));
+        assertEquals(Set.of("rå gulrot"), AllergenNormalizer.normalize("rå gulrot"));
+        assertEquals(Set.of("jordbær", "melk"), AllergenNormalizer.normalize("melk jordbær"));
+        assertEquals(Set.of("egg", "kiwi", "rå gulrot"), AllergenNormalizer.normalize("rå gulrot egg kiwi"));
+    }
+
+    @Test
+    void emptyInputGivesNoAllergens() {
+        assertTrue(AllergenNormalizer.normalize(null).isEmpty());
+        assertTrue(AllergenNormalizer.normalize("  ").isEmpty());
+        assertTrue(AllergenNormalizer.normalize("allergisk mot, og").isEmpty());
+    }
+}
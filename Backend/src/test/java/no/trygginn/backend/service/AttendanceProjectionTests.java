@@ -0,0 +1,139 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.DayProjectionResponse;
+import no.trygginn.backend.controller.dto.GroupProjectionResponse;
+import no.trygginn.backend.model.DaycareGroup;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttendanceProjectionTests {
+
+    // En mandag
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+
+    private final DaycareGroup group = group("Marihøna");
+
+    @Test
+    void countsVacationAndAbsence() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L, 2L, 3L);
+        projection.markVacation(1L, TODAY, TODAY.plusDays(1));
+        projection.markAbsent(2L, TODAY.plusDays(1), TODAY.plusDays(1));
+
+        GroupProjectionResponse response = projection.project(group, TODAY, TODAY.plusDays(2));
+
+        assertEquals(3, response.rosterSize());
+        assertDay(response.days().get(0), 2, 1, 0);
+        assertDay(response.days().get(1), 1, 1, 1);
+        assertDay(response.days().get(2), 3, 0, 0);
+    }
+
+    @Test
+    void absenceDuringVacationCountsAsVacation() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L, 2L);
+        projection.markVacation(1L, TODAY, TODAY);
+        projection.markAbsent(1L, TODAY, TODAY);
+
+        assertDay(projection.project(group, TODAY, TODAY).days().get(0), 1, 1, 0);
+    }
+
+    @Test
+    void weekendsAreClosed() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L);
+
+        DayProjectionResponse saturday = projection.project(group, TODAY.plusDays(5), TODAY.plusDays(5)).days().get(0);
+        assertTrue(saturday.closed());
+        assertEquals(0, saturday.expected());
+    }
+
+    @Test
+    void ignoresUnknownChildren() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L);
+        projection.markAbsent(99L, TODAY, TODAY);
+
+        assertDay(projection.project(group, TODAY, TODAY).days().get(0), 1, 0, 0);
+    }
+
+    @Test
+    void acceptsFirstAndLastDayOfWindow() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L);
+        LocalDate first = TODAY.minusDays(AttendanceProjectionService.LOOKBACK_DAYS);
+        LocalDate last = TODAY.plusDays(AttendanceProjectionService.HORIZON_DAYS);
+        assertEquals(first, projection.windowStart());
+
+        projection.markAbsent(1L, first, first);
+        projection.markVacation(1L, last, last);
+
+        assertEquals(1, projection.project(group, first, first).days().get(0).absent());
+        assertEquals(1, projection.project(group, last, last).days().get(0).onVacation());
+    }
+
+    @Test
+    void rejectsDatesOutsideWindow() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L);
+        LocalDate first = TODAY.minusDays(AttendanceProjectionService.LOOKBACK_DAYS);
+        LocalDate last = TODAY.plusDays(AttendanceProjectionService.HORIZON_DAYS);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> projection.project(group, first.minusDays(1), first));
+        assertThrows(IllegalArgumentException.class,
+                () -> projection.project(group, last, last.plusDays(1)));
+    }
+
+    @Test
+    void clipsRangesThatCrossWindowEdges() {
+        AttendanceProjectionService.GroupProjection projection = projection(1L);
+        LocalDate first = TODAY.minusDays(AttendanceProjectionService.LOOKBACK_DAYS);
+        LocalDate last = TODAY.plusDays(AttendanceProjectionService.HORIZON_DAYS);
+
+        projection.markVacation(1L, first.minusDays(10), first.plusDays(1));
+        projection.markAbsent(1L, last.minusDays(1), last.plusDays(10));
+        // Helt utenfor vinduet: ingen effekt
+        projection.markAbsent(1L, first.minusDays(10), first.minusDays(5));
+
+        GroupProjectionResponse start = projection.project(group, first, first.plusDays(2));
+        assertEquals(1, start.days().get(0).onVacation());
+        assertEquals(1, start.days().get(1).onVacation());
+        assertEquals(0, start.days().get(2).onVacation());
+
+        GroupProjectionResponse end = projection.project(group, last.minusDays(2), last);
+        assertEquals(0, end.days().get(0).absent());
+        assertEquals(1, end.days().get(1).absent());
+        assertEquals(1, end.days().get(2).absent());
+    }
+
+    @Test
+    void windowFollowsLoadDate() {
+        AttendanceProjectionService.GroupProjection tomorrow =
+                new AttendanceProjectionService.GroupProjection(TODAY.plusDays(1));
+
+        assertEquals(TODAY.plusDays(1), tomorrow.loadedOn());
+        assertEquals(TODAY.plusDays(1).minusDays(AttendanceProjectionService.LOOKBACK_DAYS), tomorrow.windowStart());
+        tomorrow.project(group, TODAY.plusDays(1 + AttendanceProjectionService.HORIZON_DAYS),
+                TODAY.plusDays(1 + AttendanceProjectionService.HORIZON_DAYS));
+    }
+
+    private static AttendanceProjectionService.GroupProjection projection(Long... childIds) {
+        AttendanceProjectionService.GroupProjection projection = new AttendanceProjectionService.GroupProjection(TODAY);
+        for (Long childId : childIds) {
+            projection.addChild(childId);
+        }
+        return projection;
+    }
+
+    private static void assertDay(DayProjectionResponse day, int expected, int onVacation, int absent) {
+        assertEquals(expected, day.expected(), "forventet " + day.date());
+        assertEquals(onVacation, day.onVacation(), "ferie " + day.date());
+        assertEquals(absent, day.absent(), "fravær " + day.date());
+    }
+
+    private static DaycareGroup group(String name) {
+        DaycareGroup group = new DaycareGroup();
+        group.setName(name);
+        return group;
+    }
+}
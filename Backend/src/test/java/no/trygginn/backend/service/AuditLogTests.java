@@ -0,0 +1,182 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.trygginn.backend.controller.dto.AuditLogPageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tilgangsloggen mot databasen. audit_log kan ikke ryddes, så hver test bruker
+ * et eget, negativt child_id som ikke finnes ellers.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class AuditLogTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final long childId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+    private AuditLog direct;
+
+    @BeforeEach
+    void setUp() {
+        // Skrivertråden venter en time og vekkes aldri av batch-size, så testen styrer flush()
+        direct = new AuditLog(jdbc, meterRegistry, 2, 1_000, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        direct.shutdown();
+    }
+
+    @Test
+    void fullRingIsWrittenDirectly() {
+        for (int i = 0; i < 5; i++) {
+            direct.write(STAFF_USER_ID, childId, "test", "allergies");
+        }
+
+        // To ligger i bufferen, de tre andre ble skrevet i forespørselen
+        assertEquals(3, rows());
+        assertEquals(3, meterRegistry.counter(AuditLog.METRIC_NAME, "outcome", "overflow").count());
+
+        direct.flush();
+        assertEquals(5, rows());
+    }
+
+    @Test
+    void flushWritesWhatWasRecorded() {
+        direct.write(STAFF_USER_ID, childId, "test", "allergies");
+        direct.write(STAFF_USER_ID, childId, "test", "medications");
+        assertEquals(0, rows());
+
+        direct.flush();
+
+        assertEquals(2, rows());
+        assertEquals(2, meterRegistry.counter(AuditLog.METRIC_NAME, "outcome", "written").count());
+        assertEquals(List.of("medications", "allergies"), auditLog.search(childId, null, null, null, 10)
+                .entries().stream().map(AuditLogPageResponse.Entry::fields).toList());
+    }
+
+    @Test
+    void pagesDoNotOverlap() {
+        for (int i = 0; i < 5; i++) {
+            direct.write(STAFF_USER_ID, childId, "test", "felt" + i);
+            direct.flush();
+        }
+
+        Set<Long> seen = new HashSet<>();
+        Long before = null;
+        int pages = 0;
+        do {
+            AuditLogPageResponse page = auditLog.search(childId, null, "WRITE", before, 2);
+            for (AuditLogPageResponse.Entry entry : page.entries()) {
+                assertTrue(seen.add(entry.id()), "Rad " + entry.id() + " kom to ganger");
+                assertTrue(before == null || entry.id() < before);
+            }
+            before = page.nextBefore();
+            pages++;
+        } while (before != null);
+
+        assertEquals(5, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void lastPageHasNoNextBefore() {
+        direct.write(STAFF_USER_ID, childId, "test", "allergies");
+        direct.flush();
+
+        AuditLogPageResponse page = auditLog.search(childId, null, null, null, 1);
+        assertEquals(1, page.entries().size());
+        assertNull(page.nextBefore());
+    }
+
+    @Test
+    void rowsCannotBeChangedOrDeleted() {
+        direct.write(STAFF_USER_ID, childId, "test", "allergies");
+        direct.flush();
+
+        assertThrows(DataAccessException.class,
+                () -> jdbc.update("UPDATE audit_log SET fields = 'ingenting' WHERE child_id = ?", childId));
+        assertThrows(DataAccessException.class,
+                () -> jdbc.update("DELETE FROM audit_log WHERE child_id = ?", childId));
+        assertEquals(1, rows());
+    }
+
+    @Test
+    void searchHitOnHealthFieldIsLogged() throws Exception {
+        long daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Søk barnehage', 'SOEK000001', 'Testveien 5')
+                RETURNING id
+                """, Long.class);
+        try {
+            long groupId = jdbc.queryForObject(
+                    "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Søk') RETURNING id",
+                    Long.class, daycareId);
+            long searchChildId = jdbc.queryForObject("""
+                    INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth, allergies)
+                    VALUES (?, 'Nora', 'Søk', DATE '2021-01-01', 'Peanøtter')
+                    RETURNING id
+                    """, Long.class, groupId);
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+            // Treff på navnet viser ingen helseopplysninger og logges ikke
+            mvc.perform(get("/api/search/people").param("daycareId", String.valueOf(daycareId)).param("q", "nora"))
+                    .andExpect(status().isOk());
+            // Treff på allergien avslører den og logges
+            mvc.perform(get("/api/search/people").param("daycareId", String.valueOf(daycareId)).param("q", "nora pean"))
+                    .andExpect(status().isOk());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (auditLog.search(searchChildId, null, null, null, 10).entries().isEmpty()) {
+                assertTrue(System.nanoTime() < deadline, "Treffet ble ikke logget");
+                Thread.sleep(20);
+            }
+            List<AuditLogPageResponse.Entry> entries = auditLog.search(searchChildId, null, null, null, 10).entries();
+            assertEquals(1, entries.size());
+            assertEquals("search", entries.getFirst().resource());
+            assertEquals("READ", entries.getFirst().action());
+        } finally {
+            jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+        }
+    }
+
+    private int rows() {
+        return jdbc.queryForObject("SELECT count(*) FROM audit_log WHERE child_id = ?", Integer.class, childId);
+    }
+}
@@ -0,0 +1,154 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Notathistorikken mot databasen: hele kopier hver trygginn.notes.snapshot-interval
+ * revisjon og endringer i mellom, og at hver revisjon bygges tilbake riktig.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class ChildNoteHistoryTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    @Autowired
+    private ChildNoteHistory history;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${trygginn.notes.snapshot-interval}")
+    private int snapshotInterval;
+
+    private long daycareId;
+    private long childId;
+
+    @BeforeEach
+    void setUp() {
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Notat barnehage', 'NOTAT00001', 'Testveien 4')
+                RETURNING id
+                """, Long.class);
+        long groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Notat') RETURNING id",
+                Long.class, daycareId);
+        childId = jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, 'Notat', 'Barn', DATE '2021-01-01')
+                RETURNING id
+                """, Long.class, groupId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+    }
+
+    @Test
+    void writesFullCopyEverySnapshotIntervalAndRebuildsEveryRevision() {
+        int count = 2 * snapshotInterval + 5;
+        List<String> notes = new ArrayList<>();
+        String note = "Hentes vanligvis av mor eller far rundt klokken fire, ring ved endringer.";
+        String previous = null;
+
+        // Små endringer, så alt mellom de hele kopiene lagres som DELTA
+        for (int i = 1; i <= count; i++) {
+            note = note + " Punkt " + i + ".";
+            record(previous, note);
+            notes.add(note);
+            previous = note;
+        }
+
+        List<String> kinds = jdbc.queryForList(
+                "SELECT kind FROM child_note_revision WHERE child_id = ? ORDER BY revision", String.class, childId);
+        assertEquals(count, kinds.size());
+        for (int revision = 1; revision <= count; revision++) {
+            String expected = (revision - 1) % snapshotInterval == 0 ? "FULL" : "DELTA";
+            assertEquals(expected, kinds.get(revision - 1), "revisjon " + revision);
+        }
+
+        for (int revision = 1; revision <= count; revision++) {
+            assertEquals(notes.get(revision - 1), history.revision(childId, revision).note(), "revisjon " + revision);
+        }
+    }
+
+    @Test
+    void existingNoteBecomesFirstRevision() {
+        record("Fantes før historikken", "Første endring");
+
+        assertEquals("Fantes før historikken", history.revision(childId, 1).note());
+        assertNull(history.revision(childId, 1).editedByUserId());
+        assertEquals("Første endring", history.revision(childId, 2).note());
+        assertEquals(STAFF_USER_ID, history.revision(childId, 2).editedByUserId());
+    }
+
+    @Test
+    void unchangedNoteIsNotARevision() {
+        record(null, "Notat");
+        record("Notat", "Notat");
+
+        assertEquals(1, history.revisions(childId, null, null).revisions().size());
+    }
+
+    @Test
+    void largeChangeIsStoredAsFullCopy() {
+        record(null, "Kort notat om henting");
+        record("Kort notat om henting", "Helt ny tekst som ikke har noe til felles med den gamle");
+
+        assertEquals(List.of("FULL", "FULL"), jdbc.queryForList(
+                "SELECT kind FROM child_note_revision WHERE child_id = ? ORDER BY revision", String.class, childId));
+    }
+
+    @Test
+    void diffBetweenRevisionsInDifferentChains() {
+        String previous = null;
+        String note = "Sover etter lunsj.";
+        for (int i = 1; i <= snapshotInterval + 2; i++) {
+            String next = note + " Dag " + i + ".";
+            record(previous, next);
+            previous = next;
+            note = next;
+        }
+
+        ChildNoteDiffResponse diff = history.diff(childId, 1, snapshotInterval + 2);
+        assertEquals(ChildNoteDiffResponse.Op.EQUAL, diff.parts().getFirst().op());
+        assertEquals(ChildNoteDiffResponse.Op.INSERT, diff.parts().getLast().op());
+        assertTrue(diff.parts().getLast().text().endsWith("Dag " + (snapshotInterval + 2) + "."));
+    }
+
+    @Test
+    void unknownRevisionIsRejected() {
+        record(null, "Notat");
+
+        assertThrows(IllegalArgumentException.class, () -> history.revision(childId, 2));
+        assertThrows(IllegalArgumentException.class, () -> history.revision(childId, 0));
+    }
+
+    private void record(String previous, String note) {
+        transactionTemplate.executeWithoutResult(status -> history.record(
+                List.of(new ChildNoteHistory.Change(childId, previous, note)), STAFF_USER_ID));
+    }
+}
@@ -0,0 +1,89 @@
+package no.trygginn.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvReaderTests {
+
+    @Test
+    void readsQuotedFieldsWithDelimiters() throws IOException {
+        CsvReader csv = reader("navn,adresse\n\"Olsen, Kari\",\"Veien 1, Oslo\"\n");
+
+        assertEquals(List.of("navn", "adresse"), csv.next());
+        assertEquals(List.of("Olsen, Kari", "Veien 1, Oslo"), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void unescapesDoubledQuotes() throws IOException {
+        CsvReader csv = reader("a,b\n\"Han sa \"\"hei\"\"\",\"\"\"\"\n");
+
+        csv.next();
+        assertEquals(List.of("Han sa \"hei\"", "\""), csv.next());
+    }
+
+    @Test
+    void handlesCrlf() throws IOException {
+        CsvReader csv = reader("a,b\r\n1,2\r\n3,4\r\n");
+
+        assertEquals(List.of("a", "b"), csv.next());
+        assertEquals(List.of("1", "2"), csv.next());
+        assertEquals(2, csv.lineNumber());
+        assertEquals(List.of("3", "4"), csv.next());
+        assertEquals(3, csv.lineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void countsPhysicalLinesAcrossEmbeddedNewlines() throws IOException {
+        CsvReader csv = reader("a,notat\n1,\"første\nandre\r\ntredje\"\n\n2,kort\n");
+
+        assertEquals(List.of("a", "notat"), csv.next());
+        assertEquals(1, csv.lineNumber());
+
+        assertEquals(List.of("1", "første\nandre\r\ntredje"), csv.next());
+        assertEquals(2, csv.lineNumber());
+
+        // Tom linje hoppes over, men telles
+        assertEquals(List.of("2", "kort"), csv.next());
+        assertEquals(6, csv.lineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void keepsTrailingEmptyField() throws IOException {
+        CsvReader csv = reader("a,b,c\n1,2,\n1,,\n");
+
+        csv.next();
+        assertEquals(List.of("1", "2", ""), csv.next());
+        assertEquals(List.of("1", "", ""), csv.next());
+    }
+
+    @Test
+    void detectsSemicolonFromHeader() throws IOException {
+        CsvReader csv = reader("a;b\n1,5;2\n");
+
+        assertEquals(List.of("a", "b"), csv.next());
+        assertEquals(List.of("1,5", "2"), csv.next());
+    }
+
+    @Test
+    void lastRecordWithoutNewline() throws IOException {
+        CsvReader csv = reader("a,b\n1,\"2\"");
+
+        csv.next();
+        assertEquals(List.of("1", "2"), csv.next());
+        assertEquals(2, csv.lineNumber());
+        assertNull(csv.next());
+    }
+
+    private static CsvReader reader(String text) {
+        return new CsvReader(new StringReader(text));
+    }
+}
@@ -0,0 +1,155 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Utsenderen mot outboxen, med en egen instans og en mottaker som feiler på kommando.
+ * replay-after-ms er 0, så replay() tar radene med en gang; testradene merkes med
+ * en egen nøkkel i payload, og mottakeren ser bort fra alt annet.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class DomainEventDispatcherTests {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private final String marker = UUID.randomUUID().toString();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingListener listener = new RecordingListener();
+
+    private DomainEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("listener", listener));
+        // Gjenopprettingen kjøres bare av testen (første gang etter en time)
+        dispatcher = new DomainEventDispatcher(jdbc, transactionManager, jsonMapper,
+                beans.getBeanProvider(DomainEventListener.class), meterRegistry,
+                16, 16, TimeUnit.HOURS.toMillis(1), 0, 3, 72);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+        jdbc.update("DELETE FROM domain_event_outbox WHERE payload ->> 'test' = ?", marker);
+    }
+
+    @Test
+    void eventWhoseListenerFailedIsReplayedFromOutbox() throws Exception {
+        DomainEvent event = insert();
+        listener.failing = true;
+
+        dispatcher.offer(event);
+        waitUntil(() -> meterRegistry.counter(DomainEventDispatcher.METRIC_NAME, "outcome", "failed").count() == 1);
+
+        assertEquals(List.of(event.id()), listener.delivered);
+        assertNull(publishedAt(event.id()));
+
+        // Mottakeren virker igjen: outboxen leverer raden på nytt og merker den publisert
+        listener.failing = false;
+        dispatcher.replay();
+
+        assertEquals(List.of(event.id(), event.id()), listener.delivered);
+        assertNotNull(publishedAt(event.id()));
+        assertEquals(1, meterRegistry.counter(DomainEventDispatcher.METRIC_NAME, "outcome", "replayed").count());
+    }
+
+    @Test
+    void replayThatFailsCountsAttemptsAndGivesUp() {
+        DomainEvent event = insert();
+        listener.failing = true;
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.replay();
+        }
+
+        // max-attempts er 3, så raden leveres ikke flere ganger og forblir upublisert
+        assertEquals(List.of(event.id(), event.id(), event.id()), listener.delivered);
+        assertEquals(3, jdbc.queryForObject(
+                "SELECT attempts FROM domain_event_outbox WHERE id = ?", Integer.class, event.id()));
+        assertNull(publishedAt(event.id()));
+    }
+
+    @Test
+    void deliveredEventIsNotReplayed() throws Exception {
+        DomainEvent event = insert();
+
+        dispatcher.offer(event);
+        waitUntil(() -> publishedAt(event.id()) != null);
+        dispatcher.replay();
+
+        assertEquals(List.of(event.id()), listener.delivered);
+    }
+
+    private DomainEvent insert() {
+        Map<String, String> data = Map.of("test", marker);
+        return jdbc.queryForObject("""
+                        INSERT INTO domain_event_outbox (type, payload)
+                        VALUES (?, ?::jsonb)
+                        RETURNING id, created_at
+                        """,
+                (rs, n) -> new DomainEvent(rs.getLong(1), DomainEvent.Type.CALENDAR_EVENT_CREATED,
+                        null, null, data, rs.getTimestamp(2).toLocalDateTime()),
+                DomainEvent.Type.CALENDAR_EVENT_CREATED.name(), jsonMapper.writeValueAsString(data));
+    }
+
+    private Object publishedAt(long id) {
+        return jdbc.queryForObject("SELECT published_at FROM domain_event_outbox WHERE id = ?", Object.class, id);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Tidsavbrudd");
+            Thread.sleep(5);
+        }
+    }
+
+    private final class RecordingListener implements DomainEventListener {
+        final List<Long> delivered = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public void onEvents(List<DomainEvent> events) {
+            boolean ours = false;
+            for (DomainEvent event : events) {
+                if (marker.equals(event.data().get("test"))) {
+                    delivered.add(event.id());
+                    ours = true;
+                }
+            }
+            if (ours && failing) {
+                throw new IllegalStateException("Mottakeren er nede");
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package no.trygginn.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventRingBufferTests {
+
+    @Test
+    void rejectsWhenFullUntilDrained() {
+        EventRingBuffer<String> ring = new EventRingBuffer<>(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer("h" + i));
+        }
+        assertFalse(ring.offer("h4"));
+        assertEquals(4, ring.backlog());
+
+        List<String> batch = new ArrayList<>();
+        assertEquals(2, ring.drainTo(batch, 2));
+        assertEquals(List.of("h0", "h1"), batch);
+
+        // To plasser er ledige igjen
+        assertTrue(ring.offer("h4"));
+        assertTrue(ring.offer("h5"));
+        assertFalse(ring.offer("h6"));
+
+        batch.clear();
+        assertEquals(4, ring.drainTo(batch, 10));
+        assertEquals(List.of("h2", "h3", "h4", "h5"), batch);
+        assertEquals(0, ring.drainTo(batch, 10));
+        assertEquals(0, ring.backlog());
+    }
+
+    @Test
+    void sizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new EventRingBuffer<>(1));
+        assertThrows(IllegalArgumentException.class, () -> new EventRingBuffer<>(6));
+    }
+
+    @Test
+    void manyProducersOneConsumerLoseAndDuplicateNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        // Liten buffer, så skriverne ofte finner den full og må prøve igjen
+        EventRingBuffer<Long> ring = new EventRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long base = (long) p * perProducer;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (long i = 0; i < perProducer; i++) {
+                        while (!ring.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            boolean[] seen = new boolean[producers * perProducer];
+            long[] lastPerProducer = new long[producers];
+            Arrays.fill(lastPerProducer, -1);
+            List<Long> batch = new ArrayList<>(32);
+            int received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+            while (received < seen.length) {
+                assertTrue(System.nanoTime() < deadline, "Tidsavbrudd etter " + received + " hendelser");
+                batch.clear();
+                if (ring.drainTo(batch, 32) == 0) {
+                    Thread.yield();
+                }
+                for (Long value : batch) {
+                    int v = value.intValue();
+                    assertFalse(seen[v], "Hendelse " + v + " kom to ganger");
+                    seen[v] = true;
+
+                    // Hver skriver sine hendelser kommer i rekkefølge
+                    int producer = v / perProducer;
+                    assertTrue(v > lastPerProducer[producer], "Hendelse " + v + " kom i feil rekkefølge");
+                    lastPerProducer[producer] = v;
+                }
+                received += batch.size();
+            }
+
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(0, ring.backlog());
+            assertEquals(0, ring.drainTo(batch, 32));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
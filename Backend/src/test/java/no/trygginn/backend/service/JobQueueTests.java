@@ -0,0 +1,337 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Jobbkøen og planleggeren mot databasen. Konteksten har ingen arbeidere
+ * (trygginn.jobs.workers=0, også for de andre testene via surefire i pom.xml);
+ * testen lager sin egen JobQueue og kaller runBatch selv.
+ * Testjobbene har typer med et eget suffiks, så de kan ryddes etterpå.
+ */
+@SpringBootTest(properties = "trygginn.jobs.workers=0")
+@ActiveProfiles("dev")
+class JobQueueTests {
+
+    private static final int BATCH_SIZE = 5;
+    private static final long BACKOFF_SECONDS = 30;
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    // Jobbene fra appen, så jobber som ikke er testens kjøres som vanlig om de blir tatt
+    @Autowired
+    private List<JobHandler> appHandlers;
+
+    private final String suffix = "-" + UUID.randomUUID().toString().substring(0, 8);
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    private JobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (JobHandler handler : appHandlers) {
+            beans.addBean(handler.type(), handler);
+        }
+        beans.addBean("count", handler("test.count", payload -> ran.add(payload)));
+        beans.addBean("fail", handler("test.fail", payload -> {
+            throw new IllegalStateException("Jobben feiler");
+        }));
+
+        queue = newQueue(beans);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM background_job WHERE type LIKE ?", "test.%" + suffix);
+        jdbc.update("DELETE FROM background_schedule WHERE type LIKE ?", "test.%" + suffix);
+    }
+
+    @Test
+    void concurrentBatchesNeverClaimSameJob() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            queue.enqueue(type("test.count"), Map.of("n", i));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (String workerId : List.of("test-a", "test-b")) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                await(start);
+                while (queue.runBatch(workerId) > 0) {
+                    // Tar neste gruppe til køen er tom
+                }
+            }));
+        }
+        start.countDown();
+        CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(40, ran.size());
+        assertEquals(40, new HashSet<>(ran).size(), "En jobb ble kjørt to ganger");
+        assertEquals(List.of("DONE"), jdbc.queryForList(
+                "SELECT DISTINCT status FROM background_job WHERE type = ?", String.class, type("test.count")));
+        assertEquals(List.of(1), jdbc.queryForList(
+                "SELECT DISTINCT attempts FROM background_job WHERE type = ?", Integer.class, type("test.count")));
+    }
+
+    @Test
+    void failingJobIsRetriedLaterThenFails() {
+        queue.enqueue(type("test.fail"), null);
+        long id = jobId("test.fail");
+
+        LocalDateTime before = LocalDateTime.now();
+        runUntilClaimed(id);
+
+        // Lagt tilbake med run_at forskjøvet backoff-seconds
+        assertEquals("QUEUED", status(id));
+        assertEquals(1, attempts(id));
+        LocalDateTime runAt = jdbc.queryForObject(
+                "SELECT run_at FROM background_job WHERE id = ?", Timestamp.class, id).toLocalDateTime();
+        assertFalse(runAt.isBefore(before.plusSeconds(BACKOFF_SECONDS - 1)), "run_at " + runAt);
+        assertNotNull(jdbc.queryForObject("SELECT last_error FROM background_job WHERE id = ?", String.class, id));
+
+        // Ikke klar ennå: en ny runde tar den ikke
+        queue.runBatch("test-a");
+        assertEquals(1, attempts(id));
+
+        jdbc.update("UPDATE background_job SET run_at = NOW() - INTERVAL '1 second' WHERE id = ?", id);
+        runUntilClaimed(id);
+
+        // max_attempts er 2
+        assertEquals("FAILED", status(id));
+        assertEquals(2, attempts(id));
+        assertNotNull(jdbc.queryForObject("SELECT finished_at FROM background_job WHERE id = ?", Timestamp.class, id));
+    }
+
+    @Test
+    void dedupeKeyBlocksWhileQueuedOrRunning() {
+        String type = type("test.dedupe");
+        String key = "test.dedupe" + suffix + "@1";
+        LocalDateTime later = LocalDateTime.now().plusHours(1);
+
+        assertTrue(queue.enqueue(type, null, 0, later, key));
+        assertFalse(queue.enqueue(type, null, 0, later, key));
+
+        jdbc.update("UPDATE background_job SET status = 'RUNNING' WHERE dedupe_key = ?", key);
+        assertFalse(queue.enqueue(type, null, 0, later, key));
+
+        // Når jobben er ferdig, kan samme nøkkel legges inn igjen
+        jdbc.update("UPDATE background_job SET status = 'DONE' WHERE dedupe_key = ?", key);
+        assertTrue(queue.enqueue(type, null, 0, later, key));
+        assertEquals(2, jdbc.queryForObject(
+                "SELECT count(*) FROM background_job WHERE type = ?", Integer.class, type));
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndStaleWorkRollsBack() throws Exception {
+        CountDownLatch staleStarted = new CountDownLatch(1);
+        CountDownLatch reclaimed = new CountDownLatch(1);
+        ThreadLocal<String> worker = new ThreadLocal<>();
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (JobHandler handler : appHandlers) {
+            beans.addBean(handler.type(), handler);
+        }
+        beans.addBean("lease", handler("test.lease", payload -> {
+            // Det jobben gjør i databasen: en ny jobb (langt fram i tid, så ingen tar den)
+            queue.enqueue(type("test.effect"), Map.of("by", worker.get()), 0, LocalDateTime.now().plusHours(1), null);
+            if ("test-stale".equals(worker.get())) {
+                staleStarted.countDown();
+                await(reclaimed);
+            }
+        }));
+        JobQueue leaseQueue = newQueue(beans);
+
+        leaseQueue.enqueue(type("test.lease"), null);
+        long id = jobId("test.lease");
+
+        // Den første arbeideren tar jobben og blir hengende i den
+        CompletableFuture<Void> stale = CompletableFuture.runAsync(() -> {
+            worker.set("test-stale");
+            while (staleStarted.getCount() > 0 && leaseQueue.runBatch("test-stale") > 0) {
+                // Andre jobber i køen kan komme først
+            }
+        });
+        assertTrue(staleStarted.await(10, TimeUnit.SECONDS));
+
+        // Leien går ut, og en annen arbeider tar og fullfører jobben
+        jdbc.update("UPDATE background_job SET locked_until = NOW() - INTERVAL '1 second' WHERE id = ?", id);
+        worker.set("test-fresh");
+        runUntilClaimed(leaseQueue, "test-fresh", id);
+        worker.remove();
+        assertEquals("DONE", status(id));
+        assertEquals(2, attempts(id));
+
+        // Den gamle arbeideren blir ferdig, men DONE-oppdateringen treffer ikke og alt rulles tilbake
+        reclaimed.countDown();
+        stale.get(10, TimeUnit.SECONDS);
+
+        assertEquals("DONE", status(id));
+        assertEquals(2, attempts(id));
+        assertEquals(List.of("{\"by\": \"test-fresh\"}"), jdbc.queryForList(
+                "SELECT payload::text FROM background_job WHERE type = ?", String.class, type("test.effect")));
+    }
+
+    @Test
+    void schedulerEnqueuesOneJobPerCronInstant() throws Exception {
+        String type = type("test.cron");
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("cron", new JobHandler() {
+            @Override
+            public String type() {
+                return type;
+            }
+
+            @Override
+            public String schedule() {
+                return "0 0 3 * * *";
+            }
+
+            @Override
+            public void run(String payload) {
+            }
+        });
+        JobQueue cronQueue = newQueue(beans);
+        JobScheduler first = new JobScheduler(cronQueue, jdbc, transactionManager, 1_000, "0 30 * * * *", 72);
+        JobScheduler second = new JobScheduler(cronQueue, jdbc, transactionManager, 1_000, "0 30 * * * *", 72);
+
+        // Første runde registrerer planen med neste 03:00, uten å legge noe i køen
+        first.tick();
+        assertEquals(0, jobs(type));
+        LocalDateTime next = jdbc.queryForObject(
+                "SELECT next_run_at FROM background_schedule WHERE type = ?", Timestamp.class, type).toLocalDateTime();
+        assertEquals(LocalTime.of(3, 0), next.toLocalTime());
+        assertTrue(next.isAfter(LocalDateTime.now()));
+
+        // Alle instansene har vært nede i tre døgn: tre tapte tidspunkter gir én jobb
+        LocalDateTime missed = LocalDate.now().minusDays(3).atTime(3, 0);
+        jdbc.update("UPDATE background_schedule SET next_run_at = ? WHERE type = ?", Timestamp.valueOf(missed), type);
+
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<Void> a = CompletableFuture.runAsync(() -> {
+            await(start);
+            first.tick();
+        });
+        CompletableFuture<Void> b = CompletableFuture.runAsync(() -> {
+            await(start);
+            second.tick();
+        });
+        start.countDown();
+        CompletableFuture.allOf(a, b).get(10, TimeUnit.SECONDS);
+        first.tick();
+        second.tick();
+
+        assertEquals(1, jobs(type));
+        assertEquals(type + "@" + missed, jdbc.queryForObject(
+                "SELECT dedupe_key FROM background_job WHERE type = ?", String.class, type));
+        assertEquals(missed, jdbc.queryForObject(
+                "SELECT last_run_at FROM background_schedule WHERE type = ?", Timestamp.class, type).toLocalDateTime());
+        assertEquals(next, jdbc.queryForObject(
+                "SELECT next_run_at FROM background_schedule WHERE type = ?", Timestamp.class, type).toLocalDateTime());
+
+        first.shutdown();
+        second.shutdown();
+    }
+
+    private JobQueue newQueue(StaticListableBeanFactory beans) {
+        return new JobQueue(jdbc, transactionManager, jsonMapper, beans.getBeanProvider(JobHandler.class),
+                new SimpleMeterRegistry(), 0, BATCH_SIZE, 1_000, 300, BACKOFF_SECONDS, MAX_ATTEMPTS);
+    }
+
+    private JobHandler handler(String name, Consumer<String> run) {
+        String type = type(name);
+        return new JobHandler() {
+            @Override
+            public String type() {
+                return type;
+            }
+
+            @Override
+            public void run(String payload) {
+                run.accept(payload);
+            }
+        };
+    }
+
+    private String type(String name) {
+        return name + suffix;
+    }
+
+    /**
+     * Kjører grupper til jobben er tatt (andre jobber i køen kan komme først).
+     */
+    private void runUntilClaimed(long id) {
+        runUntilClaimed(queue, "test-a", id);
+    }
+
+    private void runUntilClaimed(JobQueue jobQueue, String workerId, long id) {
+        int attempts = attempts(id);
+        for (int round = 0; round < 100 && attempts(id) == attempts; round++) {
+            if (jobQueue.runBatch(workerId) == 0) {
+                break;
+            }
+        }
+        assertEquals(attempts + 1, attempts(id), "Jobb " + id + " ble ikke tatt");
+    }
+
+    private long jobId(String name) {
+        return jdbc.queryForObject("SELECT id FROM background_job WHERE type = ?", Long.class, type(name));
+    }
+
+    private String status(long id) {
+        return jdbc.queryForObject("SELECT status FROM background_job WHERE id = ?", String.class, id);
+    }
+
+    private int attempts(long id) {
+        return jdbc.queryForObject("SELECT attempts FROM background_job WHERE id = ?", Integer.class, id);
+    }
+
+    private int jobs(String type) {
+        return jdbc.queryForObject("SELECT count(*) FROM background_job WHERE type = ?", Integer.class, type);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
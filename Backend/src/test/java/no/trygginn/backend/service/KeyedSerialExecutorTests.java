@@ -0,0 +1,140 @@
+package no.trygginn.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedSerialExecutorTests {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void runsTasksForOneKeyInOrder() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 1_000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            assertTrue(executor.execute("gruppe", () -> {
+                order.add(n);
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void blockedKeyDoesNotHoldUpOthers() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        CountDownLatch blockedRan = new CountDownLatch(1);
+
+        executor.execute(1L, () -> await(release));
+        executor.execute(1L, blockedRan::countDown);
+        executor.execute(2L, otherRan::countDown);
+
+        // Gruppe 2 kommer gjennom mens gruppe 1 står fast, og neste i gruppe 1 venter
+        assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+        assertEquals(1, blockedRan.getCount());
+
+        release.countDown();
+        assertTrue(blockedRan.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsWhenQueueForKeyIsFull() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(executor.execute("a", () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Den kjørende oppgaven er tatt ut av køen, så tre til får plass
+        assertTrue(executor.execute("a", () -> {}));
+        assertTrue(executor.execute("a", () -> {}));
+        assertTrue(executor.execute("a", () -> {}));
+        assertFalse(executor.execute("a", () -> {}));
+
+        // Andre nøkler har sin egen grense
+        assertTrue(executor.execute("b", () -> {}));
+
+        release.countDown();
+    }
+
+    @Test
+    void removesQueueWhenDrained() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch last = new CountDownLatch(1);
+
+        executor.execute("a", () -> await(release));
+        executor.execute("a", last::countDown);
+        assertEquals(1, executor.activeKeys());
+
+        release.countDown();
+        assertTrue(last.await(5, TimeUnit.SECONDS));
+        waitUntil(() -> executor.activeKeys() == 0);
+
+        // En ny oppgave for samme nøkkel starter en ny kø
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(executor.execute("a", again::countDown));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+        waitUntil(() -> executor.activeKeys() == 0);
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheQueue() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 10);
+        CountDownLatch next = new CountDownLatch(1);
+
+        executor.execute("a", () -> {
+            throw new IllegalStateException("feil");
+        });
+        executor.execute("a", next::countDown);
+
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Tidsavbrudd");
+            Thread.sleep(5);
+        }
+    }
+}
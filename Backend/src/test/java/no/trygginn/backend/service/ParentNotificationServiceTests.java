@@ -0,0 +1,226 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.trygginn.backend.model.AttendanceEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Foreldrevarslene mot databasen, med en sender og en jobbkø som bare tar vare på
+ * det de får. Vinduet (coalesce-ms) er et minutt, så testen sender selv med flush.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class ParentNotificationServiceTests {
+
+    // Testdataene i db/dev: Anne Hansen er forelder, Kari Olsen er ansatt
+    private static final long GUARDIAN_USER_ID = 1;
+    private static final long STAFF_USER_ID = 3;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private final List<List<ParentNotification>> sent = new CopyOnWriteArrayList<>();
+    private final List<Object> queued = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sendCalls = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ParentNotificationService> services = new ArrayList<>();
+    private final List<Long> attendanceIds = new ArrayList<>();
+
+    private volatile boolean senderDown;
+
+    private long daycareId;
+    private long emma;
+    private long noah;
+
+    @BeforeEach
+    void setUp() {
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Varsel barnehage', 'VARSEL0001', 'Testveien 8')
+                RETURNING id
+                """, Long.class);
+        long groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Varsel') RETURNING id",
+                Long.class, daycareId);
+        emma = child(groupId, "Emma");
+        noah = child(groupId, "Noah");
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(ParentNotificationService::shutdown);
+        for (Long attendanceId : attendanceIds) {
+            jdbc.update("DELETE FROM notification_sent WHERE attendance_id = ?", attendanceId);
+        }
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+    }
+
+    @Test
+    void siblingsWithinWindowGiveOneNotification() {
+        ParentNotificationService service = newService();
+        DomainEvent first = checkIn(emma);
+        DomainEvent second = checkIn(noah);
+
+        // Levert i to grupper fra utsenderen, men innenfor samme vindu
+        service.onEvents(List.of(first));
+        service.onEvents(List.of(second));
+
+        service.flush(false);
+        assertTrue(sent.isEmpty(), "Sendt før vinduet var ute");
+
+        service.flush(true);
+        assertEquals(1, sent.size());
+        assertEquals(1, sent.getFirst().size());
+        ParentNotification notification = sent.getFirst().getFirst();
+        assertEquals(GUARDIAN_USER_ID, notification.guardianId());
+        assertEquals(List.of(attendanceId(first), attendanceId(second)),
+                notification.items().stream().map(ParentNotification.Item::attendanceId).toList());
+        assertTrue(notification.text().startsWith("Emma og Noah er sjekket inn"), notification.text());
+    }
+
+    @Test
+    void replayedAttendanceIsNotSentAgain() {
+        ParentNotificationService service = newService();
+        DomainEvent event = checkIn(emma);
+
+        service.onEvents(List.of(event));
+        service.flush(true);
+        assertEquals(1, sent.size());
+
+        // Samme hendelse levert på nytt fra outboxen, her og på en annen instans
+        service.onEvents(List.of(event));
+        newService().onEvents(List.of(event));
+        services.forEach(s -> s.flush(true));
+
+        assertEquals(1, sent.size());
+        assertEquals(2, meterRegistry.counter(ParentNotificationService.METRIC_NAME + ".duplicates").count());
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT count(*) FROM notification_sent WHERE attendance_id = ?", Integer.class, attendanceId(event)));
+    }
+
+    @Test
+    void failingSenderIsHandedToJobQueueAfterMaxAttempts() throws Exception {
+        ParentNotificationService service = newService();
+        senderDown = true;
+
+        service.onEvents(List.of(checkIn(emma)));
+        service.flush(true);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "Ble ikke lagt i jobbkøen");
+            Thread.sleep(10);
+        }
+
+        assertEquals(MAX_ATTEMPTS, sendCalls.get());
+        assertTrue(sent.isEmpty());
+        assertEquals(1, queued.size());
+        assertEquals(List.of(GUARDIAN_USER_ID), ((List<?>) queued.getFirst()).stream()
+                .map(notification -> ((ParentNotification) notification).guardianId())
+                .toList());
+        assertEquals(1, meterRegistry.counter(
+                ParentNotificationService.METRIC_NAME + ".batches", "outcome", "queued").count());
+    }
+
+    @Test
+    void oldEventIsNotSent() {
+        ParentNotificationService service = newService();
+        // Tilbakedatert sjekk fra et nettbrett som var offline i en time
+        DomainEvent event = checkIn(emma, LocalDateTime.now().minusHours(1));
+
+        service.onEvents(List.of(event));
+        service.flush(true);
+
+        assertTrue(sent.isEmpty());
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT count(*) FROM notification_sent WHERE attendance_id = ?", Integer.class, attendanceId(event)));
+    }
+
+    private ParentNotificationService newService() {
+        NotificationSender sender = batch -> {
+            sendCalls.incrementAndGet();
+            if (senderDown) {
+                throw new IllegalStateException("Leverandøren svarer ikke");
+            }
+            sent.add(batch);
+        };
+        JobQueue jobQueue = new JobQueue(jdbc, transactionManager, jsonMapper,
+                new StaticListableBeanFactory().getBeanProvider(JobHandler.class),
+                new SimpleMeterRegistry(), 0, 10, 1_000, 300, 30, 5) {
+            @Override
+            public boolean enqueue(String type, Object payload) {
+                assertEquals("notifications.retry", type);
+                queued.add(payload);
+                return true;
+            }
+        };
+
+        ParentNotificationService service = new ParentNotificationService(jdbc, sender, jobQueue, jsonMapper,
+                meterRegistry, true, TimeUnit.MINUTES.toMillis(1), 100, MAX_ATTEMPTS, 1, 15);
+        services.add(service);
+        return service;
+    }
+
+    private long child(long groupId, String firstName) {
+        long childId = jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, ?, 'Varsel', DATE '2021-01-01')
+                RETURNING id
+                """, Long.class, groupId, firstName);
+        jdbc.update("INSERT INTO guardians_children (guardian_id, child_id) VALUES (?, ?)",
+                GUARDIAN_USER_ID, childId);
+        return childId;
+    }
+
+    private DomainEvent checkIn(long childId) {
+        return checkIn(childId, LocalDateTime.now());
+    }
+
+    private DomainEvent checkIn(long childId, LocalDateTime eventTime) {
+        long attendanceId = jdbc.queryForObject("""
+                INSERT INTO attendance (child_id, event_type, event_time, performed_by_user_id)
+                VALUES (?, 'IN', ?, ?)
+                RETURNING id
+                """, Long.class, childId, Timestamp.valueOf(eventTime), STAFF_USER_ID);
+        attendanceIds.add(attendanceId);
+
+        return new DomainEvent(attendanceId, DomainEvent.Type.ATTENDANCE_REGISTERED, childId, daycareId,
+                DomainEvents.data(
+                        "attendanceId", attendanceId,
+                        "eventType", AttendanceEventType.IN,
+                        "eventTime", eventTime),
+                LocalDateTime.now());
+    }
+
+    private static long attendanceId(DomainEvent event) {
+        return Long.parseLong(event.data().get("attendanceId"));
+    }
+}
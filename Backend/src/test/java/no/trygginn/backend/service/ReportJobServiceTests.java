@@ -0,0 +1,189 @@
+package no.trygginn.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.trygginn.backend.controller.dto.ReportJobRequest;
+import no.trygginn.backend.controller.dto.ReportJobResponse;
+import no.trygginn.backend.repository.DaycareRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rapportjobbene mot databasen, med egne instanser av tjenesten i en midlertidig mappe.
+ * Perioden er over (for 20 til 10 dager siden), så ferdige rapporter gjenbrukes.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class ReportJobServiceTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DaycareRepository daycareRepository;
+
+    @TempDir
+    private Path directory;
+
+    private final LocalDate from = LocalDate.now().minusDays(20);
+    private final LocalDate to = LocalDate.now().minusDays(10);
+    private final List<ReportJobService> services = new ArrayList<>();
+
+    private long daycareId;
+    private long groupId;
+
+    @BeforeEach
+    void setUp() {
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Rapport barnehage', 'RAPPORT001', 'Testveien 6')
+                RETURNING id
+                """, Long.class);
+        groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Rapport') RETURNING id",
+                Long.class, daycareId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(ReportJobService::shutdown);
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+    }
+
+    @Test
+    void sameReportTwiceGivesSameJob() throws Exception {
+        child("Ada", "Aas");
+        ReportJobService service = newService();
+
+        ReportJobResponse first = service.submit(attendance());
+        ReportJobResponse second = service.submit(attendance());
+        assertEquals(first.id(), second.id());
+
+        // Også etter at den er ferdig
+        awaitDone(service, first.id());
+        assertEquals(first.id(), service.submit(attendance()).id());
+
+        // En annen periode er en annen rapport
+        ReportJobRequest other = new ReportJobRequest(daycareId, "ATTENDANCE", from, to.minusDays(1));
+        assertNotEquals(first.id(), service.submit(other).id());
+    }
+
+    @Test
+    void finishedPastPeriodIsCachedAfterRestart() throws Exception {
+        child("Ada", "Aas");
+        ReportJobService before = newService();
+        ReportJobResponse generated = awaitDone(before, before.submit(attendance()).id());
+        assertFalse(generated.cached());
+        String content = Files.readString(before.file(generated.id()));
+        before.shutdown();
+        child("Ny", "Barn");
+
+        // Ny instans på samme mappe, som etter en omstart: filen tas i bruk uten å lages på nytt
+        // (det nye barnet er derfor ikke med)
+        ReportJobService after = newService();
+        ReportJobResponse cached = after.submit(attendance());
+
+        assertEquals("DONE", cached.status());
+        assertTrue(cached.cached());
+        assertEquals(100, cached.progress());
+        assertEquals(content, Files.readString(after.file(cached.id()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void attendanceCountsPresentDaysHoursAndLateDays() throws Exception {
+        long ada = child("Ada", "Aas");
+        long bo = child("Bo", "Berg");
+        long cim = child("Cim", "Dal");
+
+        // Ada: fire dager, én av dem for sent
+        event(ada, 0, "08:30", "IN");
+        event(ada, 0, "15:30", "OUT");
+        event(ada, 1, "09:15", "IN");
+        event(ada, 1, "16:15", "OUT");
+        // Akkurat 09:00 er ikke for sent
+        event(ada, 2, "09:00", "IN");
+        event(ada, 2, "12:00", "OUT");
+        // Første innsjekk teller, ikke en senere
+        event(ada, 3, "08:00", "IN");
+        event(ada, 3, "10:00", "IN");
+        event(ada, 3, "11:00", "OUT");
+        // Bo: sjekket inn ett minutt for sent og aldri ut
+        event(bo, 0, "09:01", "IN");
+        // Utenfor perioden teller ikke
+        event(cim, -1, "10:00", "IN");
+        event(cim, -1, "14:00", "OUT");
+
+        ReportJobService service = newService();
+        ReportJobResponse done = awaitDone(service, service.submit(attendance()).id());
+
+        assertEquals(List.of(
+                        "gruppe,barn_id,fornavn,etternavn,dager_til_stede,timer_til_stede,dager_for_sent",
+                        "Rapport," + ada + ",Ada,Aas,4,20.00,1",
+                        "Rapport," + bo + ",Bo,Berg,1,0.00,1",
+                        "Rapport," + cim + ",Cim,Dal,0,0.00,0"),
+                Files.readAllLines(service.file(done.id()), StandardCharsets.UTF_8));
+    }
+
+    private ReportJobService newService() throws Exception {
+        ReportJobService service = new ReportJobService(jdbc, daycareRepository, new SimpleMeterRegistry(),
+                directory.toString(), 1, 4, 2, 24, 10, "09:00");
+        services.add(service);
+        return service;
+    }
+
+    private ReportJobRequest attendance() {
+        return new ReportJobRequest(daycareId, "ATTENDANCE", from, to);
+    }
+
+    private ReportJobResponse awaitDone(ReportJobService service, String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ReportJobResponse job = service.get(id);
+        while (!"DONE".equals(job.status())) {
+            assertNotEquals("FAILED", job.status(), job.message());
+            assertTrue(System.nanoTime() < deadline, "Rapporten ble ikke ferdig");
+            Thread.sleep(20);
+            job = service.get(id);
+        }
+        return job;
+    }
+
+    private long child(String firstName, String lastName) {
+        return jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth)
+                VALUES (?, ?, ?, DATE '2021-01-01')
+                RETURNING id
+                """, Long.class, groupId, firstName, lastName);
+    }
+
+    private void event(long childId, int day, String time, String eventType) {
+        LocalDateTime at = from.plusDays(day).atTime(LocalTime.parse(time));
+        jdbc.update("""
+                INSERT INTO attendance (child_id, event_type, event_time, performed_by_user_id)
+                VALUES (?, ?, ?, ?)
+                """, childId, eventType, Timestamp.valueOf(at), STAFF_USER_ID);
+    }
+}
@@ -0,0 +1,182 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.SyncResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delta-synk mot databasen: full synk uten cursor, endringer etter cursoren,
+ * slettede rader og cursorer eldre enn det som er ryddet bort.
+ */
+@SpringBootTest
+@ActiveProfiles("dev")
+class SyncServiceTests {
+
+    // Kari Olsen fra testdataene i db/dev
+    private static final long STAFF_USER_ID = 3;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private long daycareId;
+    private long childId;
+
+    @BeforeEach
+    void setUp() {
+        daycareId = jdbc.queryForObject("""
+                INSERT INTO daycare (name, org_number, address)
+                VALUES ('Synk barnehage', 'SYNK000001', 'Testveien 7')
+                RETURNING id
+                """, Long.class);
+        long groupId = jdbc.queryForObject(
+                "INSERT INTO daycare_group (daycare_id, name) VALUES (?, 'Synk') RETURNING id",
+                Long.class, daycareId);
+        childId = jdbc.queryForObject("""
+                INSERT INTO children (daycare_group_id, first_name, last_name, date_of_birth, allergies)
+                VALUES (?, 'Synk', 'Barn', DATE '2021-01-01', 'Melk')
+                RETURNING id
+                """, Long.class, groupId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM daycare WHERE id = ?", daycareId);
+        jdbc.update("DELETE FROM sync_change WHERE daycare_id = ?", daycareId);
+    }
+
+    @Test
+    void firstSyncWithoutCursorIsFull() {
+        long attendanceId = checkIn();
+
+        SyncResponse response = syncService.sync(daycareId, null);
+
+        assertTrue(response.full());
+        assertNotNull(response.cursor());
+        assertEquals(List.of(childId), response.children().stream().map(SyncResponse.ChildRow::id).toList());
+        assertEquals("Melk", response.children().getFirst().allergies());
+        assertEquals(List.of(attendanceId), attendanceIds(response));
+    }
+
+    @Test
+    void changeAfterCursorIsInNextDelta() {
+        String cursor = syncService.sync(daycareId, null).cursor();
+
+        long attendanceId = checkIn();
+        SyncResponse delta = syncService.sync(daycareId, cursor);
+
+        assertFalse(delta.full());
+        assertEquals(List.of(attendanceId), attendanceIds(delta));
+        // Barnet er ikke endret, så det er ikke med
+        assertTrue(delta.children().isEmpty());
+
+        // Neste synk fra den nye cursoren har ingenting nytt
+        SyncResponse next = syncService.sync(daycareId, delta.cursor());
+        assertFalse(next.full());
+        assertTrue(next.attendance().isEmpty());
+        assertTrue(next.children().isEmpty());
+    }
+
+    @Test
+    void transactionCommittedAfterCursorIsNotSkipped() throws Exception {
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // Transaksjonen starter og skriver før cursoren, men committer etter
+        CompletableFuture<Long> slow = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            long id = checkIn();
+            inserted.countDown();
+            await(commit);
+            return id;
+        }));
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+        String cursor = syncService.sync(daycareId, null).cursor();
+        commit.countDown();
+        long attendanceId = slow.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(attendanceId), attendanceIds(syncService.sync(daycareId, cursor)));
+    }
+
+    @Test
+    void deletedRowIsRemoved() {
+        long absenceId = jdbc.queryForObject("""
+                INSERT INTO absence (child_id, reported_by_user_id, date, reason)
+                VALUES (?, ?, ?, 'Syk')
+                RETURNING id
+                """, Long.class, childId, STAFF_USER_ID, Date.valueOf(LocalDate.now().plusDays(1)));
+        String cursor = syncService.sync(daycareId, null).cursor();
+
+        jdbc.update("DELETE FROM absence WHERE id = ?", absenceId);
+        SyncResponse delta = syncService.sync(daycareId, cursor);
+
+        assertFalse(delta.full());
+        assertTrue(delta.absences().isEmpty());
+        assertEquals(List.of(absenceId), delta.removed().absences());
+    }
+
+    @Test
+    void cursorOlderThanPrunedLogGivesFullSync() {
+        String cursor = syncService.sync(daycareId, null).cursor();
+        checkIn();
+
+        String horizon = jdbc.queryForObject(
+                "SELECT pruned_before::text FROM sync_change_horizon WHERE id = 1", String.class);
+        try {
+            // Som om ryddingen har slettet loggen forbi cursoren
+            jdbc.update("UPDATE sync_change_horizon SET pruned_before = pg_current_xact_id() WHERE id = 1");
+
+            SyncResponse response = syncService.sync(daycareId, cursor);
+            assertTrue(response.full());
+            assertEquals(1, response.children().size());
+            assertEquals(1, response.attendance().size());
+        } finally {
+            jdbc.update("UPDATE sync_change_horizon SET pruned_before = ?::xid8 WHERE id = 1", horizon);
+        }
+    }
+
+    private long checkIn() {
+        return jdbc.queryForObject("""
+                INSERT INTO attendance (child_id, event_type, event_time, performed_by_user_id)
+                VALUES (?, 'IN', ?, ?)
+                RETURNING id
+                """, Long.class, childId, Timestamp.valueOf(LocalDateTime.now()), STAFF_USER_ID);
+    }
+
+    private static List<Long> attendanceIds(SyncResponse response) {
+        return response.attendance().stream().map(SyncResponse.AttendanceRow::id).toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
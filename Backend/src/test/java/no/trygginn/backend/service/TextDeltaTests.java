@@ -0,0 +1,129 @@
+package no.trygginn.backend.service;
+
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse.Op;
+import no.trygginn.backend.controller.dto.ChildNoteDiffResponse.Part;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TextDeltaTests {
+
+    @Test
+    void roundTripsCommonEdits() {
+        assertRoundTrip("", "");
+        assertRoundTrip("", "Nytt notat");
+        assertRoundTrip("Gammelt notat", "");
+        assertRoundTrip("Uendret", "Uendret");
+        assertRoundTrip("Hentes av mor", "Hentes av bestemor");
+        assertRoundTrip("Hentes av mor kl. 15", "Hentes av far kl. 15");
+        assertRoundTrip("abc", "xyz");
+        // Felles start og slutt som overlapper i den korteste teksten
+        assertRoundTrip("aaa", "aa");
+        assertRoundTrip("aa", "aaaa");
+        assertRoundTrip("abab", "ab");
+    }
+
+    @Test
+    void identicalTextsKeepEverything() {
+        TextDelta.Delta delta = TextDelta.between("Sover etter lunsj", "Sover etter lunsj");
+
+        assertEquals("", delta.content());
+        assertEquals("Sover etter lunsj".length(), delta.keepPrefix() + delta.keepSuffix());
+    }
+
+    @Test
+    void fullReplacementKeepsNothing() {
+        TextDelta.Delta delta = TextDelta.between("abc", "xyz");
+
+        assertEquals(new TextDelta.Delta(0, 0, "xyz"), delta);
+    }
+
+    @Test
+    void onlyTheMiddleIsStored() {
+        TextDelta.Delta delta = TextDelta.between("Hentes av mor kl. 15", "Hentes av far kl. 15");
+
+        // "mor" og "far" slutter begge på r, så bare "fa" lagres
+        assertEquals(new TextDelta.Delta(10, 8, "fa"), delta);
+    }
+
+    @Test
+    void roundTripsRandomEdits() {
+        Random random = new Random(7);
+        String text = "";
+        for (int step = 0; step < 2_000; step++) {
+            int at = text.isEmpty() ? 0 : random.nextInt(text.length() + 1);
+            int removed = Math.min(random.nextInt(4), text.length() - at);
+            String inserted = "ab ".substring(0, random.nextInt(4));
+            String next = text.substring(0, at) + inserted + text.substring(at + removed);
+
+            assertRoundTrip(text, next);
+            text = next.length() > 200 ? next.substring(100) : next;
+        }
+    }
+
+    @Test
+    void applyRejectsDeltaThatDoesNotFitBase() {
+        assertThrows(IllegalStateException.class, () -> TextDelta.apply("kort", 3, 3, "x"));
+        assertThrows(IllegalStateException.class, () -> TextDelta.apply("", 1, 0, ""));
+        assertEquals("kx", TextDelta.apply("kort", 1, 0, "x"));
+    }
+
+    @Test
+    void diffShowsChangedWordsSeparately() {
+        assertEquals(List.of(
+                        new Part(Op.EQUAL, "Hentes av "),
+                        new Part(Op.DELETE, "mor"),
+                        new Part(Op.INSERT, "bestemor"),
+                        new Part(Op.EQUAL, " i "),
+                        new Part(Op.DELETE, "dag"),
+                        new Part(Op.INSERT, "morgen")),
+                TextDelta.diff("Hentes av mor i dag", "Hentes av bestemor i morgen"));
+    }
+
+    @Test
+    void diffJoinsChangeSplitOnlyByWhitespace() {
+        assertEquals(List.of(
+                        new Part(Op.DELETE, "a b"),
+                        new Part(Op.INSERT, "x y"),
+                        new Part(Op.EQUAL, " c")),
+                TextDelta.diff("a b c", "x y c"));
+    }
+
+    @Test
+    void diffOfEqualAndEmptyTexts() {
+        assertEquals(List.of(new Part(Op.EQUAL, "Sover etter lunsj")),
+                TextDelta.diff("Sover etter lunsj", "Sover etter lunsj"));
+        assertEquals(List.of(new Part(Op.INSERT, "Nytt notat")), TextDelta.diff("", "Nytt notat"));
+        assertEquals(List.of(new Part(Op.DELETE, "Gammelt")), TextDelta.diff("Gammelt", ""));
+        assertEquals(List.of(), TextDelta.diff("", ""));
+    }
+
+    @Test
+    void diffPartsRebuildBothTexts() {
+        String from = "Allergisk mot nøtter. Hentes av mor, ikke far.";
+        String to = "Allergisk mot nøtter og egg. Hentes av far, ikke mor.";
+
+        StringBuilder before = new StringBuilder();
+        StringBuilder after = new StringBuilder();
+        for (Part part : TextDelta.diff(from, to)) {
+            if (part.op() != Op.INSERT) {
+                before.append(part.text());
+            }
+            if (part.op() != Op.DELETE) {
+                after.append(part.text());
+            }
+        }
+        assertEquals(from, before.toString());
+        assertEquals(to, after.toString());
+    }
+
+    private static void assertRoundTrip(String from, String to) {
+        TextDelta.Delta delta = TextDelta.between(from, to);
+        assertEquals(to, TextDelta.apply(from, delta.keepPrefix(), delta.keepSuffix(), delta.content()),
+                () -> "\"" + from + "\" -> \"" + to + "\"");
+    }
+}